@@ -11,45 +11,41 @@
 #include "commands/trigger.h"  
 #include "utils/lsyscache.h"
 #include "catalog/pg_type.h"
-
-#include <ctype.h>
+#include "lib/stringinfo.h"
+#include "libpq/pqformat.h"
+#include "port/pg_bswap.h"
+#include "miscadmin.h"
+#include "pgstat.h"
+#include "storage/latch.h"
+
+#include <errno.h>
 #include <stdio.h>
 #include <stdlib.h>
 #include <string.h>
 #include <unistd.h>
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <sys/wait.h>
+
+#define ICEBERG_JAR    "/usr/lib/iceberg/iceberg.jar"
+#define ICEBERG_SOCKET "/tmp/iceberg-psql.sock"
+
+/* протокол описан в iceberg.psql.PsqlProtocol */
+#define STATUS_OK 0
+
+#define TYPE_UNIT   0
+#define TYPE_I32    1
+#define TYPE_I64    2
+#define TYPE_BOOL   3
+#define TYPE_STRING 4
 
 PG_MODULE_MAGIC;
 
 /* Главный entrypoint */
 PG_FUNCTION_INFO_V1(iceberg_call_handler);
 
-void preprocess(FunctionCallInfo fcinfo, char* src, char* out);
-void add_argument(FunctionCallInfo fcinfo, int kth, char* out, int* j);
-void interpret(FunctionCallInfo fcinfo, char* src, char* out);
-
-//TODO: есть более качественное решение
-// * переписать хэндлер на работу с LLVM
-//   * скрипт компилировать в бинарь только один раз
-//   * использовать эту версию пока не помеяется код в PSQL-функции
-//   * бинарь подключать динамически и вызывать отсюда как обычную функцию
-// * ДАЛЕЕ ЛИБО
-//   * сделать шаблон функции таким
-//     fun __psql(x: i32, y: string): i32 {
-//   * и докинуть в бинарь хэндлер
-//     Datum __call(Datum *args) {
-//       int32 x = DatumGetInt32(args[0]);
-//       char* y = DatumGetInt32(args[1]);
-//       int32 res = __psql(x, y);
-//       return Int32GetDatum(res);
-//     }
-// * ЛИБО
-//   * добавить в Iceberg поддержку массивов
-//   * шаблон функции должен быть таким
-//     fun __psql(args[any]): i32 {
-//         def x = args[0] as i32;
-//         def y = args[1] as string;
-//         // source code
-//     }
+char* argument_name(FunctionCallInfo fcinfo, int kth);
+bool call_server(FunctionCallInfo fcinfo, char* src, Oid ret_oid, Datum* result, bool* isnull);
 
 Datum
 iceberg_call_handler(PG_FUNCTION_ARGS)
@@ -79,111 +75,22 @@ iceberg_call_handler(PG_FUNCTION_ARGS)
         elog(ERROR, "Function prosrc is NULL");
 
     char *src = TextDatumGetCString(prosrc_datum);
-
-    char preprocessed[16384];
-    for (int i = 0; i < 16384; i++) {
-        preprocessed[i] = '\0';
-    }
-    preprocess(fcinfo, src, preprocessed);
-
-    char output[1024];
-    interpret(fcinfo, preprocessed, output);
-    elog(INFO, "===========================");
-
     ReleaseSysCache(procTuple);
 
     Oid ret_oid = get_func_rettype(fn_oid);
-    switch (ret_oid) {
-        case INT4OID: { // int4
-            PG_RETURN_INT32(atoi(output));
-        }
-        case INT8OID: { // int8
-            PG_RETURN_INT64(atoll(output));
-        }
-        case BOOLOID: { // bool
-            PG_RETURN_BOOL(strcasecmp(output, "true") == 0);
-        }
-        case TEXTOID: { // text
-            PG_RETURN_TEXT_P(cstring_to_text_with_len(output, strlen(output)));
-        }
-        default: {
-            PG_RETURN_NULL();
-        }
-    }
-}
-
-void preprocess(FunctionCallInfo fcinfo, char* src, char *out) {
-    int i = 0;
-    int j = 0;
-
-    while (isspace(src[i])) {
-        out[j++] = src[i++];
-    }
-    while (strncmp(src + i, "import", 6) == 0) {
-        while (i == 0 || src[i - 1] != ';') {
-            out[j++] = src[i++];
-        }
-        while (isspace(src[i])) {
-            out[j++] = src[i++];
-        }
-    }
 
-    strcat(out, "fun __psql(): ");
-    j += 14;
+    /* функция компилируется один раз и вызывается в долгоживущей JVM, аргументы передаются как параметры */
+    Datum result;
+    bool result_isnull;
+    if (!call_server(fcinfo, src, ret_oid, &result, &result_isnull))
+        elog(ERROR, "iceberg server is unavailable at %s", ICEBERG_SOCKET);
 
-    Oid fn_oid = fcinfo->flinfo->fn_oid;
-    Oid ret_oid = get_func_rettype(fn_oid);
-    switch (ret_oid) {
-        case INT4OID: { // int4
-            strcat(out, "i32 {\n    ");
-            j += 10;
-            break;
-        }
-        case INT8OID: { // int8
-            strcat(out, "i64 {\n    ");
-            j += 10;
-            break;
-        }
-        case BOOLOID: { // bool
-            strcat(out, "bool {\n    ");
-            j += 11;
-            break;
-        }
-        case TEXTOID: { // text
-            strcat(out, "string {\n    ");
-            j += 13;
-            break;
-        }
-        default: {
-            strcat(out, "unit {\n    ");
-            j += 11;
-            break;
-        }
-    }
-
-    //create var for each param
-    for (int kth = 0; kth < PG_NARGS(); kth++) {
-        add_argument(fcinfo, kth, out, &j);
-    }
-
-    while (src[i - 1] != '\0') {
-        out[j++] = src[i++];
-    }
-
-    if (ret_oid == VOIDOID) {
-        strcat(out, "}\n\n    __psql();");
-        j += 16;
-    } else {
-        strcat(out, "}\n\n    print __psql();");
-        j += 22;
-    }
-
-    elog(INFO, "preprocessed:");
-    elog(INFO, out);
+    if (result_isnull)
+        PG_RETURN_NULL();
+    PG_RETURN_DATUM(result);
 }
 
-void add_argument(FunctionCallInfo fcinfo, int kth, char* out, int* j) {
-    //get argument name
+char* argument_name(FunctionCallInfo fcinfo, int kth) {
     Oid funcid = fcinfo->flinfo->fn_oid;
     HeapTuple procTuple = SearchSysCache1(PROCOID, ObjectIdGetDatum(funcid));
     if (!HeapTupleIsValid(procTuple))
@@ -194,7 +101,7 @@ void add_argument(FunctionCallInfo fcinfo, int kth, char* out, int* j) {
     proargnames_datum = SysCacheGetAttr(PROCOID, procTuple, Anum_pg_proc_proargnames, &isnull);
     if (isnull) {
       elog(ERROR, "isnull");
-      return;
+      return NULL;
     }
 
     ArrayType *proargnames = DatumGetArrayTypeP(proargnames_datum);
@@ -214,117 +121,265 @@ void add_argument(FunctionCallInfo fcinfo, int kth, char* out, int* j) {
     char *arg_name = text_to_cstring(DatumGetTextPP(d));
     ReleaseSysCache(procTuple);
 
-    //get argument type
-    Oid arg_type = get_fn_expr_argtype(fcinfo->flinfo, kth);
+    return arg_name;
+}
 
-    //depends on arg_type extract arg_value and
-    //write `def <arg_name> = <arg_value>;` to output
-    switch (arg_type) {
-        case INT4OID: {
-            int32 arg_value = PG_GETARG_INT32(kth);
+/* соединение с iceberg.psql.PsqlServer живет столько же, сколько backend */
+static int server_fd = -1;
+
+static void start_server(void) {
+    pid_t pid = fork();
+    if (pid == 0) {
+        // двойной fork, чтобы сервер не остался зомби у backend'а
+        setsid();
+        if (fork() == 0) {
+            // сервер переживает backend и не должен держать его клиентский сокет, пайпы postmaster'а и т.п.
+            long max_fd = sysconf(_SC_OPEN_MAX);
+            for (int fd = 3; fd < max_fd; fd++) {
+                close(fd);
+            }
 
-            char var[256];
-            snprintf(var, sizeof(var), "def %s = %d;\n    ", arg_name, arg_value);
+            execlp("java", "java", "-cp", ICEBERG_JAR,
+                   "iceberg.psql.PsqlServer", ICEBERG_SOCKET, (char *) NULL);
+            _exit(1);
+        }
+        _exit(0);
+    }
 
-            strcat(out, var);
-            *j += strlen(var);
+    if (pid > 0) {
+        waitpid(pid, NULL, 0);
+    }
+}
 
-            break;
+static int connect_server(void) {
+    if (server_fd >= 0) {
+        return server_fd;
+    }
+
+    struct sockaddr_un addr;
+    memset(&addr, 0, sizeof(addr));
+    addr.sun_family = AF_UNIX;
+    strncpy(addr.sun_path, ICEBERG_SOCKET, sizeof(addr.sun_path) - 1);
+
+    // если сервер не запущен - поднимаем его и ждем старта JVM;
+    // при одновременном старте из нескольких backend'ов лишние JVM сами завершаются
+    for (int attempt = 0; attempt < 100; attempt++) {
+        int fd = socket(AF_UNIX, SOCK_STREAM, 0);
+        if (fd < 0) {
+            return -1;
         }
-        case INT8OID: {
-            int64 arg_value = PG_GETARG_INT64(kth);
 
-            char var[256];
-            snprintf(var, sizeof(var), "def %s = %lld;\n    ", arg_name, arg_value);
+        if (connect(fd, (struct sockaddr *) &addr, sizeof(addr)) == 0) {
+            server_fd = fd;
+            return server_fd;
+        }
+        close(fd);
 
-            strcat(out, var);
-            *j += strlen(var);
+        if (attempt == 0) {
+            start_server();
+        }
+        pg_usleep(100000L);
+    }
 
-            break;
+    return -1;
+}
+
+static void disconnect_server(void) {
+    if (server_fd >= 0) {
+        close(server_fd);
+        server_fd = -1;
+    }
+}
+
+static void send_all(const char* data, int len) {
+    while (len > 0) {
+        ssize_t sent = send(server_fd, data, len, 0);
+        if (sent <= 0) {
+            disconnect_server();
+            elog(ERROR, "connection to iceberg server lost");
+        }
+        data += sent;
+        len -= sent;
+    }
+}
+
+/* ответ ждем на латче, чтобы statement_timeout и pg_cancel_backend прерывали долгий вызов */
+static void wait_server(void) {
+    int events = WaitLatchOrSocket(MyLatch, WL_LATCH_SET | WL_SOCKET_READABLE | WL_EXIT_ON_PM_DEATH,
+                                   server_fd, -1L, PG_WAIT_EXTENSION);
+    if (events & WL_LATCH_SET) {
+        ResetLatch(MyLatch);
+    }
+
+    // недочитанный ответ сбил бы протокол следующему вызову, поэтому при отмене соединение закрывается
+    PG_TRY();
+    {
+        CHECK_FOR_INTERRUPTS();
+    }
+    PG_CATCH();
+    {
+        disconnect_server();
+        PG_RE_THROW();
+    }
+    PG_END_TRY();
+}
+
+static void recv_all(char* data, int len) {
+    while (len > 0) {
+        ssize_t received = recv(server_fd, data, len, MSG_DONTWAIT);
+        if (received < 0 && (errno == EAGAIN || errno == EWOULDBLOCK || errno == EINTR)) {
+            wait_server();
+            continue;
+        }
+        if (received <= 0) {
+            disconnect_server();
+            elog(ERROR, "connection to iceberg server lost");
         }
-        case TEXTOID: {
-            text *t = PG_GETARG_TEXT_PP(kth);
+        data += received;
+        len -= received;
+    }
+}
+
+static uint8 recv_u8(void) {
+    uint8 value;
+    recv_all((char *) &value, 1);
+    return value;
+}
 
-            char var[256];
-            snprintf(var, sizeof(var), "def %s = \"%s\";\n    ", arg_name, text_to_cstring(t));
+static uint32 recv_u32(void) {
+    uint32 value;
+    recv_all((char *) &value, 4);
+    return pg_ntoh32(value);
+}
+
+static uint64 recv_u64(void) {
+    uint64 value;
+    recv_all((char *) &value, 8);
+    return pg_ntoh64(value);
+}
 
-            strcat(out, var);
-            *j += strlen(var);
+/* строка: u32 длина (-1 для null) и байты */
+static char* recv_string(int* len) {
+    int32 length = (int32) recv_u32();
+    if (length < 0) {
+        return NULL;
+    }
 
+    char *value = palloc(length + 1);
+    recv_all(value, length);
+    value[length] = '\0';
+
+    if (len != NULL) {
+        *len = length;
+    }
+    return value;
+}
+
+static void send_string(StringInfo buf, const char* value) {
+    int length = strlen(value);
+    pq_sendint32(buf, length);
+    pq_sendbytes(buf, value, length);
+}
+
+static int type_code(Oid type) {
+    switch (type) {
+        case INT4OID: return TYPE_I32;
+        case INT8OID: return TYPE_I64;
+        case BOOLOID: return TYPE_BOOL;
+        case TEXTOID: return TYPE_STRING;
+        case VOIDOID: return TYPE_UNIT;
+        default:      return -1;
+    }
+}
+
+bool call_server(FunctionCallInfo fcinfo, char* src, Oid ret_oid, Datum* result, bool* isnull) {
+    int ret_type = type_code(ret_oid);
+    if (ret_type < 0) {
+        elog(ERROR, "Return type oid=%u is not supported", ret_oid);
+    }
+
+    if (connect_server() < 0) {
+        return false;
+    }
+
+    StringInfoData buf;
+    initStringInfo(&buf);
+
+    pq_sendint32(&buf, fcinfo->flinfo->fn_oid);
+    send_string(&buf, src);
+    pq_sendbyte(&buf, ret_type);
+
+    pq_sendint16(&buf, PG_NARGS());
+    for (int kth = 0; kth < PG_NARGS(); kth++) {
+        Oid arg_type = get_fn_expr_argtype(fcinfo->flinfo, kth);
+        int type = type_code(arg_type);
+        if (type < 0 || type == TYPE_UNIT) {
+            elog(ERROR, "Arg %d has unsupported type oid=%u", kth, arg_type);
+        }
+        if (PG_ARGISNULL(kth)) {
+            elog(ERROR, "Arg %d is null, null arguments are not supported", kth);
+        }
+
+        send_string(&buf, argument_name(fcinfo, kth));
+        pq_sendbyte(&buf, type);
+
+        switch (type) {
+            case TYPE_I32: pq_sendint32(&buf, PG_GETARG_INT32(kth)); break;
+            case TYPE_I64: pq_sendint64(&buf, PG_GETARG_INT64(kth)); break;
+            case TYPE_BOOL: pq_sendbyte(&buf, PG_GETARG_BOOL(kth) ? 1 : 0); break;
+            case TYPE_STRING: send_string(&buf, text_to_cstring(PG_GETARG_TEXT_PP(kth))); break;
+        }
+    }
+
+    send_all(buf.data, buf.len);
+    pfree(buf.data);
+
+    if (recv_u8() != STATUS_OK) {
+        char *message = recv_string(NULL);
+        elog(ERROR, "%s", message != NULL ? message : "unknown error");
+    }
+
+    // вывод print'ов внутри функции
+    char *output = recv_string(NULL);
+    if (output != NULL) {
+        char *line = strtok(output, "\n");
+        while (line != NULL) {
+            elog(INFO, "%s", line);
+            line = strtok(NULL, "\n");
+        }
+    }
+
+    *isnull = false;
+    switch (recv_u8()) {
+        case TYPE_I32: {
+            *result = Int32GetDatum((int32) recv_u32());
             break;
         }
-        case BOOLOID: {
-            char var[256];
-            if (PG_GETARG_BOOL(kth)) {
-                snprintf(var, sizeof(var), "def %s = true;\n    ", arg_name);
+        case TYPE_I64: {
+            *result = Int64GetDatum((int64) recv_u64());
+            break;
+        }
+        case TYPE_BOOL: {
+            *result = BoolGetDatum(recv_u8() != 0);
+            break;
+        }
+        case TYPE_STRING: {
+            int len = 0;
+            char *value = recv_string(&len);
+            if (value == NULL) {
+                *isnull = true;
+                *result = (Datum) 0;
             } else {
-                snprintf(var, sizeof(var), "def %s = false;\n    ", arg_name);
+                *result = PointerGetDatum(cstring_to_text_with_len(value, len));
             }
-
-            strcat(out, var);
-            *j += strlen(var);
-
             break;
         }
         default: {
-            elog(INFO, "Arg %d has unsupported type oid=%u", kth, arg_type);
+            // unit, у void-функции значения нет
+            *result = (Datum) 0;
             break;
         }
     }
-}
 
-void interpret(FunctionCallInfo fcinfo, char* src, char* out) {
-// создаём временный файл
-  char tmp_filename[] = "/tmp/source.ibXXXXXX";
-  int fd = mkstemp(tmp_filename);
-  if (fd == -1) {
-      elog(ERROR, "Failed to create temporary file");
-      return;
-  }
-
-  // записываем src
-  FILE *tmp_fp = fdopen(fd, "w");
-  if (!tmp_fp) {
-      close(fd);
-      unlink(tmp_filename);
-      elog(ERROR, "Failed to open temporary file");
-      return;
-  }
-  fprintf(tmp_fp, "%s", src);
-  fclose(tmp_fp);  // закрываем, чтобы java могла читать
-
-  // формируем команду
-  char cmd[4096];
-  strcpy(cmd, "java -cp /usr/lib/iceberg/iceberg.jar iceberg.CompilationPipeline -run ");
-  strcat(cmd, tmp_filename);
-
-  elog(INFO, cmd);
-
-  // запускаем JAR
-  FILE *fp = popen(cmd, "r");
-  if (fp == NULL) {
-      unlink(tmp_filename);
-      elog(ERROR, "Failed to run Java interpreter");
-      return;
-  }
-
-  // читаем stdout
-  char output[1024];
-  while (fgets(output, sizeof(output)-1, fp) != NULL) {
-      size_t len = strlen(output);
-      if (len > 0 && output[len-1] == '\n')
-          output[len-1] = '\0'; // удаляем перенос строки
-      elog(INFO, output);
-  }
-
-  //last statement is `print __psql();`
-  //so last printed line is returned value
-  strncpy(out, output, sizeof(output)-1);
-
-  //TODO: если out плохой - вернуть ошибку в консоль (не в логи)
-
-  pclose(fp);
-
-  // удаляем временный файл
-  unlink(tmp_filename);
+    return true;
 }
@@ -1,6 +1,8 @@
 #!/usr/bin/env bash
 
 JAR="/usr/local/share/ice/compiler.jar"
+SOCKET="${ICE_SOCKET:-${TMPDIR:-/tmp}/ice-$(id -u).sock}"
+EXIT_MARKER="@@ice-exit:"
 
 classpath="$(pwd)"
 if [[ $1 == "-cp" ]]; then
@@ -8,8 +10,29 @@ if [[ $1 == "-cp" ]]; then
   shift 2
 fi
 
+# трассировка пишется в файл на стороне компилятора, -buffered меняет байткод,
+# а -no-cache выключает кэш только для этого запуска, поэтому с этими опциями демон не используется
+options=()
+while [[ $1 == -trace=* || $1 == -trace-file=* || $1 == "-buffered" || $1 == "-no-cache" ]]; do
+  options+=("$1")
+  shift
+done
+
+if [[ $1 == "-cache-stats" ]]; then
+  exec java -cp "$JAR" iceberg.CompilationPipeline -cache-stats
+fi
+
+if [[ $1 == "-daemon" ]]; then
+  exec java -cp "$classpath:$JAR" iceberg.CompilationPipeline -daemon "$SOCKET"
+fi
+
+# llvm-бэкенд не использует ни classpath, ни демона, опции передаются как есть
+if [[ $1 == "-llvm" ]]; then
+  exec java -cp "$JAR" iceberg.CompilationPipeline "${options[@]}" "$@"
+fi
+
 mode="-compile"
-if [[ $1 == "-jar" || $1 == "-run" ]]; then
+if [[ $1 == "-jar" || $1 == "-run" || $1 == "-incremental" ]]; then
   mode="$1"
   shift
 fi
@@ -21,4 +44,16 @@ fi
 
 source=$1
 
-exec java -cp "$classpath:$JAR" iceberg.CompilationPipeline "$mode" "$source"
\ No newline at end of file
+# если запущен демон - отправляем запрос ему, иначе поднимаем новую JVM;
+# -run всегда в отдельной JVM, чтобы программа не делила с демоном stdin и System.exit
+if [[ ${#options[@]} -eq 0 && $mode != "-run" && -S $SOCKET ]] && command -v nc > /dev/null; then
+  absolute="$(cd "$(dirname "$source")" && pwd)/$(basename "$source")"
+  response="$(printf '%s\n%s\n%s\n' "$mode" "$classpath" "$absolute" | nc -U "$SOCKET" 2> /dev/null)"
+
+  if [[ $response == *"$EXIT_MARKER"* ]]; then
+    printf '%s' "${response%"$EXIT_MARKER"*}"
+    exit "${response##*"$EXIT_MARKER"}"
+  fi
+fi
+
+exec java -cp "$classpath:$JAR" iceberg.CompilationPipeline "${options[@]}" "$mode" "$source"
@@ -16,6 +16,7 @@ statement
   | defStatement SEMICOLON
   | ifStatement
   | whileStatement
+  | forStatement
   | functionDefinitionStatement
   | classDefinitionStatement
   | returnStatement SEMICOLON
@@ -26,7 +27,7 @@ printStatement : PRINT expression;
 
 defStatement
   : DEF name=ID
-  ( COLON type=ID (ASSIGN expression)?
+  ( COLON type=ID (array=OPEN_BRACKET CLOSE_BRACKET)? (ASSIGN expression)?
   | ASSIGN expression
   );
 
@@ -40,24 +41,28 @@ whileStatement
   : WHILE expression THEN statement
   ;
 
+forStatement
+  : FOR name=ID IN from=expression RANGE to=expression THEN statement
+  ;
+
 classDefinitionStatement
   : CLASS name=ID OPEN_BRACE fieldDefinition* functionDefinitionStatement* CLOSE_BRACE
   ;
 
 fieldDefinition
-  : DEF name=ID COLON type=ID (ASSIGN expression)?
+  : DEF name=ID COLON type=ID (array=OPEN_BRACKET CLOSE_BRACKET)? (ASSIGN expression)?
   ;
 
 functionDefinitionStatement
   : FUN name=ID OPEN_PARENTHESIS parameters CLOSE_PARENTHESIS
-    (COLON returnType=ID)? block
+    (COLON returnType=ID (array=OPEN_BRACKET CLOSE_BRACKET)?)? block
   ;
 
 parameters
   : ((parameter COMMA)* parameter)?
   ;
 
-parameter : name=ID COLON type=ID;
+parameter : name=ID COLON type=ID (array=OPEN_BRACKET CLOSE_BRACKET)?;
 
 functionCall
   : name=ID OPEN_PARENTHESIS arguments CLOSE_PARENTHESIS
@@ -74,10 +79,12 @@ returnStatement
 block : OPEN_BRACE statement* CLOSE_BRACE;
 
 expression
-  : NEW className=ID                                      #newExpression
+  : NEW className=ID OPEN_BRACKET length=expression CLOSE_BRACKET  #newArrayExpression
+  | NEW className=ID                                      #newExpression
   | NOT atom                                              #negateExpression
   | MINUS atom                                            #unaryMinusExpression
   | expression DOT  (ID | functionCall)                   #memberExpression
+  | array=expression OPEN_BRACKET index=expression CLOSE_BRACKET  #indexExpression
   | left=expression (STAR | SLASH)      right=expression  #multiplicationExpression
   | left=expression (PLUS | MINUS)      right=expression  #additionExpression
   | left=expression (LE | GE | LT | GT) right=expression  #relationalExpression
@@ -107,6 +114,8 @@ OPEN_PARENTHESIS  : '(';
 CLOSE_PARENTHESIS : ')';
 OPEN_BRACE        : '{';
 CLOSE_BRACE       : '}';
+OPEN_BRACKET      : '[';
+CLOSE_BRACKET     : ']';
 
 EQ : '==';
 NEQ : '!=';
@@ -122,6 +131,8 @@ OR  : 'or';
 
 PRINT  : 'print';
 WHILE  : 'while';
+FOR    : 'for';
+IN     : 'in';
 IF     : 'if';
 THEN   : 'then';
 ELSE   : 'else';
@@ -141,6 +152,7 @@ DEF    : 'def';
 COLON  : ':';
 ASSIGN : '=';
 ID     : [A-Za-z_][A-Za-z_0-9]*;
+RANGE  : '..';
 DOT    : '.';
 
 STRING
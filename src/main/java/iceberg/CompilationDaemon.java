@@ -0,0 +1,150 @@
+package iceberg;
+
+import iceberg.jvm.JvmCompiler;
+import lombok.SneakyThrows;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Долгоживущий процесс компилятора, который принимает запросы через unix domain socket.
+ * Позволяет не платить за старт JVM, десериализацию ATN парсера и загрузку классов на каждый запуск.
+ * <p>
+ * Запрос - три строки: режим ({@code -compile}, {@code -incremental}, {@code -jar}, {@code -llvm}),
+ * classpath клиента и абсолютный путь до исходника.
+ * Ответ - вывод компилятора, после которого идет {@link #EXIT_MARKER} и код возврата.
+ * <p>
+ * {@code -run} демон не выполняет: программа работала бы в JVM демона, читала бы его stdin
+ * и могла бы завершить его через {@code System.exit}. Такие запросы {@code ice} выполняет в отдельной JVM.
+ */
+public class CompilationDaemon {
+
+    public static final String EXIT_MARKER = "@@ice-exit:";
+
+    private final Path socketPath;
+
+    public CompilationDaemon(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    @SneakyThrows
+    public void serve() {
+        warmup();
+
+        Files.deleteIfExists(socketPath);
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(this::deleteSocket));
+
+            System.out.println("ice daemon is listening on " + socketPath);
+
+            //NOTE: requests are handled one by one, because System.out is redirected to client
+            while (server.isOpen()) {
+                try (var channel = server.accept()) {
+                    handle(channel);
+                } catch (IOException e) {
+                    System.err.println("failed to handle request: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(SocketChannel channel) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), UTF_8));
+        var output = new PrintStream(Channels.newOutputStream(channel), false, UTF_8);
+
+        var mode = reader.readLine();
+        var classpath = reader.readLine();
+        var source = reader.readLine();
+
+        var exitCode = execute(mode, classpath, source, output);
+
+        output.print(EXIT_MARKER + exitCode);
+        output.flush();
+    }
+
+    private int execute(String mode, String classpath, String source, PrintStream output) {
+        var out = System.out;
+        var err = System.err;
+        var thread = Thread.currentThread();
+        var contextClassLoader = thread.getContextClassLoader();
+
+        try (var classLoader = buildClassLoader(classpath)) {
+            System.setOut(output);
+            System.setErr(output);
+            thread.setContextClassLoader(classLoader);
+
+            var parsedMode = CompilationPipeline.Mode.valueOf(mode.substring(1));
+            if (parsedMode == CompilationPipeline.Mode.run) {
+                output.println("-run is not supported by the daemon, run the program in a separate JVM");
+                return 1;
+            }
+            CompilationPipeline.execute(parsedMode, CompilationPipeline.expandHome(source));
+
+            return 0;
+        } catch (Throwable e) {
+            output.println(e.getMessage() != null ? e.getMessage() : e.toString());
+            return 1;
+        } finally {
+            output.flush();
+
+            thread.setContextClassLoader(contextClassLoader);
+            System.setErr(err);
+            System.setOut(out);
+        }
+    }
+
+    private URLClassLoader buildClassLoader(String classpath) throws IOException {
+        var urls = new ArrayList<URL>();
+        for (var entry : classpath.split(File.pathSeparator)) {
+            if (!entry.isBlank()) {
+                urls.add(Path.of(entry).toUri().toURL());
+            }
+        }
+
+        return new URLClassLoader(urls.toArray(URL[]::new), getClass().getClassLoader());
+    }
+
+    //прогреваем парсер, резолвер и кодогенерацию, чтобы первый запрос не платил за JIT
+    private void warmup() {
+        var source = """
+            import java.lang.StringBuilder;
+
+            class Point {
+                def x: i32 = 0
+                def y: i32
+
+                fun sum(): i32 {
+                    return this.x + this.y;
+                }
+            }
+
+            def sb = new StringBuilder;
+            def i = 0;
+            while i < 10 then {
+                if i == 5 or i > 7 then sb.append("x");
+                i = i + 1;
+            }
+            """;
+
+        for (int i = 0; i < 20; i++) {
+            JvmCompiler.compile(source);
+        }
+    }
+
+    @SneakyThrows
+    private void deleteSocket() {
+        Files.deleteIfExists(socketPath);
+    }
+}
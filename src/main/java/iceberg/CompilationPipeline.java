@@ -1,39 +1,111 @@
 package iceberg;
 
+import iceberg.jvm.CompilationCache;
 import iceberg.jvm.JvmCompiler;
 import iceberg.llvm.LlvmCompiler;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 public class CompilationPipeline {
 
+    enum Mode { compile, incremental, run, jar, llvm, daemon }
+
     public static void main(String[] args) throws Exception {
+        args = configureOptions(args);
+
+        if (args.length == 1 && "-cache-stats".equals(args[0])) {
+            var stats = CompilationCache.getDefault().stats();
+            System.out.printf(
+                "hits: %d, misses: %d, entries: %d, size: %d bytes%n",
+                stats.hits(), stats.misses(), stats.entries(), stats.size()
+            );
+            return;
+        }
+
+        //опции есть только у -llvm: -llvm [-O0..-O3] [-clang-O0..-clang-O3] [-stdin] [-pass-report=<file>] source.ib
+        if (args.length >= 2 && "-llvm".equals(args[0])) {
+            var options = LlvmCompiler.Options.parse(Arrays.asList(args).subList(1, args.length - 1));
+            var path = expandHome(args[args.length - 1]);
+            LlvmCompiler.compile(path, Files.readString(path), options);
+            return;
+        }
+
         if (args.length != 2) {
             System.out.println("""
                 Невалидное число аргументов
                 ice [-cp <path>] source.ib
+                ice [-cp <path>] -incremental source.ib
                 ice [-cp <path>] -run source.ib
                 ice [-cp <path>] -jar source.ib
+                ice -llvm [-O0|-O1|-O2|-O3] [-clang-O0|...|-clang-O3] [-stdin] [-pass-report=<file>] source.ib
+                ice [-cp <path>] -daemon
+                ice -cache-stats
+
+                Перед режимом можно указать -trace=<tac,cfg,cp,llvm-ir,bytecode|all> [-trace-file=<file>]
+                -buffered (stdout буферизуется и сбрасывается при выходе из программы)
+                и -no-cache (классы компилируются заново, кэш не читается и не пополняется)
                 """);
             return;
         }
 
-        enum Mode { compile, run, jar, llvm }
         var mode = Mode.valueOf(args[0].substring(1));
+        var path = expandHome(args[1]);
 
-        if (args[1].startsWith("~")) {
-            args[1] = System.getProperty("user.home") + args[1].substring(1);
+        if (mode == Mode.daemon) {
+            new CompilationDaemon(path).serve();
+        } else {
+            execute(mode, path);
         }
+    }
+
+    //-trace=<channels>, -trace-file=<file>, -buffered и -no-cache идут перед режимом и равносильны
+    //-Diceberg.trace, -Diceberg.trace.file, -Diceberg.print.buffered=true и -Diceberg.cache.enabled=false
+    private static String[] configureOptions(String[] args) {
+        String channels = null;
+        var file = Path.of(System.getProperty("iceberg.trace.file", Trace.DEFAULT_FILE));
 
-        var sourcePath = Path.of(args[1]);
+        int i = 0;
+        for (; i < args.length; i++) {
+            if (args[i].startsWith("-trace=")) {
+                channels = args[i].substring("-trace=".length());
+            } else if (args[i].startsWith("-trace-file=")) {
+                file = expandHome(args[i].substring("-trace-file=".length()));
+            } else if ("-buffered".equals(args[i])) {
+                System.setProperty("iceberg.print.buffered", "true");
+            } else if ("-no-cache".equals(args[i])) {
+                System.setProperty("iceberg.cache.enabled", "false");
+            } else {
+                break;
+            }
+        }
+
+        if (channels != null) {
+            Trace.configure(channels, file);
+        }
+
+        return Arrays.copyOfRange(args, i, args.length);
+    }
+
+    static void execute(Mode mode, Path sourcePath) throws Exception {
         var source = Files.readString(sourcePath);
 
         switch (mode) {
             case run -> JvmCompiler.run(source);
             case compile -> JvmCompiler.compileClasses(sourcePath, source);
+            case incremental -> JvmCompiler.compileIncremental(sourcePath, source);
             case jar -> JvmCompiler.compileJar(sourcePath, source);
             case llvm -> LlvmCompiler.compile(sourcePath, source);
+            case daemon -> throw new IllegalArgumentException("daemon can't be executed as request");
         }
     }
+
+    static Path expandHome(String path) {
+        if (path.startsWith("~")) {
+            path = System.getProperty("user.home") + path.substring(1);
+        }
+
+        return Path.of(path);
+    }
 }
@@ -2,6 +2,14 @@ package iceberg;
 
 public class Misc {
 
+    /**
+     * Буферизованный вывод {@code print}: {@code -Diceberg.print.buffered=true} или {@code ice -buffered}.
+     * Вывод копится в большом буфере без сброса на каждой строке и сбрасывается при выходе из программы.
+     */
+    public static boolean bufferedOutput() {
+        return Boolean.getBoolean("iceberg.print.buffered");
+    }
+
     public static String bytesToHex(byte[] bytes) {
         StringBuilder hexString = new StringBuilder();
         for (int i = 0; i < bytes.length; i++) {
@@ -25,6 +33,10 @@ public class Misc {
 
     public static class ByteClassLoader extends ClassLoader {
 
+        public ByteClassLoader() {
+            super(Thread.currentThread().getContextClassLoader());
+        }
+
         public Class<?> define(String className, byte[] bytes) {
             return defineClass(className, bytes, 0, bytes.length);
         }
@@ -0,0 +1,137 @@
+package iceberg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Отладочный вывод фаз компилятора по именованным каналам, по умолчанию все каналы выключены.
+ * <p>
+ * Каналы включаются через {@code -Diceberg.trace=tac,cfg} (или {@code all}) либо флагом {@code ice -trace=tac,cfg},
+ * вывод пишется в {@code -Diceberg.trace.file} / {@code -trace-file=<file>}, по умолчанию {@value #DEFAULT_FILE}.
+ * <p>
+ * Фаза проверяет {@link #enabled(Channel)} до того, как строить текст, поэтому выключенный канал
+ * стоит одного чтения поля. Каждая запись - заголовок с каналом и именем объекта, затем текст,
+ * записи из разных потоков не перемешиваются.
+ */
+public final class Trace {
+
+    public static final String DEFAULT_FILE = "iceberg-trace.log";
+
+    public enum Channel {
+        /** трехадресный код функции сразу после {@code BuildTacPhase} */
+        TAC("tac"),
+        /** базовые блоки с ребрами сразу после {@code BuildCfgPhase} */
+        CFG("cfg"),
+        /** значения переменных в решетке SCCP и неисполнимые блоки */
+        CP("cp"),
+        /** итоговый LLVM-модуль */
+        LLVM_IR("llvm-ir"),
+        /** байткод каждого класса JVM-бэкенда */
+        BYTECODE("bytecode");
+
+        public final String id;
+
+        Channel(String id) {
+            this.id = id;
+        }
+
+        static Channel of(String id) {
+            return Arrays.stream(values())
+                .filter(channel -> channel.id.equals(id))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException("unknown trace channel: " + id));
+        }
+    }
+
+    //настраивается до начала компиляции, задачи на пулах видят значение через happens-before сабмита
+    private static int mask;
+    private static Path file;
+    private static Writer writer;
+
+    static {
+        var channels = System.getProperty("iceberg.trace");
+        if (channels != null) {
+            configure(channels, Path.of(System.getProperty("iceberg.trace.file", DEFAULT_FILE)));
+        }
+    }
+
+    private Trace() {
+    }
+
+    /**
+     * @param channels имена каналов через запятую или {@code all}, пустая строка выключает трассировку
+     * @param file     куда писать, файл перезаписывается при первой записи
+     */
+    public static synchronized void configure(String channels, Path file) {
+        var enabled = parse(channels);
+
+        close();
+        Trace.file = file;
+        Trace.mask = enabled.stream().mapToInt(channel -> 1 << channel.ordinal()).reduce(0, (a, b) -> a | b);
+    }
+
+    public static boolean enabled(Channel channel) {
+        return (mask & (1 << channel.ordinal())) != 0;
+    }
+
+    public static boolean anyEnabled() {
+        return mask != 0;
+    }
+
+    public static synchronized void print(Channel channel, String name, String text) {
+        if (!enabled(channel)) {
+            return;
+        }
+
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, UTF_8);
+            }
+
+            writer.write("### " + channel.id + ": " + name + "\n");
+            writer.write(text);
+            if (!text.endsWith("\n")) {
+                writer.write("\n");
+            }
+            //процесс может упасть на следующей фазе, трасса до нее должна остаться в файле
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Set<Channel> parse(String channels) {
+        if ("all".equals(channels.strip())) {
+            return EnumSet.allOf(Channel.class);
+        }
+
+        return Arrays.stream(channels.split(","))
+            .map(String::strip)
+            .filter(id -> !id.isEmpty())
+            .map(Channel::of)
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(Channel.class)));
+    }
+
+    private static void close() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer = null;
+        }
+    }
+}
@@ -99,6 +99,9 @@ public class BuildIrTreePhase {
 
                     assertAssignable(irField.type, initializer.type, ctx);
                     irField.initializer = initializer;
+                } else if (irField.type.isArray()) {
+                    //как и у локальной переменной, массив по умолчанию пустой
+                    irField.initializer = new IrNewArray(irField.type, new IrNumber(0));
                 }
 
                 return irField;
@@ -108,8 +111,7 @@ public class BuildIrTreePhase {
             public IR visitFunctionDefinitionStatement(IcebergParser.FunctionDefinitionStatementContext ctx) {
                 var functionName = ctx.name.getText();
                 var parametersTypes = ctx.parameters().parameter().stream()
-                    .map(parameter -> parameter.type.getText())
-                    .map(classResolver::getIcebergType)
+                    .map(parameter -> classResolver.getIcebergType(parameter.type, parameter.array))
                     .toList();
 
                 var irFunction = currentClass
@@ -187,7 +189,7 @@ public class BuildIrTreePhase {
             @Override
             public IR visitPrintStatement(IcebergParser.PrintStatementContext ctx) {
                 var argument = (IrExpression) ctx.expression().accept(this);
-                if (argument.type.equals(IcebergType.unit)) {
+                if (argument.type.equals(IcebergType.unit) || argument.type.isArray()) {
                     throw new SemanticException("impossible print", ctx);
                 }
 
@@ -226,13 +228,16 @@ public class BuildIrTreePhase {
 
                 IrVariable variable;
                 if (ctx.expression() == null) {
-                    var type = classResolver.getIcebergType(ctx.type.getText());
-                    variable = new IrVariable(type, null);
+                    var type = classResolver.getIcebergType(ctx.type, ctx.array);
+                    //массив по умолчанию пустой, а не null: в языке нет null
+                    variable = type.isArray()
+                        ? new IrVariable(type, new IrNewArray(type, new IrNumber(0)))
+                        : new IrVariable(type, null);
                 } else {
                     var initializer = (IrExpression) ctx.expression().accept(this);
 
                     if (ctx.type != null) {
-                        var specifiedType = classResolver.getIcebergType(ctx.type.getText());
+                        var specifiedType = classResolver.getIcebergType(ctx.type, ctx.array);
                         if (specifiedType == IcebergType.i64 && initializer.type == IcebergType.i32) {
                             initializer = new IrCast(initializer, IcebergType.i64);
                         } else if (specifiedType != initializer.type) {
@@ -267,12 +272,26 @@ public class BuildIrTreePhase {
 
                 if (left instanceof IrReadVariable irReadVariable) {
                     var irVariable = irReadVariable.definition;
+                    if (loopVariables.contains(irVariable)) {
+                        throw new SemanticException("loop variable '%s' is read-only".formatted(ctx.left.getText()), ctx);
+                    }
                     var expression = (IrExpression) ctx.right.accept(this);
 
                     assertAssignable(irVariable.type, expression.type, ctx);
                     return new IrAssignVariable(irVariable, expression);
                 }
 
+                if (left instanceof IrArrayLoad irArrayLoad) {
+                    var expression = (IrExpression) ctx.right.accept(this);
+
+                    assertAssignable(irArrayLoad.type, expression.type, ctx);
+                    return new IrArrayStore(irArrayLoad.array, irArrayLoad.index, expression);
+                }
+
+                if (left instanceof IrArrayLength) {
+                    throw new SemanticException("array length is read-only", ctx);
+                }
+
                 throw new IllegalStateException("impossible");
             }
 
@@ -332,6 +351,38 @@ public class BuildIrTreePhase {
                 return new IrLoop(condition, body);
             }
 
+            //переменные for-циклов: присваивание им сломало бы счетный цикл
+            private final Set<IrVariable> loopVariables = new HashSet<>();
+
+            @Override
+            public IR visitForStatement(IcebergParser.ForStatementContext ctx) {
+                var name = ctx.name.getText();
+                for (var scope : scopes) {
+                    if (scope.containsKey(name)) {
+                        throw new SemanticException("'%s' is already defined".formatted(name), ctx);
+                    }
+                }
+
+                var from = (IrExpression) ctx.from.accept(this);
+                var to = (IrExpression) ctx.to.accept(this);
+                assertI32(from, ctx.from);
+                assertI32(to, ctx.to);
+
+                var variable = new IrVariable(IcebergType.i32, from);
+                var limit = new IrVariable(IcebergType.i32, to);
+
+                scopes.add(new HashMap<>());
+                scopes.getLast().put(name, variable);
+                loopVariables.add(variable);
+
+                var body = ctx.statement().accept(this);
+
+                loopVariables.remove(variable);
+                scopes.removeLast();
+
+                return new IrForRange(variable, limit, body);
+            }
+
             @Override
             public IR visitAdditionExpression(IcebergParser.AdditionExpressionContext ctx) {
                 var left = (IrExpression) ctx.left.accept(this);
@@ -340,10 +391,70 @@ public class BuildIrTreePhase {
                     ? IcebergBinaryOperator.PLUS
                     : IcebergBinaryOperator.SUB;
 
+                var strings = left.type.equals(IcebergType.string) || right.type.equals(IcebergType.string);
+                if (operator == IcebergBinaryOperator.PLUS && strings) {
+                    assertConcatenable(left, ctx);
+                    assertConcatenable(right, ctx);
+                    return buildStringConcat(left, right);
+                }
+
                 assertIntegers(left, right, ctx);
                 return buildArithmeticExpression(left, right, operator);
             }
 
+            //makeConcatWithConstants принимает до 200 слотов аргументов, long занимает два
+            private static final int MAX_CONCAT_ARGUMENTS = 100;
+
+            //a + b + c - один IrStringConcat, соседние литералы склеиваются на этапе компиляции.
+            //Длинная цепочка не раскрывается целиком: уже собранная часть становится одним аргументом
+            private static IrExpression buildStringConcat(IrExpression left, IrExpression right) {
+                var parts = new ArrayList<IrExpression>();
+                for (var operand : List.of(left, right)) {
+                    var arguments = parts.stream().filter(part -> !(part instanceof IrString)).count();
+                    if (operand instanceof IrStringConcat concat
+                        && arguments + concat.arguments().size() < MAX_CONCAT_ARGUMENTS) {
+                        concat.parts.forEach(part -> appendConcatPart(parts, part));
+                    } else {
+                        appendConcatPart(parts, operand);
+                    }
+                }
+
+                if (parts.isEmpty()) {
+                    return new IrString("");
+                }
+                if (parts.size() == 1 && parts.getFirst() instanceof IrString irString) {
+                    return irString;
+                }
+                return new IrStringConcat(parts);
+            }
+
+            private static void appendConcatPart(List<IrExpression> parts, IrExpression part) {
+                var constant = switch (part) {
+                    case IrString irString -> irString.value;
+                    case IrNumber irNumber -> String.valueOf(irNumber.value);
+                    case IrBool irBool -> String.valueOf(irBool.value);
+                    default -> null;
+                };
+
+                if (constant == null) {
+                    parts.add(part);
+                } else if (!parts.isEmpty() && parts.getLast() instanceof IrString last) {
+                    parts.set(parts.size() - 1, new IrString(last.value + constant));
+                } else if (!constant.isEmpty()) {
+                    parts.add(new IrString(constant));
+                }
+            }
+
+            private static void assertConcatenable(IrExpression operand, ParserRuleContext ctx) {
+                if (operand.type.equals(IcebergType.unit) || operand.type.isArray()) {
+                    throw new SemanticException("""
+                        cannot concatenate %s
+                        at %s""".formatted(operand.type, ctx.getText()),
+                        ctx
+                    );
+                }
+            }
+
 
             @Override
             public IR visitMultiplicationExpression(IcebergParser.MultiplicationExpressionContext ctx) {
@@ -429,7 +540,7 @@ public class BuildIrTreePhase {
                     right = new IrCast(right, IcebergType.i64);
                 }
 
-                if (left.type.equals(right.type)) {
+                if (left.type.equals(right.type) && !left.type.isArray()) {
                     var binary = new IrBinaryExpression(left, right, IcebergBinaryOperator.EQ, IcebergType.bool);
                     if (ctx.EQ() != null) {
                         return binary;
@@ -516,6 +627,48 @@ public class BuildIrTreePhase {
                 throw new SemanticException("class '%s' is not defined".formatted(className), ctx);
             }
 
+            @Override
+            public IR visitNewArrayExpression(IcebergParser.NewArrayExpressionContext ctx) {
+                var elementType = IcebergType.valueOf(ctx.className.getText());
+                var type = elementType != null ? IcebergType.arrayOf(elementType) : null;
+                if (type == null) {
+                    throw new SemanticException(
+                        "arrays of '%s' are not supported".formatted(ctx.className.getText()), ctx
+                    );
+                }
+
+                var length = (IrExpression) ctx.length.accept(this);
+                assertI32(length, ctx);
+
+                return new IrNewArray(type, length);
+            }
+
+            @Override
+            public IR visitIndexExpression(IcebergParser.IndexExpressionContext ctx) {
+                var array = (IrExpression) ctx.array.accept(this);
+                if (!array.type.isArray()) {
+                    throw new SemanticException(
+                        "expected array, but was %s".formatted(array.type), ctx.array
+                    );
+                }
+
+                var index = (IrExpression) ctx.index.accept(this);
+                assertI32(index, ctx);
+
+                //NOTE: если выше окажется что это l-value,
+                //то IrArrayLoad заменится на IrArrayStore
+                return new IrArrayLoad(array, index);
+            }
+
+            //длина и индексы массива - i32, как в JVM
+            private static void assertI32(IrExpression index, ParserRuleContext ctx) {
+                if (!index.type.equals(IcebergType.i32)) {
+                    throw new SemanticException(
+                        "expected i32, but was %s".formatted(index.type), ctx
+                    );
+                }
+            }
+
             //TODO: в случае с импортами
             // - не работают статические функции, например, Collections.sort(...)
             // - нет боксинга (нельзя в список засунуть число)
@@ -530,6 +683,10 @@ public class BuildIrTreePhase {
                 } else {
                     var fieldName = ctx.ID().getText();
                     var receiver = (IrExpression) ctx.expression().accept(this);
+                    if (receiver.type.isArray() && "length".equals(fieldName)) {
+                        return new IrArrayLength(receiver);
+                    }
+
                     var irField = receiver.type.irClass.fields.get(fieldName);
                     if (irField == null) {
                         throw new SemanticException(
@@ -5,7 +5,9 @@ import iceberg.antlr.IcebergBaseVisitor;
 import iceberg.antlr.IcebergParser;
 import iceberg.ir.*;
 import lombok.Getter;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Executable;
 import java.lang.reflect.Method;
@@ -41,6 +43,13 @@ public class ClassResolver {
         });
     }
 
+    /**
+     * Тип из объявления {@code name: type} или {@code name: type[]}.
+     */
+    public IcebergType getIcebergType(Token type, @Nullable Token array) {
+        return getIcebergType(array == null ? type.getText() : type.getText() + "[]");
+    }
+
     private void findAllClasses(IcebergParser.FileContext file) {
         allClasses.put(icebergIrClass.name, icebergIrClass);
 
@@ -53,7 +62,9 @@ public class ClassResolver {
 
                 Class<?> klass;
                 try {
-                    klass = Class.forName(fqn);
+                    //NOTE: context loader allows daemon to resolve classes from client's -cp
+                    var classLoader = Thread.currentThread().getContextClassLoader();
+                    klass = Class.forName(fqn, true, classLoader);
                 } catch (ClassNotFoundException e) {
                     throw new SemanticException("unknown class: " + fqn, ctx);
                 }
@@ -151,7 +162,7 @@ public class ClassResolver {
                     );
                 }
 
-                var type = getIcebergType(ctx.type.getText());
+                var type = getIcebergType(ctx.type, ctx.array);
                 var irField = new IrField(currentClass, fieldName, type);
 
                 currentClass.fields.put(fieldName, irField);
@@ -165,8 +176,7 @@ public class ClassResolver {
             ) {
                 var functionName = ctx.name.getText();
                 var parametersTypes = ctx.parameters().parameter().stream()
-                    .map(parameter -> parameter.type.getText())
-                    .map(parameter -> getIcebergType(parameter))
+                    .map(parameter -> getIcebergType(parameter.type, parameter.array))
                     .toList();
 
                 var optional = currentClass.findMethod(functionName, parametersTypes);
@@ -177,12 +187,12 @@ public class ClassResolver {
                 }
 
                 var returnType = ctx.returnType != null
-                    ? getIcebergType(ctx.returnType.getText())
+                    ? getIcebergType(ctx.returnType, ctx.array)
                     : IcebergType.unit;
                 var function = new IrFunction(currentClass, functionName, returnType);
 
                 ctx.parameters().parameter().stream()
-                    .map(parameter -> getIcebergType(parameter.type.getText()))
+                    .map(parameter -> getIcebergType(parameter.type, parameter.array))
                     .map(parameter -> new IrVariable(parameter, null))
                     .forEach(function.parameters::add);
 
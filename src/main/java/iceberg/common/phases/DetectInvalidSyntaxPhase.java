@@ -52,6 +52,10 @@ public class DetectInvalidSyntaxPhase {
                     }
                 }
 
+                if (ctx.left instanceof IcebergParser.IndexExpressionContext) {
+                    return super.visitAssignExpression(ctx);
+                }
+
                 throw new SemanticException("bad l-value:\n" + ctx.getText(), ctx.left);
             }
 
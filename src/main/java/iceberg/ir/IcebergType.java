@@ -2,14 +2,20 @@ package iceberg.ir;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class IcebergType {
 
-    public static final IcebergType i32 = new IcebergType(new IrClass("i32"));
-    public static final IcebergType i64 = new IcebergType(new IrClass("i64"));
-    public static final IcebergType bool = new IcebergType(new IrClass("bool"));
-    public static final IcebergType unit = new IcebergType(new IrClass("unit"));
+    public static final IcebergType i32 = new IcebergType(IrClass.builtIn("i32", irClass -> List.of()));
+    public static final IcebergType i64 = new IcebergType(IrClass.builtIn("i64", irClass -> List.of()));
+    public static final IcebergType bool = new IcebergType(IrClass.builtIn("bool", irClass -> List.of()));
+    public static final IcebergType unit = new IcebergType(IrClass.builtIn("unit", irClass -> List.of()));
+
+    //массивы фиксированного размера, только из примитивов
+    public static final IcebergType i32Array = new IcebergType(IrClass.builtIn("i32[]", irClass -> List.of()));
+    public static final IcebergType i64Array = new IcebergType(IrClass.builtIn("i64[]", irClass -> List.of()));
+    public static final IcebergType boolArray = new IcebergType(IrClass.builtIn("bool[]", irClass -> List.of()));
 
     public static final IcebergType object = buildJavaLangObject();
     public static final IcebergType string = buildJavaLangString();
@@ -24,6 +30,9 @@ public class IcebergType {
             case "bool" -> bool;
             case "unit" -> unit;
             case "string" -> string;
+            case "i32[]" -> i32Array;
+            case "i64[]" -> i64Array;
+            case "bool[]" -> boolArray;
             default -> null;
         };
     }
@@ -40,11 +49,25 @@ public class IcebergType {
             return unit;
         } else if (klass == String.class) {
             return string;
+        } else if (klass == int[].class) {
+            return i32Array;
+        } else if (klass == long[].class) {
+            return i64Array;
+        } else if (klass == boolean[].class) {
+            return boolArray;
         } else {
             return null;
         }
     }
 
+    /**
+     * Массив из элементов {@code element} или null, если такого типа массива нет.
+     */
+    @Nullable
+    public static IcebergType arrayOf(IcebergType element) {
+        return valueOf(element.irClass.name + "[]");
+    }
+
     public final IrClass irClass;
 
     //TODO: в коде есть сравнение типов через ==
@@ -54,6 +77,25 @@ public class IcebergType {
         this.irClass = irClass;
     }
 
+    public boolean isArray() {
+        return equals(i32Array) || equals(i64Array) || equals(boolArray);
+    }
+
+    /**
+     * Тип элемента массива.
+     */
+    public IcebergType elementType() {
+        if (equals(i32Array)) {
+            return i32;
+        } else if (equals(i64Array)) {
+            return i64;
+        } else if (equals(boolArray)) {
+            return bool;
+        } else {
+            throw new IllegalStateException("not an array: " + this);
+        }
+    }
+
     @Override
     public int hashCode() {
         return irClass.name.hashCode();
@@ -74,43 +116,48 @@ public class IcebergType {
     }
 
     private static IcebergType buildJavaLangString() {
-        var irClass = new IrClass("java/lang/String");
-
-        var equals = new IrFunction(irClass, "equals", bool);
-        equals.parameters.add(new IrVariable(object, null));
+        var irClass = IrClass.builtIn("java/lang/String", klass -> {
+            var equals = new IrFunction(klass, "equals", bool);
+            equals.parameters.add(new IrVariable(object, null));
 
-        irClass.methods.add(equals);
+            return List.of(equals);
+        });
 
         return new IcebergType(irClass);
     }
 
     private static IcebergType buildJavaLangObject() {
-        var irClass = new IrClass("java/lang/Object");
+        var irClass = IrClass.builtIn("java/lang/Object", klass -> {
+            var constructor = new IrFunction(klass, "<init>", unit);
 
-        var constructor = new IrFunction(irClass, "<init>", unit);
-        irClass.methods.add(constructor);
+            return List.of(constructor);
+        });
 
         return new IcebergType(irClass);
     }
 
     private static IcebergType buildJavaIoPrintStream() {
-        var irClass = new IrClass("java/io/PrintStream");
-
-        var possibleParametersTypes = List.of(
-            IcebergType.i32,
-            IcebergType.i64,
-            IcebergType.bool,
-            IcebergType.string,
-            IcebergType.object
-        );
-        for (var parametersType : possibleParametersTypes) {
-            var parameter = new IrVariable(parametersType, null);
-
-            var println = new IrFunction(irClass, "println", unit);
-            println.parameters.add(parameter);
-
-            irClass.methods.add(println);
-        }
+        var irClass = IrClass.builtIn("java/io/PrintStream", klass -> {
+            var possibleParametersTypes = List.of(
+                IcebergType.i32,
+                IcebergType.i64,
+                IcebergType.bool,
+                IcebergType.string,
+                IcebergType.object
+            );
+
+            var methods = new ArrayList<IrFunction>();
+            for (var parametersType : possibleParametersTypes) {
+                var parameter = new IrVariable(parametersType, null);
+
+                var println = new IrFunction(klass, "println", unit);
+                println.parameters.add(parameter);
+
+                methods.add(println);
+            }
+
+            return methods;
+        });
 
         return new IcebergType(irClass);
     }
@@ -0,0 +1,16 @@
+package iceberg.ir;
+
+public class IrArrayLength extends IrExpression {
+
+    public final IrExpression array;
+
+    public IrArrayLength(IrExpression array) {
+        super(IcebergType.i32);
+        this.array = array;
+    }
+
+    @Override
+    public void accept(IrVisitor visitor) {
+        visitor.visitIrArrayLength(this);
+    }
+}
@@ -0,0 +1,18 @@
+package iceberg.ir;
+
+public class IrArrayLoad extends IrExpression {
+
+    public final IrExpression array;
+    public final IrExpression index;
+
+    public IrArrayLoad(IrExpression array, IrExpression index) {
+        super(array.type.elementType());
+        this.array = array;
+        this.index = index;
+    }
+
+    @Override
+    public void accept(IrVisitor visitor) {
+        visitor.visitIrArrayLoad(this);
+    }
+}
@@ -0,0 +1,20 @@
+package iceberg.ir;
+
+public class IrArrayStore extends IrExpression {
+
+    public final IrExpression array;
+    public final IrExpression index;
+    public final IrExpression expression;
+
+    public IrArrayStore(IrExpression array, IrExpression index, IrExpression expression) {
+        super(array.type.elementType());
+        this.array = array;
+        this.index = index;
+        this.expression = expression;
+    }
+
+    @Override
+    public void accept(IrVisitor visitor) {
+        visitor.visitIrArrayStore(this);
+    }
+}
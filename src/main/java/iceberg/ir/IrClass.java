@@ -1,14 +1,35 @@
 package iceberg.ir;
 
 import java.util.*;
+import java.util.function.Function;
 
 public class IrClass implements IR {
 
     public final String name;
-    public final Map<String, IrField> fields = new HashMap<>();
-    public final List<IrFunction> methods = new ArrayList<>();
+    public final Map<String, IrField> fields;
+    public final List<IrFunction> methods;
     //TODO: type
 
+    public IrClass(String name) {
+        this.name = name;
+        this.fields = new HashMap<>();
+        this.methods = new ArrayList<>();
+    }
+
+    private IrClass(String name, Function<IrClass, List<IrFunction>> methods) {
+        this.name = name;
+        this.fields = Map.of();
+        this.methods = List.copyOf(methods.apply(this));
+    }
+
+    /**
+     * Встроенные классы ({@link IcebergType#string}, {@link IcebergType#printStream}, ...) общие
+     * для всех компиляций и потоков, поэтому их члены неизменяемы.
+     */
+    public static IrClass builtIn(String name, Function<IrClass, List<IrFunction>> methods) {
+        return new IrClass(name, methods);
+    }
+
     public IrFunction findDefaultConstructor() {
         return methods.stream()
             .filter(irFunction -> irFunction.name.equals("<init>"))
@@ -48,10 +69,6 @@ public class IrClass implements IR {
             }).findFirst();
     }
 
-    public IrClass(String name) {
-        this.name = name;
-    }
-
     @Override
     public void accept(IrVisitor visitor) {
         visitor.visitIrClass(this);
@@ -18,6 +18,9 @@ public class IrField implements IR {
             IcebergType.bool, "Z",
             IcebergType.string, "Ljava/lang/String;",
             IcebergType.object, "Ljava/lang/Object;",
+            IcebergType.i32Array, "[I",
+            IcebergType.i64Array, "[J",
+            IcebergType.boolArray, "[Z",
             IcebergType.unit, "V"
         );
 
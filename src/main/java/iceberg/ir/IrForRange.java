@@ -0,0 +1,24 @@
+package iceberg.ir;
+
+/**
+ * {@code for i in from..to then body}: i пробегает [from, to) с шагом 1. Обе границы вычисляются один раз
+ * до цикла, {@link #limit} - скрытая переменная с верхней границей. Переменная цикла только для чтения,
+ * поэтому цикл всегда счетный.
+ */
+public class IrForRange implements IR {
+
+    public final IrVariable variable;
+    public final IrVariable limit;
+    public final IR body;
+
+    public IrForRange(IrVariable variable, IrVariable limit, IR body) {
+        this.variable = variable;
+        this.limit = limit;
+        this.body = body;
+    }
+
+    @Override
+    public void accept(IrVisitor visitor) {
+        visitor.visitIrForRange(this);
+    }
+}
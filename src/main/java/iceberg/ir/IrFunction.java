@@ -39,6 +39,9 @@ public class IrFunction implements IR {
             IcebergType.bool, "Z",
             IcebergType.string, "Ljava/lang/String;",
             IcebergType.object, "Ljava/lang/Object;",
+            IcebergType.i32Array, "[I",
+            IcebergType.i64Array, "[J",
+            IcebergType.boolArray, "[Z",
             IcebergType.unit, "V"
         );
 
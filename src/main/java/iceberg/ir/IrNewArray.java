@@ -0,0 +1,16 @@
+package iceberg.ir;
+
+public class IrNewArray extends IrExpression {
+
+    public final IrExpression length;
+
+    public IrNewArray(IcebergType type, IrExpression length) {
+        super(type);
+        this.length = length;
+    }
+
+    @Override
+    public void accept(IrVisitor visitor) {
+        visitor.visitIrNewArray(this);
+    }
+}
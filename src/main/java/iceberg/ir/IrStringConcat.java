@@ -0,0 +1,70 @@
+package iceberg.ir;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Цепочка {@code a + b + ...} со строкой хотя бы в одном операнде. Литералы в {@link #parts} уже склеены
+ * на этапе построения IR и попадают в рецепт {@code StringConcatFactory.makeConcatWithConstants},
+ * остальные операнды передаются аргументами одного {@code invokedynamic}.
+ */
+public class IrStringConcat extends IrExpression {
+
+    //в рецепте это места для аргумента и для константы, литерал с ними передается аргументом
+    private static final char TAG_ARG = '\u0001';
+    private static final char TAG_CONST = '\u0002';
+
+    public final List<IrExpression> parts;
+
+    public IrStringConcat(List<IrExpression> parts) {
+        super(IcebergType.string);
+        this.parts = List.copyOf(parts);
+    }
+
+    public boolean isConstant(IrExpression part) {
+        return part instanceof IrString irString
+            && irString.value.indexOf(TAG_ARG) < 0
+            && irString.value.indexOf(TAG_CONST) < 0;
+    }
+
+    public List<IrExpression> arguments() {
+        return parts.stream().filter(part -> !isConstant(part)).toList();
+    }
+
+    public String recipe() {
+        var recipe = new StringBuilder();
+        for (var part : parts) {
+            if (isConstant(part)) {
+                recipe.append(((IrString) part).value);
+            } else {
+                recipe.append(TAG_ARG);
+            }
+        }
+
+        return recipe.toString();
+    }
+
+    public String javaMethodDescriptor() {
+        var defaults = Map.of(
+            IcebergType.i32, "I",
+            IcebergType.i64, "J",
+            IcebergType.bool, "Z",
+            IcebergType.string, "Ljava/lang/String;",
+            IcebergType.object, "Ljava/lang/Object;"
+        );
+
+        var params = arguments().stream()
+            .map(argument -> defaults.containsKey(argument.type)
+                ? defaults.get(argument.type)
+                : "L%s;".formatted(argument.type.irClass.name))
+            .collect(Collectors.joining(""));
+
+        return "(" + params + ")Ljava/lang/String;";
+    }
+
+    @Override
+    public void accept(IrVisitor visitor) {
+        visitor.visitIrStringConcat(this);
+    }
+}
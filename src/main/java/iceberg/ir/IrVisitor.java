@@ -16,6 +16,7 @@ public interface IrVisitor {
     void visitIrMethodCall(IrMethodCall irMethodCall);
     void visitIrIfStatement(IrIfStatement irIfStatement);
     void visitIrLoop(IrLoop irLoop);
+    void visitIrForRange(IrForRange irForRange);
     void visitIrCast(IrCast irCast);
     void visitIrNumber(IrNumber irNumber);
     void visitIrReadVariable(IrReadVariable irReadVariable);
@@ -26,5 +27,10 @@ public interface IrVisitor {
     void visitIrBinaryExpression(IrBinaryExpression irExpression);
     void visitIrBool(IrBool irBool);
     void visitIrString(IrString irString);
+    void visitIrStringConcat(IrStringConcat irStringConcat);
     void visitIrThis(IrThis irThis);
+    void visitIrNewArray(IrNewArray irNewArray);
+    void visitIrArrayLoad(IrArrayLoad irArrayLoad);
+    void visitIrArrayStore(IrArrayStore irArrayStore);
+    void visitIrArrayLength(IrArrayLength irArrayLength);
 }
@@ -84,6 +84,13 @@ public class IrVisitorBase implements IrVisitor {
         irLoop.body.accept(this);
     }
 
+    @Override
+    public void visitIrForRange(IrForRange irForRange) {
+        irForRange.variable.accept(this);
+        irForRange.limit.accept(this);
+        irForRange.body.accept(this);
+    }
+
     @Override
     public void visitIrCast(IrCast irCast) {
         irCast.irExpression.accept(this);
@@ -136,8 +143,36 @@ public class IrVisitorBase implements IrVisitor {
         //no children
     }
 
+    @Override
+    public void visitIrStringConcat(IrStringConcat irStringConcat) {
+        irStringConcat.parts.forEach(part -> part.accept(this));
+    }
+
     @Override
     public void visitIrThis(IrThis irThis) {
         //no children
     }
+
+    @Override
+    public void visitIrNewArray(IrNewArray irNewArray) {
+        irNewArray.length.accept(this);
+    }
+
+    @Override
+    public void visitIrArrayLoad(IrArrayLoad irArrayLoad) {
+        irArrayLoad.array.accept(this);
+        irArrayLoad.index.accept(this);
+    }
+
+    @Override
+    public void visitIrArrayStore(IrArrayStore irArrayStore) {
+        irArrayStore.array.accept(this);
+        irArrayStore.index.accept(this);
+        irArrayStore.expression.accept(this);
+    }
+
+    @Override
+    public void visitIrArrayLength(IrArrayLength irArrayLength) {
+        irArrayLength.array.accept(this);
+    }
 }
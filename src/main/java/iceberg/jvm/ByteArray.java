@@ -41,7 +41,7 @@ public class ByteArray {
         int oldCapacity = buffer.length;
         int minGrowth = minCapacity - oldCapacity;
         if (minGrowth > 0) {
-            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, minCapacity));
         }
     }
 
@@ -1,7 +1,9 @@
 package iceberg.jvm;
 
 import iceberg.jvm.cp.ConstantToBytes;
+import iceberg.jvm.target.BootstrapMethodsAttribute;
 import iceberg.jvm.target.CompilationUnit;
+import iceberg.jvm.target.SourceAttribute;
 import iceberg.jvm.target.StackMapAttribute;
 
 import java.util.Collection;
@@ -142,6 +144,12 @@ public class CodeGenerator {
                 output.writeBytes(attribute.code);
 
                 output.writeU2(attribute.exceptionTable.size());
+                for (var entry : attribute.exceptionTable) {
+                    output.writeU2(entry.startPc());
+                    output.writeU2(entry.endPc());
+                    output.writeU2(entry.handlerPc());
+                    output.writeU2(entry.catchType());
+                }
                 output.writeU2(attribute.attributes.size());
 
                 for (var stackMapAttribute : attribute.attributes) {
@@ -151,22 +159,23 @@ public class CodeGenerator {
 
                     output.writeU2(stackMapAttribute.entries.size());
                     for (var entry : stackMapAttribute.entries) {
-                        output.writeU1(entry.frameType); //always full
-                        output.writeU2(entry.offsetDelta);
-
-                        output.writeU2(entry.locals.size());
-                        for (var frame : entry.locals) {
-                            output.writeU1(frame.tag());
-                            if (frame instanceof StackMapAttribute.ObjectVariableInfo obj) {
-                                output.writeU2(obj.cpoolIndex);
-                            }
+                        output.writeU1(entry.frameType());
+                        //у same_frame и same_locals_1_stack_item смещение закодировано в типе фрейма
+                        if (entry.frameType() >= 247) {
+                            output.writeU2(entry.offsetDelta());
                         }
 
-                        output.writeU2(entry.stack.size());
-                        for (var frame : entry.stack) {
-                            output.writeU1(frame.tag());
-                            if (frame instanceof StackMapAttribute.ObjectVariableInfo obj) {
-                                output.writeU2(obj.cpoolIndex);
+                        switch (entry) {
+                            case StackMapAttribute.SameFrame ignored -> { /* only offset */ }
+                            case StackMapAttribute.ChopFrame ignored -> { /* only offset */ }
+                            case StackMapAttribute.SameLocals1StackItemFrame frame -> verificationType(frame.stack());
+                            case StackMapAttribute.AppendFrame frame -> frame.locals().forEach(this::verificationType);
+                            case StackMapAttribute.FullStackMapFrame frame -> {
+                                output.writeU2(frame.locals.size());
+                                frame.locals.forEach(this::verificationType);
+
+                                output.writeU2(frame.stack.size());
+                                frame.stack.forEach(this::verificationType);
                             }
                         }
                     }
@@ -179,16 +188,41 @@ public class CodeGenerator {
         }
     }
 
+    private void verificationType(StackMapAttribute.VerificationTypeInfo info) {
+        output.writeU1(info.tag());
+        if (info instanceof StackMapAttribute.ObjectVariableInfo object) {
+            output.writeU2(object.cpoolIndex());
+        }
+    }
+
     private void attributesCount() {
         output.writeU2(compilationUnit.attributes.size());
     }
 
     private void attributes() {
         for (var attribute : compilationUnit.attributes) {
-            output.writeU2(compilationUnit.constantPool.indexOf(attribute.attributeName));
-            final var length = 2; //always 2
-            output.writeU4(length);
-            output.writeU2(compilationUnit.constantPool.indexOf(attribute.sourceFileName));
+            switch (attribute) {
+                case SourceAttribute source -> {
+                    output.writeU2(compilationUnit.constantPool.indexOf(source.attributeName));
+                    final var length = 2; //always 2
+                    output.writeU4(length);
+                    output.writeU2(compilationUnit.constantPool.indexOf(source.sourceFileName));
+                }
+                case BootstrapMethodsAttribute bootstrap -> {
+                    output.writeU2(compilationUnit.constantPool.indexOf(bootstrap.attributeName));
+                    var length = output.lateInitU4();
+
+                    output.writeU2(bootstrap.methods.size());
+                    for (var method : bootstrap.methods) {
+                        output.writeU2(method.methodHandleIndex());
+                        output.writeU2(method.argumentIndexes().size());
+                        method.argumentIndexes().forEach(output::writeU2);
+                    }
+
+                    length.init();
+                }
+                default -> throw new IllegalStateException("unexpected class attribute: " + attribute);
+            }
         }
     }
 }
@@ -0,0 +1,396 @@
+package iceberg.jvm;
+
+import iceberg.Misc;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Executable;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Кэш скомпилированных классов на диске для {@code ice -compile} и {@code ice -jar}.
+ * <p>
+ * Ключ - хэш от исходника, версии компилятора и сигнатур классов из -cp, которые импортирует исходник
+ * (классы JDK покрываются версией рантайма). По ключу лежит директория с {@code .class} файлами,
+ * при попадании компиляция не запускается вовсе. Размер кэша ограничен, при переполнении
+ * удаляются давно не использованные записи.
+ * <p>
+ * Счетчики попаданий и промахов копятся в памяти и дописываются в {@code stats.properties} один раз
+ * при завершении процесса, под файловой блокировкой, чтобы параллельные {@code ice} не теряли обновления.
+ */
+public class CompilationCache {
+
+    public static final String COMPILER_VERSION = compilerVersion();
+
+    /**
+     * Версия компилятора вместе с опциями, от которых зависит байткод.
+     */
+    public static String codegenVersion() {
+        return Misc.bufferedOutput() ? COMPILER_VERSION + "+buffered" : COMPILER_VERSION;
+    }
+
+    private static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final Pattern IMPORT = Pattern.compile("^\\s*import\\s+([\\w.]+)\\s*;");
+    private static final String INDEX = "classes";
+    private static final String STATS = "stats.properties";
+    private static final String STATS_LOCK = "stats.lock";
+
+    private static final Map<List<Object>, CompilationCache> DEFAULTS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final long maxSize;
+
+    //еще не записанные в STATS
+    private long hits;
+    private long misses;
+    private boolean flushOnExit;
+
+    public CompilationCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Кэш в {@code -Diceberg.cache.dir} (по умолчанию {@code ~/.cache/iceberg})
+     * размером {@code -Diceberg.cache.size} байт (по умолчанию 64MB), один на процесс.
+     */
+    public static CompilationCache getDefault() {
+        var directory = Path.of(System.getProperty(
+            "iceberg.cache.dir", System.getProperty("user.home") + "/.cache/iceberg"
+        ));
+        var maxSize = Long.getLong("iceberg.cache.size", DEFAULT_MAX_SIZE);
+
+        return DEFAULTS.computeIfAbsent(List.of(directory, maxSize), key -> new CompilationCache(directory, maxSize));
+    }
+
+    /**
+     * Выключается через {@code -Diceberg.cache.enabled=false} или {@code ice -no-cache}.
+     */
+    public static boolean enabled() {
+        return Boolean.parseBoolean(System.getProperty("iceberg.cache.enabled", "true"));
+    }
+
+    public record Stats(long hits, long misses, int entries, long size) {
+    }
+
+    /**
+     * Возвращает байткод всех классов программы: имя класса -> содержимое .class файла.
+     * Под блокировкой кэша только чтение и запись записей, сама компиляция идет параллельно.
+     */
+    @SneakyThrows
+    public SequencedMap<String, byte[]> compile(String source) {
+        var entry = directory.resolve(key(source));
+
+        synchronized (this) {
+            var cached = read(entry);
+            if (cached != null) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                record(1, 0);
+                return cached;
+            }
+        }
+
+        var classes = compileUncached(source);
+
+        synchronized (this) {
+            write(entry, classes);
+            record(0, 1);
+            evict(entry);
+        }
+
+        return classes;
+    }
+
+    /**
+     * Компилирует программу, не заглядывая в кэш и ничего в него не записывая.
+     */
+    public static SequencedMap<String, byte[]> compileUncached(String source) {
+        var classes = new LinkedHashMap<String, byte[]>();
+        for (var unit : JvmCompiler.compile(source)) {
+            classes.put(unit.irClass.name, unit.bytes);
+        }
+        return classes;
+    }
+
+    @SneakyThrows
+    public synchronized Stats stats() {
+        var properties = loadStats();
+        var entries = entries();
+
+        long size = 0;
+        for (var entry : entries) {
+            size += size(entry);
+        }
+
+        return new Stats(
+            Long.parseLong(properties.getProperty("hits", "0")) + hits,
+            Long.parseLong(properties.getProperty("misses", "0")) + misses,
+            entries.size(),
+            size
+        );
+    }
+
+    String key(String source) {
+        var digest = sha256();
+        digest.update(codegenVersion().getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update(source.getBytes(UTF_8));
+
+        //каждый импорт и типы из его сигнатур, если они пришли из -cp
+        var visited = new TreeMap<String, String>();
+        for (var line : source.split("\n")) {
+            var matcher = IMPORT.matcher(line);
+            if (matcher.find()) {
+                signature(matcher.group(1), visited);
+            } else if (!line.isBlank()) {
+                break; //импорты могут быть только в начале файла
+            }
+        }
+
+        visited.forEach((name, signature) -> {
+            digest.update((byte) 0);
+            digest.update(name.getBytes(UTF_8));
+            digest.update((byte) 0);
+            digest.update(signature.getBytes(UTF_8));
+        });
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void signature(String fqn, Map<String, String> visited) {
+        if (visited.containsKey(fqn)) {
+            return;
+        }
+
+        Class<?> klass;
+        try {
+            var classLoader = Thread.currentThread().getContextClassLoader();
+            klass = Class.forName(fqn, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            visited.put(fqn, "<missing>");
+            return;
+        }
+
+        if (fromRuntime(klass)) {
+            return;
+        }
+
+        var executables = new ArrayList<Executable>();
+        executables.addAll(List.of(klass.getConstructors()));
+        executables.addAll(List.of(klass.getMethods()));
+
+        var signature = executables.stream()
+            .map(Executable::toString)
+            .sorted()
+            .toList();
+        visited.put(fqn, String.join("\n", signature));
+
+        for (var executable : executables) {
+            for (var type : executable.getParameterTypes()) {
+                reference(type, visited);
+            }
+            if (executable instanceof java.lang.reflect.Method method) {
+                reference(method.getReturnType(), visited);
+            }
+        }
+    }
+
+    private void reference(Class<?> type, Map<String, String> visited) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (!type.isPrimitive() && !fromRuntime(type)) {
+            signature(type.getName(), visited);
+        }
+    }
+
+    private static boolean fromRuntime(Class<?> klass) {
+        var classLoader = klass.getClassLoader();
+        return classLoader == null || classLoader == ClassLoader.getPlatformClassLoader();
+    }
+
+    private SequencedMap<String, byte[]> read(Path entry) throws IOException {
+        var index = entry.resolve(INDEX);
+        if (!Files.exists(index)) {
+            return null;
+        }
+
+        var classes = new LinkedHashMap<String, byte[]>();
+        try {
+            for (var name : Files.readAllLines(index, UTF_8)) {
+                classes.put(name, Files.readAllBytes(entry.resolve(name + ".class")));
+            }
+        } catch (NoSuchFileException e) {
+            return null; //запись удалили, пока мы ее читали
+        }
+
+        return classes;
+    }
+
+    private void write(Path entry, SequencedMap<String, byte[]> classes) throws IOException {
+        Files.createDirectories(directory);
+
+        //пишем во временную директорию и переименовываем, чтобы не оставить недописанную запись
+        var temporary = Files.createTempDirectory(directory, "tmp");
+        for (var klass : classes.entrySet()) {
+            Files.write(temporary.resolve(klass.getKey() + ".class"), klass.getValue());
+        }
+        Files.write(temporary.resolve(INDEX), classes.sequencedKeySet(), UTF_8);
+
+        try {
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileSystemException e) {
+            //ту же запись успел записать другой поток или процесс; rename поверх непустой
+            //директории на Linux падает с ENOTEMPTY, а не с DirectoryNotEmptyException
+            delete(temporary);
+            if (!Files.exists(entry.resolve(INDEX))) {
+                throw e;
+            }
+        }
+    }
+
+    private void evict(Path keep) throws IOException {
+        var entries = new ArrayList<>(entries());
+        entries.sort(Comparator.comparing(CompilationCache::lastModified));
+
+        long size = 0;
+        for (var entry : entries) {
+            size += size(entry);
+        }
+
+        for (var entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (!entry.equals(keep)) {
+                size -= size(entry);
+                delete(entry);
+            }
+        }
+    }
+
+    private List<Path> entries() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (var files = Files.list(directory)) {
+            return files
+                .filter(Files::isDirectory)
+                .filter(path -> Files.exists(path.resolve(INDEX)))
+                .toList();
+        }
+    }
+
+    private void record(long hits, long misses) {
+        this.hits += hits;
+        this.misses += misses;
+
+        if (!flushOnExit) {
+            flushOnExit = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+        }
+    }
+
+    /**
+     * Прибавляет накопленные счетчики к {@code stats.properties}. Файл читается и переписывается
+     * под блокировкой {@code stats.lock} и заменяется атомарным переименованием.
+     */
+    @SneakyThrows
+    public synchronized void flush() {
+        //директорию кэша могли удалить, пока процесс работал
+        if (hits == 0 && misses == 0 || !Files.isDirectory(directory)) {
+            return;
+        }
+
+        var lockPath = directory.resolve(STATS_LOCK);
+        try (var channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            var lock = channel.lock();
+            try {
+                var properties = loadStats();
+                properties.setProperty("hits", String.valueOf(Long.parseLong(properties.getProperty("hits", "0")) + hits));
+                properties.setProperty("misses", String.valueOf(Long.parseLong(properties.getProperty("misses", "0")) + misses));
+
+                var temporary = Files.createTempFile(directory, STATS, ".tmp");
+                try (var writer = Files.newBufferedWriter(temporary, UTF_8)) {
+                    properties.store(writer, null);
+                }
+                Files.move(temporary, directory.resolve(STATS), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                lock.release();
+            }
+        }
+
+        hits = 0;
+        misses = 0;
+    }
+
+    private Properties loadStats() throws IOException {
+        var properties = new Properties();
+        var stats = directory.resolve(STATS);
+        if (Files.exists(stats)) {
+            try (var reader = Files.newBufferedReader(stats, UTF_8)) {
+                properties.load(reader);
+            }
+        }
+
+        return properties;
+    }
+
+    private static long size(Path entry) {
+        try (Stream<Path> files = Files.list(entry)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path entry) throws IOException {
+        try (var files = Files.list(entry)) {
+            for (var file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(entry);
+    }
+
+    //версия из манифеста jar'а + время его сборки, чтобы пересобранный компилятор не брал старые классы
+    private static String compilerVersion() {
+        var version = Objects.requireNonNullElse(
+            CompilationCache.class.getPackage().getImplementationVersion(), "dev"
+        );
+
+        try {
+            var location = Path.of(CompilationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            version += "+" + Files.getLastModifiedTime(location).toMillis();
+        } catch (Exception ignored) {
+            //нет информации о том, откуда загружен компилятор
+        }
+
+        return version + "/" + Runtime.version();
+    }
+
+    @SneakyThrows
+    private static MessageDigest sha256() {
+        return MessageDigest.getInstance("SHA-256");
+    }
+}
@@ -1,34 +1,72 @@
 package iceberg.jvm;
 
 import iceberg.Misc;
+import iceberg.Trace;
+import iceberg.antlr.IcebergParser;
 import iceberg.common.phases.BuildIrTreePhase;
 import iceberg.common.phases.DetectInvalidSyntaxPhase;
 import iceberg.common.phases.IrVerificationPhase;
 import iceberg.common.phases.ParseSourcePhase;
+import iceberg.ir.IcebergType;
 import iceberg.jvm.phases.*;
 import iceberg.jvm.phases.validation.CodegenPrepareStackMapAttributePhase;
 import iceberg.jvm.target.CompilationUnit;
 import lombok.SneakyThrows;
 
 import java.io.FileOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SequencedMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.*;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static java.nio.file.StandardOpenOption.*;
 
 public class JvmCompiler {
 
+    private static final MethodType MAIN = MethodType.methodType(void.class, String[].class);
+    private static final Pattern IMPORTS = Pattern.compile("^(\\s*import\\s[^;]*;)*");
+
+    //handle из compileFunction -> его $batch, уже приведенный к (Object[])void
+    private static final Map<MethodHandle, MethodHandle> BATCHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Executor для генерации юнитов по умолчанию, задается через {@code -Diceberg.codegen.executor}:
+     * {@code fork-join} (по умолчанию), {@code virtual} или {@code direct} (в вызывающем потоке).
+     */
+    private static final Executor DEFAULT_EXECUTOR = defaultExecutor();
+
     public static Collection<CompilationUnit> compile(String source) {
+        return compile(source, DEFAULT_EXECUTOR);
+    }
+
+    public static Collection<CompilationUnit> compile(String source, Executor executor) {
         var astFile = new ParseSourcePhase().execute(source);
+
+        var compilationUnits = split(astFile);
+        generate(compilationUnits, executor);
+
+        return compilationUnits;
+    }
+
+    private static Collection<CompilationUnit> split(IcebergParser.FileContext astFile) {
         new DetectInvalidSyntaxPhase().execute(astFile);
 
         var irFile = new BuildIrTreePhase().execute(astFile);
@@ -40,50 +78,293 @@ public class JvmCompiler {
             new GenerateDefaultConstructorPhase().execute(unit);
         }
 
-        //codegen
+        return compilationUnits;
+    }
+
+    //у каждого юнита свой ConstantPool, а общие встроенные классы неизменяемы,
+    //поэтому юниты генерируются независимо. Порядок юнитов в результате не меняется
+    @SneakyThrows
+    private static void generate(Collection<CompilationUnit> units, Executor executor) {
+        var tasks = units.stream()
+            .map(unit -> CompletableFuture.runAsync(() -> generate(unit), executor))
+            .toList();
+
+        for (var task : tasks) {
+            try {
+                task.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static void generate(CompilationUnit unit) {
+        prepare(unit);
+        unit.bytes = new CodeGenerator(unit).codegen();
+
+        if (Trace.enabled(Trace.Channel.BYTECODE)) {
+            Trace.print(Trace.Channel.BYTECODE, unit.irClass.name, Misc.bytesToHex(unit.bytes));
+        }
+    }
+
+    //codegen
+    private static void prepare(CompilationUnit unit) {
+        new CodegenPrepareMethodsPhase().execute(unit);
+        new CodegenPrepareFieldsPhase().execute(unit);
+        new CodegenPrepareCodeAttributePhase(Misc.bufferedOutput()).execute(unit);
+        new CodegenPrepareStackMapAttributePhase().execute(unit);
+    }
+
+    private static Executor defaultExecutor() {
+        return switch (System.getProperty("iceberg.codegen.executor", "fork-join")) {
+            case "fork-join" -> ForkJoinPool.commonPool();
+            case "virtual" -> Executors.newVirtualThreadPerTaskExecutor();
+            case "direct" -> Runnable::run;
+            default -> throw new IllegalArgumentException(
+                "unknown codegen executor: " + System.getProperty("iceberg.codegen.executor")
+            );
+        };
+    }
+
+    /**
+     * Компилирует тело функции один раз, аргументы передаются при вызове через {@link MethodHandle}.
+     * Тело может начинаться с import'ов, остальное - statement'ы функции {@code name}.
+     */
+    @SneakyThrows
+    public static MethodHandle compileFunction(
+        String name,
+        String body,
+        SequencedMap<String, IcebergType> parameters,
+        IcebergType returnType
+    ) {
+        var matcher = IMPORTS.matcher(body);
+        matcher.find();
+
+        var signature = parameters.entrySet().stream()
+            .map(parameter -> parameter.getKey() + ": " + typeName(parameter.getValue()))
+            .collect(Collectors.joining(", "));
+
+        var source = """
+            %s
+            fun %s(%s): %s {
+            %s
+            }
+            """.formatted(
+                matcher.group(), name, signature, typeName(returnType), body.substring(matcher.end())
+            );
+
+        var compilationUnits = split(new ParseSourcePhase().execute(source));
+        var hasBatch = false;
         for (var unit : compilationUnits) {
-            new CodegenPrepareMethodsPhase().execute(unit);
-            new CodegenPrepareFieldsPhase().execute(unit);
-            new CodegenPrepareCodeAttributePhase().execute(unit);
-            new CodegenPrepareStackMapAttributePhase().execute(unit);
+            prepare(unit);
+            if ("Iceberg".equals(unit.irClass.name)) {
+                hasBatch = new GenerateBatchMethodPhase(name).execute(unit);
+            }
         }
         CodeGenerator.codegen(compilationUnits);
 
-        return compilationUnits;
+        var classLoader = new Misc.ByteClassLoader();
+        Class<?> icebergClass = null;
+        for (var unit : compilationUnits) {
+            var klass = classLoader.define(unit.irClass.name, unit.bytes);
+            if ("Iceberg".equals(unit.irClass.name)) {
+                icebergClass = klass;
+            }
+        }
+
+        var type = MethodType.methodType(
+            javaClass(returnType),
+            parameters.values().stream().map(JvmCompiler::javaClass).toList()
+        );
+        var function = MethodHandles.publicLookup().findStatic(icebergClass, name, type);
+
+        if (hasBatch) {
+            var columns = new ArrayList<Class<?>>();
+            for (var parameter : type.parameterList()) {
+                columns.add(parameter.arrayType());
+            }
+            if (type.returnType() != void.class) {
+                columns.add(type.returnType().arrayType());
+            }
+
+            var batch = MethodHandles.publicLookup().findStatic(
+                icebergClass, name + GenerateBatchMethodPhase.SUFFIX, MethodType.methodType(void.class, columns)
+            );
+            BATCHES.put(function, batch.asSpreader(Object[].class, columns.size()));
+        }
+
+        return function;
+    }
+
+    private static String typeName(IcebergType type) {
+        return type.equals(IcebergType.string) ? "string" : type.irClass.name;
+    }
+
+    private static Class<?> javaClass(IcebergType type) {
+        if (type.equals(IcebergType.i32)) {
+            return int.class;
+        } else if (type.equals(IcebergType.i64)) {
+            return long.class;
+        } else if (type.equals(IcebergType.bool)) {
+            return boolean.class;
+        } else if (type.equals(IcebergType.string)) {
+            return String.class;
+        } else if (type.equals(IcebergType.i32Array)) {
+            return int[].class;
+        } else if (type.equals(IcebergType.i64Array)) {
+            return long[].class;
+        } else if (type.equals(IcebergType.boolArray)) {
+            return boolean[].class;
+        } else if (type.equals(IcebergType.unit)) {
+            return void.class;
+        } else {
+            throw new IllegalArgumentException("unsupported type: " + type);
+        }
     }
 
     @SneakyThrows
     public static void run(String source) {
+        var main = load(source);
+        main.invokeExact(new String[0]);
+    }
+
+    /**
+     * Компилирует программу и возвращает handle на {@code Iceberg.main}.
+     * Классы определяются в отдельном загрузчике и выгружаются вместе с ним, когда на handle не остается ссылок.
+     */
+    @SneakyThrows
+    public static MethodHandle load(String source) {
         var classLoader = new Misc.ByteClassLoader();
-        var classes = compile(source).stream()
-            .collect(Collectors.toMap(
-                unit -> unit.irClass.name,
-                unit -> classLoader.define(unit.irClass.name, unit.bytes)
-            ));
+        Class<?> icebergClass = null;
+        for (var unit : compile(source)) {
+            var klass = classLoader.define(unit.irClass.name, unit.bytes);
+            if ("Iceberg".equals(unit.irClass.name)) {
+                icebergClass = klass;
+            }
+        }
+
+        return MethodHandles.publicLookup().findStatic(icebergClass, "main", MAIN);
+    }
+
+    /**
+     * Вызывает функцию из {@link #compileFunction} для каждой строки колонок.
+     * Колонка - массив {@code int[]}, {@code long[]}, {@code boolean[]} или {@code String[]} на каждый параметр,
+     * результат - массив того же вида (или {@code null} для unit). Для функций с массивами в параметрах
+     * или результате батч не генерируется.
+     * Цикл по строкам выполняется в сгенерированном методе {@code <name>$batch}, без рефлексии и боксинга на строку.
+     */
+    @SneakyThrows
+    public static Object runBatch(MethodHandle function, Object... columns) {
+        var type = function.type();
+        if (type.parameterCount() != columns.length) {
+            throw new IllegalArgumentException(
+                "expected " + type.parameterCount() + " columns, got " + columns.length
+            );
+        }
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("batch requires at least one column");
+        }
+
+        var rows = Array.getLength(columns[0]);
+        var arguments = new ArrayList<>(Arrays.asList(columns));
+        for (int i = 0; i < columns.length; i++) {
+            var columnType = type.parameterType(i).arrayType();
+            if (columns[i].getClass() != columnType) {
+                throw new IllegalArgumentException(
+                    "column " + i + " must be " + columnType.getSimpleName()
+                );
+            }
+            if (Array.getLength(columns[i]) != rows) {
+                throw new IllegalArgumentException("columns have different length");
+            }
+        }
+
+        Object result = null;
+        if (type.returnType() != void.class) {
+            result = Array.newInstance(type.returnType(), rows);
+            arguments.add(result);
+        }
 
-        var icebergClass = classes.get("Iceberg");
-        var main = Arrays.stream(icebergClass.getMethods())
-            .filter(method -> "main".equals(method.getName()))
-            .findAny().orElseThrow();
+        var batch = BATCHES.get(function);
+        if (batch == null) {
+            throw new IllegalArgumentException("function has no batch form, it must come from compileFunction and take only i32, i64, bool or string");
+        }
+        batch.invokeExact(arguments.toArray());
 
-        Object[] arguments = new Object[1];
-        arguments[0] = new String[0];
-        main.invoke(null, arguments);
+        return result;
     }
 
     @SneakyThrows
     public static Collection<Path> compileClasses(Path sourcePath, String source) {
         var paths = new ArrayList<Path>();
 
-        for (var unit : compile(source)) {
-            var classFileName = unit.irClass.name + ".class";
+        //трасса пишется во время генерации, попадание в кэш оставило бы ее пустой
+        var classes = CompilationCache.enabled() && !Trace.anyEnabled()
+            ? CompilationCache.getDefault().compile(source)
+            : CompilationCache.compileUncached(source);
+        for (var klass : classes.entrySet()) {
+            var classFileName = klass.getKey() + ".class";
             var path = Paths.get(
                 sourcePath.toAbsolutePath().getParent().toString(),
                 classFileName
             );
             paths.add(path);
 
+            Files.write(path, klass.getValue(), CREATE, TRUNCATE_EXISTING, WRITE);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Перегенерирует только те классы, чей исходник или сигнатуры зависимостей изменились с прошлой компиляции.
+     * Отпечатки классов хранятся рядом с исходником в {@code .<source>.fingerprints},
+     * class-файлы классов, удаленных из исходника, удаляются.
+     */
+    @SneakyThrows
+    public static Collection<Path> compileIncremental(Path sourcePath, String source) {
+        var directory = sourcePath.toAbsolutePath().getParent();
+        var index = directory.resolve("." + sourcePath.getFileName() + ".fingerprints");
+
+        var previous = new Properties();
+        if (Files.exists(index)) {
+            try (var reader = Files.newBufferedReader(index)) {
+                previous.load(reader);
+            }
+        }
+
+        var astFile = new ParseSourcePhase().execute(source);
+        var compilationUnits = split(astFile);
+        var fingerprints = new FingerprintUnitsPhase(CompilationCache.codegenVersion())
+            .execute(astFile, compilationUnits);
+
+        var changed = compilationUnits.stream()
+            .filter(unit -> {
+                var name = unit.irClass.name;
+                return !fingerprints.get(name).equals(previous.getProperty(name))
+                    || !Files.exists(directory.resolve(name + ".class"));
+            })
+            .toList();
+
+        generate(changed, DEFAULT_EXECUTOR);
+
+        var paths = new ArrayList<Path>();
+        for (var unit : changed) {
+            var path = directory.resolve(unit.irClass.name + ".class");
             Files.write(path, unit.bytes, CREATE, TRUNCATE_EXISTING, WRITE);
+            paths.add(path);
+        }
+
+        for (var name : previous.stringPropertyNames()) {
+            if (!fingerprints.containsKey(name)) {
+                Files.deleteIfExists(directory.resolve(name + ".class"));
+            }
+        }
+
+        var current = new Properties();
+        current.putAll(fingerprints);
+        try (var writer = Files.newBufferedWriter(index)) {
+            current.store(writer, null);
         }
 
         return paths;
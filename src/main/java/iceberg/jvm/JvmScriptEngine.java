@@ -0,0 +1,68 @@
+package iceberg.jvm;
+
+import lombok.SneakyThrows;
+
+import java.lang.invoke.MethodHandle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Исполнение множества небольших программ внутри одной JVM.
+ * Скомпилированная программа хранится как handle на {@code Iceberg.main} и переиспользуется,
+ * пока исходник не вытеснен из LRU. После вытеснения на классы программы не остается ссылок
+ * и они выгружаются вместе со своим загрузчиком.
+ */
+public class JvmScriptEngine {
+
+    private static final String[] NO_ARGUMENTS = new String[0];
+
+    private final Map<String, MethodHandle> scripts;
+
+    private long hits;
+    private long misses;
+
+    public JvmScriptEngine(int capacity) {
+        this.scripts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MethodHandle> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @SneakyThrows
+    public void run(String source) {
+        var main = load(source);
+        main.invokeExact(NO_ARGUMENTS);
+    }
+
+    public synchronized MethodHandle load(String source) {
+        var main = scripts.get(source);
+        if (main != null) {
+            hits++;
+            return main;
+        }
+
+        misses++;
+        main = JvmCompiler.load(source);
+        scripts.put(source, main);
+
+        return main;
+    }
+
+    public synchronized void evict(String source) {
+        scripts.remove(source);
+    }
+
+    public synchronized int size() {
+        return scripts.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+}
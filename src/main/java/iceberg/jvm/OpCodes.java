@@ -1,13 +1,19 @@
 package iceberg.jvm;
 
-import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 public enum OpCodes {
+    AALOAD(0x32),
+    AASTORE(0x53),
     ACONST_NULL(0x01),
     ALOAD_0(0x2A),
     ALOAD(0x19),
     ARETURN(0xB0),
+    ARRAYLENGTH(0xBE),
     ASTORE(0x3A),
+    ATHROW(0xBF),
+    BALOAD(0x33),
+    BASTORE(0x54),
     BIPUSH(0x10),
     DUP(0x59),
     GETFIELD(0xB4),
@@ -15,6 +21,8 @@ public enum OpCodes {
     GOTO(0xA7),
     I2L(0x85),
     IADD(0x60),
+    IALOAD(0x2E),
+    IASTORE(0x4F),
     ICONST_0(0x03),
     ICONST_1(0x04),
     IDIV(0X6C),
@@ -26,9 +34,11 @@ public enum OpCodes {
     IF_ICMPLE(0xA4),
     IFEQ(0x99),
     IFNE(0x9A),
+    IINC(0x84),
     ILOAD(0x15),
     IMUL(0x68),
     INEG(0x74),
+    INVOKEDYNAMIC(0xBA),
     INVOKESPECIAL(0xB7),
     INVOKESTATIC(0xB8),
     INVOKEVIRTUAL(0xB6),
@@ -36,6 +46,8 @@ public enum OpCodes {
     ISTORE(0x36),
     ISUB(0x64),
     LADD(0x61),
+    LALOAD(0x2F),
+    LASTORE(0x50),
     LCMP(0x94),
     LCONST_0(0x09),
     LDIV(0X6D),
@@ -49,20 +61,38 @@ public enum OpCodes {
     LSTORE(0x37),
     LSUB(0x65),
     NEW(0xBB),
+    NEWARRAY(0xBC),
     POP(0x57),
     PUTFIELD(0xB5),
     RETURN(0xB1),
     SIPUSH(0x11),
     ;
 
+    //операнд atype у NEWARRAY
+    public static final int T_BOOLEAN = 4;
+    public static final int T_INT = 10;
+    public static final int T_LONG = 11;
+
     OpCodes(int value) {
         this.value = value;
     }
 
+    //обход байткода декодирует каждую инструкцию, поэтому поиск по таблице, а не по values()
+    private static final OpCodes[] BY_VALUE = new OpCodes[256];
+
+    static {
+        for (var opcode : values()) {
+            BY_VALUE[opcode.value] = opcode;
+        }
+    }
+
     public static OpCodes valueOf(byte value) {
-        return Arrays.stream(OpCodes.values())
-            .filter(opcode -> opcode.value == (value & 0xFF))
-            .findAny().orElseThrow();
+        var opcode = BY_VALUE[value & 0xFF];
+        if (opcode == null) {
+            throw new NoSuchElementException("unknown opcode: " + (value & 0xFF));
+        }
+
+        return opcode;
     }
 
     public final int value;
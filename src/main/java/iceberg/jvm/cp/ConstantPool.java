@@ -2,145 +2,128 @@ package iceberg.jvm.cp;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.function.Supplier;
 
 public class ConstantPool implements Iterable<Constant> {
 
     private final List<Constant> pool = new ArrayList<>();
 
+    //every constant is interned by its key, so lookup is O(1) instead of scan over pool
+    private final Map<Key, Constant> interned = new HashMap<>();
+    private final Map<Constant, Integer> indexes = new IdentityHashMap<>();
+
+    private record Key(int tag, Object first, Object second) {
+
+        Key(int tag, Object first) {
+            this(tag, first, null);
+        }
+    }
+
     public Constant load(int i) {
         return pool.get(i - 1); //numeration from 1
     }
 
     public int indexOf(Constant constant) {
-        return pool.indexOf(constant) + 1; //numeration from 1
+        return indexes.getOrDefault(constant, -1) + 1; //numeration from 1
     }
 
     public Constant computeInt(int value) {
-        for (Constant constant : pool) {
-            if (constant instanceof IntegerInfo info && info.bytes == value) {
-                return constant;
-            }
-        }
-
-        var constant = new IntegerInfo(value);
-        pool.add(constant);
-
-        return constant;
+        return intern(new Key(IntegerInfo.TAG, value), () -> new IntegerInfo(value));
     }
 
     public Constant computeLong(long value) {
-        for (Constant constant : pool) {
-            if (constant instanceof LongInfo info && info.value() == value) {
-                return constant;
-            }
+        var key = new Key(LongInfo.TAG, value);
+
+        var existing = interned.get(key);
+        if (existing != null) {
+            return existing;
         }
 
-        var constant = new LongInfo(value);
-        pool.add(constant);
+        var constant = add(key, new LongInfo(value));
         pool.add(new Noop()); // long take 2 indexes from pool
 
         return constant;
     }
 
     public Utf8 computeUtf8(String value) {
-        for (Constant constant : pool) {
-            if (constant instanceof Utf8 info && Arrays.equals(info.bytes, value.getBytes())) {
-                return info;
-            }
-        }
-
-        var constant = new Utf8(value);
-        pool.add(constant);
-
-        return constant;
+        return intern(new Key(Utf8.TAG, value), () -> new Utf8(value));
     }
 
     public StringInfo computeString(String value) {
         var utf8Index = indexOf(computeUtf8(value));
-
-        for (Constant constant : pool) {
-            if (constant instanceof StringInfo info && info.stringIndex == utf8Index) {
-                return info;
-            }
-        }
-
-        var constant = new StringInfo(utf8Index);
-        pool.add(constant);
-
-        return constant;
+        return intern(new Key(StringInfo.TAG, utf8Index), () -> new StringInfo(utf8Index));
     }
 
     public NameAndType computeNameAndType(Utf8 name, Utf8 descriptor) {
         var nameIndex = indexOf(name);
         var descriptorIndex = indexOf(descriptor);
 
-        for (Constant constant : pool) {
-            if (constant instanceof NameAndType info
-                && info.nameIndex == nameIndex
-                && info.descriptorIndex == descriptorIndex
-            ) {
-                return info;
-            }
-        }
-
-        var constant = new NameAndType(nameIndex, descriptorIndex);
-        pool.add(constant);
-
-        return constant;
+        return intern(
+            new Key(NameAndType.TAG, nameIndex, descriptorIndex),
+            () -> new NameAndType(nameIndex, descriptorIndex)
+        );
     }
 
     public MethodRef computeMethodRef(Klass klass, NameAndType nameAndType) {
         var classIndex = indexOf(klass);
         var nameAndTypeIndex = indexOf(nameAndType);
 
-        for (Constant constant : pool) {
-            if (constant instanceof MethodRef info
-                && info.classIndex == classIndex
-                && info.nameAndTypeIndex == nameAndTypeIndex
-            ) {
-                return info;
-            }
-        }
-
-        var constant = new MethodRef(classIndex, nameAndTypeIndex);
-        pool.add(constant);
-
-        return constant;
+        return intern(
+            new Key(MethodRef.TAG, classIndex, nameAndTypeIndex),
+            () -> new MethodRef(classIndex, nameAndTypeIndex)
+        );
     }
 
     public FieldRef computeFieldRef(Klass klass, NameAndType nameAndType) {
         var classIndex = indexOf(klass);
         var nameAndTypeIndex = indexOf(nameAndType);
 
-        for (Constant constant : pool) {
-            if (constant instanceof FieldRef info
-                && info.classIndex == classIndex
-                && info.nameAndTypeIndex == nameAndTypeIndex
-            ) {
-                return info;
-            }
-        }
+        return intern(
+            new Key(FieldRef.TAG, classIndex, nameAndTypeIndex),
+            () -> new FieldRef(classIndex, nameAndTypeIndex)
+        );
+    }
 
-        var constant = new FieldRef(classIndex, nameAndTypeIndex);
-        pool.add(constant);
+    public MethodHandleInfo computeMethodHandle(int referenceKind, RefInfo reference) {
+        var referenceIndex = indexOf(reference);
 
-        return constant;
+        return intern(
+            new Key(MethodHandleInfo.TAG, referenceKind, referenceIndex),
+            () -> new MethodHandleInfo(referenceKind, referenceIndex)
+        );
+    }
+
+    /**
+     * @param bootstrapMethodAttrIndex индекс в атрибуте BootstrapMethods класса, а не в пуле
+     */
+    public InvokeDynamicInfo computeInvokeDynamic(int bootstrapMethodAttrIndex, NameAndType nameAndType) {
+        var nameAndTypeIndex = indexOf(nameAndType);
+
+        return intern(
+            new Key(InvokeDynamicInfo.TAG, bootstrapMethodAttrIndex, nameAndTypeIndex),
+            () -> new InvokeDynamicInfo(bootstrapMethodAttrIndex, nameAndTypeIndex)
+        );
     }
 
     public Klass computeKlass(Utf8 utf8) {
         var nameIndex = indexOf(utf8);
+        return intern(new Key(Klass.TAG, nameIndex), () -> new Klass(nameIndex));
+    }
 
-        for (Constant constant : pool) {
-            if (constant instanceof Klass info && info.nameIndex == nameIndex) {
-                return info;
-            }
+    @SuppressWarnings("unchecked")
+    private <T extends Constant> T intern(Key key, Supplier<T> factory) {
+        var existing = interned.get(key);
+        if (existing != null) {
+            return (T) existing;
         }
 
-        var constant = new Klass(nameIndex);
+        return add(key, factory.get());
+    }
+
+    private <T extends Constant> T add(Key key, T constant) {
+        indexes.put(constant, pool.size());
+        interned.put(key, constant);
         pool.add(constant);
 
         return constant;
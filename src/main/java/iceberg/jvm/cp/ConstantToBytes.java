@@ -79,6 +79,24 @@ public class ConstantToBytes implements ConstantVisitor<byte[]> {
         return result.bytes();
     }
 
+    @Override
+    public byte[] visitMethodHandleInfo(MethodHandleInfo constant) {
+        var result = new ByteArray();
+        result.writeU1(constant.tag());
+        result.writeU1(constant.referenceKind);
+        result.writeU2(constant.referenceIndex);
+        return result.bytes();
+    }
+
+    @Override
+    public byte[] visitInvokeDynamicInfo(InvokeDynamicInfo constant) {
+        var result = new ByteArray();
+        result.writeU1(constant.tag());
+        result.writeU2(constant.bootstrapMethodAttrIndex);
+        result.writeU2(constant.nameAndTypeIndex);
+        return result.bytes();
+    }
+
     @Override
     public byte[] visitNoop(Noop constant) {
         return new byte[0];
@@ -10,5 +10,7 @@ public interface ConstantVisitor<T> {
     T visitStringInfo(StringInfo constant);
     T visitIntegerInfo(IntegerInfo constant);
     T visitLongInfo(LongInfo constant);
+    T visitMethodHandleInfo(MethodHandleInfo constant);
+    T visitInvokeDynamicInfo(InvokeDynamicInfo constant);
     T visitNoop(Noop constant);
 }
\ No newline at end of file
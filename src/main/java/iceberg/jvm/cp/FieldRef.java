@@ -2,13 +2,15 @@ package iceberg.jvm.cp;
 
 public class FieldRef extends RefInfo {
 
+    static final int TAG = 9;
+
     public FieldRef(int classIndex, int nameAndTypeIndex) {
         super(classIndex, nameAndTypeIndex);
     }
 
     @Override
     int tag() {
-        return 9;
+        return TAG;
     }
 
     @Override
@@ -2,6 +2,8 @@ package iceberg.jvm.cp;
 
 public class IntegerInfo extends Constant {
 
+    static final int TAG = 3;
+
     final int bytes;
 
     public IntegerInfo(int number) {
@@ -10,7 +12,7 @@ public class IntegerInfo extends Constant {
 
     @Override
     int tag() {
-        return 3;
+        return TAG;
     }
 
     @Override
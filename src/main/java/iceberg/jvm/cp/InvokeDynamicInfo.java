@@ -0,0 +1,24 @@
+package iceberg.jvm.cp;
+
+public class InvokeDynamicInfo extends Constant {
+
+    static final int TAG = 18;
+
+    public final int bootstrapMethodAttrIndex;
+    public final int nameAndTypeIndex;
+
+    public InvokeDynamicInfo(int bootstrapMethodAttrIndex, int nameAndTypeIndex) {
+        this.bootstrapMethodAttrIndex = bootstrapMethodAttrIndex;
+        this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    @Override
+    int tag() {
+        return TAG;
+    }
+
+    @Override
+    <T> T accept(ConstantVisitor<T> visitor) {
+        return visitor.visitInvokeDynamicInfo(this);
+    }
+}
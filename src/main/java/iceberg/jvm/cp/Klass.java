@@ -2,6 +2,8 @@ package iceberg.jvm.cp;
 
 public class Klass extends Constant {
 
+    static final int TAG = 7;
+
     public final int nameIndex;
 
     public Klass(int nameIndex) {
@@ -10,7 +12,7 @@ public class Klass extends Constant {
 
     @Override
     int tag() {
-        return 7;
+        return TAG;
     }
 
     @Override
@@ -2,6 +2,8 @@ package iceberg.jvm.cp;
 
 public class LongInfo extends Constant {
 
+    static final int TAG = 5;
+
     final int highBytes;
     final int lowBytes;
 
@@ -16,7 +18,7 @@ public class LongInfo extends Constant {
 
     @Override
     int tag() {
-        return 5;
+        return TAG;
     }
 
     @Override
@@ -0,0 +1,27 @@
+package iceberg.jvm.cp;
+
+public class MethodHandleInfo extends Constant {
+
+    static final int TAG = 15;
+
+    //REF_invokeStatic - единственный вид, который нужен для bootstrap-методов
+    public static final int REF_INVOKE_STATIC = 6;
+
+    public final int referenceKind;
+    public final int referenceIndex;
+
+    public MethodHandleInfo(int referenceKind, int referenceIndex) {
+        this.referenceKind = referenceKind;
+        this.referenceIndex = referenceIndex;
+    }
+
+    @Override
+    int tag() {
+        return TAG;
+    }
+
+    @Override
+    <T> T accept(ConstantVisitor<T> visitor) {
+        return visitor.visitMethodHandleInfo(this);
+    }
+}
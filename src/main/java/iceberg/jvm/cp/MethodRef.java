@@ -2,13 +2,15 @@ package iceberg.jvm.cp;
 
 public class MethodRef extends RefInfo {
 
+    static final int TAG = 10;
+
     public MethodRef(int classIndex, int nameAndTypeIndex) {
         super(classIndex, nameAndTypeIndex);
     }
 
     @Override
     int tag() {
-        return 10;
+        return TAG;
     }
 
     @Override
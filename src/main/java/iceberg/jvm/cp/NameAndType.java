@@ -2,6 +2,8 @@ package iceberg.jvm.cp;
 
 public class NameAndType extends Constant {
 
+    static final int TAG = 12;
+
     public final int nameIndex;
     public final int descriptorIndex;
 
@@ -12,7 +14,7 @@ public class NameAndType extends Constant {
 
     @Override
     int tag() {
-        return 12;
+        return TAG;
     }
 
     @Override
@@ -2,6 +2,8 @@ package iceberg.jvm.cp;
 
 public class StringInfo extends Constant {
 
+    static final int TAG = 8;
+
     final int stringIndex;
 
     public StringInfo(int stringIndex) {
@@ -10,7 +12,7 @@ public class StringInfo extends Constant {
 
     @Override
     int tag() {
-        return 8;
+        return TAG;
     }
 
     @Override
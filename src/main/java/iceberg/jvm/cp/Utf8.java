@@ -4,6 +4,8 @@ import java.nio.charset.StandardCharsets;
 
 public class Utf8 extends Constant {
 
+    static final int TAG = 1;
+
     final int length;
     public final byte[] bytes;
 
@@ -14,7 +16,7 @@ public class Utf8 extends Constant {
 
     @Override
     int tag() {
-        return 1;
+        return TAG;
     }
 
     @Override
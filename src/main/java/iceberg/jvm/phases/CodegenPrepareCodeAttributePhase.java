@@ -2,9 +2,14 @@ package iceberg.jvm.phases;
 
 import iceberg.ir.*;
 import iceberg.jvm.ByteArray;
+import iceberg.jvm.cp.FieldRef;
+import iceberg.jvm.cp.Klass;
+import iceberg.jvm.cp.MethodHandleInfo;
 import iceberg.jvm.cp.MethodRef;
+import iceberg.jvm.target.BootstrapMethodsAttribute;
 import iceberg.jvm.target.CodeAttribute;
 import iceberg.jvm.target.CompilationUnit;
+import iceberg.jvm.target.ExceptionTableEntry;
 import iceberg.jvm.OpCodes;
 import org.jetbrains.annotations.Nullable;
 
@@ -12,6 +17,23 @@ import java.util.*;
 
 public class CodegenPrepareCodeAttributePhase {
 
+    private static final int MAX_LOCALS = 256;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final boolean bufferedOutput;
+
+    public CodegenPrepareCodeAttributePhase() {
+        this(false);
+    }
+
+    /**
+     * @param bufferedOutput {@code Iceberg.main} подменяет System.out на буферизованный PrintStream без autoflush
+     *                       и восстанавливает исходный при выходе, в том числе по исключению
+     */
+    public CodegenPrepareCodeAttributePhase(boolean bufferedOutput) {
+        this.bufferedOutput = bufferedOutput;
+    }
+
     public void execute(CompilationUnit unit) {
         unit.methods.forEach(method -> {
             var attribute = method.attributes.stream()
@@ -69,7 +91,112 @@ public class CodegenPrepareCodeAttributePhase {
                 for (var parameter : irFunction.parameters) {
                     addToLocalVariables(parameter);
                 }
+
+                if (bufferedOutput && isEntryPoint(irFunction)) {
+                    bufferedMain(irFunction);
+                } else {
+                    irFunction.irBody.accept(this);
+                }
+            }
+
+            //слот с исходным System.out, пока генерируется буферизованный main
+            private int originalOutput = -1;
+
+            private boolean isEntryPoint(IrFunction irFunction) {
+                return "Iceberg".equals(irFunction.irClass.name)
+                    && "main".equals(irFunction.name)
+                    && irFunction.parameters.isEmpty();
+            }
+
+            /**
+             * <pre>
+             * PrintStream original = System.out;
+             * System.setOut(new PrintStream(new BufferedOutputStream(original, 65536), false));
+             * try { body } finally { System.out.flush(); System.setOut(original); }
+             * </pre>
+             * finally для return'ов генерирует {@link #visitIrReturn}, для исключений - обработчик в конце метода.
+             */
+            private void bufferedMain(IrFunction irFunction) {
+                var constantPool = compilationUnit.constantPool;
+                originalOutput = addToLocalVariables(new IrVariable(IcebergType.object, null));
+
+                output.writeU1(OpCodes.GETSTATIC.value);
+                output.writeU2(constantPool.indexOf(systemOut()));
+                output.writeU1(OpCodes.ASTORE.value);
+                output.writeU1(originalOutput);
+
+                output.writeU1(OpCodes.NEW.value);
+                output.writeU2(constantPool.indexOf(klass("java/io/PrintStream")));
+                output.writeU1(OpCodes.DUP.value);
+                output.writeU1(OpCodes.NEW.value);
+                output.writeU2(constantPool.indexOf(klass("java/io/BufferedOutputStream")));
+                output.writeU1(OpCodes.DUP.value);
+                output.writeU1(OpCodes.ALOAD.value);
+                output.writeU1(originalOutput);
+                output.writeU1(OpCodes.LDC_W.value);
+                output.writeU2(constantPool.indexOf(constantPool.computeInt(OUTPUT_BUFFER_SIZE)));
+                output.writeU1(OpCodes.INVOKESPECIAL.value);
+                output.writeU2(constantPool.indexOf(
+                    methodRef("java/io/BufferedOutputStream", "<init>", "(Ljava/io/OutputStream;I)V")
+                ));
+                output.writeU1(OpCodes.ICONST_0.value);
+                output.writeU1(OpCodes.INVOKESPECIAL.value);
+                output.writeU2(constantPool.indexOf(
+                    methodRef("java/io/PrintStream", "<init>", "(Ljava/io/OutputStream;Z)V")
+                ));
+                output.writeU1(OpCodes.INVOKESTATIC.value);
+                output.writeU2(constantPool.indexOf(
+                    methodRef("java/lang/System", "setOut", "(Ljava/io/PrintStream;)V")
+                ));
+
+                var start = output.length();
                 irFunction.irBody.accept(this);
+                var handler = output.length();
+
+                var exception = addToLocalVariables(new IrVariable(IcebergType.object, null));
+                output.writeU1(OpCodes.ASTORE.value);
+                output.writeU1(exception);
+                restoreOutput();
+                output.writeU1(OpCodes.ALOAD.value);
+                output.writeU1(exception);
+                output.writeU1(OpCodes.ATHROW.value);
+
+                attribute.exceptionTable.add(new ExceptionTableEntry(start, handler, handler, 0));
+                originalOutput = -1;
+            }
+
+            private void restoreOutput() {
+                var constantPool = compilationUnit.constantPool;
+
+                output.writeU1(OpCodes.GETSTATIC.value);
+                output.writeU2(constantPool.indexOf(systemOut()));
+                output.writeU1(OpCodes.INVOKEVIRTUAL.value);
+                output.writeU2(constantPool.indexOf(methodRef("java/io/PrintStream", "flush", "()V")));
+
+                output.writeU1(OpCodes.ALOAD.value);
+                output.writeU1(originalOutput);
+                output.writeU1(OpCodes.INVOKESTATIC.value);
+                output.writeU2(constantPool.indexOf(
+                    methodRef("java/lang/System", "setOut", "(Ljava/io/PrintStream;)V")
+                ));
+            }
+
+            private Klass klass(String name) {
+                return compilationUnit.constantPool.computeKlass(compilationUnit.constantPool.computeUtf8(name));
+            }
+
+            private MethodRef methodRef(String klass, String name, String descriptor) {
+                var constantPool = compilationUnit.constantPool;
+                return constantPool.computeMethodRef(klass(klass), constantPool.computeNameAndType(
+                    constantPool.computeUtf8(name), constantPool.computeUtf8(descriptor)
+                ));
+            }
+
+            private FieldRef systemOut() {
+                var constantPool = compilationUnit.constantPool;
+                return constantPool.computeFieldRef(klass("java/lang/System"), constantPool.computeNameAndType(
+                    constantPool.computeUtf8("out"), constantPool.computeUtf8("Ljava/io/PrintStream;")
+                ));
             }
 
             @Override
@@ -81,6 +208,10 @@ public class CodegenPrepareCodeAttributePhase {
                     dropUnusedReturnValue(statement);
                 });
 
+                closeScope();
+            }
+
+            private void closeScope() {
                 scopes.removeLast().forEach(irVariable -> {
                     indexes.remove(irVariable);
 
@@ -129,12 +260,63 @@ public class CodegenPrepareCodeAttributePhase {
                 var afterLoop = output.lateInitJump();
 
                 irLoop.body.accept(this);
+                dropUnusedReturnValue(irLoop.body);
                 output.writeU1(OpCodes.GOTO.value);
                 output.writeU2((short) (beforeCondition - output.length() + 1));
 
                 afterLoop.jump();
             }
 
+            /**
+             * Канонический счетный цикл, как у javac для {@code for (int i = a; i < b; i++)}:
+             * <pre>
+             *     i = from; limit = to
+             *     goto check
+             * body:
+             *     ...
+             *     iinc i 1
+             * check:
+             *     if i < limit goto body
+             * </pre>
+             * Переменная цикла живет в одном слоте, константная граница не занимает слот.
+             * По такой форме C2 распознает counted loop и разворачивает его.
+             */
+            @Override
+            public void visitIrForRange(IrForRange irForRange) {
+                scopes.add(new HashSet<>());
+
+                irForRange.variable.accept(this);
+                var constantLimit = irForRange.limit.initializer instanceof IrNumber;
+                if (!constantLimit) {
+                    irForRange.limit.accept(this);
+                }
+
+                output.writeU1(OpCodes.GOTO.value);
+                var toCheck = output.lateInitJump();
+
+                var body = output.length();
+                irForRange.body.accept(this);
+                dropUnusedReturnValue(irForRange.body);
+
+                output.writeU1(OpCodes.IINC.value);
+                output.writeU1(indexes.get(irForRange.variable));
+                output.writeU1(1);
+
+                toCheck.jump();
+                output.writeU1(OpCodes.ILOAD.value);
+                output.writeU1(indexes.get(irForRange.variable));
+                if (constantLimit) {
+                    irForRange.limit.initializer.accept(this);
+                } else {
+                    output.writeU1(OpCodes.ILOAD.value);
+                    output.writeU1(indexes.get(irForRange.limit));
+                }
+                output.writeU1(OpCodes.IF_ICMPLT.value);
+                output.writeU2((short) (body - output.length() + 1));
+
+                closeScope();
+            }
+
             @Override
             public void visitIrSuperCall(IrSuperCall irSuperCall) {
                 output.writeU1(OpCodes.ALOAD_0.value);
@@ -149,6 +331,9 @@ public class CodegenPrepareCodeAttributePhase {
             @Override
             public void visitIrReturn(IrReturn irReturn) {
                 if (irReturn.expression == null) {
+                    if (originalOutput >= 0) {
+                        restoreOutput();
+                    }
                     output.writeU1(OpCodes.RETURN.value);
                     return;
                 }
@@ -370,19 +555,55 @@ public class CodegenPrepareCodeAttributePhase {
                 }
             }
 
+            /**
+             * Один {@code invokedynamic} на всю цепочку: литералы уже в рецепте, на стек кладутся только
+             * остальные операнды. Стратегию склейки выбирает {@code StringConcatFactory} во время линковки.
+             */
             @Override
-            public void visitIrPrint(IrPrint irPrint) {
-                var systemClass = compilationUnit.constantPool.computeKlass(
-                    compilationUnit.constantPool.computeUtf8("java/lang/System")
+            public void visitIrStringConcat(IrStringConcat irStringConcat) {
+                irStringConcat.arguments().forEach(argument -> argument.accept(this));
+
+                var constantPool = compilationUnit.constantPool;
+                var bootstrap = constantPool.computeMethodHandle(MethodHandleInfo.REF_INVOKE_STATIC, methodRef(
+                    "java/lang/invoke/StringConcatFactory",
+                    "makeConcatWithConstants",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+                        + "Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;"
+                ));
+                var recipe = constantPool.computeString(irStringConcat.recipe());
+                var bootstrapIndex = bootstrapMethods().computeBootstrapMethod(
+                    constantPool.indexOf(bootstrap), List.of(constantPool.indexOf(recipe))
                 );
-                var outField = compilationUnit.constantPool.computeNameAndType(
-                    compilationUnit.constantPool.computeUtf8("out"),
-                    compilationUnit.constantPool.computeUtf8("Ljava/io/PrintStream;")
+
+                var callSite = constantPool.computeInvokeDynamic(bootstrapIndex, constantPool.computeNameAndType(
+                    constantPool.computeUtf8("makeConcatWithConstants"),
+                    constantPool.computeUtf8(irStringConcat.javaMethodDescriptor())
+                ));
+
+                output.writeU1(OpCodes.INVOKEDYNAMIC.value);
+                output.writeU2(constantPool.indexOf(callSite));
+                output.writeU2(0); //два нулевых байта по JVMS
+            }
+
+            private BootstrapMethodsAttribute bootstrapMethods() {
+                for (var attribute : compilationUnit.attributes) {
+                    if (attribute instanceof BootstrapMethodsAttribute bootstrapMethods) {
+                        return bootstrapMethods;
+                    }
+                }
+
+                var bootstrapMethods = new BootstrapMethodsAttribute(
+                    compilationUnit.constantPool.computeUtf8("BootstrapMethods")
                 );
-                var fieldRef = compilationUnit.constantPool.computeFieldRef(systemClass, outField);
+                compilationUnit.attributes.add(bootstrapMethods);
 
+                return bootstrapMethods;
+            }
+
+            @Override
+            public void visitIrPrint(IrPrint irPrint) {
                 output.writeU1(OpCodes.GETSTATIC.value);
-                output.writeU2(compilationUnit.constantPool.indexOf(fieldRef));
+                output.writeU2(compilationUnit.constantPool.indexOf(systemOut()));
 
                 irPrint.argument.accept(this);
 
@@ -430,6 +651,7 @@ public class CodegenPrepareCodeAttributePhase {
 
             private final Map<IrVariable, Integer> indexes = new HashMap<>();
 
+            //слоты переиспользуются после выхода из блока, поэтому maxLocals - максимум одновременно живых слотов
             private int addToLocalVariables(IrVariable irVariable) {
                 int index = indexes.computeIfAbsent(irVariable, __ -> indexes.size());
 
@@ -437,6 +659,14 @@ public class CodegenPrepareCodeAttributePhase {
                     indexes.put(new LongPlaceholder(IcebergType.i64, null), indexes.size());
                 }
 
+                //индекс пишется одним байтом, wide не поддерживается
+                if (indexes.size() > MAX_LOCALS) {
+                    throw new IllegalStateException(
+                        "too many local variables in " + attribute.function.name + ": " + indexes.size()
+                    );
+                }
+                attribute.maxLocals = Math.max(attribute.maxLocals, indexes.size());
+
                 return index;
             }
 
@@ -561,6 +791,7 @@ public class CodegenPrepareCodeAttributePhase {
                 var toElseOrEnd = output.lateInitJump();
 
                 irIfStatement.thenStatement.accept(this);
+                dropUnusedReturnValue(irIfStatement.thenStatement);
 
                 if (irIfStatement.elseStatement == null) {
                     toElseOrEnd.jump();
@@ -570,12 +801,14 @@ public class CodegenPrepareCodeAttributePhase {
                 if (thenBlockEndsWithReturn(irIfStatement)) {
                     toElseOrEnd.jump();
                     irIfStatement.elseStatement.accept(this);
+                    dropUnusedReturnValue(irIfStatement.elseStatement);
                 } else {
                     output.writeU1(OpCodes.GOTO.value);
                     var toEnd = output.lateInitJump();
 
                     toElseOrEnd.jump();
                     irIfStatement.elseStatement.accept(this);
+                    dropUnusedReturnValue(irIfStatement.elseStatement);
                     toEnd.jump();
                 }
             }
@@ -596,6 +829,56 @@ public class CodegenPrepareCodeAttributePhase {
             public void visitIrThis(IrThis irThis) {
                 output.writeU1(OpCodes.ALOAD_0.value);
             }
+
+            @Override
+            public void visitIrNewArray(IrNewArray irNewArray) {
+                irNewArray.length.accept(this);
+
+                output.writeU1(OpCodes.NEWARRAY.value);
+                var elementType = irNewArray.type.elementType();
+                if (elementType == IcebergType.i32) {
+                    output.writeU1(OpCodes.T_INT);
+                } else if (elementType == IcebergType.i64) {
+                    output.writeU1(OpCodes.T_LONG);
+                } else {
+                    output.writeU1(OpCodes.T_BOOLEAN);
+                }
+            }
+
+            @Override
+            public void visitIrArrayLoad(IrArrayLoad irArrayLoad) {
+                irArrayLoad.array.accept(this);
+                irArrayLoad.index.accept(this);
+
+                if (irArrayLoad.type == IcebergType.i32) {
+                    output.writeU1(OpCodes.IALOAD.value);
+                } else if (irArrayLoad.type == IcebergType.i64) {
+                    output.writeU1(OpCodes.LALOAD.value);
+                } else {
+                    output.writeU1(OpCodes.BALOAD.value);
+                }
+            }
+
+            @Override
+            public void visitIrArrayStore(IrArrayStore irArrayStore) {
+                irArrayStore.array.accept(this);
+                irArrayStore.index.accept(this);
+                irArrayStore.expression.accept(this);
+
+                if (irArrayStore.type == IcebergType.i32) {
+                    output.writeU1(OpCodes.IASTORE.value);
+                } else if (irArrayStore.type == IcebergType.i64) {
+                    output.writeU1(OpCodes.LASTORE.value);
+                } else {
+                    output.writeU1(OpCodes.BASTORE.value);
+                }
+            }
+
+            @Override
+            public void visitIrArrayLength(IrArrayLength irArrayLength) {
+                irArrayLength.array.accept(this);
+                output.writeU1(OpCodes.ARRAYLENGTH.value);
+            }
         });
 
         attribute.code = output.bytes();
@@ -35,11 +35,33 @@ public class CodegenPrepareMethodsPhase {
     ) {
         var attribute = new CodeAttribute();
         attribute.attributeName = unit.constantPool.computeUtf8("Code");
-        attribute.maxStack = 100; //TODO: how to evaluate?
-        attribute.maxLocals = 100; //TODO: how to evaluate?
+        //здесь только слоты аргументов, остальное досчитывают CodegenPrepareCodeAttributePhase
+        //при раздаче слотов локальным переменным и CodegenPrepareStackMapAttributePhase (maxStack)
+        attribute.maxLocals = argumentSlots(function);
 
         attribute.function = function;
 
         return attribute;
     }
+
+    //по дескриптору, а не по параметрам: у main есть неявный String[] args
+    private static int argumentSlots(IrFunction function) {
+        var descriptor = function.javaMethodDescriptor();
+
+        int slots = function.isJavaStatic() ? 0 : 1;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            var array = descriptor.charAt(i) == '[';
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+
+            var wide = !array && (descriptor.charAt(i) == 'J' || descriptor.charAt(i) == 'D');
+            slots += wide ? 2 : 1;
+        }
+
+        return slots;
+    }
 }
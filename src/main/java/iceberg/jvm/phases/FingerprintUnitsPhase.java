@@ -0,0 +1,171 @@
+package iceberg.jvm.phases;
+
+import iceberg.antlr.IcebergParser;
+import iceberg.ir.*;
+import iceberg.jvm.target.CompilationUnit;
+import lombok.SneakyThrows;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Считает отпечаток каждого юнита для инкрементальной компиляции.
+ * Байткод класса зависит только от его собственного исходника и от сигнатур классов,
+ * на которые он ссылается (поля и дескрипторы методов), поэтому в отпечаток входят:
+ * <ul>
+ *     <li>токены определения класса (для Iceberg - весь файл без определений классов)</li>
+ *     <li>сигнатуры всех классов, встречающихся в IR класса</li>
+ * </ul>
+ */
+public class FingerprintUnitsPhase {
+
+    private final String salt;
+
+    public FingerprintUnitsPhase(String salt) {
+        this.salt = salt;
+    }
+
+    public Map<String, String> execute(IcebergParser.FileContext file, Collection<CompilationUnit> units) {
+        var spans = findSpans(file);
+
+        var fingerprints = new HashMap<String, String>();
+        for (var unit : units) {
+            var irClass = unit.irClass;
+
+            var digest = sha256();
+            digest.update(salt.getBytes(UTF_8));
+            digest.update((byte) 0);
+            digest.update(spans.get(irClass.name).getBytes(UTF_8));
+
+            for (var dependency : findDependencies(irClass)) {
+                digest.update((byte) 0);
+                digest.update(signature(dependency).getBytes(UTF_8));
+            }
+
+            fingerprints.put(irClass.name, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        return fingerprints;
+    }
+
+    //исходник сравнивается по токенам, поэтому пробелы и переносы строк не вызывают перекомпиляцию
+    private Map<String, String> findSpans(IcebergParser.FileContext file) {
+        var spans = new HashMap<String, String>();
+
+        //все, что не относится к классам, компилируется в Iceberg
+        var iceberg = new StringBuilder();
+        collectTokens(file, iceberg, spans);
+        spans.put("Iceberg", iceberg.toString());
+
+        return spans;
+    }
+
+    private void collectTokens(ParseTree node, StringBuilder tokens, Map<String, String> spans) {
+        if (node instanceof IcebergParser.ClassDefinitionStatementContext ctx) {
+            var classTokens = new StringBuilder();
+            for (int i = 0; i < ctx.getChildCount(); i++) {
+                collectTokens(ctx.getChild(i), classTokens, spans);
+            }
+            spans.put(ctx.name.getText(), classTokens.toString());
+        } else if (node instanceof TerminalNode terminal) {
+            tokens.append(terminal.getText()).append(' ');
+        } else {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                collectTokens(node.getChild(i), tokens, spans);
+            }
+        }
+    }
+
+    private SortedSet<IrClass> findDependencies(IrClass irClass) {
+        var dependencies = new TreeSet<IrClass>(Comparator.comparing(dependency -> dependency.name));
+
+        irClass.accept(new IrVisitorBase() {
+            @Override
+            public void visitIrFunction(IrFunction irFunction) {
+                dependencies.add(irFunction.returnType.irClass);
+                super.visitIrFunction(irFunction);
+            }
+
+            @Override
+            public void visitIrVariable(IrVariable irVariable) {
+                dependencies.add(irVariable.type.irClass);
+                super.visitIrVariable(irVariable);
+            }
+
+            @Override
+            public void visitIrField(IrField irField) {
+                dependencies.add(irField.type.irClass);
+                super.visitIrField(irField);
+            }
+
+            @Override
+            public void visitIrNew(IrNew irNew) {
+                dependencies.add(irNew.irClass);
+                super.visitIrNew(irNew);
+            }
+
+            @Override
+            public void visitIrSuperCall(IrSuperCall irSuperCall) {
+                dependencies.add(irSuperCall.function.irClass);
+                super.visitIrSuperCall(irSuperCall);
+            }
+
+            @Override
+            public void visitIrStaticCall(IrStaticCall irStaticCall) {
+                dependencies.add(irStaticCall.function.irClass);
+                super.visitIrStaticCall(irStaticCall);
+            }
+
+            @Override
+            public void visitIrMethodCall(IrMethodCall irMethodCall) {
+                dependencies.add(irMethodCall.function.irClass);
+                super.visitIrMethodCall(irMethodCall);
+            }
+
+            @Override
+            public void visitIrGetField(IrGetField irGetField) {
+                dependencies.add(irGetField.irField.irClass);
+                dependencies.add(irGetField.irField.type.irClass);
+                super.visitIrGetField(irGetField);
+            }
+
+            @Override
+            public void visitIrPutField(IrPutField irPutField) {
+                dependencies.add(irPutField.irField.irClass);
+                dependencies.add(irPutField.irField.type.irClass);
+                super.visitIrPutField(irPutField);
+            }
+
+            @Override
+            public void visitIrCast(IrCast irCast) {
+                dependencies.add(irCast.type.irClass);
+                super.visitIrCast(irCast);
+            }
+        });
+
+        dependencies.remove(irClass); //собственная сигнатура уже входит в исходник
+        return dependencies;
+    }
+
+    private static String signature(IrClass irClass) {
+        var fields = irClass.fields.values().stream()
+            .map(field -> field.fieldName + ":" + field.type)
+            .sorted();
+        var methods = irClass.methods.stream()
+            .map(function -> function.name + function.javaMethodDescriptor())
+            .sorted();
+
+        return irClass.name + "{" + Stream.concat(fields, methods).collect(Collectors.joining(",")) + "}";
+    }
+
+    @SneakyThrows
+    private static MessageDigest sha256() {
+        return MessageDigest.getInstance("SHA-256");
+    }
+}
@@ -0,0 +1,209 @@
+package iceberg.jvm.phases;
+
+import iceberg.ir.IcebergType;
+import iceberg.jvm.ByteArray;
+import iceberg.jvm.OpCodes;
+import iceberg.jvm.target.CodeAttribute;
+import iceberg.jvm.target.CompilationUnit;
+import iceberg.jvm.target.Method;
+import iceberg.jvm.target.StackMapAttribute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Добавляет в класс Iceberg метод {@code <name>$batch}, который вызывает функцию для каждой строки колонок:
+ * <pre>
+ * static void name$batch(int[] a, long[] b, long[] result) {
+ *     for (int i = 0; i < a.length; i++) result[i] = name(a[i], b[i]);
+ * }
+ * </pre>
+ * Обычный счетный цикл с invokestatic, который JIT компилирует и инлайнит как java-код.
+ * Выполняется после {@link iceberg.jvm.phases.validation.CodegenPrepareStackMapAttributePhase},
+ * фреймы для цикла строятся здесь же.
+ */
+public class GenerateBatchMethodPhase {
+
+    public static final String SUFFIX = "$batch";
+
+    private final String name;
+
+    public GenerateBatchMethodPhase(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return false, если для функции батч не строится
+     */
+    public boolean execute(CompilationUnit unit) {
+        var function = unit.irClass.methods.stream()
+            .filter(method -> name.equals(method.name))
+            .findAny().orElseThrow();
+
+        if (function.parameters.isEmpty()) {
+            return false; //длину батча не из чего взять
+        }
+
+        //колонка массивов была бы двумерным массивом, такие функции вызываются только построчно
+        var hasResult = !IcebergType.unit.equals(function.returnType);
+        if (function.parameters.stream().anyMatch(parameter -> !isColumn(parameter.type))
+            || hasResult && !isColumn(function.returnType)) {
+            return false;
+        }
+
+        var columns = new ArrayList<String>();
+        for (var parameter : function.parameters) {
+            columns.add(arrayDescriptor(parameter.type));
+        }
+
+        var result = hasResult ? arrayDescriptor(function.returnType) : null;
+
+        var locals = new ArrayList<>(columns);
+        if (hasResult) {
+            locals.add(result);
+        }
+        var counter = locals.size();
+
+        var constantPool = unit.constantPool;
+        var klass = constantPool.computeKlass(constantPool.computeUtf8(unit.irClass.name));
+        var methodRef = constantPool.computeMethodRef(klass, constantPool.computeNameAndType(
+            constantPool.computeUtf8(function.name),
+            constantPool.computeUtf8(function.javaMethodDescriptor())
+        ));
+
+        var code = new ByteArray();
+
+        //int i = 0
+        code.writeU1(OpCodes.ICONST_0.value);
+        code.writeU1(OpCodes.ISTORE.value);
+        code.writeU1(counter);
+
+        //i < column[0].length
+        var loop = code.length();
+        code.writeU1(OpCodes.ILOAD.value);
+        code.writeU1(counter);
+        code.writeU1(OpCodes.ALOAD.value);
+        code.writeU1(0);
+        code.writeU1(OpCodes.ARRAYLENGTH.value);
+        code.writeU1(OpCodes.IF_ICMPGE.value);
+        var exit = code.lateInitJump();
+
+        if (hasResult) {
+            code.writeU1(OpCodes.ALOAD.value);
+            code.writeU1(counter - 1);
+            code.writeU1(OpCodes.ILOAD.value);
+            code.writeU1(counter);
+        }
+
+        for (int column = 0; column < columns.size(); column++) {
+            code.writeU1(OpCodes.ALOAD.value);
+            code.writeU1(column);
+            code.writeU1(OpCodes.ILOAD.value);
+            code.writeU1(counter);
+            code.writeU1(load(function.parameters.get(column).type).value);
+        }
+
+        code.writeU1(OpCodes.INVOKESTATIC.value);
+        code.writeU2(constantPool.indexOf(methodRef));
+
+        if (hasResult) {
+            code.writeU1(store(function.returnType).value);
+        }
+
+        //i++
+        code.writeU1(OpCodes.IINC.value);
+        code.writeU1(counter);
+        code.writeU1(1);
+
+        var jump = code.length();
+        code.writeU1(OpCodes.GOTO.value);
+        code.writeU2(loop - jump);
+
+        var end = code.length();
+        exit.jump();
+        code.writeU1(OpCodes.RETURN.value);
+
+        var attribute = new CodeAttribute();
+        attribute.attributeName = constantPool.computeUtf8("Code");
+        attribute.function = function;
+        attribute.code = code.bytes();
+        attribute.maxLocals = counter + 1;
+        attribute.maxStack = (hasResult ? 2 : 0) + function.parameters.stream()
+            .mapToInt(parameter -> IcebergType.i64.equals(parameter.type) ? 2 : 1)
+            .sum() + 2;
+
+        //цикл и выход из него видят одинаковые локальные переменные
+        var stackMap = new StackMapAttribute(constantPool.computeUtf8("StackMapTable"));
+        stackMap.entries.add(frame(unit, loop, locals));
+        stackMap.entries.add(frame(unit, end - loop - 1, locals));
+        attribute.attributes.add(stackMap);
+
+        var descriptor = locals.stream().collect(Collectors.joining("", "(", ")V"));
+
+        var method = new Method();
+        method.flags = Method.AccessFlags.ACC_PUBLIC.value | Method.AccessFlags.ACC_STATIC.value;
+        method.name = constantPool.computeUtf8(function.name + SUFFIX);
+        method.descriptor = constantPool.computeUtf8(descriptor);
+        method.attributes.add(attribute);
+
+        unit.methods.add(method);
+        return true;
+    }
+
+    private StackMapAttribute.FullStackMapFrame frame(
+        CompilationUnit unit, int offsetDelta, List<String> arrays
+    ) {
+        var frame = new StackMapAttribute.FullStackMapFrame(offsetDelta);
+        for (var array : arrays) {
+            var klass = unit.constantPool.computeKlass(unit.constantPool.computeUtf8(array));
+            frame.locals.add(new StackMapAttribute.ObjectVariableInfo(unit.constantPool.indexOf(klass)));
+        }
+        frame.locals.add(new StackMapAttribute.IntegerVariableInfo());
+
+        return frame;
+    }
+
+    private static boolean isColumn(IcebergType type) {
+        return IcebergType.i32.equals(type) || IcebergType.i64.equals(type)
+            || IcebergType.bool.equals(type) || IcebergType.string.equals(type);
+    }
+
+    private static String arrayDescriptor(IcebergType type) {
+        if (IcebergType.i32.equals(type)) {
+            return "[I";
+        } else if (IcebergType.i64.equals(type)) {
+            return "[J";
+        } else if (IcebergType.bool.equals(type)) {
+            return "[Z";
+        } else if (IcebergType.string.equals(type)) {
+            return "[Ljava/lang/String;";
+        } else {
+            throw new IllegalArgumentException("unsupported batch type: " + type);
+        }
+    }
+
+    private static OpCodes load(IcebergType type) {
+        if (IcebergType.i32.equals(type)) {
+            return OpCodes.IALOAD;
+        } else if (IcebergType.i64.equals(type)) {
+            return OpCodes.LALOAD;
+        } else if (IcebergType.bool.equals(type)) {
+            return OpCodes.BALOAD;
+        } else {
+            return OpCodes.AALOAD;
+        }
+    }
+
+    private static OpCodes store(IcebergType type) {
+        if (IcebergType.i32.equals(type)) {
+            return OpCodes.IASTORE;
+        } else if (IcebergType.i64.equals(type)) {
+            return OpCodes.LASTORE;
+        } else if (IcebergType.bool.equals(type)) {
+            return OpCodes.BASTORE;
+        } else {
+            return OpCodes.AASTORE;
+        }
+    }
+}
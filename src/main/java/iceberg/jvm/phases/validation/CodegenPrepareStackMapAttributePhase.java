@@ -1,322 +1,608 @@
 package iceberg.jvm.phases.validation;
 
-import iceberg.jvm.target.CodeAttribute;
-import iceberg.jvm.target.CompilationUnit;
 import iceberg.jvm.OpCodes;
 import iceberg.jvm.cp.*;
+import iceberg.jvm.target.CodeAttribute;
+import iceberg.jvm.target.CompilationUnit;
 import iceberg.jvm.target.Method;
 import iceberg.jvm.target.StackMapAttribute;
-import iceberg.ir.IcebergType;
+import iceberg.jvm.target.StackMapAttribute.*;
 
 import java.util.*;
 
+/**
+ * Строит StackMapTable и считает maxStack для каждого метода.
+ * <p>
+ * Байткод один раз разбивается на базовые блоки (начало - цель перехода или инструкция после
+ * перехода/return), дальше типы распространяются worklist'ом по блокам: состояние на входе блока -
+ * слияние состояний предшественников, блок пересчитывается только если его вход изменился.
+ * Локальные переменные хранятся массивом по слотам, поэтому load/store - O(1).
+ * <p>
+ * Фрейм пишется для каждой цели перехода в самом компактном виде относительно предыдущего:
+ * {@code same}, {@code same_locals_1_stack_item}, {@code chop}, {@code append}, иначе {@code full}.
+ * Индексы классов в ConstantPool кэшируются на весь юнит.
+ */
 public class CodegenPrepareStackMapAttributePhase {
 
+    private static final Set<OpCodes> JUMP_OP_CODES = Set.of(
+        OpCodes.GOTO, OpCodes.IFEQ, OpCodes.IFNE,
+        OpCodes.IF_ICMPEQ, OpCodes.IF_ICMPNE, OpCodes.IF_ICMPLT,
+        OpCodes.IF_ICMPLE, OpCodes.IF_ICMPGT, OpCodes.IF_ICMPGE
+    );
+
+    private static final VerificationTypeInfo TOP = new TopVariableInfo();
+    private static final VerificationTypeInfo INTEGER = new IntegerVariableInfo();
+    private static final VerificationTypeInfo LONG = new LongVariableInfo();
+
+    private final Map<String, VerificationTypeInfo> classes = new HashMap<>();
+    private final boolean compact;
+
+    private CompilationUnit unit;
+    private JavaDescriptorParser parser;
+
+    public CodegenPrepareStackMapAttributePhase() {
+        this(true);
+    }
+
+    /**
+     * @param compact false - только full-фреймы, для сравнения размера и времени верификации
+     */
+    public CodegenPrepareStackMapAttributePhase(boolean compact) {
+        this.compact = compact;
+    }
+
     public void execute(CompilationUnit unit) {
+        this.unit = unit;
+        this.parser = new JavaDescriptorParser(unit.constantPool);
+        //индексы Object_variable_info ссылаются на пул констант, у каждого класса он свой
+        this.classes.clear();
+
         unit.methods.forEach(method -> {
             var attribute = method.attributes.stream()
                 .filter(CodeAttribute.class::isInstance)
                 .findAny().orElseThrow();
 
-            Map<Integer, Snapshot> snapshots = new HashMap<>();
-
-            var first = new Snapshot();
-            if ((method.flags & Method.AccessFlags.ACC_STATIC.value) == 0) {
-                first.variables.add(unit.irClass.name);
-            }
-
-            //fill local array with parameters
-            for (var parameter : attribute.function.parameters) {
-                var mapping = Map.of(
-                    IcebergType.i32, "int",
-                    IcebergType.i64, "long",
-                    IcebergType.bool, "boolean",
-                    IcebergType.string, "java/lang/String",
-                    IcebergType.unit, "void"
-                );
-
-                if (mapping.containsKey(parameter.type)) {
-                    first.variables.add(mapping.get(parameter.type));
-                } else {
-                    first.variables.add(parameter.type.irClass.name);
-                }
-            }
-
-            dfs(attribute.code, 0, unit.constantPool, first, snapshots);
+            var initial = initialState(method, attribute);
+            var frames = new Analysis(attribute, initial).run();
 
             var stackMapAttribute = new StackMapAttribute(unit.constantPool.computeUtf8("StackMapTable"));
+            encode(initialFrame(method, initial), frames, stackMapAttribute);
             attribute.attributes.add(stackMapAttribute);
-
-            var keys = snapshots.keySet().stream().sorted().toList();
-            for (var i = 1; i < keys.size(); i++) {
-                var prev = keys.get(i - 1);
-                var curr = keys.get(i);
-
-                var offsetDelta = i == 1 ? curr - prev : curr - prev - 1;
-                var full = new StackMapAttribute.FullStackMapFrame(offsetDelta);
-                stackMapAttribute.entries.add(full);
-
-                var snapshot = snapshots.get(curr);
-                for (var type : snapshot.variables) {
-                    if ("int".equals(type) || "boolean".equals(type)) {
-                        full.locals.add(new StackMapAttribute.IntegerVariableInfo());
-                    } else if ("long".equals(type)) {
-                        full.locals.add(new StackMapAttribute.LongVariableInfo());
-                    } else {
-                        var utf8 = unit.constantPool.computeUtf8(type);
-                        var klass = unit.constantPool.computeKlass(utf8);
-
-                        var object = new StackMapAttribute.ObjectVariableInfo(
-                            unit.constantPool.indexOf(klass)
-                        );
-                        full.locals.add(object);
-                    }
-                }
-                for (var type : snapshot.stack) {
-                    if ("int".equals(type) || "boolean".equals(type)) {
-                        full.stack.add(new StackMapAttribute.IntegerVariableInfo());
-                    } else if ("long".equals(type)) {
-                        full.stack.add(new StackMapAttribute.LongVariableInfo());
-                    } else {
-                        var utf8 = unit.constantPool.computeUtf8(type);
-                        var klass = unit.constantPool.computeKlass(utf8);
-
-                        var object = new StackMapAttribute.ObjectVariableInfo(
-                            unit.constantPool.indexOf(klass)
-                        );
-                        full.stack.add(object);
-                    }
-                }
-            }
         });
     }
 
-    private static class Snapshot {
+    //типы - как в старом снапшоте: int, long, boolean, имя класса или дескриптор массива; null - top
+    private static final class State {
 
-        final List<String> variables;
-        final List<String> stack;
+        final String[] locals;
+        final ArrayList<String> stack;
 
-        public Snapshot() {
-            this.variables = new ArrayList<>();
+        State(int maxLocals) {
+            this.locals = new String[maxLocals];
             this.stack = new ArrayList<>();
         }
 
-        public Snapshot(Snapshot other) {
-            this.variables = new ArrayList<>(other.variables);
+        State(State other) {
+            this.locals = other.locals.clone();
             this.stack = new ArrayList<>(other.stack);
         }
 
-        public void push(String value) {
-            stack.add(value);
+        void push(String type) {
+            stack.add(type);
         }
 
-        public String pop() {
+        String pop() {
             return stack.removeLast();
         }
 
-        @Override
-        public String toString() {
-            return "vars: " + variables + ", " + "stack: " + stack;
+        String get(int index) {
+            return locals[index];
         }
 
-        public String get(byte index) {
-            return variables.get(mapIndex(index));
+        void set(int index, String type) {
+            //перезаписанная половина long делает его недоступным
+            if (index > 0 && "long".equals(locals[index - 1])) {
+                locals[index - 1] = null;
+            }
+
+            locals[index] = type;
+            if ("long".equals(type)) {
+                locals[index + 1] = null;
+            }
         }
 
-        public void set(byte index, String type) {
-            if (mapIndex(index) == variables.size()) {
-                variables.add(type);
-            } else {
-                variables.set(mapIndex(index), type);
+        //long занимает два слота стека операндов
+        int depth() {
+            int depth = 0;
+            for (var type : stack) {
+                depth += "long".equals(type) ? 2 : 1;
             }
+
+            return depth;
         }
 
-        //every long takes two indexes from array
-        private byte mapIndex(byte index) {
-            byte current = 0;
-            for (byte i = 0; i < variables.size(); i++) {
-                if (current == index) {
-                    return i;
+        /**
+         * Сливает {@code other} в себя: различающиеся локальные переменные становятся top.
+         * @return true, если состояние изменилось
+         */
+        boolean merge(State other) {
+            var changed = false;
+            for (int i = 0; i < locals.length; i++) {
+                if (locals[i] != null && !same(locals[i], other.locals[i])) {
+                    locals[i] = null;
+                    changed = true;
                 }
+            }
 
-                if ("long".equals(variables.get(i))) {
-                    current += 2;
-                } else {
-                    current += 1;
+            if (stack.size() != other.stack.size()) {
+                throw new IllegalStateException("stack size mismatch: " + stack + " vs " + other.stack);
+            }
+            for (int i = 0; i < stack.size(); i++) {
+                if (!same(stack.get(i), other.stack.get(i))) {
+                    stack.set(i, "java/lang/Object");
+                    changed = true;
                 }
             }
 
-            return (byte) variables.size();
+            return changed;
+        }
+
+        //для верификатора boolean - это int
+        private static boolean same(String type, String other) {
+            return type.equals(other) || isInteger(type) && other != null && isInteger(other);
+        }
+
+        private static boolean isInteger(String type) {
+            return "int".equals(type) || "boolean".equals(type);
         }
     }
 
-    private static final Set<OpCodes> JUMP_OP_CODES = Set.of(
-        OpCodes.GOTO, OpCodes.IFEQ, OpCodes.IFNE,
-        OpCodes.IF_ICMPEQ, OpCodes.IF_ICMPNE, OpCodes.IF_ICMPLT,
-        OpCodes.IF_ICMPLE, OpCodes.IF_ICMPGT, OpCodes.IF_ICMPGE
-    );
+    private final class Analysis {
 
-    private void dfs(
-        byte[] code, int i,
-        ConstantPool constantPool,
-        Snapshot snapshot,
-        Map<Integer, Snapshot> snapshots
-    ) {
-        if (snapshots.containsKey(i)) {
-            return;
-        } else {
-            snapshots.put(i, new Snapshot(snapshot));
+        private final CodeAttribute attribute;
+        private final byte[] code;
+
+        private final BitSet leaders = new BitSet();
+        private final BitSet targets = new BitSet();
+        private final BitSet handlers = new BitSet();
+        private final Map<Integer, State> entries = new HashMap<>();
+        private final TreeSet<Integer> worklist = new TreeSet<>();
+
+        private int maxStack;
+
+        Analysis(CodeAttribute attribute, State initial) {
+            this.attribute = attribute;
+            this.code = attribute.code;
+            entries.put(0, initial);
+        }
+
+        SortedMap<Integer, State> run() {
+            findLeaders();
+
+            worklist.add(0);
+            while (!worklist.isEmpty()) {
+                var start = worklist.pollFirst();
+                interpret(start, new State(entries.get(start)));
+            }
+            attribute.maxStack = maxStack;
+
+            var frames = new TreeMap<Integer, State>();
+            targets.stream()
+                .filter(entries::containsKey)
+                .forEach(target -> frames.put(target, entries.get(target)));
+
+            return frames;
+        }
+
+        private void findLeaders() {
+            leaders.set(0);
+            for (var entry : attribute.exceptionTable) {
+                handlers.set(entry.handlerPc());
+                targets.set(entry.handlerPc());
+                leaders.set(entry.handlerPc());
+            }
+            for (int i = 0; i < code.length; ) {
+                var curr = OpCodes.valueOf(code[i]);
+                var next = i + length(curr);
+
+                if (JUMP_OP_CODES.contains(curr)) {
+                    var target = i + jumpOffset(i);
+                    targets.set(target);
+                    leaders.set(target);
+                }
+                if (JUMP_OP_CODES.contains(curr) || isReturn(curr) || OpCodes.ATHROW == curr) {
+                    leaders.set(next);
+                }
+
+                i = next;
+            }
+        }
+
+        private void interpret(int i, State state) {
+            while (i < code.length) {
+                var curr = OpCodes.valueOf(code[i]);
+                flowToHandlers(i, state);
+                execute(curr, i, state);
+                flowToHandlers(i, state);
+
+                //промежуточные значения внутри инструкции не превышают глубину после предыдущих push'ей
+                maxStack = Math.max(maxStack, state.depth());
+
+                if (JUMP_OP_CODES.contains(curr)) {
+                    flow(i + jumpOffset(i), state);
+                }
+                if (OpCodes.GOTO == curr || OpCodes.ATHROW == curr) {
+                    return;
+                }
+
+                //после return код проверяется с теми же локальными переменными и пустым стеком,
+                //в обработчик исключения так не попадают
+                i += length(curr);
+                if (leaders.get(i)) {
+                    if (!handlers.get(i) || !isReturn(curr)) {
+                        flow(i, state);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void flow(int target, State state) {
+            var entry = entries.get(target);
+            if (entry == null) {
+                entries.put(target, new State(state));
+                worklist.add(target);
+            } else if (entry.merge(state)) {
+                worklist.add(target);
+            }
+        }
+
+        //обработчик видит локальные переменные любой точки защищенного диапазона и исключение на стеке
+        private void flowToHandlers(int i, State state) {
+            for (var entry : attribute.exceptionTable) {
+                if (i >= entry.startPc() && i < entry.endPc()) {
+                    var handler = new State(state);
+                    handler.stack.clear();
+                    handler.push("java/lang/Throwable");
+                    flow(entry.handlerPc(), handler);
+                }
+            }
         }
 
-        while (i < code.length) {
-            var curr = OpCodes.valueOf(code[i]);
+        private void execute(OpCodes curr, int i, State state) {
+            var constantPool = unit.constantPool;
 
             switch (curr) {
-                case ALOAD_0 -> snapshot.push(snapshot.get((byte) 0));
+                case ALOAD_0 -> state.push(state.get(0));
                 //TODO: not necessary string, better propagate IR to here
-                case ACONST_NULL -> snapshot.push("java/lang/String");
-                case ICONST_0, ICONST_1, BIPUSH, SIPUSH -> snapshot.push("int");
-                case LCONST_0 -> snapshot.push("long");
-                case RETURN, IRETURN, ARETURN, LRETURN -> snapshot.stack.clear();
+                case ACONST_NULL -> state.push("java/lang/String");
+                case ICONST_0, ICONST_1, BIPUSH, SIPUSH -> state.push("int");
+                case LCONST_0 -> state.push("long");
+                case RETURN, IRETURN, ARETURN, LRETURN -> state.stack.clear();
                 case DUP -> {
-                    var top = snapshot.pop();
-                    snapshot.push(top);
-                    snapshot.push(top);
+                    var top = state.pop();
+                    state.push(top);
+                    state.push(top);
                 }
                 case NEW -> {
-                    var index = ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                    var klass = (Klass) constantPool.load(index);
+                    var klass = (Klass) constantPool.load(u2(i + 1));
                     var name = (Utf8) constantPool.load(klass.nameIndex);
 
-                    snapshot.push(new String(name.bytes));
+                    state.push(new String(name.bytes));
                 }
-                case GETSTATIC -> {
-                    var index = ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                    snapshot.push(load(constantPool, index).type);
+                case NEWARRAY -> {
+                    state.pop(); //length
+                    state.push(switch (code[i + 1]) {
+                        case OpCodes.T_BOOLEAN -> "[Z";
+                        case OpCodes.T_INT -> "[I";
+                        case OpCodes.T_LONG -> "[J";
+                        default -> throw new IllegalStateException("unexpected array type: " + code[i + 1]);
+                    });
                 }
+                case GETSTATIC -> state.push(load(u2(i + 1)).type);
                 case GETFIELD -> {
-                    snapshot.pop(); //receiver
-                    var index = ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                    snapshot.push(load(constantPool, index).type);
+                    state.pop(); //receiver
+                    state.push(load(u2(i + 1)).type);
                 }
                 case PUTFIELD -> {
-                    snapshot.pop(); //receiver
-                    snapshot.pop(); //value
+                    state.pop(); //receiver
+                    state.pop(); //value
                 }
                 case INVOKEVIRTUAL -> {
-                    var index = ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                    var type = (CallableJavaType) load(constantPool, index);
+                    var type = (CallableJavaType) load(u2(i + 1));
 
-                    snapshot.pop(); //receiver
+                    state.pop(); //receiver
                     for (int arg = 0; arg < type.arguments.size(); arg++) {
-                        snapshot.pop();
+                        state.pop();
                     }
 
                     if (!type.type.equals("void")) {
-                        snapshot.push(type.type);
+                        state.push(type.type);
                     }
                 }
                 case INVOKESTATIC -> {
-                    var index = ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                    var type = (CallableJavaType) load(constantPool, index);
+                    var type = (CallableJavaType) load(u2(i + 1));
 
                     for (int arg = 0; arg < type.arguments.size(); arg++) {
-                        snapshot.pop();
+                        state.pop();
                     }
 
                     if (!type.type.equals("void")) {
-                        snapshot.push(type.type);
+                        state.push(type.type);
                     }
                 }
-                case INVOKESPECIAL -> snapshot.pop();
-                case LDC -> snapshot.push(load(constantPool, code[i + 1]).type);
-                case LDC_W, LDC_W2 -> {
-                    var index = ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                    var type = load(constantPool, index).type;
+                case INVOKEDYNAMIC -> {
+                    var type = (CallableJavaType) load(u2(i + 1));
 
-                    snapshot.push(type);
+                    for (int arg = 0; arg < type.arguments.size(); arg++) {
+                        state.pop();
+                    }
+                    state.push(type.type);
                 }
-                case IFEQ, IFNE, POP -> snapshot.pop();
+                case INVOKESPECIAL -> {
+                    var type = (CallableJavaType) load(u2(i + 1));
+
+                    state.pop(); //receiver
+                    for (int arg = 0; arg < type.arguments.size(); arg++) {
+                        state.pop();
+                    }
+                }
+                case LDC -> state.push(load(code[i + 1] & 0xFF).type);
+                case LDC_W, LDC_W2 -> state.push(load(u2(i + 1)).type);
+                case IFEQ, IFNE, POP, ATHROW -> state.pop();
                 case GOTO -> { /* do nothing */ }
                 case INEG -> {
-                    snapshot.pop();
-                    snapshot.push("int");
+                    state.pop();
+                    state.push("int");
                 }
                 case LNEG -> {
-                    snapshot.pop();
-                    snapshot.push("long");
+                    state.pop();
+                    state.push("long");
                 }
                 case IADD, ISUB, IMUL, IDIV -> {
-                    snapshot.pop();
-                    snapshot.pop();
-                    snapshot.push("int");
+                    state.pop();
+                    state.pop();
+                    state.push("int");
                 }
                 case LADD, LSUB, LMUL, LDIV -> {
-                    snapshot.pop();
-                    snapshot.pop();
-                    snapshot.push("long");
+                    state.pop();
+                    state.pop();
+                    state.push("long");
                 }
                 case I2L -> {
-                    snapshot.pop();
-                    snapshot.push("long");
+                    state.pop();
+                    state.push("long");
                 }
                 case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPLE, IF_ICMPGT, IF_ICMPGE -> {
-                    snapshot.pop();
-                    snapshot.pop();
+                    state.pop();
+                    state.pop();
                 }
                 case LCMP -> {
-                    snapshot.pop();
-                    snapshot.pop();
-                    snapshot.push("int");
+                    state.pop();
+                    state.pop();
+                    state.push("int");
                 }
-                case ISTORE, LSTORE, ASTORE -> {
-                    var index = code[i + 1];
-                    snapshot.set(index, snapshot.pop());
+                case ISTORE, LSTORE, ASTORE -> state.set(code[i + 1] & 0xFF, state.pop());
+                case ILOAD, LLOAD, ALOAD -> state.push(state.get(code[i + 1] & 0xFF));
+                case IALOAD, LALOAD, BALOAD, AALOAD -> {
+                    state.pop(); //index
+                    state.push(elementType(state.pop()));
                 }
-                case ILOAD, LLOAD, ALOAD -> {
-                    var index = code[i + 1];
-                    snapshot.push(snapshot.get(index));
+                case IASTORE, LASTORE, BASTORE, AASTORE -> {
+                    state.pop(); //value
+                    state.pop(); //index
+                    state.pop(); //array
                 }
+                case ARRAYLENGTH -> {
+                    state.pop();
+                    state.push("int");
+                }
+                case IINC -> { /* do nothing */ }
                 default -> throw new IllegalStateException("not implemented");
             }
+        }
 
-            if (JUMP_OP_CODES.contains(curr)) {
-                var jump = (short) ((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF);
-                dfs(code, i + jump, constantPool, new Snapshot(snapshot), snapshots);
+        private int u2(int i) {
+            return ((code[i] & 0xFF) << 8) | (code[i + 1] & 0xFF);
+        }
+
+        private int jumpOffset(int i) {
+            return (short) u2(i + 1);
+        }
+    }
+
+    private static boolean isReturn(OpCodes opcode) {
+        return switch (opcode) {
+            case RETURN, IRETURN, ARETURN, LRETURN -> true;
+            default -> false;
+        };
+    }
+
+    private static int length(OpCodes opcode) {
+        return switch (opcode) {
+            case ICONST_0, ICONST_1, LCONST_0 -> 1;
+            case ACONST_NULL, ALOAD_0 -> 1;
+            case RETURN, IRETURN, ARETURN, LRETURN -> 1;
+            case DUP, POP -> 1;
+            case ATHROW -> 1;
+            case NEW -> 3;
+            case NEWARRAY -> 2;
+            case GETSTATIC, GETFIELD, PUTFIELD -> 3;
+            case INVOKEVIRTUAL, INVOKESTATIC, INVOKESPECIAL -> 3;
+            case INVOKEDYNAMIC -> 5;
+            case BIPUSH -> 2;
+            case SIPUSH -> 3;
+            case LDC -> 2;
+            case LDC_W, LDC_W2 -> 3;
+            case I2L -> 1;
+            case IADD, ISUB, IMUL, IDIV -> 1;
+            case LADD, LSUB, LMUL, LDIV -> 1;
+            case INEG, LNEG -> 1;
+            case IFEQ, IFNE -> 3;
+            case GOTO -> 3;
+            case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPLE, IF_ICMPGT, IF_ICMPGE -> 3;
+            case LCMP -> 1;
+            case ILOAD, ISTORE, LLOAD, LSTORE, ALOAD, ASTORE -> 2;
+            case IALOAD, LALOAD, BALOAD, AALOAD -> 1;
+            case IASTORE, LASTORE, BASTORE, AASTORE -> 1;
+            case ARRAYLENGTH -> 1;
+            case IINC -> 3;
+        };
+    }
+
+    //локальные переменные на входе в метод - из дескриптора, как их видит верификатор
+    private State initialState(Method method, CodeAttribute attribute) {
+        var state = new State(attribute.maxLocals);
+
+        int slot = 0;
+        if ((method.flags & Method.AccessFlags.ACC_STATIC.value) == 0) {
+            state.set(slot++, unit.irClass.name);
+        }
+
+        var descriptor = new String(method.descriptor.bytes);
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            var begin = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
             }
 
-            if (OpCodes.GOTO == curr) {
-                return;
+            String type;
+            if (descriptor.charAt(begin) == 'L') {
+                type = descriptor.substring(begin + 1, i);
+            } else if (begin != i) {
+                type = descriptor.substring(begin, i + 1); //дескриптор массива - имя его класса
+            } else {
+                type = switch (descriptor.charAt(i)) {
+                    case 'J' -> "long";
+                    case 'Z' -> "boolean";
+                    default -> "int";
+                };
+            }
+
+            state.set(slot, type);
+            slot += "long".equals(type) ? 2 : 1;
+        }
+
+        return state;
+    }
+
+    //в конструкторе this до вызова super - uninitializedThis, такой фрейм не совпадет ни с одним явным
+    private List<VerificationTypeInfo> initialFrame(Method method, State initial) {
+        var locals = locals(initial);
+        if ("<init>".equals(new String(method.name.bytes)) && !locals.isEmpty()) {
+            locals.set(0, new UninitializedThisVariableInfo());
+        }
+
+        return locals;
+    }
+
+    private void encode(
+        List<VerificationTypeInfo> initial,
+        SortedMap<Integer, State> frames,
+        StackMapAttribute stackMapAttribute
+    ) {
+        var previousLocals = initial;
+        var previousOffset = -1;
+
+        for (var frame : frames.entrySet()) {
+            var offset = frame.getKey();
+            if (offset == 0) {
+                continue; //на начало метода не прыгают, фрейм для него неявный
             }
 
-            i += switch (curr) {
-                case ICONST_0, ICONST_1, LCONST_0 -> 1;
-                case ACONST_NULL, ALOAD_0 -> 1;
-                case RETURN, IRETURN, ARETURN, LRETURN -> 1;
-                case DUP, POP -> 1;
-                case NEW -> 3;
-                case GETSTATIC, GETFIELD, PUTFIELD -> 3;
-                case INVOKEVIRTUAL, INVOKESTATIC, INVOKESPECIAL -> 3;
-                case BIPUSH -> 2;
-                case SIPUSH -> 3;
-                case LDC -> 2;
-                case LDC_W, LDC_W2 -> 3;
-                case I2L -> 1;
-                case IADD, ISUB, IMUL, IDIV -> 1;
-                case LADD, LSUB, LMUL, LDIV -> 1;
-                case INEG, LNEG -> 1;
-                case IFEQ, IFNE -> 3;
-                case GOTO -> throw new IllegalStateException("Безусловный переход");
-                case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPLE, IF_ICMPGT, IF_ICMPGE -> 3;
-                case LCMP -> 1;
-                case ILOAD, ISTORE, LLOAD, LSTORE, ALOAD, ASTORE -> 2;
-            };
+            var offsetDelta = offset - previousOffset - 1;
+            var locals = locals(frame.getValue());
+            var stack = frame.getValue().stack.stream().map(this::verificationType).toList();
+
+            stackMapAttribute.entries.add(
+                compact ? compact(offsetDelta, previousLocals, locals, stack) : full(offsetDelta, locals, stack)
+            );
+
+            previousLocals = locals;
+            previousOffset = offset;
+        }
+    }
+
+    private static StackMapFrame compact(
+        int offsetDelta,
+        List<VerificationTypeInfo> previous,
+        List<VerificationTypeInfo> locals,
+        List<VerificationTypeInfo> stack
+    ) {
+        if (locals.equals(previous) && stack.isEmpty()) {
+            return new SameFrame(offsetDelta);
+        }
+        if (locals.equals(previous) && stack.size() == 1) {
+            return new SameLocals1StackItemFrame(offsetDelta, stack.getFirst());
+        }
+
+        var difference = locals.size() - previous.size();
+        if (stack.isEmpty() && difference < 0 && difference >= -3 && previous.subList(0, locals.size()).equals(locals)) {
+            return new ChopFrame(offsetDelta, -difference);
         }
+        if (stack.isEmpty() && difference > 0 && difference <= 3 && locals.subList(0, previous.size()).equals(previous)) {
+            return new AppendFrame(offsetDelta, List.copyOf(locals.subList(previous.size(), locals.size())));
+        }
+
+        return full(offsetDelta, locals, stack);
+    }
+
+    private static FullStackMapFrame full(
+        int offsetDelta,
+        List<VerificationTypeInfo> locals,
+        List<VerificationTypeInfo> stack
+    ) {
+        var full = new FullStackMapFrame(offsetDelta);
+        full.locals.addAll(locals);
+        full.stack.addAll(stack);
+
+        return full;
+    }
+
+    //long - одна запись на два слота, хвост из top не пишется
+    private List<VerificationTypeInfo> locals(State state) {
+        var end = state.locals.length;
+        while (end > 0 && state.locals[end - 1] == null) {
+            end--;
+        }
+
+        var locals = new ArrayList<VerificationTypeInfo>();
+        for (int i = 0; i < end; i++) {
+            var type = state.locals[i];
+            locals.add(type == null ? TOP : verificationType(type));
+            if ("long".equals(type)) {
+                i++;
+            }
+        }
+
+        return locals;
+    }
+
+    private VerificationTypeInfo verificationType(String type) {
+        return switch (type) {
+            case "int", "boolean" -> INTEGER;
+            case "long" -> LONG;
+            default -> classes.computeIfAbsent(type, __ -> {
+                var klass = unit.constantPool.computeKlass(unit.constantPool.computeUtf8(type));
+                return new ObjectVariableInfo(unit.constantPool.indexOf(klass));
+            });
+        };
+    }
+
+    //массив в состоянии хранится дескриптором: [I, [J, [Z, [Ljava/lang/String;
+    private static String elementType(String array) {
+        return switch (array) {
+            case "[I" -> "int";
+            case "[J" -> "long";
+            case "[Z" -> "boolean";
+            default -> array.substring(2, array.length() - 1);
+        };
     }
 
-    private JavaType load(ConstantPool constantPool, int index) {
-        var constant = constantPool.load(index);
-        var parser = new JavaDescriptorParser(constantPool);
-        return parser.parse(constant);
+    private JavaType load(int index) {
+        return parser.parse(unit.constantPool.load(index));
     }
 }
@@ -16,7 +16,8 @@ public class JavaDescriptorParser {
             case LongInfo ignored -> new JavaType("long");
             case StringInfo ignored -> new JavaType("java/lang/String");
             case FieldRef ref -> parseFieldRef(ref);
-            case MethodRef ref -> parseMethodRef(ref);
+            case MethodRef ref -> parseMethodDescriptor(ref.nameAndTypeIndex);
+            case InvokeDynamicInfo callSite -> parseMethodDescriptor(callSite.nameAndTypeIndex);
             default -> throw new IllegalStateException("Unexpected value: " + constant);
         };
     }
@@ -29,14 +30,17 @@ public class JavaDescriptorParser {
         //TODO: decode descriptor - for int it will be I (not int)
         return switch (typeDescriptor) {
             case "I" -> new JavaType("int");
-            case "L" -> new JavaType("long");
+            case "J" -> new JavaType("long");
             case "Z" -> new JavaType("boolean");
-            default -> new JavaType(typeDescriptor.substring(1, typeDescriptor.length() - 1));
+            //массив остается дескриптором, как и в CodegenPrepareStackMapAttributePhase
+            default -> typeDescriptor.startsWith("[")
+                ? new JavaType(typeDescriptor)
+                : new JavaType(typeDescriptor.substring(1, typeDescriptor.length() - 1));
         };
     }
 
-    private JavaType parseMethodRef(MethodRef methodRef) {
-        var nameAndType = (NameAndType) constantPool.load(methodRef.nameAndTypeIndex);
+    private JavaType parseMethodDescriptor(int nameAndTypeIndex) {
+        var nameAndType = (NameAndType) constantPool.load(nameAndTypeIndex);
         var utf8 = (Utf8) constantPool.load(nameAndType.descriptorIndex);
         var typeDescriptor = new String(utf8.bytes);
 
@@ -55,6 +59,18 @@ public class JavaDescriptorParser {
 
                     i = end;
                 }
+                case '[' -> {
+                    var end = i;
+                    while (typeDescriptor.charAt(end) == '[') {
+                        end++;
+                    }
+                    if (typeDescriptor.charAt(end) == 'L') {
+                        end = typeDescriptor.indexOf(';', end);
+                    }
+                    arguments.add(typeDescriptor.substring(i, end + 1));
+
+                    i = end;
+                }
                 case ')' -> { /* do nothing */ }
             }
             i++;
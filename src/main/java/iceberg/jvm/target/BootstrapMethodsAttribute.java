@@ -0,0 +1,41 @@
+package iceberg.jvm.target;
+
+import iceberg.jvm.cp.Utf8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Атрибут класса со списком bootstrap-методов для {@code invokedynamic} (JVMS 4.7.23).
+ * Одинаковые bootstrap-методы с одинаковыми аргументами хранятся один раз.
+ */
+public class BootstrapMethodsAttribute implements Attribute {
+
+    public final Utf8 attributeName;
+    public final List<BootstrapMethod> methods = new ArrayList<>();
+
+    public BootstrapMethodsAttribute(Utf8 attributeName) {
+        this.attributeName = attributeName;
+    }
+
+    /**
+     * @return индекс bootstrap-метода, на него ссылается {@code CONSTANT_InvokeDynamic_info}
+     */
+    public int computeBootstrapMethod(int methodHandleIndex, List<Integer> argumentIndexes) {
+        var method = new BootstrapMethod(methodHandleIndex, List.copyOf(argumentIndexes));
+
+        var index = methods.indexOf(method);
+        if (index >= 0) {
+            return index;
+        }
+
+        methods.add(method);
+        return methods.size() - 1;
+    }
+
+    /**
+     * Индексы в пуле констант: {@code CONSTANT_MethodHandle_info} и статические аргументы.
+     */
+    public record BootstrapMethod(int methodHandleIndex, List<Integer> argumentIndexes) {
+    }
+}
@@ -15,6 +15,6 @@ public class CodeAttribute implements Attribute {
     public IrFunction function;
     public byte[] code;
 
-    public List<Object> exceptionTable = List.of();
+    public List<ExceptionTableEntry> exceptionTable = new ArrayList<>();
     public List<StackMapAttribute> attributes = new ArrayList<>();
 }
\ No newline at end of file
@@ -17,7 +17,7 @@ public class CompilationUnit {
     public List<Object> interfaces = new ArrayList<>();
     public List<Field> fields = new ArrayList<>();
     public List<Method> methods = new ArrayList<>();
-    public List<SourceAttribute> attributes = new ArrayList<>();
+    public List<Attribute> attributes = new ArrayList<>();
 
     public IrClass irClass;
 
@@ -0,0 +1,7 @@
+package iceberg.jvm.target;
+
+/**
+ * Обработчик исключений для байткода {@code [startPc, endPc)}, {@code catchType == 0} - любое исключение.
+ */
+public record ExceptionTableEntry(int startPc, int endPc, int handlerPc, int catchType) {
+}
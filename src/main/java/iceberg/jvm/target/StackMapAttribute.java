@@ -8,16 +8,71 @@ import java.util.List;
 public class StackMapAttribute implements Attribute {
 
     public final Utf8 attributeName;
-    public final List<FullStackMapFrame> entries;
+    public final List<StackMapFrame> entries;
 
     public StackMapAttribute(Utf8 attributeName) {
         this.attributeName = attributeName;
         this.entries = new ArrayList<>();
     }
 
-    public static class FullStackMapFrame {
+    /**
+     * Фрейм задается относительно предыдущего (для первого - относительно фрейма из дескриптора метода),
+     * компактные виды кодируют только разницу. Смещение {@code offsetDelta} - как в JVMS 4.7.4.
+     */
+    public sealed interface StackMapFrame {
+
+        int frameType();
+
+        int offsetDelta();
+    }
+
+    /**
+     * Те же локальные переменные, пустой стек: {@code same_frame} или {@code same_frame_extended}.
+     */
+    public record SameFrame(int offsetDelta) implements StackMapFrame {
+
+        @Override
+        public int frameType() {
+            return offsetDelta < 64 ? offsetDelta : 251;
+        }
+    }
+
+    /**
+     * Те же локальные переменные, одно значение на стеке:
+     * {@code same_locals_1_stack_item_frame} или {@code same_locals_1_stack_item_frame_extended}.
+     */
+    public record SameLocals1StackItemFrame(int offsetDelta, VerificationTypeInfo stack) implements StackMapFrame {
+
+        @Override
+        public int frameType() {
+            return offsetDelta < 64 ? 64 + offsetDelta : 247;
+        }
+    }
+
+    /**
+     * Последние {@code k} (1..3) локальных переменных удалены, стек пуст.
+     */
+    public record ChopFrame(int offsetDelta, int k) implements StackMapFrame {
+
+        @Override
+        public int frameType() {
+            return 251 - k;
+        }
+    }
+
+    /**
+     * Добавлены 1..3 локальные переменные, стек пуст.
+     */
+    public record AppendFrame(int offsetDelta, List<VerificationTypeInfo> locals) implements StackMapFrame {
+
+        @Override
+        public int frameType() {
+            return 251 + locals.size();
+        }
+    }
+
+    public static final class FullStackMapFrame implements StackMapFrame {
 
-        public final int frameType = 255;
         public final int offsetDelta;
         public final List<VerificationTypeInfo> locals = new ArrayList<>();
         public final List<VerificationTypeInfo> stack = new ArrayList<>();
@@ -25,14 +80,32 @@ public class StackMapAttribute implements Attribute {
         public FullStackMapFrame(int offsetDelta) {
             this.offsetDelta = offsetDelta;
         }
+
+        @Override
+        public int frameType() {
+            return 255;
+        }
+
+        @Override
+        public int offsetDelta() {
+            return offsetDelta;
+        }
+    }
+
+    public sealed interface VerificationTypeInfo {
+
+        int tag();
     }
 
-    public static abstract class VerificationTypeInfo {
+    public record TopVariableInfo() implements VerificationTypeInfo {
 
-        public abstract int tag();
+        @Override
+        public int tag() {
+            return 0;
+        }
     }
 
-    public static class IntegerVariableInfo extends VerificationTypeInfo {
+    public record IntegerVariableInfo() implements VerificationTypeInfo {
 
         @Override
         public int tag() {
@@ -40,7 +113,7 @@ public class StackMapAttribute implements Attribute {
         }
     }
 
-    public static class LongVariableInfo extends VerificationTypeInfo {
+    public record LongVariableInfo() implements VerificationTypeInfo {
 
         @Override
         public int tag() {
@@ -48,13 +121,15 @@ public class StackMapAttribute implements Attribute {
         }
     }
 
-    public static class ObjectVariableInfo extends VerificationTypeInfo {
+    public record UninitializedThisVariableInfo() implements VerificationTypeInfo {
 
-        public final int cpoolIndex;
-
-        public ObjectVariableInfo(int cpoolIndex) {
-            this.cpoolIndex = cpoolIndex;
+        @Override
+        public int tag() {
+            return 6;
         }
+    }
+
+    public record ObjectVariableInfo(int cpoolIndex) implements VerificationTypeInfo {
 
         @Override
         public int tag() {
@@ -8,8 +8,9 @@ public class BasicBlock {
 
     public final String label;
     public final List<TAC> tac = new ArrayList<>();
-    public final Set<BasicBlock> next = new HashSet<>();
-    public final Set<BasicBlock> prev = new HashSet<>();
+    //порядок ребер детерминирован, чтобы от него не зависел вывод
+    public final Set<BasicBlock> next = new LinkedHashSet<>();
+    public final Set<BasicBlock> prev = new LinkedHashSet<>();
 
     public BasicBlock(String label) {
         this.label = label;
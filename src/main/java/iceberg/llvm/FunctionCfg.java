@@ -2,6 +2,7 @@ package iceberg.llvm;
 
 import iceberg.ir.IrFunction;
 import iceberg.llvm.tac.TAC;
+import iceberg.llvm.tac.TacVariable;
 
 import java.util.List;
 import java.util.SortedMap;
@@ -9,6 +10,7 @@ import java.util.SortedMap;
 public class FunctionCfg {
 
     public final IrFunction irFunction;
+    public final List<TacVariable> parameters;
     public final List<TAC> tac;
     public final SortedMap<Integer, BasicBlock> bbs;
 
@@ -17,6 +19,7 @@ public class FunctionCfg {
         SortedMap<Integer, BasicBlock> bbs
     ) {
         this.irFunction = functionTac.irFunction;
+        this.parameters = functionTac.parameters;
         this.tac = functionTac.tac;
         this.bbs = bbs;
     }
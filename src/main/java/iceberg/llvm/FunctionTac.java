@@ -2,13 +2,16 @@ package iceberg.llvm;
 
 import iceberg.ir.IrFunction;
 import iceberg.llvm.tac.TAC;
+import iceberg.llvm.tac.TacVariable;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 public class FunctionTac {
 
     public final IrFunction irFunction;
+    public final List<TacVariable> parameters = new ArrayList<>();
     public final List<TAC> tac = new LinkedList<>();
 
     public FunctionTac(IrFunction irFunction) {
@@ -1,52 +1,147 @@
 package iceberg.llvm;
 
+import iceberg.Trace;
 import iceberg.common.phases.BuildIrTreePhase;
 import iceberg.common.phases.DetectInvalidSyntaxPhase;
 import iceberg.common.phases.IrVerificationPhase;
 import iceberg.common.phases.ParseSourcePhase;
-import iceberg.llvm.opt.cp.ConstantPropagation;
+import iceberg.ir.IrFunction;
+import iceberg.llvm.opt.PassManager;
 import iceberg.llvm.phases.BuildCfgPhase;
 import iceberg.llvm.phases.BuildTacPhase;
 import iceberg.llvm.phases.CodeGenerationPhase;
+import iceberg.llvm.tac.TAC;
 import lombok.SneakyThrows;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardOpenOption.*;
 
 public class LlvmCompiler {
 
-    @SneakyThrows
+    private static final int WINDOW = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param optimizationLevel      конвейер проходов {@link PassManager}, {@code -O0..-O3}
+     * @param clangOptimizationLevel уровень, с которым вызывается clang, {@code -clang-O0..-clang-O3};
+     *                               от конвейера не зависит, циклы оптимизируются и при {@code -clang-O0}
+     * @param stdin                  передавать модуль clang'у через stdin, без промежуточного .ll файла
+     * @param passReport             куда записать JSON-отчет по проходам, null - не записывать
+     */
+    public record Options(int optimizationLevel, int clangOptimizationLevel, boolean stdin, @Nullable Path passReport) {
+
+        public static final Options DEFAULT = new Options(2, false);
+
+        public Options {
+            if (optimizationLevel < 0 || optimizationLevel > 3) {
+                throw new IllegalArgumentException("unsupported optimization level: -O" + optimizationLevel);
+            }
+            if (clangOptimizationLevel < 0 || clangOptimizationLevel > 3) {
+                throw new IllegalArgumentException("unsupported clang optimization level: -clang-O" + clangOptimizationLevel);
+            }
+        }
+
+        /**
+         * Один уровень и для конвейера, и для clang.
+         */
+        public Options(int optimizationLevel, boolean stdin) {
+            this(optimizationLevel, optimizationLevel, stdin, null);
+        }
+
+        /**
+         * Разбирает опции командной строки {@code -llvm}: {@code -O0..-O3}, {@code -clang-O0..-clang-O3},
+         * {@code -stdin} и {@code -pass-report=<file>}.
+         */
+        public static Options parse(List<String> arguments) {
+            var options = DEFAULT;
+            for (var argument : arguments) {
+                if (argument.matches("-O\\d")) {
+                    var level = argument.charAt(2) - '0';
+                    options = new Options(level, options.clangOptimizationLevel(), options.stdin(), options.passReport());
+                } else if (argument.matches("-clang-O\\d")) {
+                    var level = argument.charAt("-clang-O".length()) - '0';
+                    options = new Options(options.optimizationLevel(), level, options.stdin(), options.passReport());
+                } else if ("-stdin".equals(argument)) {
+                    options = new Options(
+                        options.optimizationLevel(), options.clangOptimizationLevel(), true, options.passReport()
+                    );
+                } else if (argument.startsWith("-pass-report=")) {
+                    var report = Path.of(argument.substring("-pass-report=".length()));
+                    options = new Options(
+                        options.optimizationLevel(), options.clangOptimizationLevel(), options.stdin(), report
+                    );
+                } else {
+                    throw new IllegalArgumentException("unknown llvm option: " + argument);
+                }
+            }
+
+            return options;
+        }
+    }
+
     public static Path compile(Path sourcePath, String source) {
-        var output = compile(source);
-        System.out.println(output);
+        return compile(sourcePath, source, Options.DEFAULT);
+    }
 
+    @SneakyThrows
+    public static Path compile(Path sourcePath, String source, Options options) {
+        var passManager = PassManager.forLevel(options.optimizationLevel());
+
+        var directory = sourcePath.toAbsolutePath().getParent();
         var sourceName = sourcePath.getFileName().toString().split("\\.ib")[0];
+        var objectPath = directory.resolve(sourceName);
+
+        var command = new ArrayList<String>();
+        command.add("clang");
+        command.add("-O" + options.clangOptimizationLevel());
+
+        if (options.stdin()) {
+            command.addAll(List.of("-x", "ir", "-"));
+        } else {
+            var llPath = directory.resolve(sourceName + ".ll");
+            try (var writer = Files.newBufferedWriter(llPath, UTF_8, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                compile(source, ForkJoinPool.commonPool(), writer, passManager);
+            }
+            command.add(llPath.toString());
+        }
 
-        var llName = sourceName + ".ll";
-        var llPath = Paths.get(
-            sourcePath.toAbsolutePath().getParent().toString(), llName
-        );
+        command.addAll(List.of("-o", objectPath.toString()));
+        command.addAll(linkOptions());
 
-        Files.writeString(llPath, output, CREATE, TRUNCATE_EXISTING, WRITE);
+        var process = new ProcessBuilder(command).start();
 
-        var objectPath = Paths.get(
-            sourcePath.toAbsolutePath().getParent().toString(), sourceName
-        );
+        //вывод clang'а читаем параллельно с записью модуля, чтобы не упереться в буфер пайпа
+        var out = drain(process.getInputStream());
+        var err = drain(process.getErrorStream());
 
-        //TODO: make platform independent
-        var process = Runtime.getRuntime().exec(
-            "clang %s -o %s -L/Library/Developer/CommandLineTools/SDKs/MacOSX.sdk/usr/lib -lc"
-                .formatted(llPath, objectPath)
-        );
+        try (var stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), UTF_8))) {
+            if (options.stdin()) {
+                compile(source, ForkJoinPool.commonPool(), stdin, passManager);
+            }
+        } catch (Throwable e) {
+            process.destroy();
+            throw e;
+        }
 
-        int exitCode = process.waitFor();
-        var out = new String(process.getInputStream().readAllBytes());
-        var err = new String(process.getErrorStream().readAllBytes());
+        int exitCode = passManager.measure("clang", () -> waitFor(process));
+
+        if (options.passReport() != null) {
+            Files.writeString(options.passReport(), passManager.report());
+        }
 
-        if (err.isBlank() && out.isBlank() && exitCode == 0) {
+        if (err.join().isBlank() && out.join().isBlank() && exitCode == 0) {
             return objectPath;
         } else {
             throw new IllegalStateException("""
@@ -54,26 +149,156 @@ public class LlvmCompiler {
                 ### exitCode: %d
                 ### out: %s
                 ### err: %s
-                """.formatted(exitCode, out, err)
+                """.formatted(exitCode, out.join(), err.join())
             );
         }
     }
 
-    private static String compile(String source) {
-        var astFile = new ParseSourcePhase().execute(source);
-        new DetectInvalidSyntaxPhase().execute(astFile);
+    //на Linux clang сам находит libc, на macOS libc лежит в SDK, путь к которому знает xcrun
+    private static List<String> linkOptions() {
+        if (!"Mac OS X".equals(System.getProperty("os.name"))) {
+            return List.of();
+        }
+
+        try {
+            var xcrun = new ProcessBuilder("xcrun", "--show-sdk-path").start();
+            var sdk = readAll(xcrun.getInputStream()).strip();
+            if (xcrun.waitFor() == 0 && !sdk.isEmpty()) {
+                return List.of("-L" + sdk + "/usr/lib", "-lc");
+            }
+        } catch (IOException | InterruptedException ignored) {
+            //без xcrun полагаемся на настройки clang по умолчанию
+        }
+
+        return List.of("-L/Library/Developer/CommandLineTools/SDKs/MacOSX.sdk/usr/lib", "-lc");
+    }
+
+    @SneakyThrows
+    private static int waitFor(Process process) {
+        return process.waitFor();
+    }
+
+    //отдельный поток, а не пул: чтение блокируется до завершения clang'а
+    private static CompletableFuture<String> drain(InputStream stream) {
+        var result = new CompletableFuture<String>();
+        Thread.startVirtualThread(() -> {
+            try {
+                result.complete(readAll(stream));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result;
+    }
+
+    @SneakyThrows
+    private static String readAll(InputStream stream) {
+        return new String(stream.readAllBytes(), UTF_8);
+    }
+
+    public static String compile(String source, Executor executor) {
+        var output = new StringWriter();
+        compile(source, executor, output);
+
+        return output.toString();
+    }
+
+    public static void compile(String source, Executor executor, Writer output) {
+        compile(source, executor, output, PassManager.forLevel(Options.DEFAULT.optimizationLevel()));
+    }
+
+    /**
+     * Middle-end (TAC, CFG, проходы {@code passManager}) выполняется для каждой функции независимо на {@code executor},
+     * функции пишутся в {@code output} в порядке исходника сразу по готовности. Одновременно в работе
+     * не больше {@link #WINDOW} функций, поэтому память ограничена самыми большими функциями, а не модулем.
+     */
+    @SneakyThrows
+    public static void compile(String source, Executor executor, Writer output, PassManager passManager) {
+        var astFile = passManager.measure("parse", () -> new ParseSourcePhase().execute(source));
+        passManager.measure("syntax", () -> new DetectInvalidSyntaxPhase().execute(astFile));
 
-        var irFile = new BuildIrTreePhase().execute(astFile);
-        new IrVerificationPhase().execute(irFile);
+        var irFile = passManager.measure("ir", () -> new BuildIrTreePhase().execute(astFile));
+        passManager.measure("ir-verification", () -> new IrVerificationPhase().execute(irFile));
 
-        var allTac = new BuildTacPhase(irFile).execute();
-        var allCfg = allTac.stream()
-            .map(tacFunction -> new BuildCfgPhase(tacFunction).execute())
+        var functions = irFile.classes.stream()
+            .flatMap(irClass -> irClass.methods.stream())
             .toList();
 
-        //optimizations
-        allCfg.forEach(functionCfg -> new ConstantPropagation(functionCfg).execute());
+        //для трассировки модуль собирается целиком, без трассировки пишется в output по мере готовности
+        var module = Trace.enabled(Trace.Channel.LLVM_IR) ? new StringWriter() : null;
+        var codegen = new CodeGenerationPhase(functions, module != null ? module : output);
+        codegen.header();
+
+        var tasks = new ArrayDeque<CompletableFuture<FunctionCfg>>();
+        var pending = functions.iterator();
+        while (pending.hasNext() || !tasks.isEmpty()) {
+            while (pending.hasNext() && tasks.size() < WINDOW) {
+                var irFunction = pending.next();
+                tasks.add(CompletableFuture.supplyAsync(() -> middleEnd(irFunction, passManager), executor));
+            }
+
+            FunctionCfg functionCfg;
+            try {
+                functionCfg = tasks.poll().join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+
+            passManager.measure("codegen", () -> codegen.function(functionCfg));
+        }
+
+        codegen.footer();
+
+        if (module != null) {
+            output.write(module.toString());
+            Trace.print(Trace.Channel.LLVM_IR, "module", module.toString());
+        }
+    }
+
+    private static FunctionCfg middleEnd(IrFunction irFunction, PassManager passManager) {
+        var functionTac = passManager.measure("tac", () -> new BuildTacPhase(irFunction).execute());
+        if (Trace.enabled(Trace.Channel.TAC)) {
+            Trace.print(Trace.Channel.TAC, qualifiedName(irFunction), tac(functionTac.tac));
+        }
+
+        var functionCfg = passManager.measure("cfg", () -> new BuildCfgPhase(functionTac).execute());
+        if (Trace.enabled(Trace.Channel.CFG)) {
+            Trace.print(Trace.Channel.CFG, qualifiedName(irFunction), cfg(functionCfg));
+        }
+
+        passManager.run(functionCfg);
+
+        return functionCfg;
+    }
+
+    public static String qualifiedName(IrFunction irFunction) {
+        return irFunction.irClass.name + "." + irFunction.name;
+    }
+
+    private static String tac(List<TAC> tac) {
+        var text = new StringBuilder();
+        for (int i = 0; i < tac.size(); i++) {
+            text.append(i).append(' ').append(tac.get(i)).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    private static String cfg(FunctionCfg functionCfg) {
+        var text = new StringBuilder();
+        for (var bb : functionCfg.bbs.values()) {
+            text.append(bb.label)
+                .append(": prev ").append(labels(bb.prev))
+                .append(" next ").append(labels(bb.next))
+                .append('\n');
+            bb.tac.forEach(tac -> text.append("    ").append(tac).append('\n'));
+        }
+
+        return text.toString();
+    }
 
-        return new CodeGenerationPhase(allCfg).execute();
+    private static List<String> labels(Collection<BasicBlock> bbs) {
+        return bbs.stream().map(bb -> bb.label).toList();
     }
 }
@@ -0,0 +1,33 @@
+package iceberg.llvm.opt;
+
+import iceberg.llvm.FunctionCfg;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Элемент конвейера {@link PassManager}: один проход над CFG функции или группа проходов,
+ * которая повторяется, пока хоть один из них меняет функцию.
+ */
+public sealed interface FunctionPass {
+
+    String name();
+
+    /**
+     * @param pass возвращает true, если функция изменилась
+     */
+    record Single(String name, Predicate<FunctionCfg> pass) implements FunctionPass {
+    }
+
+    record Fixpoint(String name, List<FunctionPass> passes, int maxIterations) implements FunctionPass {
+    }
+
+    static FunctionPass of(String name, Predicate<FunctionCfg> pass) {
+        return new Single(name, pass);
+    }
+
+    //ограничение на число итераций страхует от проходов, которые меняют функцию по кругу
+    static FunctionPass fixpoint(String name, FunctionPass... passes) {
+        return new Fixpoint(name, List.of(passes), 16);
+    }
+}
@@ -0,0 +1,225 @@
+package iceberg.llvm.opt;
+
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.cfg.BlockMerging;
+import iceberg.llvm.opt.cfg.JumpThreading;
+import iceberg.llvm.opt.cfg.UnreachableBlockElimination;
+import iceberg.llvm.opt.cp.ConstantPropagation;
+import iceberg.llvm.opt.dce.DeadCodeElimination;
+import iceberg.llvm.opt.loop.LoopAnalysis;
+import iceberg.llvm.opt.loop.LoopInvariantCodeMotion;
+import iceberg.llvm.opt.loop.StrengthReduction;
+import iceberg.llvm.opt.ssa.SsaConstruction;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Запускает конвейер проходов над каждой функцией и собирает по ним статистику:
+ * число запусков и изменений, время, выделенную память, число TAC и блоков до и после.
+ * Тем же способом замеряются фазы вне конвейера ({@link #measure}), статистика отдается в JSON ({@link #report}).
+ * <p>
+ * Конвейеры по уровням:
+ * <ul>
+ *     <li>{@code -O0} - только mem2reg</li>
+ *     <li>{@code -O1} - SCCP, DCE и упрощение CFG до неподвижной точки</li>
+ *     <li>{@code -O2} - то же и циклы: LICM, strength reduction, затем DCE</li>
+ *     <li>{@code -O3} - скалярные оптимизации до неподвижной точки до и после циклов</li>
+ * </ul>
+ * Один экземпляр обслуживает все функции модуля, в том числе из разных потоков.
+ */
+public class PassManager {
+
+    public static final FunctionPass SSA = FunctionPass.of("ssa", functionCfg -> new SsaConstruction(functionCfg).execute());
+    public static final FunctionPass CP = FunctionPass.of("sccp", functionCfg -> new ConstantPropagation(functionCfg).execute());
+    public static final FunctionPass DCE = FunctionPass.of("dce", functionCfg -> new DeadCodeElimination(functionCfg).execute());
+    public static final FunctionPass SIMPLIFY_CFG = FunctionPass.fixpoint(
+        "simplify-cfg",
+        FunctionPass.of("unreachable-blocks", functionCfg -> new UnreachableBlockElimination(functionCfg).execute()),
+        FunctionPass.of("jump-threading", functionCfg -> new JumpThreading(functionCfg).execute()),
+        FunctionPass.of("block-merging", functionCfg -> new BlockMerging(functionCfg).execute())
+    );
+    public static final FunctionPass LICM = FunctionPass.of("licm", functionCfg ->
+        new LoopInvariantCodeMotion(functionCfg, new LoopAnalysis(functionCfg).execute()).execute()
+    );
+    public static final FunctionPass STRENGTH_REDUCTION = FunctionPass.of("strength-reduction", functionCfg ->
+        new StrengthReduction(functionCfg, new LoopAnalysis(functionCfg).execute()).execute()
+    );
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    public final int level;
+    private final List<FunctionPass> pipeline;
+
+    //порядок в отчете - порядок первого замера, проходы конвейера регистрируются заранее
+    private final Map<String, PassStatistics> statistics = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Set<String> passNames = new HashSet<>();
+
+    public PassManager(int level, List<FunctionPass> pipeline) {
+        this.level = level;
+        this.pipeline = pipeline;
+        pipeline.forEach(this::register);
+    }
+
+    public static PassManager forLevel(int level) {
+        var scalar = List.of(CP, DCE, SIMPLIFY_CFG);
+        var loops = List.of(LICM, STRENGTH_REDUCTION, DCE);
+
+        var pipeline = new ArrayList<FunctionPass>();
+        pipeline.add(SSA);
+        switch (level) {
+            case 0 -> {
+            }
+            case 1 -> pipeline.addAll(scalar);
+            case 2 -> {
+                pipeline.addAll(scalar);
+                pipeline.addAll(loops);
+            }
+            case 3 -> {
+                var fixpoint = FunctionPass.fixpoint("scalar", scalar.toArray(FunctionPass[]::new));
+                pipeline.add(fixpoint);
+                pipeline.addAll(loops);
+                pipeline.add(fixpoint);
+            }
+            default -> throw new IllegalArgumentException("unsupported optimization level: -O" + level);
+        }
+
+        return new PassManager(level, pipeline);
+    }
+
+    public void run(FunctionCfg functionCfg) {
+        for (var pass : pipeline) {
+            run(pass, functionCfg);
+        }
+    }
+
+    public <T> T measure(String name, Supplier<T> phase) {
+        var stats = statistics(name);
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+
+        var result = phase.get();
+
+        stats.nanos.add(System.nanoTime() - start);
+        stats.allocatedBytes.add(allocated < 0 ? 0 : allocatedBytes() - allocated);
+        stats.runs.increment();
+
+        return result;
+    }
+
+    public void measure(String name, Runnable phase) {
+        measure(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    public List<PassStatistics> statistics() {
+        synchronized (statistics) {
+            return List.copyOf(statistics.values());
+        }
+    }
+
+    /**
+     * Отчет в JSON: фазы вне конвейера и проходы. Время группы включает время ее проходов.
+     */
+    public String report() {
+        var phases = new ArrayList<String>();
+        var passes = new ArrayList<String>();
+        for (var stats : statistics()) {
+            var common = String.format(
+                Locale.ROOT, "\"name\": \"%s\", \"runs\": %d, \"timeMs\": %.3f, \"allocatedBytes\": %d",
+                stats.name, stats.runs(), stats.nanos() / 1e6, stats.allocatedBytes()
+            );
+
+            if (passNames.contains(stats.name)) {
+                passes.add("    {%s, \"changed\": %d, \"tac\": {\"before\": %d, \"after\": %d}, \"blocks\": {\"before\": %d, \"after\": %d}}".formatted(
+                    common, stats.changed(), stats.tacBefore(), stats.tacAfter(), stats.blocksBefore(), stats.blocksAfter()
+                ));
+            } else {
+                phases.add("    {" + common + "}");
+            }
+        }
+
+        return """
+            {
+              "level": %d,
+              "phases": [
+            %s
+              ],
+              "passes": [
+            %s
+              ]
+            }
+            """.formatted(level, String.join(",\n", phases), String.join(",\n", passes));
+    }
+
+    private boolean run(FunctionPass pass, FunctionCfg functionCfg) {
+        var stats = statistics(pass.name());
+        long tac = tac(functionCfg);
+        long blocks = functionCfg.bbs.size();
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+
+        var changed = switch (pass) {
+            case FunctionPass.Single single -> single.pass().test(functionCfg);
+            case FunctionPass.Fixpoint fixpoint -> {
+                var any = false;
+                for (int i = 0; i < fixpoint.maxIterations(); i++) {
+                    var iteration = false;
+                    for (var inner : fixpoint.passes()) {
+                        iteration |= run(inner, functionCfg);
+                    }
+                    if (!iteration) {
+                        break;
+                    }
+                    any = true;
+                }
+                yield any;
+            }
+        };
+
+        stats.nanos.add(System.nanoTime() - start);
+        stats.allocatedBytes.add(allocated < 0 ? 0 : allocatedBytes() - allocated);
+        stats.runs.increment();
+        if (changed) {
+            stats.changed.increment();
+        }
+        stats.tacBefore.add(tac);
+        stats.tacAfter.add(tac(functionCfg));
+        stats.blocksBefore.add(blocks);
+        stats.blocksAfter.add(functionCfg.bbs.size());
+
+        return changed;
+    }
+
+    private void register(FunctionPass pass) {
+        passNames.add(pass.name());
+        statistics(pass.name());
+        if (pass instanceof FunctionPass.Fixpoint fixpoint) {
+            fixpoint.passes().forEach(this::register);
+        }
+    }
+
+    private PassStatistics statistics(String name) {
+        return statistics.computeIfAbsent(name, PassStatistics::new);
+    }
+
+    private static long tac(FunctionCfg functionCfg) {
+        return functionCfg.bbs.values().stream().mapToLong(bb -> bb.tac.size()).sum();
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported()) {
+            return threads;
+        }
+
+        return null;
+    }
+}
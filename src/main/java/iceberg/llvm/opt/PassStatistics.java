@@ -0,0 +1,60 @@
+package iceberg.llvm.opt;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопленная статистика одного прохода или фазы по всем функциям модуля.
+ * Функции обрабатываются параллельно, поэтому счетчики потокобезопасны.
+ */
+public class PassStatistics {
+
+    public final String name;
+
+    final LongAdder runs = new LongAdder();
+    final LongAdder changed = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder allocatedBytes = new LongAdder();
+    final LongAdder tacBefore = new LongAdder();
+    final LongAdder tacAfter = new LongAdder();
+    final LongAdder blocksBefore = new LongAdder();
+    final LongAdder blocksAfter = new LongAdder();
+
+    PassStatistics(String name) {
+        this.name = name;
+    }
+
+    public long runs() {
+        return runs.sum();
+    }
+
+    public long changed() {
+        return changed.sum();
+    }
+
+    public long nanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * Байты, выделенные потоком во время прохода, или 0, если JVM их не считает.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public long tacBefore() {
+        return tacBefore.sum();
+    }
+
+    public long tacAfter() {
+        return tacAfter.sum();
+    }
+
+    public long blocksBefore() {
+        return blocksBefore.sum();
+    }
+
+    public long blocksAfter() {
+        return blocksAfter.sum();
+    }
+}
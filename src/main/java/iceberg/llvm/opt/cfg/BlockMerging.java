@@ -0,0 +1,77 @@
+package iceberg.llvm.opt.cfg;
+
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.tac.*;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Сливает блок с его единственным преемником, если тот достижим только из него.
+ * phi преемника в этом случае имеют один вход и заменяются его значением во всей функции.
+ */
+public class BlockMerging {
+
+    private final FunctionCfg functionCfg;
+
+    public BlockMerging(FunctionCfg functionCfg) {
+        this.functionCfg = functionCfg;
+    }
+
+    /**
+     * @return true, если CFG изменился
+     */
+    public boolean execute() {
+        var changed = false;
+        var entry = ControlFlow.entry(functionCfg);
+
+        //блок может поглотить цепочку преемников, поэтому сливаем, пока получается
+        for (var bb : List.copyOf(functionCfg.bbs.values())) {
+            while (functionCfg.bbs.containsValue(bb)
+                && bb.next.size() == 1
+                && bb.tac.getLast() instanceof TacJump) {
+
+                var next = bb.next.iterator().next();
+                if (next == bb || next == entry || next.prev.size() != 1) {
+                    break;
+                }
+
+                var replacements = new HashMap<String, TacTyped>();
+                bb.tac.removeLast();
+                for (var tac : next.tac) {
+                    if (tac instanceof TacPhi phi) {
+                        replacements.put(phi.target.name, phi.incoming.firstEntry().getValue());
+                    } else {
+                        bb.tac.add(tac);
+                    }
+                }
+
+                bb.next.clear();
+                for (var successor : next.next) {
+                    successor.prev.remove(next);
+                    successor.prev.add(bb);
+                    bb.next.add(successor);
+                    ControlFlow.renameIncoming(successor, next.label, bb.label);
+                }
+                functionCfg.bbs.values().remove(next);
+
+                if (!replacements.isEmpty()) {
+                    replace(replacements);
+                }
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private void replace(HashMap<String, TacTyped> replacements) {
+        for (var bb : functionCfg.bbs.values()) {
+            bb.tac.replaceAll(tac -> TacOperands.replace(tac, value ->
+                value instanceof TacVariable variable && replacements.containsKey(variable.name)
+                    ? replacements.get(variable.name)
+                    : value
+            ));
+        }
+    }
+}
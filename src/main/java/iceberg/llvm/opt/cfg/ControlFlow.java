@@ -0,0 +1,94 @@
+package iceberg.llvm.opt.cfg;
+
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.tac.TacJump;
+import iceberg.llvm.tac.TacJumpConditional;
+import iceberg.llvm.tac.TacPhi;
+import iceberg.llvm.tac.TacTyped;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Правки CFG, при которых переходы, {@link BasicBlock#next}/{@link BasicBlock#prev} и входы phi остаются согласованными.
+ */
+public final class ControlFlow {
+
+    private ControlFlow() {
+    }
+
+    public static BasicBlock entry(FunctionCfg functionCfg) {
+        return functionCfg.bbs.get(functionCfg.bbs.firstKey());
+    }
+
+    /**
+     * Перенаправляет переходы {@code from -> target} на {@code replacement}. Входы phi в {@code replacement}
+     * вызывающий код заводит сам. Условный переход, обе ветки которого ведут в один блок, становится безусловным.
+     */
+    public static void redirect(FunctionCfg functionCfg, BasicBlock from, BasicBlock target, BasicBlock replacement) {
+        int offset = offset(functionCfg, replacement);
+
+        var terminator = from.tac.getLast();
+        if (terminator instanceof TacJump jump && jump.gotoLabel.equals(target.label)) {
+            jump.gotoLabel = replacement.label;
+            jump.gotoOffset = offset;
+        } else if (terminator instanceof TacJumpConditional conditional) {
+            if (conditional.thenLabel.equals(target.label)) {
+                conditional.thenLabel = replacement.label;
+                conditional.thenOffset = offset;
+            }
+            if (conditional.elseLabel.equals(target.label)) {
+                conditional.elseLabel = replacement.label;
+                conditional.elseOffset = offset;
+            }
+
+            if (conditional.thenLabel.equals(conditional.elseLabel)) {
+                var jump = new TacJump();
+                jump.gotoLabel = conditional.thenLabel;
+                jump.gotoOffset = conditional.thenOffset;
+                from.tac.set(from.tac.size() - 1, jump);
+            }
+        }
+
+        from.next.remove(target);
+        target.prev.remove(from);
+        from.next.add(replacement);
+        replacement.prev.add(from);
+    }
+
+    /**
+     * Удаляет ребро вместе со входами phi, которые по нему приходили.
+     */
+    public static void removeEdge(BasicBlock from, BasicBlock to) {
+        from.next.remove(to);
+        to.prev.remove(from);
+
+        for (var tac : to.tac) {
+            if (tac instanceof TacPhi phi) {
+                phi.incoming.remove(from.label);
+            }
+        }
+    }
+
+    /**
+     * Входы phi от {@code label} теперь приходят от {@code replacement}, порядок входов сохраняется.
+     */
+    public static void renameIncoming(BasicBlock bb, String label, String replacement) {
+        for (var tac : bb.tac) {
+            if (tac instanceof TacPhi phi && phi.incoming.containsKey(label)) {
+                var incoming = new LinkedHashMap<String, TacTyped>();
+                phi.incoming.forEach((key, value) -> incoming.put(key.equals(label) ? replacement : key, value));
+
+                phi.incoming.clear();
+                phi.incoming.putAll(incoming);
+            }
+        }
+    }
+
+    private static int offset(FunctionCfg functionCfg, BasicBlock bb) {
+        return functionCfg.bbs.entrySet().stream()
+            .filter(entry -> entry.getValue() == bb)
+            .findAny().orElseThrow()
+            .getKey();
+    }
+}
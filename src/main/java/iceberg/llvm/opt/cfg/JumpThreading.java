@@ -0,0 +1,65 @@
+package iceberg.llvm.opt.cfg;
+
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.tac.TacJump;
+import iceberg.llvm.tac.TacPhi;
+
+import java.util.List;
+
+/**
+ * Пропускает блоки, состоящие из одного безусловного перехода: их предшественники переходят сразу в цель.
+ * Такие блоки остаются после {@code visitIrLoop} и веток if без else.
+ * <p>
+ * Если у цели есть phi, вход от пустого блока копируется для каждого предшественника. Предшественник,
+ * который уже переходит в цель по другому ребру, не перенаправляется: у phi был бы второй вход с той же меткой.
+ */
+public class JumpThreading {
+
+    private final FunctionCfg functionCfg;
+
+    public JumpThreading(FunctionCfg functionCfg) {
+        this.functionCfg = functionCfg;
+    }
+
+    /**
+     * @return true, если CFG изменился
+     */
+    public boolean execute() {
+        var changed = false;
+        var entry = ControlFlow.entry(functionCfg);
+
+        for (var bb : List.copyOf(functionCfg.bbs.values())) {
+            if (bb == entry || bb.tac.size() != 1 || !(bb.tac.getFirst() instanceof TacJump)) {
+                continue;
+            }
+
+            var target = bb.next.iterator().next();
+            if (target == bb) {
+                continue; //пустой бесконечный цикл
+            }
+
+            var hasPhis = target.tac.stream().anyMatch(TacPhi.class::isInstance);
+            for (var prev : List.copyOf(bb.prev)) {
+                if (hasPhis && prev.next.contains(target)) {
+                    continue;
+                }
+
+                for (var tac : target.tac) {
+                    if (tac instanceof TacPhi phi) {
+                        phi.incoming.put(prev.label, phi.incoming.get(bb.label));
+                    }
+                }
+
+                ControlFlow.redirect(functionCfg, prev, bb, target);
+                changed = true;
+            }
+
+            if (bb.prev.isEmpty()) {
+                ControlFlow.removeEdge(bb, target);
+                functionCfg.bbs.values().remove(bb);
+            }
+        }
+
+        return changed;
+    }
+}
@@ -0,0 +1,54 @@
+package iceberg.llvm.opt.cfg;
+
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Удаляет блоки, недостижимые из входа функции, вместе с их ребрами и входами phi в достижимых блоках.
+ */
+public class UnreachableBlockElimination {
+
+    private final FunctionCfg functionCfg;
+
+    public UnreachableBlockElimination(FunctionCfg functionCfg) {
+        this.functionCfg = functionCfg;
+    }
+
+    /**
+     * @return true, если CFG изменился
+     */
+    public boolean execute() {
+        var reachable = new HashSet<BasicBlock>();
+        var worklist = new ArrayDeque<BasicBlock>();
+
+        var entry = ControlFlow.entry(functionCfg);
+        reachable.add(entry);
+        worklist.push(entry);
+        while (!worklist.isEmpty()) {
+            for (var next : worklist.pop().next) {
+                if (reachable.add(next)) {
+                    worklist.push(next);
+                }
+            }
+        }
+
+        if (reachable.size() == functionCfg.bbs.size()) {
+            return false;
+        }
+
+        for (var bb : functionCfg.bbs.values()) {
+            if (!reachable.contains(bb)) {
+                for (var next : List.copyOf(bb.next)) {
+                    ControlFlow.removeEdge(bb, next);
+                }
+            }
+        }
+        functionCfg.bbs.values().removeIf(bb -> !reachable.contains(bb));
+
+        return true;
+    }
+}
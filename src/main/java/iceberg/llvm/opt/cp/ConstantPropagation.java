@@ -1,222 +1,322 @@
 package iceberg.llvm.opt.cp;
 
+import iceberg.Trace;
+import iceberg.ir.IcebergType;
 import iceberg.llvm.BasicBlock;
 import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.LlvmCompiler;
 import iceberg.llvm.tac.*;
 
-import java.util.HashMap;
-import java.util.concurrent.atomic.AtomicReference;
-
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation (Wegman, Zadeck) над SSA-формой функции.
+ * <p>
+ * Два worklist'а: исполнимые ребра CFG и переменные, чье значение в решетке
+ * {@code UNDEF -> Const -> OVERDEF} опустилось. Инструкция пересчитывается только когда
+ * изменился ее операнд или ее блок впервые стал исполнимым, поэтому работа пропорциональна
+ * размеру функции, а не (блоки x переменные x итерации).
+ * <p>
+ * После анализа:
+ * <ul>
+ *     <li>использования констант заменяются числами, вычисленные определения удаляются</li>
+ *     <li>условный переход по константе становится безусловным</li>
+ *     <li>неисполнимые блоки удаляются вместе с ребрами и входами phi</li>
+ * </ul>
+ */
 public class ConstantPropagation {
 
     private final FunctionCfg functionCfg;
 
+    private final Map<String, BasicBlock> blocks = new HashMap<>();
+    private final Map<String, Value> values = new HashMap<>();
+    private final Map<String, List<Use>> uses = new HashMap<>();
+
+    private final Set<BasicBlock> executableBlocks = new HashSet<>();
+    private final Set<Edge> executableEdges = new HashSet<>();
+
+    private final Deque<Edge> cfgWorklist = new ArrayDeque<>();
+    private final Deque<String> ssaWorklist = new ArrayDeque<>();
+
+    private record Edge(BasicBlock from, BasicBlock to) {
+    }
+
+    private record Use(BasicBlock bb, TAC tac) {
+    }
+
     public ConstantPropagation(FunctionCfg functionCfg) {
         this.functionCfg = functionCfg;
     }
 
-    public void execute() {
-        VariablesVector undefVector = findAllVars();
+    /**
+     * @return true, если функция изменилась
+     */
+    public boolean execute() {
+        for (var bb : functionCfg.bbs.values()) {
+            blocks.put(bb.label, bb);
 
-        var outputs = new HashMap<String, VariablesVector>();
-        functionCfg.bbs.values().stream()
-            .map(bb -> bb.label)
-            .forEach(label -> outputs.put(label, undefVector.copy()));
-
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-
-            for (var bb : functionCfg.bbs.values()) {
-                var input = undefVector.copy();
-                for (var prev : bb.prev) {
-                    var output = outputs.get(prev.label);
-                    input = input.join(output);
+            for (var tac : bb.tac) {
+                var definition = TacOperands.definition(tac);
+                if (definition != null) {
+                    values.put(definition.name, Value.UNDEF);
                 }
 
-                var oldOutput = outputs.get(bb.label);
-                var newOutput = interpret(input, bb);
-                if (!oldOutput.equals(newOutput)) {
-                    outputs.put(bb.label, newOutput);
-                    changed = true;
+                for (var use : TacOperands.uses(tac)) {
+                    if (use instanceof TacVariable variable) {
+                        uses.computeIfAbsent(variable.name, __ -> new ArrayList<>()).add(new Use(bb, tac));
+                    }
                 }
             }
         }
 
-        //propagate constants
-        for (var bb : functionCfg.bbs.values()) {
-            var output = outputs.get(bb.label);
-            output.values.entrySet().stream()
-                .filter(entry -> entry.getValue() instanceof Value.Const)
-                .forEach(entry -> replace(bb, entry.getKey(), (Value.Const) entry.getValue()));
-        }
-    }
-
-    //TODO: replace Store
-    //TODO: достаточно ли менять tac в BBS или нужно и в FunctionCfg?
-    private void replace(BasicBlock basicBlock, String varName, Value.Const value) {
-        var constant = value.value;
-        for (int i = 0; i < basicBlock.tac.size(); i++) {
-            var tac = basicBlock.tac.get(i);
-            if (tac instanceof TacBinaryOperation binOp) {
-                if (binOp.left instanceof TacVariable var && var.name.equals(varName)) {
-                    tac = new TacBinaryOperation(
-                        binOp.target, constant, binOp.right, binOp.operator
-                    );
-                }
-                if (binOp.right instanceof TacVariable var && var.name.equals(varName)) {
-                    tac = new TacBinaryOperation(
-                        binOp.target, binOp.left, constant, binOp.operator
-                    );
-                }
-            } else if (tac instanceof TacPrint print) {
-                if (print.argument instanceof TacVariable var && var.name.equals(varName)) {
-                    tac = new TacPrint(constant);
+        var entry = functionCfg.bbs.get(functionCfg.bbs.firstKey());
+        cfgWorklist.add(new Edge(null, entry));
+
+        while (!cfgWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+            while (!cfgWorklist.isEmpty()) {
+                visitEdge(cfgWorklist.poll());
+            }
+
+            while (!ssaWorklist.isEmpty()) {
+                var name = ssaWorklist.poll();
+                for (var use : uses.getOrDefault(name, List.of())) {
+                    if (executableBlocks.contains(use.bb())) {
+                        evaluate(use.bb(), use.tac());
+                    }
                 }
             }
+        }
 
-            basicBlock.tac.set(i, tac);
+        if (Trace.enabled(Trace.Channel.CP)) {
+            Trace.print(Trace.Channel.CP, LlvmCompiler.qualifiedName(functionCfg.irFunction), lattice());
         }
+
+        return rewrite();
     }
 
-    private VariablesVector interpret(VariablesVector input, BasicBlock basicBlock) {
-        System.out.println("interpret " + basicBlock.label);
-        var current = new AtomicReference<>(input);
-        basicBlock.tac.forEach(tac -> tac.accept(new TacVisitorBase() {
+    private String lattice() {
+        var text = new StringBuilder();
+        new TreeMap<>(values).forEach((name, value) -> text.append(name).append(" = ").append(value).append('\n'));
 
-            @Override
-            public void visitTacBinaryOperation(TacBinaryOperation tacBinaryOperation) {
-                Value left;
-                if (tacBinaryOperation.left instanceof TacNumber num) {
-                    left = new Value.Const(num);
-                } else if (tacBinaryOperation.left instanceof TacVariable var) {
-                    left = current.get().values.get(var.name);
-                } else {
-                    throw new IllegalStateException("impossible");
-                }
-
-                Value right;
-                if (tacBinaryOperation.right instanceof TacNumber num) {
-                    right = new Value.Const(num);
-                } else if (tacBinaryOperation.right instanceof TacVariable var) {
-                    right = current.get().values.get(var.name);
-                } else {
-                    throw new IllegalStateException("impossible");
-                }
+        functionCfg.bbs.values().stream()
+            .filter(bb -> !executableBlocks.contains(bb))
+            .forEach(bb -> text.append("unreachable ").append(bb.label).append('\n'));
 
-                Value result;
-                if (left instanceof Value.Const cl && right instanceof Value.Const cr) {
-                    var number = switch (tacBinaryOperation.operator) {
-                        case MULT -> cl.value.value * cr.value.value;
-                        case DIV -> cl.value.value / cr.value.value;
-                        case PLUS -> cl.value.value + cr.value.value;
-                        case SUB -> cl.value.value - cr.value.value;
-                        case LE -> cl.value.value <= cr.value.value ? 1 : 0;
-                        case LT -> cl.value.value < cr.value.value ? 1 : 0;
-                        case EQ -> cl.value.value == cr.value.value ? 1 : 0;
-                        case AND -> cl.value.value + cr.value.value == 2 ? 1 : 0;
-                        case OR -> cl.value.value + cr.value.value != 0 ? 1 : 0;
-                    };
-                    result = new Value.Const(new TacNumber(number, tacBinaryOperation.target.type));
-                } else {
-                    result = Value.OVERDEF;
-                }
+        return text.toString();
+    }
 
-                var in = current.get().values.get(tacBinaryOperation.target.name);
+    private void visitEdge(Edge edge) {
+        if (!executableEdges.add(edge)) {
+            return;
+        }
 
-                var next = current.get().copy();
-                next.values.put(tacBinaryOperation.target.name, in.join(result));
+        var bb = edge.to();
+        if (executableBlocks.add(bb)) {
+            bb.tac.forEach(tac -> evaluate(bb, tac));
+        } else {
+            //блок уже посчитан, новое входящее ребро влияет только на phi
+            bb.tac.stream()
+                .filter(TacPhi.class::isInstance)
+                .forEach(tac -> evaluate(bb, tac));
+        }
+    }
 
-                current.set(next);
+    private void evaluate(BasicBlock bb, TAC tac) {
+        switch (tac) {
+            case TacPhi phi -> {
+                Value result = Value.UNDEF;
+                for (var incoming : phi.incoming.entrySet()) {
+                    var from = blocks.get(incoming.getKey());
+                    if (executableEdges.contains(new Edge(from, bb))) {
+                        result = result.join(valueOf(incoming.getValue()));
+                    }
+                }
+                update(phi.target, result);
             }
-
-            @Override
-            public void visitTacCast(TacCast tacCast) {
-                //TODO
+            case TacBinaryOperation binary -> update(
+                binary.target, fold(binary, valueOf(binary.left), valueOf(binary.right))
+            );
+            case TacUnaryOperation unary -> update(unary.target, fold(unary, valueOf(unary.argument)));
+            case TacCast cast -> update(cast.target, valueOf(cast.argument)); //sext не меняет значение
+            case TacCall call -> {
+                if (call.target != null) {
+                    update(call.target, Value.OVERDEF); //межпроцедурного анализа нет
+                }
             }
-
-            @Override
-            public void visitTacUnaryOperation(TacUnaryOperation tacUnaryOperation) {
-                //TODO
+            case TacVarLoad load -> update(load.target, Value.OVERDEF); //память не отслеживается
+            case TacVarAllocate allocate -> update(allocate.target, Value.OVERDEF);
+            case TacArrayNew array -> update(array.target, Value.OVERDEF);
+            case TacArrayLoad load -> update(load.target, Value.OVERDEF);
+            case TacArrayLength length -> update(length.target, Value.OVERDEF);
+            case TacJump jump -> cfgWorklist.add(new Edge(bb, blocks.get(jump.gotoLabel)));
+            case TacJumpConditional jump -> {
+                var condition = valueOf(jump.condition);
+                if (condition instanceof Value.Const constant) {
+                    var label = constant.value.value != 0 ? jump.thenLabel : jump.elseLabel;
+                    cfgWorklist.add(new Edge(bb, blocks.get(label)));
+                } else if (condition == Value.OVERDEF) {
+                    cfgWorklist.add(new Edge(bb, blocks.get(jump.thenLabel)));
+                    cfgWorklist.add(new Edge(bb, blocks.get(jump.elseLabel)));
+                }
             }
+            default -> {
+                //print, return, store ничего не определяют
+            }
+        }
+    }
 
-            @Override
-            public void visitTacVarLoad(TacVarLoad tacVarLoad) {
-                var in = current.get().values.get(tacVarLoad.target.name);
-                var argument = current.get().values.get(tacVarLoad.memory.name);
+    private void update(TacVariable target, Value value) {
+        var old = values.get(target.name);
+        var joined = old.join(value);
 
-                var next = current.get().copy();
-                next.values.put(tacVarLoad.target.name, in.join(argument));
+        if (!same(old, joined)) {
+            values.put(target.name, joined);
+            ssaWorklist.add(target.name);
+        }
+    }
 
-                current.set(next);
-            }
+    private Value valueOf(TacTyped operand) {
+        if (operand instanceof TacNumber number) {
+            return new Value.Const(number);
+        }
 
-            @Override
-            public void visitTacVarStore(TacVarStore tacVarStore) {
-                var in = current.get().values.get(tacVarStore.target.name);
-                if (tacVarStore.argument instanceof TacNumber num) {
-                    var out = new Value.Const(num);
+        //переменная без определения в функции (например, параметр) неизвестна
+        return values.getOrDefault(((TacVariable) operand).name, Value.OVERDEF);
+    }
 
-                    var next = current.get().copy();
-                    next.values.put(tacVarStore.target.name, in.join(out));
+    private static Value fold(TacBinaryOperation binary, Value left, Value right) {
+        if (left == Value.OVERDEF || right == Value.OVERDEF) {
+            return Value.OVERDEF;
+        }
+        if (!(left instanceof Value.Const cl) || !(right instanceof Value.Const cr)) {
+            return Value.UNDEF;
+        }
 
-                    current.set(next);
-                }
+        long l = cl.value.value;
+        long r = cr.value.value;
+        if (binary.operator == iceberg.ir.IcebergBinaryOperator.DIV && r == 0) {
+            return Value.OVERDEF; //деление на ноль остается до исполнения
+        }
 
-                if (tacVarStore.argument instanceof TacVariable var) {
-                    var out = current.get().values.get(var.name);
+        var number = switch (binary.operator) {
+            case MULT -> l * r;
+            case DIV -> l / r;
+            case PLUS -> l + r;
+            case SUB -> l - r;
+            case LE -> l <= r ? 1 : 0;
+            case LT -> l < r ? 1 : 0;
+            case EQ -> l == r ? 1 : 0;
+            case AND -> l & r;
+            case OR -> l | r;
+        };
+
+        return new Value.Const(new TacNumber(wrap(number, binary.target.type), binary.target.type));
+    }
 
-                    var next = current.get().copy(); //TODO: можно не делать?
-                    next.values.put(tacVarStore.target.name, in.join(out));
+    private static Value fold(TacUnaryOperation unary, Value argument) {
+        if (!(argument instanceof Value.Const constant)) {
+            return argument;
+        }
 
-                    current.set(next);
-                }
-            }
-        }));
+        var number = switch (unary.operator) {
+            case NOT -> constant.value.value ^ 1;
+            case MINUS -> -constant.value.value;
+        };
 
-        System.out.println("## " + basicBlock.label);
-        System.out.println(input.values);
-        System.out.println("####");
-        System.out.println(current.get().values);
+        return new Value.Const(new TacNumber(wrap(number, unary.target.type), unary.target.type));
+    }
 
-        return current.get();
+    //арифметика i32 и i1 переполняется так же, как в сгенерированном коде
+    private static long wrap(long value, IcebergType type) {
+        if (IcebergType.i32.equals(type)) {
+            return (int) value;
+        } else if (IcebergType.bool.equals(type)) {
+            return value & 1;
+        } else {
+            return value;
+        }
     }
 
-    private VariablesVector findAllVars() {
-        var codes = functionCfg.bbs.values().stream()
-            .flatMap(basicBlock -> basicBlock.tac.stream())
-            .toList();
+    private static boolean same(Value a, Value b) {
+        return a == b || a instanceof Value.Const ca
+            && b instanceof Value.Const cb
+            && ca.value.value == cb.value.value;
+    }
 
-        var variables = new HashMap<String, Value>();
-        for (var tac : codes) {
-            tac.accept(new TacVisitorBase() {
-                @Override
-                public void visitTacBinaryOperation(TacBinaryOperation tacBinaryOperation) {
-                    variables.put(tacBinaryOperation.target.name, Value.UNDEF);
-                }
+    private boolean rewrite() {
+        var changed = false;
+        for (var bb : functionCfg.bbs.values()) {
+            if (!executableBlocks.contains(bb)) {
+                continue;
+            }
 
-                @Override
-                public void visitTacCast(TacCast tacCast) {
-                    variables.put(tacCast.target.name, Value.UNDEF);
+            var rewritten = new ArrayList<TAC>();
+            for (var tac : bb.tac) {
+                var definition = TacOperands.definition(tac);
+                if (definition != null && values.get(definition.name) instanceof Value.Const) {
+                    changed = true;
+                    continue; //все использования заменены константой
                 }
 
-                @Override
-                public void visitTacUnaryOperation(TacUnaryOperation tacUnaryOperation) {
-                    variables.put(tacUnaryOperation.target.name, Value.UNDEF);
-                }
+                var original = tac;
+                tac = TacOperands.replace(tac, operand ->
+                    operand instanceof TacVariable variable && values.get(variable.name) instanceof Value.Const constant
+                        ? new TacNumber(constant.value.value, variable.type)
+                        : operand
+                );
 
-                @Override
-                public void visitTacVarAllocate(TacVarAllocate tacVarAllocate) {
-                    variables.put(tacVarAllocate.target.name, Value.UNDEF);
+                if (tac instanceof TacJumpConditional jump && jump.condition instanceof TacNumber condition) {
+                    tac = fold(bb, jump, condition.value != 0);
                 }
 
-                @Override
-                public void visitTacVarLoad(TacVarLoad tacVarLoad) {
-                    variables.put(tacVarLoad.target.name, Value.UNDEF);
-                }
-            });
+                changed |= tac != original;
+                rewritten.add(tac);
+            }
+
+            bb.tac.clear();
+            bb.tac.addAll(rewritten);
+        }
+
+        //неисполнимые блоки: убираем ребра к исполнимым соседям и соответствующие входы phi
+        var unreachable = functionCfg.bbs.values().stream()
+            .filter(bb -> !executableBlocks.contains(bb))
+            .toList();
+
+        for (var bb : unreachable) {
+            for (var next : bb.next) {
+                removeEdge(bb, next);
+            }
         }
+        functionCfg.bbs.values().removeIf(bb -> !executableBlocks.contains(bb));
+
+        return changed || !unreachable.isEmpty();
+    }
 
-        return new VariablesVector(variables);
+    private TacJump fold(BasicBlock bb, TacJumpConditional jump, boolean condition) {
+        var taken = new TacJump();
+        taken.gotoOffset = condition ? jump.thenOffset : jump.elseOffset;
+        taken.gotoLabel = condition ? jump.thenLabel : jump.elseLabel;
+
+        var dropped = blocks.get(condition ? jump.elseLabel : jump.thenLabel);
+        if (!dropped.label.equals(taken.gotoLabel)) {
+            bb.next.remove(dropped);
+            dropped.prev.remove(bb);
+            removePhiIncoming(dropped, bb);
+        }
+
+        return taken;
+    }
+
+    private void removeEdge(BasicBlock from, BasicBlock to) {
+        to.prev.remove(from);
+        removePhiIncoming(to, from);
+    }
+
+    private static void removePhiIncoming(BasicBlock bb, BasicBlock from) {
+        for (var tac : bb.tac) {
+            if (tac instanceof TacPhi phi) {
+                phi.incoming.remove(from.label);
+            }
+        }
     }
 }
@@ -0,0 +1,75 @@
+package iceberg.llvm.opt.dce;
+
+import iceberg.ir.IcebergBinaryOperator;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.tac.*;
+
+import java.util.*;
+
+/**
+ * Удаляет вычисления, результат которых не влияет на поведение программы.
+ * <p>
+ * Живы инструкции с эффектами (print, вызовы, переходы, return, store, деление, которое может упасть,
+ * все операции с массивами, кроме длины) и все, что они транзитивно читают. Остальные определения удаляются, включая циклы из phi,
+ * которые читают только друг друга - их не найти подсчетом использований.
+ */
+public class DeadCodeElimination {
+
+    private final FunctionCfg functionCfg;
+
+    public DeadCodeElimination(FunctionCfg functionCfg) {
+        this.functionCfg = functionCfg;
+    }
+
+    /**
+     * @return true, если что-то удалено
+     */
+    public boolean execute() {
+        var definitions = new HashMap<String, TAC>();
+        var worklist = new ArrayDeque<TAC>();
+        var live = Collections.newSetFromMap(new IdentityHashMap<TAC, Boolean>());
+
+        for (var bb : functionCfg.bbs.values()) {
+            for (var tac : bb.tac) {
+                var definition = TacOperands.definition(tac);
+                if (definition != null) {
+                    definitions.put(definition.name, tac);
+                }
+                if (hasEffect(tac) && live.add(tac)) {
+                    worklist.add(tac);
+                }
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            for (var use : TacOperands.uses(worklist.poll())) {
+                if (use instanceof TacVariable variable) {
+                    var definition = definitions.get(variable.name);
+                    if (definition != null && live.add(definition)) {
+                        worklist.add(definition);
+                    }
+                }
+            }
+        }
+
+        var changed = false;
+        for (var bb : functionCfg.bbs.values()) {
+            changed |= bb.tac.removeIf(tac -> !live.contains(tac));
+        }
+
+        return changed;
+    }
+
+    private static boolean hasEffect(TAC tac) {
+        return switch (tac) {
+            case TacBinaryOperation binary -> binary.operator == IcebergBinaryOperator.DIV
+                && !(binary.right instanceof TacNumber number && number.value != 0 && number.value != -1);
+            case TacUnaryOperation __ -> false;
+            case TacCast __ -> false;
+            case TacPhi __ -> false;
+            case TacVarLoad __ -> false;
+            case TacArrayLength __ -> false;
+            default -> true;
+        };
+    }
+}
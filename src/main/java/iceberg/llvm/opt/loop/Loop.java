@@ -0,0 +1,28 @@
+package iceberg.llvm.opt.loop;
+
+import iceberg.llvm.BasicBlock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Естественный цикл: заголовок доминирует над всеми блоками тела, в заголовок ведут обратные ребра из latch-блоков.
+ * Вход в цикл извне только через preheader - блок с единственным переходом в заголовок.
+ */
+public class Loop {
+
+    public final BasicBlock header;
+    public final Set<BasicBlock> blocks = new LinkedHashSet<>();
+    public final List<BasicBlock> latches = new ArrayList<>();
+    public BasicBlock preheader;
+
+    public Loop(BasicBlock header) {
+        this.header = header;
+    }
+
+    public boolean contains(BasicBlock bb) {
+        return blocks.contains(bb);
+    }
+}
@@ -0,0 +1,149 @@
+package iceberg.llvm.opt.loop;
+
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.cfg.ControlFlow;
+import iceberg.llvm.opt.ssa.DominatorTree;
+import iceberg.llvm.tac.TacJump;
+import iceberg.llvm.tac.TacPhi;
+import iceberg.llvm.tac.TacVariable;
+
+import java.util.*;
+
+/**
+ * Находит естественные циклы функции и гарантирует каждому preheader.
+ * <p>
+ * Обратное ребро - переход {@code latch -> header}, где header доминирует над latch. Тело цикла -
+ * блоки, из которых latch достижим без прохода через header. Циклы с общим заголовком объединяются.
+ * <p>
+ * Если в заголовок входят несколько внешних ребер или внешний предшественник ветвится, между ними
+ * вставляется новый блок с безусловным переходом в заголовок, а входы phi заголовка от внешних
+ * предшественников сливаются в phi preheader'а. Циклы возвращаются от вложенных к внешним.
+ */
+public class LoopAnalysis {
+
+    private final FunctionCfg functionCfg;
+
+    public LoopAnalysis(FunctionCfg functionCfg) {
+        this.functionCfg = functionCfg;
+    }
+
+    public List<Loop> execute() {
+        var dominatorTree = new DominatorTree(functionCfg);
+
+        var loops = new LinkedHashMap<BasicBlock, Loop>();
+        for (var bb : dominatorTree.reversePostorder()) {
+            for (var next : bb.next) {
+                if (dominatorTree.dominates(next, bb)) {
+                    var loop = loops.computeIfAbsent(next, Loop::new);
+                    loop.latches.add(bb);
+                    collectBody(loop, bb);
+                }
+            }
+        }
+
+        //вложенный цикл строго меньше внешнего
+        var sorted = new ArrayList<>(loops.values());
+        sorted.sort(Comparator.comparingInt(loop -> loop.blocks.size()));
+
+        for (var loop : sorted) {
+            //в заголовок входа функции нельзя вставить блок перед ним
+            if (loop.header != dominatorTree.entry) {
+                insertPreheader(loop, sorted);
+            }
+        }
+
+        sorted.removeIf(loop -> loop.preheader == null);
+        return sorted;
+    }
+
+    private static void collectBody(Loop loop, BasicBlock latch) {
+        loop.blocks.add(loop.header);
+
+        var worklist = new ArrayDeque<BasicBlock>();
+        if (loop.blocks.add(latch)) {
+            worklist.push(latch);
+        }
+
+        while (!worklist.isEmpty()) {
+            for (var prev : worklist.pop().prev) {
+                if (loop.blocks.add(prev)) {
+                    worklist.push(prev);
+                }
+            }
+        }
+    }
+
+    private void insertPreheader(Loop loop, List<Loop> loops) {
+        var outside = loop.header.prev.stream()
+            .filter(prev -> !loop.contains(prev))
+            .toList();
+
+        if (outside.size() == 1 && outside.getFirst().next.size() == 1) {
+            loop.preheader = outside.getFirst();
+            return;
+        }
+
+        int offset = functionCfg.bbs.lastKey() + 1;
+        var preheader = new BasicBlock(loop.header.label + ".preheader");
+
+        var jump = new TacJump();
+        jump.gotoOffset = functionCfg.bbs.entrySet().stream()
+            .filter(entry -> entry.getValue() == loop.header)
+            .findAny().orElseThrow()
+            .getKey();
+        jump.gotoLabel = loop.header.label;
+        preheader.tac.add(jump);
+
+        //входы phi заголовка от внешних блоков теперь приходят из preheader
+        var headerTac = new ArrayList<>(loop.header.tac);
+        for (int i = 0; i < headerTac.size(); i++) {
+            if (!(headerTac.get(i) instanceof TacPhi phi)) {
+                continue;
+            }
+
+            var merged = new TacPhi(new TacVariable(phi.target.name + ".preheader", phi.target.type));
+            var replaced = new TacPhi(phi.target);
+            phi.incoming.forEach((label, value) -> {
+                if (outside.stream().anyMatch(prev -> prev.label.equals(label))) {
+                    merged.incoming.put(label, value);
+                } else {
+                    replaced.incoming.put(label, value);
+                }
+            });
+
+            //значения снаружи цикла нет - ребра из preheader phi не касается
+            if (merged.incoming.isEmpty()) {
+                continue;
+            }
+
+            //одинаковые значения со всех внешних ребер не требуют phi
+            var values = merged.incoming.values().stream().map(Object::toString).distinct().count();
+            if (values == 1) {
+                replaced.incoming.put(preheader.label, merged.incoming.firstEntry().getValue());
+            } else {
+                preheader.tac.add(preheader.tac.size() - 1, merged);
+                replaced.incoming.put(preheader.label, merged.target);
+            }
+            headerTac.set(i, replaced);
+        }
+        loop.header.tac.clear();
+        loop.header.tac.addAll(headerTac);
+
+        functionCfg.bbs.put(offset, preheader);
+        for (var prev : outside) {
+            ControlFlow.redirect(functionCfg, prev, loop.header, preheader);
+        }
+
+        preheader.next.add(loop.header);
+        loop.header.prev.add(preheader);
+        loop.preheader = preheader;
+
+        //preheader вложенного цикла лежит в теле внешних
+        for (var enclosing : loops) {
+            if (enclosing != loop && enclosing.contains(loop.header)) {
+                enclosing.blocks.add(preheader);
+            }
+        }
+    }
+}
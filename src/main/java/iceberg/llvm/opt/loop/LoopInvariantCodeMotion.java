@@ -0,0 +1,107 @@
+package iceberg.llvm.opt.loop;
+
+import iceberg.ir.IcebergBinaryOperator;
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.ssa.DominatorTree;
+import iceberg.llvm.tac.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выносит из цикла в preheader вычисления, операнды которых не меняются в цикле:
+ * константы и значения, определенные вне цикла или уже вынесенными инструкциями.
+ * <p>
+ * Переносятся только чистые инструкции без побочных эффектов и ловушек - арифметика, сравнения, sext
+ * и длина массива.
+ * Деление переносится только на константу, отличную от 0 и -1: тело цикла может не выполниться ни разу,
+ * а в preheader инструкция выполняется всегда. Вложенные циклы обрабатываются первыми,
+ * поэтому вынесенное из внутреннего цикла может дальше уйти и из внешнего.
+ */
+public class LoopInvariantCodeMotion {
+
+    private final FunctionCfg functionCfg;
+    private final List<Loop> loops;
+
+    public LoopInvariantCodeMotion(FunctionCfg functionCfg, List<Loop> loops) {
+        this.functionCfg = functionCfg;
+        this.loops = loops;
+    }
+
+    /**
+     * @return true, если что-то вынесено
+     */
+    public boolean execute() {
+        if (loops.isEmpty()) {
+            return false;
+        }
+
+        //блок, где определена переменная; меняется по мере переноса
+        var definitions = new HashMap<String, BasicBlock>();
+        for (var bb : functionCfg.bbs.values()) {
+            for (var tac : bb.tac) {
+                var definition = TacOperands.definition(tac);
+                if (definition != null) {
+                    definitions.put(definition.name, bb);
+                }
+            }
+        }
+
+        var changed = false;
+        var reversePostorder = new DominatorTree(functionCfg).reversePostorder();
+        for (var loop : loops) {
+            //определения доминируют над использованиями, поэтому за один проход в RPO
+            //операнды выносятся раньше инструкций, которые их читают
+            for (var bb : reversePostorder) {
+                if (loop.contains(bb)) {
+                    changed |= hoist(loop, bb, definitions);
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean hoist(Loop loop, BasicBlock bb, Map<String, BasicBlock> definitions) {
+        var hoisted = new HashSet<TAC>();
+        for (var tac : bb.tac) {
+            if (isInvariant(loop, tac, definitions)) {
+                var preheader = loop.preheader;
+                preheader.tac.add(preheader.tac.size() - 1, tac); //перед переходом в заголовок
+                definitions.put(TacOperands.definition(tac).name, preheader);
+                hoisted.add(tac);
+            }
+        }
+
+        return bb.tac.removeIf(hoisted::contains);
+    }
+
+    private static boolean isInvariant(Loop loop, TAC tac, Map<String, BasicBlock> definitions) {
+        var movable = switch (tac) {
+            case TacBinaryOperation binary -> binary.operator != IcebergBinaryOperator.DIV
+                || binary.right instanceof TacNumber number && number.value != 0 && number.value != -1;
+            case TacUnaryOperation __ -> true;
+            case TacCast __ -> true;
+            case TacArrayLength __ -> true; //длина массива не меняется, а сам массив не бывает null
+            default -> false;
+        };
+
+        if (!movable) {
+            return false;
+        }
+
+        for (var use : TacOperands.uses(tac)) {
+            if (use instanceof TacVariable variable) {
+                var definition = definitions.get(variable.name);
+                if (definition != null && loop.contains(definition)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+}
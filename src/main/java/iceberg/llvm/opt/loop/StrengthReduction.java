@@ -0,0 +1,198 @@
+package iceberg.llvm.opt.loop;
+
+import iceberg.ir.IcebergBinaryOperator;
+import iceberg.ir.IcebergType;
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.tac.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заменяет умножение индуктивной переменной на инвариант цикла сложением.
+ * <p>
+ * Базовая индуктивная переменная - phi заголовка {@code i = phi [init, preheader], [i + c, latch]}
+ * с константным шагом {@code c}. Для {@code j = i * k}, где {@code k} не меняется в цикле,
+ * в заголовок добавляется {@code j' = phi [init * k, preheader], [j' + c * k, latch]},
+ * сложение ставится сразу после {@code i + c}, а использования {@code j} в цикле читают {@code j'}.
+ * Если {@code j} больше никто не читает, умножение удаляется. Арифметика по модулю 2^n,
+ * поэтому при переполнении результат совпадает с умножением.
+ */
+public class StrengthReduction {
+
+    private final FunctionCfg functionCfg;
+    private final List<Loop> loops;
+
+    private final Map<String, BasicBlock> definitions = new HashMap<>();
+
+    private record Induction(TacPhi phi, TacTyped init, TacBinaryOperation increment, long step) {
+    }
+
+    public StrengthReduction(FunctionCfg functionCfg, List<Loop> loops) {
+        this.functionCfg = functionCfg;
+        this.loops = loops;
+    }
+
+    /**
+     * @return true, если хотя бы одно умножение заменено
+     */
+    public boolean execute() {
+        for (var bb : functionCfg.bbs.values()) {
+            for (var tac : bb.tac) {
+                var definition = TacOperands.definition(tac);
+                if (definition != null) {
+                    definitions.put(definition.name, bb);
+                }
+            }
+        }
+
+        var changed = false;
+        for (var loop : loops) {
+            if (loop.latches.size() != 1) {
+                continue;
+            }
+
+            var inductions = new HashMap<String, Induction>();
+            for (var tac : loop.header.tac) {
+                if (tac instanceof TacPhi phi) {
+                    var induction = induction(loop, phi);
+                    if (induction != null) {
+                        inductions.put(phi.target.name, induction);
+                    }
+                }
+            }
+
+            if (inductions.isEmpty()) {
+                continue;
+            }
+
+            for (var bb : List.copyOf(loop.blocks)) {
+                for (var tac : List.copyOf(bb.tac)) {
+                    if (tac instanceof TacBinaryOperation binary && binary.operator == IcebergBinaryOperator.MULT) {
+                        changed |= reduce(loop, bb, binary, inductions);
+                    }
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    private Induction induction(Loop loop, TacPhi phi) {
+        if (phi.incoming.size() != 2 || !phi.incoming.containsKey(loop.preheader.label)) {
+            return null;
+        }
+
+        var init = phi.incoming.get(loop.preheader.label);
+        var next = phi.incoming.get(loop.latches.getFirst().label);
+        if (!(next instanceof TacVariable variable) || !loop.contains(definitions.get(variable.name))) {
+            return null;
+        }
+
+        for (var tac : definitions.get(variable.name).tac) {
+            if (tac instanceof TacBinaryOperation binary && binary.target.name.equals(variable.name)) {
+                var step = step(phi.target, binary);
+                return step == null ? null : new Induction(phi, init, binary, step);
+            }
+        }
+
+        return null;
+    }
+
+    //i + c, c + i или i - c
+    private static Long step(TacVariable iv, TacBinaryOperation binary) {
+        if (binary.operator == IcebergBinaryOperator.PLUS) {
+            if (isVariable(binary.left, iv) && binary.right instanceof TacNumber number) {
+                return number.value;
+            }
+            if (isVariable(binary.right, iv) && binary.left instanceof TacNumber number) {
+                return number.value;
+            }
+        } else if (binary.operator == IcebergBinaryOperator.SUB) {
+            if (isVariable(binary.left, iv) && binary.right instanceof TacNumber number) {
+                return -number.value;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean reduce(Loop loop, BasicBlock bb, TacBinaryOperation mult, Map<String, Induction> inductions) {
+        Induction induction;
+        TacTyped factor;
+        if (mult.left instanceof TacVariable left && inductions.containsKey(left.name)) {
+            induction = inductions.get(left.name);
+            factor = mult.right;
+        } else if (mult.right instanceof TacVariable right && inductions.containsKey(right.name)) {
+            induction = inductions.get(right.name);
+            factor = mult.left;
+        } else {
+            return false;
+        }
+
+        if (!isInvariant(loop, factor)) {
+            return false;
+        }
+
+        var type = mult.target.type;
+        var name = mult.target.name + ".iv";
+        var preheader = loop.preheader;
+
+        var init = multiply(preheader, name + ".init", induction.init(), factor);
+        var step = multiply(preheader, name + ".step", new TacNumber(induction.step(), type), factor);
+
+        var reduced = new TacVariable(name, type);
+        var next = new TacVariable(name + ".next", type);
+
+        var phi = new TacPhi(reduced);
+        phi.incoming.put(preheader.label, init);
+        phi.incoming.put(loop.latches.getFirst().label, next);
+        loop.header.tac.addFirst(phi);
+        definitions.put(reduced.name, loop.header);
+
+        var incrementBlock = definitions.get(induction.increment().target.name);
+        var increment = new TacBinaryOperation(next, reduced, step, IcebergBinaryOperator.PLUS);
+        incrementBlock.tac.add(incrementBlock.tac.indexOf(induction.increment()) + 1, increment);
+        definitions.put(next.name, incrementBlock);
+
+        for (var block : loop.blocks) {
+            block.tac.replaceAll(tac -> TacOperands.replace(tac, value -> isVariable(value, mult.target) ? reduced : value));
+        }
+
+        var used = functionCfg.bbs.values().stream()
+            .flatMap(block -> block.tac.stream())
+            .flatMap(tac -> TacOperands.uses(tac).stream())
+            .anyMatch(value -> isVariable(value, mult.target));
+        if (!used) {
+            bb.tac.remove(mult);
+        }
+
+        return true;
+    }
+
+    //константы сворачиваются сразу, иначе умножение выполняется один раз в preheader
+    private TacTyped multiply(BasicBlock preheader, String name, TacTyped left, TacTyped right) {
+        if (left instanceof TacNumber a && right instanceof TacNumber b) {
+            var value = a.value * b.value;
+            return new TacNumber(IcebergType.i32.equals(a.type) ? (int) value : value, a.type);
+        }
+
+        var target = new TacVariable(name, left.type);
+        preheader.tac.add(preheader.tac.size() - 1, new TacBinaryOperation(target, left, right, IcebergBinaryOperator.MULT));
+        definitions.put(name, preheader);
+
+        return target;
+    }
+
+    private boolean isInvariant(Loop loop, TacTyped value) {
+        return !(value instanceof TacVariable variable)
+            || !definitions.containsKey(variable.name)
+            || !loop.contains(definitions.get(variable.name));
+    }
+
+    private static boolean isVariable(TacTyped value, TacVariable variable) {
+        return value instanceof TacVariable other && other.name.equals(variable.name);
+    }
+}
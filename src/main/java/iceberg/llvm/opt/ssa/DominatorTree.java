@@ -0,0 +1,164 @@
+package iceberg.llvm.opt.ssa;
+
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+
+import java.util.*;
+
+/**
+ * Дерево доминаторов и границы доминирования CFG функции.
+ * Итеративный алгоритм Cooper, Harvey, Kennedy "A Simple, Fast Dominance Algorithm"
+ * по обратному постпорядку, без рекурсии, поэтому работает и на функциях с тысячами блоков.
+ * Недостижимые из входа блоки в дерево не попадают.
+ */
+public class DominatorTree {
+
+    public final BasicBlock entry;
+
+    private final List<BasicBlock> reversePostorder;
+    private final Map<BasicBlock, Integer> order = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> idom = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+
+    public DominatorTree(FunctionCfg functionCfg) {
+        this.entry = functionCfg.bbs.get(functionCfg.bbs.firstKey());
+        this.reversePostorder = reversePostorder(entry);
+
+        for (int i = 0; i < reversePostorder.size(); i++) {
+            order.put(reversePostorder.get(i), i);
+        }
+
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (var bb : reversePostorder) {
+                if (bb == entry) {
+                    continue;
+                }
+
+                BasicBlock newIdom = null;
+                for (var prev : bb.prev) {
+                    if (idom.containsKey(prev)) {
+                        newIdom = newIdom == null ? prev : intersect(prev, newIdom);
+                    }
+                }
+
+                if (idom.get(bb) != newIdom) {
+                    idom.put(bb, newIdom);
+                    changed = true;
+                }
+            }
+        }
+
+        for (var bb : reversePostorder) {
+            children.put(bb, new ArrayList<>());
+            if (bb != entry) {
+                children.get(idom.get(bb)).add(bb);
+            }
+        }
+    }
+
+    /**
+     * Достижимые блоки в обратном постпорядке: каждый блок раньше своих потомков, кроме обратных ребер.
+     */
+    public List<BasicBlock> reversePostorder() {
+        return reversePostorder;
+    }
+
+    public boolean isReachable(BasicBlock bb) {
+        return order.containsKey(bb);
+    }
+
+    /**
+     * Непосредственный доминатор, для входного блока - null.
+     */
+    public BasicBlock idom(BasicBlock bb) {
+        return bb == entry ? null : idom.get(bb);
+    }
+
+    public List<BasicBlock> children(BasicBlock bb) {
+        return children.getOrDefault(bb, List.of());
+    }
+
+    public boolean dominates(BasicBlock dominator, BasicBlock bb) {
+        if (!isReachable(bb)) {
+            return false;
+        }
+
+        var current = bb;
+        while (current != dominator && current != entry) {
+            current = idom.get(current);
+        }
+
+        return current == dominator;
+    }
+
+    /**
+     * Граница доминирования: блоки, в которых сходятся пути из области доминирования блока и вне ее.
+     */
+    public Map<BasicBlock, Set<BasicBlock>> frontiers() {
+        var frontiers = new HashMap<BasicBlock, Set<BasicBlock>>();
+        for (var bb : reversePostorder) {
+            frontiers.put(bb, new LinkedHashSet<>());
+        }
+
+        for (var bb : reversePostorder) {
+            if (bb.prev.size() < 2) {
+                continue;
+            }
+
+            for (var prev : bb.prev) {
+                var runner = prev;
+                while (isReachable(runner) && runner != idom.get(bb)) {
+                    frontiers.get(runner).add(bb);
+                    if (runner == entry) {
+                        break;
+                    }
+                    runner = idom.get(runner);
+                }
+            }
+        }
+
+        return frontiers;
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (order.get(a) > order.get(b)) {
+                a = idom.get(a);
+            }
+            while (order.get(b) > order.get(a)) {
+                b = idom.get(b);
+            }
+        }
+
+        return a;
+    }
+
+    private static List<BasicBlock> reversePostorder(BasicBlock entry) {
+        var postorder = new ArrayList<BasicBlock>();
+        var visited = new HashSet<BasicBlock>();
+
+        //явный стек вместо рекурсии: блок и итератор по его преемникам
+        var stack = new ArrayDeque<Map.Entry<BasicBlock, Iterator<BasicBlock>>>();
+        visited.add(entry);
+        stack.push(Map.entry(entry, entry.next.iterator()));
+
+        while (!stack.isEmpty()) {
+            var top = stack.peek();
+            if (top.getValue().hasNext()) {
+                var next = top.getValue().next();
+                if (visited.add(next)) {
+                    stack.push(Map.entry(next, next.next.iterator()));
+                }
+            } else {
+                postorder.add(top.getKey());
+                stack.pop();
+            }
+        }
+
+        return postorder.reversed();
+    }
+}
@@ -0,0 +1,211 @@
+package iceberg.llvm.opt.ssa;
+
+import iceberg.llvm.BasicBlock;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.tac.*;
+
+import java.util.*;
+
+/**
+ * mem2reg: переводит локальные переменные из alloca/load/store в SSA-значения.
+ * <ol>
+ *     <li>phi ставятся в итерированную границу доминирования блоков, где переменной присваивают значение</li>
+ *     <li>обход дерева доминаторов со стеком текущих значений каждой переменной:
+ *     load заменяется текущим значением, store делает новое значение текущим, alloca удаляется</li>
+ *     <li>phi, результат которых никто не читает, удаляются</li>
+ * </ol>
+ * Все переменные языка скалярные и их адрес никуда не утекает, поэтому продвигаются все alloca.
+ */
+public class SsaConstruction {
+
+    private final FunctionCfg functionCfg;
+
+    //alloca -> переменная в памяти
+    private final Map<String, TacVariable> promoted = new LinkedHashMap<>();
+    private final Map<BasicBlock, Map<String, TacPhi>> phis = new HashMap<>();
+
+    private final Map<String, Deque<TacTyped>> stacks = new HashMap<>();
+    private final Map<String, TacTyped> replacements = new HashMap<>(); //результат load -> значение
+
+    public SsaConstruction(FunctionCfg functionCfg) {
+        this.functionCfg = functionCfg;
+    }
+
+    /**
+     * @return true, если в функции были переменные в памяти
+     */
+    public boolean execute() {
+        for (var bb : functionCfg.bbs.values()) {
+            for (var tac : bb.tac) {
+                if (tac instanceof TacVarAllocate allocate) {
+                    promoted.put(allocate.target.name, allocate.target);
+                }
+            }
+        }
+
+        if (promoted.isEmpty()) {
+            return false;
+        }
+
+        var dominatorTree = new DominatorTree(functionCfg);
+
+        insertPhis(dominatorTree);
+        rename(dominatorTree);
+        removeDeadPhis();
+
+        return true;
+    }
+
+    private void insertPhis(DominatorTree dominatorTree) {
+        var frontiers = dominatorTree.frontiers();
+
+        for (var variable : promoted.values()) {
+            var definitions = new LinkedHashSet<BasicBlock>();
+            for (var bb : dominatorTree.reversePostorder()) {
+                for (var tac : bb.tac) {
+                    if (tac instanceof TacVarStore store && store.target.name.equals(variable.name)) {
+                        definitions.add(bb);
+                        break;
+                    }
+                }
+            }
+
+            var worklist = new ArrayDeque<>(definitions);
+            while (!worklist.isEmpty()) {
+                var bb = worklist.poll();
+
+                for (var frontier : frontiers.get(bb)) {
+                    var blockPhis = phis.computeIfAbsent(frontier, __ -> new LinkedHashMap<>());
+                    if (blockPhis.containsKey(variable.name)) {
+                        continue;
+                    }
+
+                    var target = new TacVariable(variable.name + "." + frontier.label, variable.type);
+                    blockPhis.put(variable.name, new TacPhi(target));
+
+                    if (definitions.add(frontier)) {
+                        worklist.add(frontier);
+                    }
+                }
+            }
+        }
+    }
+
+    private void rename(DominatorTree dominatorTree) {
+        //обход дерева доминаторов без рекурсии: после детей блока снимаем его значения со стеков
+        record Exit(List<String> pushed) {
+        }
+
+        var worklist = new ArrayDeque<>();
+        worklist.push(dominatorTree.entry);
+
+        while (!worklist.isEmpty()) {
+            var item = worklist.pop();
+
+            if (item instanceof Exit exit) {
+                exit.pushed().forEach(name -> stacks.get(name).pop());
+                continue;
+            }
+
+            var bb = (BasicBlock) item;
+            var pushed = new ArrayList<String>();
+
+            var blockPhis = phis.getOrDefault(bb, Map.of());
+            blockPhis.forEach((name, phi) -> push(name, phi.target, pushed));
+
+            var renamed = new ArrayList<TAC>(blockPhis.values());
+            for (var tac : bb.tac) {
+                if (tac instanceof TacVarAllocate allocate && promoted.containsKey(allocate.target.name)) {
+                    continue;
+                }
+
+                if (tac instanceof TacVarLoad load && promoted.containsKey(load.memory.name)) {
+                    replacements.put(load.target.name, current(load.memory));
+                    continue;
+                }
+
+                if (tac instanceof TacVarStore store && promoted.containsKey(store.target.name)) {
+                    push(store.target.name, resolve(store.argument), pushed);
+                    continue;
+                }
+
+                renamed.add(TacOperands.replace(tac, this::resolve));
+            }
+
+            bb.tac.clear();
+            bb.tac.addAll(renamed);
+
+            for (var next : bb.next) {
+                phis.getOrDefault(next, Map.of()).forEach((name, phi) ->
+                    phi.incoming.put(bb.label, current(promoted.get(name)))
+                );
+            }
+
+            worklist.push(new Exit(pushed));
+            dominatorTree.children(bb).reversed().forEach(worklist::push);
+        }
+    }
+
+    private void removeDeadPhis() {
+        var allPhis = new HashMap<String, TacPhi>();
+        phis.values().forEach(blockPhis ->
+            blockPhis.values().forEach(phi -> allPhis.put(phi.target.name, phi))
+        );
+
+        //живые phi - те, что читает обычная инструкция, и все, что читают живые phi
+        var live = new HashSet<String>();
+        var worklist = new ArrayDeque<String>();
+        for (var bb : functionCfg.bbs.values()) {
+            for (var tac : bb.tac) {
+                if (tac instanceof TacPhi) {
+                    continue;
+                }
+                for (var use : TacOperands.uses(tac)) {
+                    if (use instanceof TacVariable variable && allPhis.containsKey(variable.name)) {
+                        worklist.add(variable.name);
+                    }
+                }
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            var name = worklist.poll();
+            if (!live.add(name)) {
+                continue;
+            }
+
+            for (var value : allPhis.get(name).incoming.values()) {
+                if (value instanceof TacVariable variable && allPhis.containsKey(variable.name)) {
+                    worklist.add(variable.name);
+                }
+            }
+        }
+
+        for (var bb : functionCfg.bbs.values()) {
+            bb.tac.removeIf(tac -> tac instanceof TacPhi phi && !live.contains(phi.target.name));
+        }
+    }
+
+    private void push(String name, TacTyped value, List<String> pushed) {
+        stacks.computeIfAbsent(name, __ -> new ArrayDeque<>()).push(value);
+        pushed.add(name);
+    }
+
+    //значение переменной в текущей точке обхода; до первого присваивания значение не определено
+    private TacTyped current(TacVariable variable) {
+        var stack = stacks.get(variable.name);
+        if (stack == null || stack.isEmpty()) {
+            return new TacNumber(0, variable.type);
+        }
+
+        return stack.peek();
+    }
+
+    private TacTyped resolve(TacTyped value) {
+        if (value instanceof TacVariable variable && replacements.containsKey(variable.name)) {
+            return replacements.get(variable.name);
+        }
+
+        return value;
+    }
+}
@@ -5,7 +5,9 @@ import iceberg.llvm.FunctionCfg;
 import iceberg.llvm.FunctionTac;
 import iceberg.llvm.tac.TacJump;
 import iceberg.llvm.tac.TacJumpConditional;
+import iceberg.llvm.tac.TacReturn;
 
+import java.util.ArrayDeque;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -33,41 +35,64 @@ public class BuildCfgPhase {
         return new FunctionCfg(function, bbs);
     }
 
-    private void createBasicBlocks(int start) {
-        if (bbs.containsKey(start)) {
-            return;
-        } else {
-            bbs.put(start, new BasicBlock(synth()));
-        }
+    //обход в глубину на явном стеке: в функции могут быть тысячи блоков
+    private void createBasicBlocks(int entry) {
+        var starts = new ArrayDeque<Integer>();
+        starts.push(entry);
+
+        while (!starts.isEmpty()) {
+            int start = starts.pop();
+            if (bbs.containsKey(start)) {
+                continue;
+            } else {
+                bbs.put(start, new BasicBlock(synth()));
+            }
 
-        int offset = start;
-        while (offset < function.tac.size()) {
-            var tac = function.tac.get(offset);
+            int offset = start;
+            while (offset < function.tac.size()) {
+                var tac = function.tac.get(offset);
 
-            if (tac instanceof TacJump jump) {
-                createBasicBlocks(jump.gotoOffset);
-                return;
-            }
+                if (tac instanceof TacJump jump) {
+                    starts.push(jump.gotoOffset);
+                    break;
+                }
 
-            if (tac instanceof TacJumpConditional jumpConditional) {
-                createBasicBlocks(jumpConditional.thenOffset);
-                createBasicBlocks(jumpConditional.elseOffset);
-                return;
-            }
+                if (tac instanceof TacJumpConditional jumpConditional) {
+                    //then обходится раньше else
+                    starts.push(jumpConditional.elseOffset);
+                    starts.push(jumpConditional.thenOffset);
+                    break;
+                }
+
+                if (tac instanceof TacReturn) {
+                    break; //код после return в блоке недостижим
+                }
 
-            offset++;
+                offset++;
+            }
         }
     }
 
+    //блок заканчивается первым переходом или return, остальное до следующего блока недостижимо
     private void fillBasicBlocksWithInstructions() {
         BasicBlock currentBlock = bbs.get(0);
+        boolean terminated = false;
         for (int i = 0; i < function.tac.size(); i++) {
             if (bbs.containsKey(i)) {
                 currentBlock = bbs.get(i);
+                terminated = false;
+            }
+
+            if (terminated) {
+                continue;
             }
 
             var tac = function.tac.get(i);
             currentBlock.tac.add(tac);
+
+            terminated = tac instanceof TacJump
+                || tac instanceof TacJumpConditional
+                || tac instanceof TacReturn;
         }
     }
 
@@ -102,6 +127,7 @@ public class BuildCfgPhase {
             });
     }
 
+    //метки локальны для функции, у каждой функции свой экземпляр фазы
     private int freeLabelIndex = 0;
 
     private String synth() {
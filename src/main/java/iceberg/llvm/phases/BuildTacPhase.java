@@ -4,35 +4,66 @@ import iceberg.ir.*;
 import iceberg.llvm.FunctionTac;
 import iceberg.llvm.tac.*;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
+/**
+ * Строит TAC одной функции. Синтетические имена локальны для функции (как и имена в LLVM IR),
+ * поэтому функции можно обрабатывать независимо и параллельно.
+ */
 public class BuildTacPhase {
 
-    private final IrFile irFile;
+    private final IrFunction irFunction;
 
-    public BuildTacPhase(IrFile irFile) {
-        this.irFile = irFile;
+    public BuildTacPhase(IrFunction irFunction) {
+        this.irFunction = irFunction;
     }
 
-    public Collection<FunctionTac> execute() {
-        var functions = new LinkedList<FunctionTac>();
+    public FunctionTac execute() {
+        var function = new FunctionTac(irFunction);
 
-        irFile.accept(new IrVisitorBase() {
+        irFunction.accept(new IrVisitorBase() {
 
-            private FunctionTac currentFunction;
+            private final FunctionTac currentFunction = function;
             private TacTyped returned; //TODO: think about IrVisitor<T>
 
             @Override
             public void visitIrFunction(IrFunction irFunction) {
-                functions.add(new FunctionTac(irFunction));
-                currentFunction = functions.getLast();
+                //параметры приходят значениями, но их можно переприсвоить,
+                //поэтому они копируются в alloca, а SSA-построение убирает копию
+                for (int i = 0; i < irFunction.parameters.size(); i++) {
+                    var parameter = irFunction.parameters.get(i);
+
+                    var argument = new TacVariable("%arg_" + i, parameter.type);
+                    currentFunction.parameters.add(argument);
+
+                    var target = new TacVariable(synth(), parameter.type);
+                    allocated.put(parameter, target.name);
+
+                    currentFunction.tac.add(new TacVarAllocate(target));
+                    currentFunction.tac.add(new TacVarStore(target, argument));
+                }
 
                 irFunction.irBody.accept(this);
             }
 
+            @Override
+            public void visitIrStaticCall(IrStaticCall irStaticCall) {
+                var arguments = new ArrayList<TacTyped>();
+                for (var argument : irStaticCall.arguments) {
+                    argument.accept(this);
+                    arguments.add(returned);
+                }
+
+                var target = IcebergType.unit.equals(irStaticCall.function.returnType)
+                    ? null
+                    : new TacVariable(synth(), irStaticCall.type);
+                returned = target;
+
+                currentFunction.tac.add(new TacCall(target, irStaticCall.function, arguments));
+            }
+
             @Override
             public void visitIrPrint(IrPrint irPrint) {
                 irPrint.argument.accept(this);
@@ -116,13 +147,11 @@ public class BuildTacPhase {
 
             @Override
             public void visitIrLoop(IrLoop irLoop) {
-                //NOTE: if where are TACs before condition,
-                //they should unconditionally jump to condition bb
-                if (!currentFunction.tac.isEmpty()) {
-                    var jumpToConditionBlock = new TacJump();
-                    currentFunction.tac.add(jumpToConditionBlock);
-                    jumpToConditionBlock.gotoOffset = currentFunction.tac.size();
-                }
+                //NOTE: condition bb always starts with a jump to it,
+                //so the entry block never becomes a loop header (LLVM forbids predecessors of entry)
+                var jumpToConditionBlock = new TacJump();
+                currentFunction.tac.add(jumpToConditionBlock);
+                jumpToConditionBlock.gotoOffset = currentFunction.tac.size();
 
                 var conditionOffset = currentFunction.tac.size();
 
@@ -142,6 +171,51 @@ public class BuildTacPhase {
                 fromCondition.elseOffset = currentFunction.tac.size();
             }
 
+            /**
+             * Цикл сразу строится повернутым, как после loop rotation в LLVM: проверка перед входом,
+             * затем тело и проверка в конце. Заголовок цикла - само тело, latch - блок с инкрементом.
+             */
+            @Override
+            public void visitIrForRange(IrForRange irForRange) {
+                irForRange.variable.accept(this);
+                var variable = (TacVariable) returned;
+                irForRange.limit.accept(this);
+                var limit = (TacVariable) returned;
+
+                var guard = new TacJumpConditional(inRange(variable, limit));
+                currentFunction.tac.add(guard);
+
+                guard.thenOffset = currentFunction.tac.size();
+                irForRange.body.accept(this);
+
+                var current = new TacVariable(synth(), IcebergType.i32);
+                currentFunction.tac.add(new TacVarLoad(current, variable));
+                var next = new TacVariable(synth(), IcebergType.i32);
+                currentFunction.tac.add(new TacBinaryOperation(
+                    next, current, new TacNumber(1, IcebergType.i32), IcebergBinaryOperator.PLUS
+                ));
+                currentFunction.tac.add(new TacVarStore(variable, next));
+
+                var latch = new TacJumpConditional(inRange(variable, limit));
+                currentFunction.tac.add(latch);
+                latch.thenOffset = guard.thenOffset;
+
+                guard.elseOffset = currentFunction.tac.size();
+                latch.elseOffset = currentFunction.tac.size();
+            }
+
+            private TacVariable inRange(TacVariable variable, TacVariable limit) {
+                var value = new TacVariable(synth(), IcebergType.i32);
+                currentFunction.tac.add(new TacVarLoad(value, variable));
+                var bound = new TacVariable(synth(), IcebergType.i32);
+                currentFunction.tac.add(new TacVarLoad(bound, limit));
+
+                var condition = new TacVariable(synth(), IcebergType.bool);
+                currentFunction.tac.add(new TacBinaryOperation(condition, value, bound, IcebergBinaryOperator.LT));
+
+                return condition;
+            }
+
             @Override
             public void visitIrAssignVariable(IrAssignVariable irAssignVariable) {
                 var target = new TacVariable(
@@ -203,6 +277,54 @@ public class BuildTacPhase {
                 }
             }
 
+            @Override
+            public void visitIrNewArray(IrNewArray irNewArray) {
+                irNewArray.length.accept(this);
+                var length = returned;
+
+                var target = new TacVariable(synth(), irNewArray.type);
+                returned = target;
+
+                currentFunction.tac.add(new TacArrayNew(target, length));
+            }
+
+            @Override
+            public void visitIrArrayLoad(IrArrayLoad irArrayLoad) {
+                irArrayLoad.array.accept(this);
+                var array = returned;
+                irArrayLoad.index.accept(this);
+                var index = returned;
+
+                var target = new TacVariable(synth(), irArrayLoad.type);
+                returned = target;
+
+                currentFunction.tac.add(new TacArrayLoad(target, array, index));
+            }
+
+            @Override
+            public void visitIrArrayStore(IrArrayStore irArrayStore) {
+                irArrayStore.array.accept(this);
+                var array = returned;
+                irArrayStore.index.accept(this);
+                var index = returned;
+                irArrayStore.expression.accept(this);
+                var argument = returned;
+
+                currentFunction.tac.add(new TacArrayStore(array, index, argument));
+                returned = argument;
+            }
+
+            @Override
+            public void visitIrArrayLength(IrArrayLength irArrayLength) {
+                irArrayLength.array.accept(this);
+                var array = returned;
+
+                var target = new TacVariable(synth(), irArrayLength.type);
+                returned = target;
+
+                currentFunction.tac.add(new TacArrayLength(target, array));
+            }
+
             private int freeSynthIndex = 0;
 
             private String synth() {
@@ -210,14 +332,6 @@ public class BuildTacPhase {
             }
         });
 
-        //debug print
-        functions.forEach(function -> {
-            for (int i = 0; i < function.tac.size(); i++) {
-                System.out.println(i + " " + function.tac.get(i));
-            }
-        });
-        System.out.println("======================================");
-
-        return functions;
+        return function;
     }
 }
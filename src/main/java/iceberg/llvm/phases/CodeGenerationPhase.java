@@ -1,48 +1,89 @@
 package iceberg.llvm.phases;
 
+import iceberg.Misc;
 import iceberg.ir.IcebergType;
+import iceberg.ir.IrFunction;
 import iceberg.llvm.BasicBlock;
 import iceberg.llvm.FunctionCfg;
 import iceberg.llvm.tac.*;
 
-import java.util.Collection;
-
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Пишет модуль в {@link Writer} по мере готовности функций: заголовок, функции в порядке вызовов
+ * {@link #function}, затем рантайм. В памяти одновременно держится только текущая функция,
+ * поэтому модуль можно отдавать прямо в файл или в pipe clang'а.
+ */
 public class CodeGenerationPhase {
 
-    private final Collection<FunctionCfg> allCfg;
+    private final PrintWriter output;
+    private final Set<String> overloaded;
 
-    public CodeGenerationPhase(Collection<FunctionCfg> allCfg) {
-        this.allCfg = allCfg;
-    }
+    //имена перегруженных функций нужны заранее, до того как построены CFG вызывающих функций
+    public CodeGenerationPhase(List<IrFunction> functions, Writer output) {
+        this.output = output instanceof PrintWriter printWriter ? printWriter : new PrintWriter(output);
 
-    public String execute() {
-        var output = new StringBuilder();
+        var seen = new HashSet<String>();
+        this.overloaded = functions.stream()
+            .map(irFunction -> irFunction.name)
+            .filter(name -> !seen.add(name))
+            .collect(Collectors.toSet());
+    }
 
-        //TODO: вычислять target на основе System.getProperty("os.arch") и тому подобному
-        if ("Mac OS X".equals(System.getProperty("os.name"))) {
-            output.append("target triple = \"arm64-apple-macosx15.0.0\"");
-        } else {
-            //NOTE: dirty support for GitHub runners
-            output.append("target triple = \"x86_64-pc-linux-gnu\"");
-        }
-        output.append(System.lineSeparator());
-        output.append(System.lineSeparator());
+    /**
+     * Модуль целиком в строку, для тестов и бенчмарков.
+     */
+    public static String execute(List<FunctionCfg> allCfg) {
+        var output = new StringWriter();
+        var phase = new CodeGenerationPhase(allCfg.stream().map(functionCfg -> functionCfg.irFunction).toList(), output);
+        phase.header();
+        allCfg.forEach(phase::function);
+        phase.footer();
 
-        allCfg.forEach(functionCfg -> {
-            output.append("define i32 @");
-            output.append(functionCfg.irFunction.name);
-            output.append("() {");
-            output.append(System.lineSeparator());
+        return output.toString();
+    }
 
-            functionCfg.bbs.values()
-                .forEach(basicBlock -> dumpBasicBlock(output, basicBlock));
+    public void header() {
+        var triple = targetTriple();
+        if (triple != null) {
+            output.print("target triple = \"" + triple + "\"");
+            output.print(System.lineSeparator());
+            output.print(System.lineSeparator());
+        }
+    }
 
-            output.append("}");
-            output.append(System.lineSeparator());
-            output.append(System.lineSeparator());
-        });
+    public void function(FunctionCfg functionCfg) {
+        output.print("define ");
+        output.print(mapReturnType(functionCfg.irFunction));
+        output.print(" @");
+        output.print(functionName(functionCfg.irFunction));
+        output.print(functionCfg.parameters.stream()
+            .map(parameter -> mapType(parameter.type) + " " + parameter.name)
+            .collect(Collectors.joining(", ", "(", ")")));
+        output.print(" {");
+        output.print(System.lineSeparator());
+
+        functionCfg.bbs.values()
+            .forEach(basicBlock -> dumpBasicBlock(output, functionCfg, basicBlock));
+
+        output.print("}");
+        output.print(System.lineSeparator());
+        output.print(System.lineSeparator());
+    }
 
-        output.append("""
+    /**
+     * Дописывает рантайм и сбрасывает буфер, сам {@link Writer} не закрывается.
+     */
+    public void footer() {
+        output.print("""
             ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
             ; io utils begin
             @.fmt32 = private constant [4 x i8] c"%d\\0A\\00"
@@ -78,14 +119,155 @@ public class CodeGenerationPhase {
             ; io utils end
             ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
             """);
+        arrays();
+        if (Misc.bufferedOutput()) {
+            bufferedStdout();
+        }
 
-        return output.toString();
+        output.flush();
+        if (output.checkError()) {
+            throw new UncheckedIOException(new IOException("failed to write llvm module"));
+        }
     }
 
-    private void dumpBasicBlock(StringBuilder output, BasicBlock basicBlock) {
-        output.append(basicBlock.label);
-        output.append(":");
-        output.append(System.lineSeparator());
+    /**
+     * Массив - один непрерывный блок памяти из calloc: длина i32, за ней элементы ({@code bool} - байтами).
+     * Доступ по индексу проверяет границы и вызывает abort() при выходе за них, как и отрицательная длина.
+     * Функции маленькие и private, clang их встраивает. Память не освобождается до конца процесса.
+     */
+    private void arrays() {
+        output.print("""
+            ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
+            ; array utils begin
+            declare i8* @calloc(i64, i64)
+            declare void @abort()
+            
+            """);
+        array("i32", "i32", 4);
+        array("i64", "i64", 8);
+        array("i1", "i8", 1);
+        output.print("""
+            ; array utils end
+            ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
+            """);
+    }
+
+    //element - тип значения, memory - тип ячейки в памяти (i1 хранится байтом)
+    private void array(String element, String memory, int size) {
+        var wide = !element.equals(memory);
+        var load = wide
+            ? "%%byte = load %2$s, %2$s* %%element\n  %%value = trunc %2$s %%byte to %1$s"
+            : "%%value = load %2$s, %2$s* %%element";
+        var store = wide
+            ? "%%byte = zext %1$s %%value to %2$s\n  store %2$s %%byte, %2$s* %%element"
+            : "store %2$s %%value, %2$s* %%element";
+
+        output.print("""
+            %%%1$s.array = type { i32, [0 x %2$s] }
+            
+            define private %%%1$s.array* @array_new_%1$s(i32 %%length) {
+            entry:
+              %%negative = icmp slt i32 %%length, 0
+              br i1 %%negative, label %%fail, label %%allocate
+            fail:
+              call void @abort()
+              unreachable
+            allocate:
+              %%count = sext i32 %%length to i64
+              %%bytes = mul i64 %%count, %3$d
+              %%size = add i64 %%bytes, 8
+              %%memory = call i8* @calloc(i64 1, i64 %%size)
+              %%array = bitcast i8* %%memory to %%%1$s.array*
+              %%header = getelementptr %%%1$s.array, %%%1$s.array* %%array, i32 0, i32 0
+              store i32 %%length, i32* %%header
+              ret %%%1$s.array* %%array
+            }
+            
+            define private i32 @array_length_%1$s(%%%1$s.array* %%array) {
+            entry:
+              %%header = getelementptr %%%1$s.array, %%%1$s.array* %%array, i32 0, i32 0
+              %%length = load i32, i32* %%header
+              ret i32 %%length
+            }
+            
+            define private %2$s* @array_element_%1$s(%%%1$s.array* %%array, i32 %%index) {
+            entry:
+              %%length = call i32 @array_length_%1$s(%%%1$s.array* %%array)
+              %%inside = icmp ult i32 %%index, %%length
+              br i1 %%inside, label %%found, label %%fail
+            fail:
+              call void @abort()
+              unreachable
+            found:
+              %%element = getelementptr %%%1$s.array, %%%1$s.array* %%array, i32 0, i32 1, i32 %%index
+              ret %2$s* %%element
+            }
+            
+            define private %1$s @array_load_%1$s(%%%1$s.array* %%array, i32 %%index) {
+            entry:
+              %%element = call %2$s* @array_element_%1$s(%%%1$s.array* %%array, i32 %%index)
+              %4$s
+              ret %1$s %%value
+            }
+            
+            define private void @array_store_%1$s(%%%1$s.array* %%array, i32 %%index, %1$s %%value) {
+            entry:
+              %%element = call %2$s* @array_element_%1$s(%%%1$s.array* %%array, i32 %%index)
+              %5$s
+              ret void
+            }
+            
+            """.formatted(element, memory, size, load.formatted(element, memory), store.formatted(element, memory)));
+    }
+
+    /**
+     * Полная буферизация stdout блоками по 64KB вместо построчной на терминале: setvbuf из конструктора модуля,
+     * до main. Буфер сбрасывает exit() при возврате из main.
+     */
+    private void bufferedStdout() {
+        //в libc Mac OS X stdout - макрос над __stdoutp
+        var stdout = "Mac OS X".equals(System.getProperty("os.name")) ? "__stdoutp" : "stdout";
+
+        output.print("""
+            @%1$s = external global i8*
+            @llvm.global_ctors = appending global [1 x { i32, void ()*, i8* }] [{ i32, void ()*, i8* } { i32 65535, void ()* @ice_buffer_stdout, i8* null }]
+            
+            declare i32 @setvbuf(i8*, i8*, i32, i64)
+            
+            define private void @ice_buffer_stdout() {
+            entry:
+              %%out = load i8*, i8** @%1$s
+              call i32 @setvbuf(i8* %%out, i8* null, i32 0, i64 65536)
+              ret void
+            }
+            """.formatted(stdout));
+    }
+
+    //для неизвестной платформы triple не указываем, clang подставит свой по умолчанию
+    static String targetTriple() {
+        var os = System.getProperty("os.name");
+        var arch = switch (System.getProperty("os.arch")) {
+            case "amd64", "x86_64" -> "x86_64";
+            case "aarch64", "arm64" -> "aarch64";
+            default -> null;
+        };
+
+        if (arch == null) {
+            return null;
+        } else if ("Mac OS X".equals(os)) {
+            //без версии clang ругается на несовпадение с deployment target
+            return ("aarch64".equals(arch) ? "arm64" : arch) + "-apple-macosx" + System.getProperty("os.version");
+        } else if ("Linux".equals(os)) {
+            return arch + ("x86_64".equals(arch) ? "-pc-linux-gnu" : "-unknown-linux-gnu");
+        } else {
+            return null;
+        }
+    }
+
+    private void dumpBasicBlock(PrintWriter output, FunctionCfg functionCfg, BasicBlock basicBlock) {
+        output.print(basicBlock.label);
+        output.print(":");
+        output.print(System.lineSeparator());
 
         basicBlock.tac.forEach(tac -> tac.accept(new TacVisitor() {
 
@@ -93,10 +275,10 @@ public class CodeGenerationPhase {
 
             @Override
             public void visitTacBinaryOperation(TacBinaryOperation tacBinaryOperation) {
-                output.append(indent);
+                output.print(indent);
                 tacBinaryOperation.target.accept(this);
-                output.append(" = ");
-                output.append(switch (tacBinaryOperation.operator) {
+                output.print(" = ");
+                output.print(switch (tacBinaryOperation.operator) {
                     case PLUS -> "add";
                     case SUB -> "sub";
                     case MULT -> "mul";
@@ -109,147 +291,299 @@ public class CodeGenerationPhase {
                 });
 
                 //TODO: assert that left.type.equals(right.type)
-                output.append(" ");
-                output.append(mapType(tacBinaryOperation.left.type));
-                output.append(" ");
+                output.print(" ");
+                output.print(mapType(tacBinaryOperation.left.type));
+                output.print(" ");
 
                 tacBinaryOperation.left.accept(this);
-                output.append(", ");
+                output.print(", ");
                 tacBinaryOperation.right.accept(this);
-                output.append(System.lineSeparator());
+                output.print(System.lineSeparator());
+            }
+
+            @Override
+            public void visitTacCall(TacCall tacCall) {
+                output.print(indent);
+                if (tacCall.target != null) {
+                    tacCall.target.accept(this);
+                    output.print(" = ");
+                }
+
+                output.print("call ");
+                output.print(mapReturnType(tacCall.function));
+                output.print(" @");
+                output.print(functionName(tacCall.function));
+                output.print("(");
+                for (int i = 0; i < tacCall.arguments.size(); i++) {
+                    var argument = tacCall.arguments.get(i);
+                    if (i > 0) {
+                        output.print(", ");
+                    }
+                    output.print(mapType(argument.type));
+                    output.print(" ");
+                    argument.accept(this);
+                }
+                output.print(")");
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacCast(TacCast tacCast) {
-                output.append(indent);
+                output.print(indent);
                 tacCast.target.accept(this);
-                output.append(" = ");
-                output.append("sext i32 ");
+                output.print(" = ");
+                output.print("sext i32 ");
                 tacCast.argument.accept(this);
-                output.append(" to i64");
-                output.append(System.lineSeparator());
+                output.print(" to i64");
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacJump(TacJump tacJump) {
-                output.append(indent);
-                output.append("br label %");
-                output.append(tacJump.gotoLabel);
-                output.append(System.lineSeparator());
+                output.print(indent);
+                output.print("br label %");
+                output.print(tacJump.gotoLabel);
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacJumpConditional(TacJumpConditional tacJumpConditional) {
-                output.append(indent);
-                output.append("br i1 ");
+                output.print(indent);
+                output.print("br i1 ");
                 tacJumpConditional.condition.accept(this);
-                output.append(", label %");
-                output.append(tacJumpConditional.thenLabel);
-                output.append(", label %");
-                output.append(tacJumpConditional.elseLabel);
-                output.append(System.lineSeparator());
+                output.print(", label %");
+                output.print(tacJumpConditional.thenLabel);
+                output.print(", label %");
+                output.print(tacJumpConditional.elseLabel);
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacNumber(TacNumber tacNumber) {
-                output.append(tacNumber.value);
+                output.print(tacNumber.value);
+            }
+
+            @Override
+            public void visitTacPhi(TacPhi tacPhi) {
+                output.print(indent);
+                tacPhi.target.accept(this);
+                output.print(" = phi ");
+                output.print(mapType(tacPhi.target.type));
+
+                var first = true;
+                for (var incoming : tacPhi.incoming.entrySet()) {
+                    output.print(first ? " [" : ", [");
+                    incoming.getValue().accept(this);
+                    output.print(", %");
+                    output.print(incoming.getKey());
+                    output.print("]");
+                    first = false;
+                }
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacPrint(TacPrint tacPrint) {
-                output.append(indent);
+                output.print(indent);
 
-                output.append("call void @print_");
-                output.append(mapType(tacPrint.argument.type));
-                output.append("(");
-                output.append(mapType(tacPrint.argument.type));
-                output.append(" ");
+                output.print("call void @print_");
+                output.print(mapType(tacPrint.argument.type));
+                output.print("(");
+                output.print(mapType(tacPrint.argument.type));
+                output.print(" ");
 
                 tacPrint.argument.accept(this);
-                output.append(")");
-                output.append(System.lineSeparator());
+                output.print(")");
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacReturn(TacReturn tacReturn) {
-                output.append(indent);
-                output.append("ret i32 0"); //TODO: get type from argument
-                output.append(System.lineSeparator());
+                output.print(indent);
+                if (isMain(functionCfg.irFunction)) {
+                    output.print("ret i32 0");
+                } else if (tacReturn.argument == null) {
+                    output.print("ret void");
+                } else {
+                    output.print("ret ");
+                    output.print(mapType(tacReturn.argument.type));
+                    output.print(" ");
+                    tacReturn.argument.accept(this);
+                }
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacUnaryOperation(TacUnaryOperation tacUnaryOperation) {
-                output.append(indent);
+                output.print(indent);
                 tacUnaryOperation.target.accept(this);
-                output.append(" = ");
+                output.print(" = ");
 
                 switch (tacUnaryOperation.operator) {
                     case NOT -> {
-                        output.append("xor i1 ");
+                        output.print("xor i1 ");
                         tacUnaryOperation.argument.accept(this);
-                        output.append(", true");
+                        output.print(", true");
                     }
                     case MINUS -> {
-                        output.append("sub ");
-                        output.append(
+                        output.print("sub ");
+                        output.print(
                             tacUnaryOperation.argument.type.equals(IcebergType.i32)
                                 ? "i32 "
                                 : "i64 "
                         );
-                        output.append("0, ");
+                        output.print("0, ");
                         tacUnaryOperation.argument.accept(this);
                     }
                 }
 
-                output.append(System.lineSeparator());
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacVarAllocate(TacVarAllocate tacVarAllocate) {
-                output.append(indent);
-                output.append(tacVarAllocate.target);
-                output.append(" = alloca ");
-                output.append(mapType(tacVarAllocate.target.type));
-                output.append(System.lineSeparator());
+                output.print(indent);
+                output.print(tacVarAllocate.target);
+                output.print(" = alloca ");
+                output.print(mapType(tacVarAllocate.target.type));
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacVarLoad(TacVarLoad tacVarLoad) {
-                output.append(indent);
-                output.append(tacVarLoad.target);
-                output.append(" = load ");
-                output.append(mapType(tacVarLoad.target.type));
-                output.append(", ");
-                output.append(mapType(tacVarLoad.memory.type));
-                output.append("* ");
-                output.append(tacVarLoad.memory);
-                output.append(System.lineSeparator());
+                output.print(indent);
+                output.print(tacVarLoad.target);
+                output.print(" = load ");
+                output.print(mapType(tacVarLoad.target.type));
+                output.print(", ");
+                output.print(mapType(tacVarLoad.memory.type));
+                output.print("* ");
+                output.print(tacVarLoad.memory);
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacVarStore(TacVarStore tacVarStore) {
-                output.append(indent);
-                output.append("store ");
-                output.append(mapType(tacVarStore.argument.type));
-                output.append(" ");
-                output.append(tacVarStore.argument);
-                output.append(", ");
-                output.append(mapType(tacVarStore.target.type));
-                output.append("* ");
-                output.append(tacVarStore.target);
-                output.append(System.lineSeparator());
+                output.print(indent);
+                output.print("store ");
+                output.print(mapType(tacVarStore.argument.type));
+                output.print(" ");
+                output.print(tacVarStore.argument);
+                output.print(", ");
+                output.print(mapType(tacVarStore.target.type));
+                output.print("* ");
+                output.print(tacVarStore.target);
+                output.print(System.lineSeparator());
             }
 
             @Override
             public void visitTacVariable(TacVariable tacVariable) {
-                output.append(tacVariable.name);
+                output.print(tacVariable.name);
+            }
+
+            @Override
+            public void visitTacArrayNew(TacArrayNew tacArrayNew) {
+                output.print(indent);
+                output.print(tacArrayNew.target);
+                output.print(" = call ");
+                output.print(mapType(tacArrayNew.target.type));
+                output.print(" @array_new_");
+                output.print(mapType(tacArrayNew.target.type.elementType()));
+                output.print("(i32 ");
+                tacArrayNew.length.accept(this);
+                output.print(")");
+                output.print(System.lineSeparator());
+            }
+
+            @Override
+            public void visitTacArrayLoad(TacArrayLoad tacArrayLoad) {
+                output.print(indent);
+                output.print(tacArrayLoad.target);
+                output.print(" = call ");
+                output.print(mapType(tacArrayLoad.target.type));
+                output.print(" @array_load_");
+                output.print(mapType(tacArrayLoad.target.type));
+                output.print("(");
+                output.print(mapType(tacArrayLoad.array.type));
+                output.print(" ");
+                tacArrayLoad.array.accept(this);
+                output.print(", i32 ");
+                tacArrayLoad.index.accept(this);
+                output.print(")");
+                output.print(System.lineSeparator());
+            }
+
+            @Override
+            public void visitTacArrayStore(TacArrayStore tacArrayStore) {
+                output.print(indent);
+                output.print("call void @array_store_");
+                output.print(mapType(tacArrayStore.argument.type));
+                output.print("(");
+                output.print(mapType(tacArrayStore.array.type));
+                output.print(" ");
+                tacArrayStore.array.accept(this);
+                output.print(", i32 ");
+                tacArrayStore.index.accept(this);
+                output.print(", ");
+                output.print(mapType(tacArrayStore.argument.type));
+                output.print(" ");
+                tacArrayStore.argument.accept(this);
+                output.print(")");
+                output.print(System.lineSeparator());
+            }
+
+            @Override
+            public void visitTacArrayLength(TacArrayLength tacArrayLength) {
+                output.print(indent);
+                output.print(tacArrayLength.target);
+                output.print(" = call i32 @array_length_");
+                output.print(mapType(tacArrayLength.array.type.elementType()));
+                output.print("(");
+                output.print(mapType(tacArrayLength.array.type));
+                output.print(" ");
+                tacArrayLength.array.accept(this);
+                output.print(")");
+                output.print(System.lineSeparator());
             }
         }));
     }
 
+    //перегруженные функции различаются типами параметров: foo.i32.i1
+    private String functionName(IrFunction irFunction) {
+        if (!overloaded.contains(irFunction.name)) {
+            return irFunction.name;
+        }
+
+        return irFunction.parameters.stream()
+            .map(parameter -> "." + mangle(parameter.type))
+            .collect(Collectors.joining("", irFunction.name, irFunction.parameters.isEmpty() ? ".void" : ""));
+    }
+
+    //точка входа программы обязана возвращать код выхода
+    private String mapReturnType(IrFunction irFunction) {
+        if (isMain(irFunction)) {
+            return "i32";
+        } else if (irFunction.returnType.equals(IcebergType.unit)) {
+            return "void";
+        } else {
+            return mapType(irFunction.returnType);
+        }
+    }
+
+    private static boolean isMain(IrFunction irFunction) {
+        return "main".equals(irFunction.name) && irFunction.parameters.isEmpty();
+    }
+
+    //в имени функции не может быть указателя: foo.i32_array
+    private String mangle(IcebergType icebergType) {
+        return icebergType.isArray() ? mapType(icebergType.elementType()) + "_array" : mapType(icebergType);
+    }
+
     //TODO: support all types
     private String mapType(IcebergType icebergType) {
-        if (icebergType.equals(IcebergType.bool)) {
+        if (icebergType.isArray()) {
+            return "%" + mapType(icebergType.elementType()) + ".array*";
+        } else if (icebergType.equals(IcebergType.bool)) {
             return "i1";
         } else if (icebergType.equals(IcebergType.i32)) {
             return "i32";
@@ -0,0 +1,22 @@
+package iceberg.llvm.tac;
+
+public class TacArrayLength implements TAC {
+
+    public final TacVariable target;
+    public final TacTyped array;
+
+    public TacArrayLength(TacVariable target, TacTyped array) {
+        this.target = target;
+        this.array = array;
+    }
+
+    @Override
+    public void accept(TacVisitor visitor) {
+        visitor.visitTacArrayLength(this);
+    }
+
+    @Override
+    public String toString() {
+        return target + " = length " + array;
+    }
+}
@@ -0,0 +1,24 @@
+package iceberg.llvm.tac;
+
+public class TacArrayLoad implements TAC {
+
+    public final TacVariable target;
+    public final TacTyped array;
+    public final TacTyped index;
+
+    public TacArrayLoad(TacVariable target, TacTyped array, TacTyped index) {
+        this.target = target;
+        this.array = array;
+        this.index = index;
+    }
+
+    @Override
+    public void accept(TacVisitor visitor) {
+        visitor.visitTacArrayLoad(this);
+    }
+
+    @Override
+    public String toString() {
+        return target + " = " + array + "[" + index + "]";
+    }
+}
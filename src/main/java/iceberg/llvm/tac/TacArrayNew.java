@@ -0,0 +1,22 @@
+package iceberg.llvm.tac;
+
+public class TacArrayNew implements TAC {
+
+    public final TacVariable target;
+    public final TacTyped length;
+
+    public TacArrayNew(TacVariable target, TacTyped length) {
+        this.target = target;
+        this.length = length;
+    }
+
+    @Override
+    public void accept(TacVisitor visitor) {
+        visitor.visitTacArrayNew(this);
+    }
+
+    @Override
+    public String toString() {
+        return target + " = new " + target.type + " " + length;
+    }
+}
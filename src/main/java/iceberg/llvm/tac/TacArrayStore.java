@@ -0,0 +1,24 @@
+package iceberg.llvm.tac;
+
+public class TacArrayStore implements TAC {
+
+    public final TacTyped array;
+    public final TacTyped index;
+    public final TacTyped argument;
+
+    public TacArrayStore(TacTyped array, TacTyped index, TacTyped argument) {
+        this.array = array;
+        this.index = index;
+        this.argument = argument;
+    }
+
+    @Override
+    public void accept(TacVisitor visitor) {
+        visitor.visitTacArrayStore(this);
+    }
+
+    @Override
+    public String toString() {
+        return array + "[" + index + "] = " + argument;
+    }
+}
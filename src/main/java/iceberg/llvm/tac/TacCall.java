@@ -0,0 +1,34 @@
+package iceberg.llvm.tac;
+
+import iceberg.ir.IrFunction;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class TacCall implements TAC {
+
+    public final @Nullable TacVariable target; //null для функций, возвращающих unit
+    public final IrFunction function;
+    public final List<TacTyped> arguments;
+
+    public TacCall(@Nullable TacVariable target, IrFunction function, List<TacTyped> arguments) {
+        this.target = target;
+        this.function = function;
+        this.arguments = arguments;
+    }
+
+    @Override
+    public void accept(TacVisitor visitor) {
+        visitor.visitTacCall(this);
+    }
+
+    @Override
+    public String toString() {
+        var call = "call " + function.name + arguments.stream()
+            .map(String::valueOf)
+            .collect(Collectors.joining(", ", "(", ")"));
+
+        return target == null ? call : target + " = " + call;
+    }
+}
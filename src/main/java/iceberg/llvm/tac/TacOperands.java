@@ -0,0 +1,151 @@
+package iceberg.llvm.tac;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Операнды и результат инструкции без разбора каждого типа TAC в оптимизациях.
+ * Инструкции неизменяемы, поэтому замена операндов создает новую инструкцию.
+ */
+public final class TacOperands {
+
+    private TacOperands() {
+    }
+
+    /**
+     * Переменная, которую определяет инструкция, или null.
+     */
+    public static @Nullable TacVariable definition(TAC tac) {
+        return switch (tac) {
+            case TacBinaryOperation binary -> binary.target;
+            case TacUnaryOperation unary -> unary.target;
+            case TacCast cast -> cast.target;
+            case TacCall call -> call.target;
+            case TacPhi phi -> phi.target;
+            case TacVarAllocate allocate -> allocate.target;
+            case TacVarLoad load -> load.target;
+            case TacArrayNew array -> array.target;
+            case TacArrayLoad load -> load.target;
+            case TacArrayLength length -> length.target;
+            default -> null;
+        };
+    }
+
+    /**
+     * Значения, которые читает инструкция. Для load/store адрес тоже считается использованием.
+     */
+    public static List<TacTyped> uses(TAC tac) {
+        return switch (tac) {
+            case TacBinaryOperation binary -> List.of(binary.left, binary.right);
+            case TacUnaryOperation unary -> List.of(unary.argument);
+            case TacCast cast -> List.of(cast.argument);
+            case TacCall call -> call.arguments;
+            case TacPhi phi -> new ArrayList<>(phi.incoming.values());
+            case TacJumpConditional jump -> List.of(jump.condition);
+            case TacPrint print -> List.of(print.argument);
+            case TacReturn ret -> ret.argument == null ? List.of() : List.of(ret.argument);
+            case TacVarLoad load -> List.of(load.memory);
+            case TacVarStore store -> List.of(store.target, store.argument);
+            case TacArrayNew array -> List.of(array.length);
+            case TacArrayLoad load -> List.of(load.array, load.index);
+            case TacArrayStore store -> List.of(store.array, store.index, store.argument);
+            case TacArrayLength length -> List.of(length.array);
+            default -> List.of();
+        };
+    }
+
+    /**
+     * Заменяет операнды инструкции через {@code mapping}. Если ни один операнд не изменился, возвращает ту же инструкцию.
+     */
+    public static TAC replace(TAC tac, UnaryOperator<TacTyped> mapping) {
+        return switch (tac) {
+            case TacBinaryOperation binary -> {
+                var left = mapping.apply(binary.left);
+                var right = mapping.apply(binary.right);
+                yield left == binary.left && right == binary.right
+                    ? tac
+                    : new TacBinaryOperation(binary.target, left, right, binary.operator);
+            }
+            case TacUnaryOperation unary -> {
+                var argument = mapping.apply(unary.argument);
+                yield argument == unary.argument
+                    ? tac
+                    : new TacUnaryOperation(unary.target, argument, unary.operator);
+            }
+            case TacCast cast -> {
+                var argument = mapping.apply(cast.argument);
+                yield argument == cast.argument ? tac : new TacCast(cast.target, argument);
+            }
+            case TacCall call -> {
+                var arguments = call.arguments.stream().map(mapping).toList();
+
+                var changed = false;
+                for (int i = 0; i < arguments.size(); i++) {
+                    changed |= arguments.get(i) != call.arguments.get(i);
+                }
+                yield changed ? new TacCall(call.target, call.function, arguments) : tac;
+            }
+            case TacPhi phi -> {
+                var replaced = new TacPhi(phi.target);
+                phi.incoming.forEach((label, value) -> replaced.incoming.put(label, mapping.apply(value)));
+
+                var changed = phi.incoming.keySet().stream()
+                    .anyMatch(label -> phi.incoming.get(label) != replaced.incoming.get(label));
+                yield changed ? replaced : tac;
+            }
+            case TacJumpConditional jump -> {
+                var condition = mapping.apply(jump.condition);
+                if (condition == jump.condition) {
+                    yield tac;
+                }
+
+                var replaced = new TacJumpConditional(condition);
+                replaced.thenOffset = jump.thenOffset;
+                replaced.elseOffset = jump.elseOffset;
+                replaced.thenLabel = jump.thenLabel;
+                replaced.elseLabel = jump.elseLabel;
+                yield replaced;
+            }
+            case TacPrint print -> {
+                var argument = mapping.apply(print.argument);
+                yield argument == print.argument ? tac : new TacPrint(argument);
+            }
+            case TacReturn ret -> {
+                if (ret.argument == null) {
+                    yield tac;
+                }
+                var argument = mapping.apply(ret.argument);
+                yield argument == ret.argument ? tac : new TacReturn(argument);
+            }
+            case TacVarStore store -> {
+                var argument = mapping.apply(store.argument);
+                yield argument == store.argument ? tac : new TacVarStore(store.target, argument);
+            }
+            case TacArrayNew array -> {
+                var length = mapping.apply(array.length);
+                yield length == array.length ? tac : new TacArrayNew(array.target, length);
+            }
+            case TacArrayLoad load -> {
+                var array = mapping.apply(load.array);
+                var index = mapping.apply(load.index);
+                yield array == load.array && index == load.index ? tac : new TacArrayLoad(load.target, array, index);
+            }
+            case TacArrayStore store -> {
+                var array = mapping.apply(store.array);
+                var index = mapping.apply(store.index);
+                var argument = mapping.apply(store.argument);
+                yield array == store.array && index == store.index && argument == store.argument
+                    ? tac
+                    : new TacArrayStore(array, index, argument);
+            }
+            case TacArrayLength length -> {
+                var array = mapping.apply(length.array);
+                yield array == length.array ? tac : new TacArrayLength(length.target, array);
+            }
+            default -> tac;
+        };
+    }
+}
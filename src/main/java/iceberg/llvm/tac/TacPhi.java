@@ -0,0 +1,27 @@
+package iceberg.llvm.tac;
+
+import java.util.LinkedHashMap;
+import java.util.SequencedMap;
+import java.util.stream.Collectors;
+
+public class TacPhi implements TAC {
+
+    public final TacVariable target;
+    public final SequencedMap<String, TacTyped> incoming = new LinkedHashMap<>(); //метка предшественника -> значение
+
+    public TacPhi(TacVariable target) {
+        this.target = target;
+    }
+
+    @Override
+    public void accept(TacVisitor visitor) {
+        visitor.visitTacPhi(this);
+    }
+
+    @Override
+    public String toString() {
+        return target + " = phi " + incoming.entrySet().stream()
+            .map(entry -> "[" + entry.getValue() + ", " + entry.getKey() + "]")
+            .collect(Collectors.joining(", "));
+    }
+}
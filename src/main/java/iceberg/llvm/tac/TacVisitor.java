@@ -3,10 +3,12 @@ package iceberg.llvm.tac;
 public interface TacVisitor {
 
     void visitTacBinaryOperation(TacBinaryOperation tacBinaryOperation);
+    void visitTacCall(TacCall tacCall);
     void visitTacCast(TacCast tacCast);
     void visitTacJump(TacJump tacJump);
     void visitTacJumpConditional(TacJumpConditional tacJumpConditional);
     void visitTacNumber(TacNumber tacNumber);
+    void visitTacPhi(TacPhi tacPhi);
     void visitTacPrint(TacPrint tacPrint);
     void visitTacReturn(TacReturn tacReturn);
     void visitTacUnaryOperation(TacUnaryOperation tacUnaryOperation);
@@ -14,4 +16,8 @@ public interface TacVisitor {
     void visitTacVarAllocate(TacVarAllocate tacVarAllocate);
     void visitTacVarLoad(TacVarLoad tacVarLoad);
     void visitTacVarStore(TacVarStore tacVarStore);
+    void visitTacArrayNew(TacArrayNew tacArrayNew);
+    void visitTacArrayLoad(TacArrayLoad tacArrayLoad);
+    void visitTacArrayStore(TacArrayStore tacArrayStore);
+    void visitTacArrayLength(TacArrayLength tacArrayLength);
 }
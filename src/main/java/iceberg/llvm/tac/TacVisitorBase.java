@@ -8,6 +8,13 @@ public abstract class TacVisitorBase implements TacVisitor {
         tacBinaryOperation.right.accept(this);
     }
     
+    public void visitTacCall(TacCall tacCall) {
+        if (tacCall.target != null) {
+            tacCall.target.accept(this);
+        }
+        tacCall.arguments.forEach(argument -> argument.accept(this));
+    }
+    
     public void visitTacCast(TacCast tacCast) {
         tacCast.target.accept(this);
         tacCast.argument.accept(this);
@@ -25,6 +32,11 @@ public abstract class TacVisitorBase implements TacVisitor {
         //no children
     }
     
+    public void visitTacPhi(TacPhi tacPhi) {
+        tacPhi.target.accept(this);
+        tacPhi.incoming.values().forEach(value -> value.accept(this));
+    }
+    
     public void visitTacPrint(TacPrint tacPrint) {
         tacPrint.argument.accept(this);
     }
@@ -57,4 +69,26 @@ public abstract class TacVisitorBase implements TacVisitor {
         tacVarStore.target.accept(this);
         tacVarStore.argument.accept(this);
     }
+
+    public void visitTacArrayNew(TacArrayNew tacArrayNew) {
+        tacArrayNew.target.accept(this);
+        tacArrayNew.length.accept(this);
+    }
+
+    public void visitTacArrayLoad(TacArrayLoad tacArrayLoad) {
+        tacArrayLoad.target.accept(this);
+        tacArrayLoad.array.accept(this);
+        tacArrayLoad.index.accept(this);
+    }
+
+    public void visitTacArrayStore(TacArrayStore tacArrayStore) {
+        tacArrayStore.array.accept(this);
+        tacArrayStore.index.accept(this);
+        tacArrayStore.argument.accept(this);
+    }
+
+    public void visitTacArrayLength(TacArrayLength tacArrayLength) {
+        tacArrayLength.target.accept(this);
+        tacArrayLength.array.accept(this);
+    }
 }
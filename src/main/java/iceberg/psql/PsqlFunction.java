@@ -0,0 +1,79 @@
+package iceberg.psql;
+
+import iceberg.ir.IcebergType;
+import iceberg.jvm.JvmCompiler;
+
+import java.lang.invoke.MethodHandle;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Тело PSQL-функции, скомпилированное в {@code Iceberg.__psql(...)}.
+ * Компилируется один раз на OID и переиспользуется, пока не изменились {@code prosrc} и сигнатура,
+ * аргументы передаются при вызове.
+ */
+public class PsqlFunction {
+
+    public static final String NAME = "__psql";
+
+    public final long oid;
+
+    //с чем скомпилирована функция, сверяется с каждым вызовом
+    private final String source;
+    private final int returnType;
+    private final List<PsqlProtocol.Argument> signature;
+
+    //(Object[]) -> Object: значения аргументов приходят из протокола уже упакованными
+    private final MethodHandle handle;
+
+    private PsqlFunction(PsqlProtocol.Request request, MethodHandle handle) {
+        this.oid = request.oid();
+        this.source = request.source();
+        this.returnType = request.returnType();
+        this.signature = request.arguments().stream()
+            .map(argument -> new PsqlProtocol.Argument(argument.name(), argument.type(), null))
+            .toList();
+        this.handle = handle.asType(handle.type().generic())
+            .asSpreader(Object[].class, handle.type().parameterCount());
+    }
+
+    public static PsqlFunction compile(PsqlProtocol.Request request) {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        for (var argument : request.arguments()) {
+            parameters.put(argument.name(), PsqlProtocol.toIcebergType(argument.type()));
+        }
+
+        var handle = JvmCompiler.compileFunction(
+            NAME, request.source(), parameters, PsqlProtocol.toIcebergType(request.returnType())
+        );
+
+        return new PsqlFunction(request, handle);
+    }
+
+    /**
+     * @return true, если функция скомпилирована из того же {@code prosrc} с той же сигнатурой
+     */
+    public boolean matches(PsqlProtocol.Request request) {
+        var arguments = request.arguments();
+        if (returnType != request.returnType() || signature.size() != arguments.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < arguments.size(); i++) {
+            var argument = arguments.get(i);
+            if (signature.get(i).type() != argument.type() || !signature.get(i).name().equals(argument.name())) {
+                return false;
+            }
+        }
+
+        return source.equals(request.source());
+    }
+
+    public Object invoke(PsqlProtocol.Request request) throws Throwable {
+        var arguments = request.arguments().stream()
+            .map(PsqlProtocol.Argument::value)
+            .toArray();
+
+        return (Object) handle.invokeExact(arguments);
+    }
+}
@@ -0,0 +1,158 @@
+package iceberg.psql;
+
+import iceberg.ir.IcebergType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Бинарный протокол между хэндлером {@code LANGUAGE iceberg} (postgres/iceberg.c) и {@link PsqlServer}.
+ * Все числа в network byte order, строки - u32 длина (-1 для null) и UTF-8 байты.
+ * <pre>
+ * request:  u32 oid, string prosrc, u8 returnType, u16 nargs, nargs * (string name, u8 type, value)
+ * response: u8 status
+ *           OK    -> string output, u8 type, value
+ *           ERROR -> string message
+ * </pre>
+ */
+public final class PsqlProtocol {
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+
+    public static final int TYPE_UNIT = 0;
+    public static final int TYPE_I32 = 1;
+    public static final int TYPE_I64 = 2;
+    public static final int TYPE_BOOL = 3;
+    public static final int TYPE_STRING = 4;
+
+    private PsqlProtocol() {
+    }
+
+    public record Argument(String name, int type, Object value) {
+    }
+
+    public record Request(long oid, String source, int returnType, List<Argument> arguments) {
+
+        public static Request read(DataInputStream in) throws IOException {
+            var oid = Integer.toUnsignedLong(in.readInt());
+            var source = readString(in);
+            var returnType = in.readUnsignedByte();
+
+            var count = in.readUnsignedShort();
+            var arguments = new ArrayList<Argument>(count);
+            for (int i = 0; i < count; i++) {
+                var name = readString(in);
+                var type = in.readUnsignedByte();
+                arguments.add(new Argument(name, type, readValue(in, type)));
+            }
+
+            return new Request(oid, source, returnType, arguments);
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt((int) oid);
+            writeString(out, source);
+            out.writeByte(returnType);
+
+            out.writeShort(arguments.size());
+            for (var argument : arguments) {
+                writeString(out, argument.name);
+                out.writeByte(argument.type);
+                writeValue(out, argument.type, argument.value);
+            }
+        }
+    }
+
+    public record Response(int status, String output, int type, Object value, String message) {
+
+        public static Response ok(String output, int type, Object value) {
+            return new Response(STATUS_OK, output, type, value, null);
+        }
+
+        public static Response error(String message) {
+            return new Response(STATUS_ERROR, null, TYPE_UNIT, null, message);
+        }
+
+        public static Response read(DataInputStream in) throws IOException {
+            var status = in.readUnsignedByte();
+            if (status != STATUS_OK) {
+                return error(readString(in));
+            }
+
+            var output = readString(in);
+            var type = in.readUnsignedByte();
+            return ok(output, type, readValue(in, type));
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(status);
+            if (status != STATUS_OK) {
+                writeString(out, message);
+                return;
+            }
+
+            writeString(out, output);
+            out.writeByte(type);
+            writeValue(out, type, value);
+        }
+    }
+
+    public static IcebergType toIcebergType(int type) {
+        return switch (type) {
+            case TYPE_UNIT -> IcebergType.unit;
+            case TYPE_I32 -> IcebergType.i32;
+            case TYPE_I64 -> IcebergType.i64;
+            case TYPE_BOOL -> IcebergType.bool;
+            case TYPE_STRING -> IcebergType.string;
+            default -> throw new IllegalArgumentException("unknown type: " + type);
+        };
+    }
+
+    public static Object readValue(DataInputStream in, int type) throws IOException {
+        return switch (type) {
+            case TYPE_UNIT -> null;
+            case TYPE_I32 -> in.readInt();
+            case TYPE_I64 -> in.readLong();
+            case TYPE_BOOL -> in.readBoolean();
+            case TYPE_STRING -> readString(in);
+            default -> throw new IOException("unknown type: " + type);
+        };
+    }
+
+    public static void writeValue(DataOutputStream out, int type, Object value) throws IOException {
+        switch (type) {
+            case TYPE_UNIT -> { /* no value */ }
+            case TYPE_I32 -> out.writeInt((Integer) value);
+            case TYPE_I64 -> out.writeLong((Long) value);
+            case TYPE_BOOL -> out.writeBoolean((Boolean) value);
+            case TYPE_STRING -> writeString(out, (String) value);
+            default -> throw new IOException("unknown type: " + type);
+        }
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        return new String(in.readNBytes(length), UTF_8);
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
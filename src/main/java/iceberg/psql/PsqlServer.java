@@ -0,0 +1,193 @@
+package iceberg.psql;
+
+import lombok.SneakyThrows;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Сервер, к которому подключается хэндлер {@code LANGUAGE iceberg}.
+ * Каждый backend постгреса держит свое соединение и шлет по нему вызовы функций,
+ * скомпилированные функции кэшируются по OID и переиспользуются между вызовами.
+ */
+public class PsqlServer {
+
+    public static final String DEFAULT_SOCKET = "/tmp/iceberg-psql.sock";
+
+    private static final Set<Path> SERVING = ConcurrentHashMap.newKeySet();
+
+    private final Path socketPath;
+    private final Map<Long, PsqlFunction> functions = new ConcurrentHashMap<>();
+    private final CapturingOutputStream output = new CapturingOutputStream(System.out);
+
+    public PsqlServer(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    public static void main(String[] args) {
+        var socketPath = Path.of(args.length > 0 ? args[0] : DEFAULT_SOCKET);
+        new PsqlServer(socketPath).serve();
+    }
+
+    /**
+     * Слушает сокет, пока процесс жив. Если на этом сокете уже работает другой сервер, сразу возвращается:
+     * несколько backend'ов могут одновременно не найти сервер и запустить по JVM, сокет достается одной.
+     */
+    @SneakyThrows
+    public void serve() {
+        //закрытие любого канала к файлу снимает POSIX-блокировку всего процесса, поэтому
+        //второй сервер в той же JVM не должен даже открывать lock-файл
+        if (!SERVING.add(socketPath.toAbsolutePath())) {
+            System.err.println("iceberg server is already running at " + socketPath);
+            return;
+        }
+
+        var lockPath = socketPath.resolveSibling(socketPath.getFileName() + ".lock");
+        try (var lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            //блокировку снимает ОС при выходе процесса, в том числе после падения
+            var lock = lockChannel.tryLock();
+            if (lock == null) {
+                System.err.println("iceberg server is already running at " + socketPath);
+                return;
+            }
+
+            try {
+                listen();
+            } finally {
+                lock.release();
+            }
+        } finally {
+            SERVING.remove(socketPath.toAbsolutePath());
+        }
+    }
+
+    private void listen() throws IOException {
+        //print внутри функции пишет в System.out, а он общий для всех соединений
+        System.setOut(new PrintStream(output, true, UTF_8));
+
+        //под блокировкой файл сокета может остаться только от упавшего сервера
+        Files.deleteIfExists(socketPath);
+        try (
+            var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            var executor = Executors.newVirtualThreadPerTaskExecutor()
+        ) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(this::deleteSocket));
+
+            while (server.isOpen()) {
+                var channel = server.accept();
+                executor.submit(() -> handle(channel));
+            }
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            while (true) {
+                PsqlProtocol.Request request;
+                try {
+                    request = PsqlProtocol.Request.read(in);
+                } catch (EOFException e) {
+                    return; //backend closed connection
+                }
+
+                call(request).write(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("connection failed: " + e.getMessage());
+        }
+    }
+
+    public PsqlProtocol.Response call(PsqlProtocol.Request request) {
+        var buffer = new ByteArrayOutputStream();
+        output.capture(buffer);
+        try {
+            var function = lookup(request);
+            var value = function.invoke(request);
+
+            System.out.flush();
+            return PsqlProtocol.Response.ok(buffer.toString(UTF_8), request.returnType(), value);
+        } catch (Throwable e) {
+            return PsqlProtocol.Response.error(e.getMessage() != null ? e.getMessage() : e.toString());
+        } finally {
+            output.release();
+        }
+    }
+
+    //компиляция идет вне карты и не блокирует вызовы других функций
+    private PsqlFunction lookup(PsqlProtocol.Request request) {
+        var cached = functions.get(request.oid());
+        if (cached != null && cached.matches(request)) {
+            return cached;
+        }
+
+        var compiled = PsqlFunction.compile(request);
+        if (cached == null) {
+            functions.putIfAbsent(request.oid(), compiled);
+        } else {
+            functions.replace(request.oid(), cached, compiled);
+        }
+        return compiled;
+    }
+
+    @SneakyThrows
+    private void deleteSocket() {
+        Files.deleteIfExists(socketPath);
+    }
+
+    private static class CapturingOutputStream extends OutputStream {
+
+        private final ThreadLocal<OutputStream> captured = new ThreadLocal<>();
+        private final OutputStream fallback;
+
+        CapturingOutputStream(OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        void capture(OutputStream target) {
+            captured.set(target);
+        }
+
+        void release() {
+            captured.remove();
+        }
+
+        private OutputStream target() {
+            var target = captured.get();
+            return target != null ? target : fallback;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+}
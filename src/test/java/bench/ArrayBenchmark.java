@@ -0,0 +1,111 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+
+/**
+ * Заполнение и суммирование {@value #SIZE} чисел {@value #PASSES} раз: Iceberg-программа с {@code i32[]},
+ * тот же цикл на Java с {@code int[]} и с {@code ArrayList<Integer>}, к которому раньше приходилось
+ * обращаться через {@code import}. Результат - наносекунд на элемент, вывод программы отбрасывается.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ArrayBenchmark}
+ */
+public class ArrayBenchmark {
+
+    static final int SIZE = 1_000_000;
+    static final int PASSES = 20;
+    static final int ROUNDS = 5;
+
+    static final String SOURCE = """
+        def a = new i32[%d];
+        def total: i64 = 0;
+        def pass = 0;
+        while pass < %d then {
+            def i = 0;
+            while i < a.length then {
+                a[i] = i + pass;
+                i = i + 1;
+            }
+            i = 0;
+            while i < a.length then {
+                total = total + a[i];
+                i = i + 1;
+            }
+            pass = pass + 1;
+        }
+        print total;
+        """.formatted(SIZE, PASSES);
+
+    static long sink;
+
+    public static void main(String[] args) throws Throwable {
+        var iceberg = JvmCompiler.load(SOURCE);
+
+        var stdout = System.out;
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                var icebergTime = measure(() -> icebergArray(iceberg));
+                var arrayTime = measure(ArrayBenchmark::javaArray);
+                var listTime = measure(ArrayBenchmark::javaList);
+
+                stdout.printf(
+                    "round %d: iceberg i32[] %6.2f ns/op | java int[] %6.2f ns/op | ArrayList<Integer> %6.2f ns/op%n",
+                    round, icebergTime, arrayTime, listTime
+                );
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    static void icebergArray(MethodHandle main) throws Throwable {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        main.invokeExact(new String[0]);
+    }
+
+    static void javaArray() {
+        var a = new int[SIZE];
+        long total = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int i = 0; i < a.length; i++) {
+                a[i] = i + pass;
+            }
+            for (int i = 0; i < a.length; i++) {
+                total += a[i];
+            }
+        }
+        sink = total;
+    }
+
+    static void javaList() {
+        var a = new ArrayList<Integer>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            a.add(0);
+        }
+        long total = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int i = 0; i < a.size(); i++) {
+                a.set(i, i + pass);
+            }
+            for (int i = 0; i < a.size(); i++) {
+                total += a.get(i);
+            }
+        }
+        sink = total;
+    }
+
+    //наносекунд на одну операцию с элементом (запись или чтение)
+    static double measure(Body body) throws Throwable {
+        var start = System.nanoTime();
+        body.run();
+        return (double) (System.nanoTime() - start) / (2L * SIZE * PASSES);
+    }
+
+    interface Body {
+        void run() throws Throwable;
+    }
+}
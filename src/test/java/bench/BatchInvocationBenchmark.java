@@ -0,0 +1,67 @@
+package bench;
+
+import iceberg.ir.IcebergType;
+import iceberg.jvm.JvmCompiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+/**
+ * Построчный вызов скомпилированной функции через {@link Method#invoke}
+ * против колоночного {@link JvmCompiler#runBatch} на одних и тех же данных.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.BatchInvocationBenchmark}
+ */
+public class BatchInvocationBenchmark {
+
+    static final int ROWS = 1_000_000;
+
+    public static void main(String[] args) throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("price", IcebergType.i64);
+        parameters.put("quantity", IcebergType.i32);
+        parameters.put("discount", IcebergType.bool);
+
+        var handle = JvmCompiler.compileFunction("total", """
+            def total = price * quantity;
+            if discount then total = total - total / 10;
+            return total;
+            """, parameters, IcebergType.i64);
+        var method = MethodHandles.reflectAs(Method.class, handle);
+
+        var random = new Random(42);
+        var prices = new long[ROWS];
+        var quantities = new int[ROWS];
+        var discounts = new boolean[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            prices[i] = random.nextInt(10_000);
+            quantities[i] = random.nextInt(100);
+            discounts[i] = random.nextBoolean();
+        }
+
+        for (int round = 0; round < 10; round++) {
+            var start = System.nanoTime();
+            var reflective = new long[ROWS];
+            for (int i = 0; i < ROWS; i++) {
+                reflective[i] = (long) method.invoke(null, prices[i], quantities[i], discounts[i]);
+            }
+            var reflectiveTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            var batch = (long[]) JvmCompiler.runBatch(handle, prices, quantities, discounts);
+            var batchTime = System.nanoTime() - start;
+
+            if (!Arrays.equals(reflective, batch)) {
+                throw new IllegalStateException("results differ");
+            }
+
+            System.out.printf(
+                "round %d: Method.invoke %5.1f ns/row, runBatch %5.1f ns/row%n",
+                round, (double) reflectiveTime / ROWS, (double) batchTime / ROWS
+            );
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+
+/**
+ * Строк в секунду у программы, которая печатает {@value #LINES} чисел, с построчным и с буферизованным
+ * ({@code -Diceberg.print.buffered=true}) выводом. Вывод идет в файл через {@code PrintStream} с autoflush,
+ * как у стандартного {@code System.out}: без буфера каждая строка - отдельный системный вызов write.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.BufferedPrintBenchmark}
+ */
+public class BufferedPrintBenchmark {
+
+    static final int LINES = 1_000_000;
+    static final int ROUNDS = 5;
+
+    static final String SOURCE = """
+        def i = 0;
+        while i < %d then {
+            print i;
+            i = i + 1;
+        }
+        """.formatted(LINES);
+
+    public static void main(String[] args) throws Throwable {
+        var unbuffered = compile(false);
+        var buffered = compile(true);
+
+        var file = Files.createTempFile("iceberg-print", ".txt");
+        file.toFile().deleteOnExit();
+
+        var stdout = System.out;
+        try (var stream = new PrintStream(new FileOutputStream(file.toFile()), true)) {
+            for (int round = 0; round < ROUNDS; round++) {
+                var unbufferedRate = linesPerSecond(unbuffered, stream);
+                var bufferedRate = linesPerSecond(buffered, stream);
+
+                stdout.printf(
+                    "round %d: unbuffered %,12.0f lines/s | buffered %,12.0f lines/s (x%.1f)%n",
+                    round, unbufferedRate, bufferedRate, bufferedRate / unbufferedRate
+                );
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    static MethodHandle compile(boolean buffered) {
+        System.setProperty("iceberg.print.buffered", String.valueOf(buffered));
+        try {
+            return JvmCompiler.load(SOURCE);
+        } finally {
+            System.clearProperty("iceberg.print.buffered");
+        }
+    }
+
+    static double linesPerSecond(MethodHandle main, PrintStream stream) throws Throwable {
+        System.setOut(stream);
+        var start = System.nanoTime();
+        main.invokeExact(new String[0]);
+        var seconds = (System.nanoTime() - start) / 1e9;
+        System.setOut(stream);
+
+        return LINES / seconds;
+    }
+}
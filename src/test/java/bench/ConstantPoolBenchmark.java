@@ -0,0 +1,49 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Компиляция файла с N различными call site'ами (каждый print использует свою строку,
+ * т.е. добавляет в пул новые Utf8 и String). При O(1) интернировании констант
+ * время должно расти линейно по N.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ConstantPoolBenchmark}
+ */
+public class ConstantPoolBenchmark {
+
+    public static void main(String[] args) {
+        int[] sizes = {1_250, 2_500, 5_000, 10_000};
+
+        //warmup
+        for (int i = 0; i < 5; i++) {
+            JvmCompiler.compile(source(sizes[0]));
+        }
+
+        long prev = -1;
+        for (var size : sizes) {
+            var source = source(size);
+
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                var start = System.nanoTime();
+                JvmCompiler.compile(source);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            System.out.printf(
+                "call sites: %6d, compile: %6d ms, growth: %s%n",
+                size, best / 1_000_000, prev < 0 ? "-" : "x%.2f".formatted((double) best / prev)
+            );
+            prev = best;
+        }
+    }
+
+    static String source(int callSites) {
+        return IntStream.range(0, callSites)
+            .mapToObj(i -> "print \"call site #%d\";".formatted(i))
+            .collect(Collectors.joining(System.lineSeparator()));
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import iceberg.common.phases.BuildIrTreePhase;
+import iceberg.common.phases.IrVerificationPhase;
+import iceberg.common.phases.ParseSourcePhase;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.cp.ConstantPropagation;
+import iceberg.llvm.opt.ssa.SsaConstruction;
+import iceberg.llvm.phases.BuildCfgPhase;
+import iceberg.llvm.phases.BuildTacPhase;
+
+/**
+ * SCCP на сгенерированной функции из ~5000 блоков: цепочка if/else, половина из которых
+ * решается на этапе компиляции, и цикл, который держит переменные неизвестными.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ConstantPropagationBenchmark}
+ */
+public class ConstantPropagationBenchmark {
+
+    private static final int BRANCHES = 1666; //каждый if/else добавляет 3 блока
+
+    public static void main(String[] args) {
+        var source = model();
+
+        //warmup
+        for (int i = 0; i < 5; i++) {
+            optimize(source);
+        }
+
+        long best = Long.MAX_VALUE;
+        int before = 0;
+        int after = 0;
+        for (int i = 0; i < 10; i++) {
+            var functionCfg = build(source);
+            before = functionCfg.bbs.size();
+
+            var start = System.nanoTime();
+            new ConstantPropagation(functionCfg).execute();
+            best = Math.min(best, System.nanoTime() - start);
+
+            after = functionCfg.bbs.size();
+        }
+
+        System.out.printf("blocks: %d -> %d, sccp: %.2f ms%n", before, after, best / 1e6);
+    }
+
+    private static void optimize(String source) {
+        new ConstantPropagation(build(source)).execute();
+    }
+
+    private static FunctionCfg build(String source) {
+        var irFile = new BuildIrTreePhase().execute(new ParseSourcePhase().execute(source));
+        new IrVerificationPhase().execute(irFile);
+
+        var main = irFile.classes.getFirst().methods.stream()
+            .filter(function -> "main".equals(function.name))
+            .findAny().orElseThrow();
+
+        var functionCfg = new BuildCfgPhase(new BuildTacPhase(main).execute()).execute();
+        new SsaConstruction(functionCfg).execute();
+
+        return functionCfg;
+    }
+
+    private static String model() {
+        var source = new StringBuilder();
+        source.append("""
+            def known = 1;
+            def unknown = 0;
+            def i = 0;
+            while i < 3 then {
+                unknown = unknown + i;
+                i = i + 1;
+            }
+            """);
+
+        for (int i = 0; i < BRANCHES; i++) {
+            var variable = i % 2 == 0 ? "known" : "unknown";
+            source.append("""
+                if %s > 0 then {
+                    %s = %s + %d;
+                } else {
+                    %s = %s - 1;
+                }
+                """.formatted(variable, variable, variable, i % 7, variable, variable));
+        }
+        source.append("print known + unknown;\n");
+
+        return source.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package bench;
+
+import iceberg.Misc;
+import iceberg.jvm.CodeGenerator;
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.target.CompilationUnit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+
+/**
+ * Максимальная глубина рекурсии {@code depth(n)} на потоке с фиксированным стеком:
+ * точные {@code max_stack}/{@code max_locals} против прежних 100/100 у каждого метода.
+ * Интерпретатор резервирует под фрейм все {@code max_locals + max_stack} слотов, поэтому
+ * разница видна прежде всего до JIT-компиляции, с {@code -Xint} - на всей глубине.
+ * <p>
+ * Запуск: {@code java -Xint -cp target/classes:target/test-classes:<deps> bench.DeepRecursionBenchmark}
+ */
+public class DeepRecursionBenchmark {
+
+    static final long STACK_SIZE = 512 * 1024;
+    static final int ATTEMPTS = 5;
+
+    static final String SOURCE = """
+        fun depth(n: i32): i32 {
+            if n == 0 then return 0;
+            return depth(n - 1) + 1;
+        }
+
+        fun wide(n: i32, a: i64, b: i64): i64 {
+            if n == 0 then return a + b;
+            def x: i64 = a * 3;
+            def y: i64 = b + n;
+            return wide(n - 1, x - a, y - b);
+        }
+        """;
+
+    public static void main(String[] args) throws Exception {
+        var exact = JvmCompiler.compile(SOURCE);
+        report("exact", exact);
+
+        for (var unit : exact) {
+            unit.methods.forEach(method -> method.attributes.forEach(attribute -> {
+                attribute.maxStack = 100;
+                attribute.maxLocals = 100;
+            }));
+        }
+        CodeGenerator.codegen(exact);
+        report("100/100", exact);
+    }
+
+    static void report(String name, Collection<CompilationUnit> units) throws Exception {
+        var klass = new Misc.ByteClassLoader().define("Iceberg", units.iterator().next().bytes);
+
+        var lookup = MethodHandles.publicLookup();
+        var depth = lookup.findStatic(klass, "depth", MethodType.methodType(int.class, int.class));
+        var wide = lookup.findStatic(klass, "wide", MethodType.methodType(long.class, int.class, long.class, long.class));
+
+        var depthMax = maxDepth(n -> (int) depth.invokeExact(n));
+        var wideMax = maxDepth(n -> (long) wide.invokeExact(n, 1L, 2L));
+
+        System.out.printf(
+            "%-8s depth(n): %7d frames (%4d bytes/frame), wide(n): %7d frames (%4d bytes/frame)%n",
+            name, depthMax, STACK_SIZE / depthMax, wideMax, STACK_SIZE / wideMax
+        );
+    }
+
+    interface Probe {
+        long call(int n) throws Throwable;
+    }
+
+    //двоичный поиск по глубине, лучший результат из нескольких попыток
+    static int maxDepth(Probe probe) throws InterruptedException {
+        int best = 0;
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            int low = 1;
+            int high = 10_000_000;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (fits(probe, middle)) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            best = Math.max(best, low);
+        }
+
+        return best;
+    }
+
+    static boolean fits(Probe probe, int n) throws InterruptedException {
+        var result = new boolean[1];
+        var thread = new Thread(null, () -> {
+            try {
+                probe.call(n);
+                result[0] = true;
+            } catch (StackOverflowError e) {
+                result[0] = false;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }, "probe", STACK_SIZE);
+
+        thread.start();
+        thread.join();
+
+        return result[0];
+    }
+}
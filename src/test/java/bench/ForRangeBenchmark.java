@@ -0,0 +1,64 @@
+package bench;
+
+import iceberg.ir.IcebergType;
+import iceberg.jvm.JvmCompiler;
+
+import java.lang.invoke.MethodHandle;
+import java.util.LinkedHashMap;
+
+/**
+ * Суммирование {@code i * i} по {@code 0..n}: цикл {@code while} со счетчиком в переменной
+ * и {@code for i in 0..n}, который компилируется в {@code iinc} и проверку {@code if_icmplt} в конце тела.
+ * Результат - наносекунд на итерацию, каждый вариант вызывается {@value #CALLS} раз за раунд.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ForRangeBenchmark}
+ */
+public class ForRangeBenchmark {
+
+    static final int N = 1_000_000;
+    static final int CALLS = 100;
+    static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("n", IcebergType.i32);
+
+        var whileLoop = JvmCompiler.compileFunction("squares", """
+            def total: i64 = 0;
+            def i = 0;
+            while i < n then {
+                def x: i64 = i;
+                total = total + x * x;
+                i = i + 1;
+            }
+            return total;
+            """, parameters, IcebergType.i64);
+        var forLoop = JvmCompiler.compileFunction("squares", """
+            def total: i64 = 0;
+            for i in 0..n then {
+                def x: i64 = i;
+                total = total + x * x;
+            }
+            return total;
+            """, parameters, IcebergType.i64);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            var whileTime = measure(whileLoop);
+            var forTime = measure(forLoop);
+
+            System.out.printf("round %d: while %5.3f ns/op, for %5.3f ns/op%n", round, whileTime, forTime);
+        }
+    }
+
+    static double measure(MethodHandle function) throws Throwable {
+        var expected = (long) function.invoke(N);
+
+        var start = System.nanoTime();
+        for (int call = 0; call < CALLS; call++) {
+            if ((long) function.invoke(N) != expected) {
+                throw new IllegalStateException("results differ");
+            }
+        }
+        return (double) (System.nanoTime() - start) / ((long) CALLS * N);
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Сгенерированная модель из 300 классов: полная компиляция против инкрементальной
+ * после правки тела одного метода.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.IncrementalCompilationBenchmark}
+ */
+public class IncrementalCompilationBenchmark {
+
+    static final int CLASSES = 300;
+
+    public static void main(String[] args) throws Exception {
+        var source = model(0);
+
+        for (int round = 0; round < 5; round++) {
+            var directory = Files.createTempDirectory("incremental");
+            var path = directory.resolve("model.ib");
+
+            var start = System.nanoTime();
+            var full = JvmCompiler.compileIncremental(path, source);
+            var fullTime = System.nanoTime() - start;
+
+            var edited = model(round + 1);
+            start = System.nanoTime();
+            var incremental = JvmCompiler.compileIncremental(path, edited);
+            var incrementalTime = System.nanoTime() - start;
+
+            System.out.printf(
+                "round %d: full %3d classes %5d ms, one-method edit %d classes %5d ms%n",
+                round, full.size(), fullTime / 1_000_000, incremental.size(), incrementalTime / 1_000_000
+            );
+        }
+    }
+
+    //edit меняет константу в одном методе класса Model150
+    static String model(int edit) {
+        var source = new StringBuilder();
+        for (int i = 0; i < CLASSES; i++) {
+            var constant = i == CLASSES / 2 ? edit : i;
+            source.append("""
+                class Model%d {
+                    def id: i32
+                    def total: i64
+                    def active: bool
+
+                    fun score(k: i32): i64 {
+                        def s = this.total;
+                        def j = 0;
+                        while j < k then {
+                            if this.active then s = s + this.id * %d;
+                            j = j + 1;
+                        }
+                        return s;
+                    }
+
+                    fun bump(): i32 {
+                        this.id = this.id + 1;
+                        return this.id;
+                    }
+                }
+
+                """.formatted(i, constant));
+        }
+
+        source.append("def m = new Model0;\nprint m.bump();\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import iceberg.llvm.LlvmCompiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Время сборки и исполнения программ из {@link NativeVsJvmBenchmark} на уровнях {@code -O0..-O3}.
+ * Сборка меряется в двух вариантах: через промежуточный {@code .ll} файл и через stdin clang'а.
+ * Требует clang в PATH.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.LlvmOptimizationLevelsBenchmark}
+ */
+public class LlvmOptimizationLevelsBenchmark {
+
+    public static void main(String[] args) throws Throwable {
+        var directory = Files.createTempDirectory("levels");
+        var out = System.out;
+
+        for (var program : NativeVsJvmBenchmark.PROGRAMS) {
+            var sourcePath = directory.resolve("Iceberg.ib");
+            var source = program.getValue();
+
+            for (int level = 0; level <= 3; level++) {
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    var file = compile(sourcePath, source, new LlvmCompiler.Options(level, false));
+                    var stdin = compile(sourcePath, source, new LlvmCompiler.Options(level, true));
+
+                    long run = Long.MAX_VALUE;
+                    for (int i = 0; i < 5; i++) {
+                        var start = System.nanoTime();
+                        new ProcessBuilder(sourcePath.resolveSibling("Iceberg").toString()).start().waitFor();
+                        run = Math.min(run, System.nanoTime() - start);
+                    }
+
+                    out.printf(
+                        "%-16s -O%d compile: %4d ms (file), %4d ms (stdin), run: %5d ms%n",
+                        program.getKey(), level, file / 1_000_000, stdin / 1_000_000, run / 1_000_000
+                    );
+                } catch (Exception e) {
+                    out.printf("%-16s -O%d clang not available%n", program.getKey(), level);
+                } finally {
+                    System.setOut(out);
+                }
+            }
+        }
+    }
+
+    //лучшее из 3 сборок
+    private static long compile(Path sourcePath, String source, LlvmCompiler.Options options) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            var start = System.nanoTime();
+            LlvmCompiler.compile(sourcePath, source, options);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+}
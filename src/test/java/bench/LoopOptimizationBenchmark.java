@@ -0,0 +1,131 @@
+package bench;
+
+import iceberg.common.phases.BuildIrTreePhase;
+import iceberg.common.phases.IrVerificationPhase;
+import iceberg.common.phases.ParseSourcePhase;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.cp.ConstantPropagation;
+import iceberg.llvm.opt.loop.LoopAnalysis;
+import iceberg.llvm.opt.loop.LoopInvariantCodeMotion;
+import iceberg.llvm.opt.loop.StrengthReduction;
+import iceberg.llvm.opt.ssa.SsaConstruction;
+import iceberg.llvm.phases.BuildCfgPhase;
+import iceberg.llvm.phases.BuildTacPhase;
+import iceberg.llvm.phases.CodeGenerationPhase;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Вложенный цикл с инвариантами и умножением на счетчик до и после LICM и strength reduction:
+ * число инструкций в телах циклов и время работы -O0 бинарника, при котором clang сам ничего не выносит.
+ * Время измеряется, только если в PATH есть clang.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.LoopOptimizationBenchmark}
+ */
+public class LoopOptimizationBenchmark {
+
+    private static final String SOURCE = """
+        fun kernel(n: i32, k: i32): i64 {
+            def sum: i64 = 0;
+            def i = 0;
+            while i < n then {
+                def j = 0;
+                while j < n then {
+                    sum = sum + i * k + j * 8 + n * k - k / 3;
+                    j = j + 1;
+                }
+                i = i + 1;
+            }
+            return sum;
+        }
+
+        print kernel(20000, 7);
+        """;
+
+    public static void main(String[] args) throws Exception {
+        //отладочный вывод фаз не должен попадать в замеры
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        var before = compile(false);
+        var after = compile(true);
+
+        out.printf("before: %2d instructions in inner loop%n", innerLoopInstructions(before));
+        out.printf("after:  %2d instructions in inner loop%n", innerLoopInstructions(after));
+
+        var directory = Files.createTempDirectory("loops");
+        var beforeTime = run(directory, "before", CodeGenerationPhase.execute(before));
+        var afterTime = run(directory, "after", CodeGenerationPhase.execute(after));
+        if (beforeTime < 0 || afterTime < 0) {
+            out.println("clang not found, skipping -O0 run");
+        } else {
+            out.printf("-O0 before: %d ms%n", beforeTime);
+            out.printf("-O0 after:  %d ms%n", afterTime);
+        }
+    }
+
+    private static List<FunctionCfg> compile(boolean loops) {
+        var irFile = new BuildIrTreePhase().execute(new ParseSourcePhase().execute(SOURCE));
+        new IrVerificationPhase().execute(irFile);
+
+        var allCfg = new ArrayList<FunctionCfg>();
+        for (var irClass : irFile.classes) {
+            for (var irFunction : irClass.methods) {
+                var functionCfg = new BuildCfgPhase(new BuildTacPhase(irFunction).execute()).execute();
+                new SsaConstruction(functionCfg).execute();
+                new ConstantPropagation(functionCfg).execute();
+
+                if (loops) {
+                    var found = new LoopAnalysis(functionCfg).execute();
+                    new LoopInvariantCodeMotion(functionCfg, found).execute();
+                    new StrengthReduction(functionCfg, found).execute();
+                }
+
+                allCfg.add(functionCfg);
+            }
+        }
+
+        return allCfg;
+    }
+
+    //инструкции самого вложенного цикла, они выполняются n^2 раз
+    private static long innerLoopInstructions(List<FunctionCfg> allCfg) {
+        return allCfg.stream()
+            .map(functionCfg -> new LoopAnalysis(functionCfg).execute())
+            .filter(loops -> !loops.isEmpty())
+            .flatMap(loops -> loops.getFirst().blocks.stream())
+            .mapToLong(bb -> bb.tac.size())
+            .sum();
+    }
+
+    private static long run(Path directory, String name, String module) throws Exception {
+        var ll = directory.resolve(name + ".ll");
+        var binary = directory.resolve(name);
+        Files.writeString(ll, module);
+
+        try {
+            var clang = new ProcessBuilder("clang", "-O0", ll.toString(), "-o", binary.toString())
+                .inheritIO()
+                .start();
+            if (clang.waitFor() != 0) {
+                throw new IllegalStateException("clang failed");
+            }
+        } catch (java.io.IOException e) {
+            return -1;
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            var start = System.nanoTime();
+            new ProcessBuilder(binary.toString()).start().waitFor();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best / 1_000_000;
+    }
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+import iceberg.llvm.LlvmCompiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Рекурсивные и итеративные функции из {@code e2e/FunctionsTest} на JVM и LLVM бэкендах.
+ * JVM-версия запускается в том же процессе после прогрева, нативная - отдельным процессом,
+ * поэтому в ее время входит запуск процесса (~1 ms). Нативная часть требует clang в PATH.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.NativeVsJvmBenchmark}
+ */
+public class NativeVsJvmBenchmark {
+
+    static final List<Map.Entry<String, String>> PROGRAMS = List.of(
+        Map.entry("fib (recursive)", """
+            fun fib(n: i32): i32 {
+                if n == 1 then return 1;
+                if n == 2 then return 1;
+
+                return fib(n - 1) + fib(n - 2);
+            }
+
+            print fib(35);
+            """),
+        Map.entry("fac (recursive)", """
+            fun fac(n: i32): i32 {
+                if n == 1 then return 1;
+
+                return n * fac(n - 1);
+            }
+
+            def i = 0;
+            def sum = 0;
+            while i < 1000000 then {
+                sum = sum + fac(12);
+                i = i + 1;
+            }
+            print sum;
+            """),
+        Map.entry("sum (iterative)", """
+            fun sum(n: i32): i64 {
+                def s: i64 = 0;
+                def i = 0;
+                while i < n then {
+                    s = s + i;
+                    i = i + 1;
+                }
+                return s;
+            }
+
+            print sum(1000000000);
+            """)
+    );
+
+    public static void main(String[] args) throws Throwable {
+        var directory = Files.createTempDirectory("native");
+        var out = System.out;
+
+        for (var program : PROGRAMS) {
+            var source = program.getValue();
+
+            //JVM: прогрев и лучшее из 5 запусков
+            var main = JvmCompiler.load(source);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long jvm = Long.MAX_VALUE;
+            for (int i = 0; i < 8; i++) {
+                var start = System.nanoTime();
+                main.invokeExact(new String[0]);
+                jvm = Math.min(jvm, System.nanoTime() - start);
+            }
+
+            long llvm = Long.MAX_VALUE;
+            try {
+                var binary = LlvmCompiler.compile(directory.resolve("Iceberg.ib"), source);
+                for (int i = 0; i < 5; i++) {
+                    var start = System.nanoTime();
+                    new ProcessBuilder(binary.toString()).start().waitFor();
+                    llvm = Math.min(llvm, System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                llvm = -1; //нет clang
+            } finally {
+                System.setOut(out);
+            }
+
+            out.printf(
+                "%-16s jvm: %5d ms, llvm: %s%n",
+                program.getKey(), jvm / 1_000_000, llvm < 0 ? "clang not available" : llvm / 1_000_000 + " ms"
+            );
+        }
+    }
+}
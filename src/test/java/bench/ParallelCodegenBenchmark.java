@@ -0,0 +1,69 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.target.CompilationUnit;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Компиляция модели из 300 классов с генерацией юнитов на пуле из 1, 2, 4 и 8 потоков.
+ * Заодно проверяет, что байткод не зависит от числа потоков.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ParallelCodegenBenchmark}
+ */
+public class ParallelCodegenBenchmark {
+
+    public static void main(String[] args) {
+        var source = IncrementalCompilationBenchmark.model(0);
+        var expected = JvmCompiler.compile(source, Runnable::run);
+
+        long sequential = -1;
+        for (var parallelism : new int[]{1, 2, 4, 8}) {
+            try (var pool = new ForkJoinPool(parallelism)) {
+                //warmup
+                for (int i = 0; i < 5; i++) {
+                    JvmCompiler.compile(source, pool);
+                }
+
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < 10; i++) {
+                    var start = System.nanoTime();
+                    var units = JvmCompiler.compile(source, pool);
+                    best = Math.min(best, System.nanoTime() - start);
+
+                    if (!sameBytes(expected, units)) {
+                        throw new IllegalStateException("output depends on parallelism");
+                    }
+                }
+
+                if (sequential < 0) {
+                    sequential = best;
+                }
+
+                System.out.printf(
+                    "threads: %d, compile: %4d ms, speedup: x%.2f%n",
+                    parallelism, best / 1_000_000, (double) sequential / best
+                );
+            }
+        }
+
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    static boolean sameBytes(Collection<CompilationUnit> expected, Collection<CompilationUnit> actual) {
+        var left = expected.stream().map(unit -> unit.bytes).toList();
+        var right = actual.stream().map(unit -> unit.bytes).toList();
+
+        if (left.size() != right.size()) {
+            return false;
+        }
+        for (int i = 0; i < left.size(); i++) {
+            if (!Arrays.equals(left.get(i), right.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
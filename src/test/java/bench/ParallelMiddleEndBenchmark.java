@@ -0,0 +1,85 @@
+package bench;
+
+import iceberg.llvm.LlvmCompiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Middle-end LLVM-бэкенда (TAC, CFG, constant propagation) на файле из 2000 функций,
+ * функции обрабатываются на пуле из 1, 2, 4 и 8 потоков. Заодно проверяет, что модуль не зависит от числа потоков.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ParallelMiddleEndBenchmark}
+ */
+public class ParallelMiddleEndBenchmark {
+
+    private static final int FUNCTIONS = 2000;
+
+    public static void main(String[] args) {
+        var source = model();
+
+        //отладочный вывод фаз не должен попадать в замеры
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        var expected = LlvmCompiler.compile(source, Runnable::run);
+
+        long sequential = -1;
+        for (var parallelism : new int[]{1, 2, 4, 8}) {
+            try (var pool = new ForkJoinPool(parallelism)) {
+                //warmup
+                for (int i = 0; i < 3; i++) {
+                    LlvmCompiler.compile(source, pool);
+                }
+
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < 5; i++) {
+                    var start = System.nanoTime();
+                    var module = LlvmCompiler.compile(source, pool);
+                    best = Math.min(best, System.nanoTime() - start);
+
+                    if (!expected.equals(module)) {
+                        throw new IllegalStateException("output depends on parallelism");
+                    }
+                }
+
+                if (sequential < 0) {
+                    sequential = best;
+                }
+
+                out.printf(
+                    "threads: %d, compile: %4d ms, speedup: x%.2f%n",
+                    parallelism, best / 1_000_000, (double) sequential / best
+                );
+            }
+        }
+
+        out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    static String model() {
+        var source = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            source.append("""
+                fun f%d(): i32 {
+                    def x = %d;
+                    def sum = 0;
+                    while x > 0 then {
+                        sum = sum + x * 2;
+                        x = x - 1;
+                    }
+                    if sum > 100 then {
+                        print sum;
+                    } else {
+                        print 100 - sum;
+                    }
+                    return 0;
+                }
+                """.formatted(i, i % 50));
+        }
+        source.append("print 0;\n");
+
+        return source.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import iceberg.llvm.LlvmCompiler;
+import iceberg.llvm.opt.PassManager;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+
+/**
+ * Время компиляции и размер модуля на уровнях {@code -O0..-O3} для файла из {@link ParallelMiddleEndBenchmark},
+ * затем JSON-отчет {@link PassManager} для {@code -O3}: сколько времени и памяти уходит на каждый проход
+ * и сколько TAC и блоков он убрал.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.PassPipelineBenchmark}
+ */
+public class PassPipelineBenchmark {
+
+    public static void main(String[] args) {
+        var source = ParallelMiddleEndBenchmark.model();
+
+        //отладочный вывод фаз не должен попадать в замеры
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        PassManager report = null;
+        for (int level = 0; level <= 3; level++) {
+            long best = Long.MAX_VALUE;
+            var size = 0;
+            for (int i = 0; i < 5; i++) {
+                var passManager = PassManager.forLevel(level);
+                var output = new StringWriter();
+
+                var start = System.nanoTime();
+                LlvmCompiler.compile(source, Runnable::run, output, passManager);
+                best = Math.min(best, System.nanoTime() - start);
+
+                size = output.getBuffer().length();
+                report = passManager;
+            }
+
+            out.printf("-O%d compile: %4d ms, module: %7d bytes%n", level, best / 1_000_000, size);
+        }
+
+        out.println(report.report());
+    }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import iceberg.psql.PsqlProtocol;
+import iceberg.psql.PsqlServer;
+import psql.PsqlClient;
+
+import java.nio.file.Files;
+
+import static iceberg.psql.PsqlProtocol.TYPE_I32;
+
+/**
+ * Пропускная способность (вызовов в секунду) {@link PsqlServer} без реального постгреса:
+ * клиент эмулирует {@code SELECT fibonacci(x) FROM big_table} - один OID, разные аргументы.
+ */
+public class PsqlServerBenchmark {
+
+    static final String FIBONACCI = """
+        if n <= 0 then return -1;
+
+        def f = 1;
+        def s = 1;
+
+        def i = 0;
+        while i < n - 1 then {
+            def tmp = f + s;
+            f = s;
+            s = tmp;
+
+            i = i + 1;
+        }
+
+        return f;
+        """;
+
+    public static void main(String[] args) throws Exception {
+        var calls = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        var socket = Files.createTempDirectory("psql").resolve("iceberg.sock");
+        Thread.ofPlatform().daemon().start(() -> new PsqlServer(socket).serve());
+
+        try (var client = new PsqlClient(socket)) {
+            for (int round = 0; round < 3; round++) {
+                var start = System.nanoTime();
+                for (int i = 0; i < calls; i++) {
+                    var n = new PsqlProtocol.Argument("n", TYPE_I32, i % 40);
+                    client.call(42, FIBONACCI, TYPE_I32, n);
+                }
+                var seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf("round %d: %d calls, %.0f calls/sec%n", round, calls, calls / seconds);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.JvmScriptEngine;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * 100k запусков небольших программ в одной JVM: время от запуска до первого вывода
+ * и рост metaspace. Сравниваются старый {@link JvmCompiler#run} (компиляция на каждый запуск)
+ * и {@link JvmScriptEngine} с кэшем на 1000 программ, где 100k запусков случайно выбирают один из 2000 исходников.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.ScriptEngineBenchmark}
+ */
+public class ScriptEngineBenchmark {
+
+    static final int RUNS = 100_000;
+    static final int DISTINCT = 2_000;
+
+    static long firstOutput;
+
+    public static void main(String[] args) {
+        var stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (firstOutput == 0) {
+                    firstOutput = System.nanoTime();
+                }
+            }
+        }));
+
+        try {
+            var engine = new JvmScriptEngine(1_000);
+            measure(stdout, "JvmCompiler.run", JvmCompiler::run);
+            measure(stdout, "JvmScriptEngine", engine::run);
+            stdout.printf("engine: hits %d, misses %d%n", engine.hits(), engine.misses());
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    static void measure(PrintStream stdout, String name, Consumer<String> runner) {
+        var metaspaceBefore = metaspace();
+        var latencies = new long[RUNS];
+        var random = new Random(42);
+
+        for (int i = 0; i < RUNS; i++) {
+            var source = "def x = " + random.nextInt(DISTINCT) + ";\nprint x + 1;\n";
+
+            firstOutput = 0;
+            var start = System.nanoTime();
+            runner.accept(source);
+            latencies[i] = firstOutput - start;
+
+            if ((i + 1) % 25_000 == 0) {
+                stdout.printf("%s: %6d runs, metaspace %+6d KB%n", name, i + 1, (metaspace() - metaspaceBefore) / 1024);
+            }
+        }
+
+        Arrays.sort(latencies);
+        stdout.printf(
+            "%s: first output p50 %6.1f us, p99 %6.1f us%n",
+            name, latencies[RUNS / 2] / 1000.0, latencies[RUNS * 99 / 100] / 1000.0
+        );
+    }
+
+    static long metaspace() {
+        System.gc();
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> "Metaspace".equals(pool.getName()))
+            .mapToLong(pool -> pool.getUsage().getUsed())
+            .sum();
+    }
+}
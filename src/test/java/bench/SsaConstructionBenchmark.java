@@ -0,0 +1,115 @@
+package bench;
+
+import iceberg.common.phases.BuildIrTreePhase;
+import iceberg.common.phases.IrVerificationPhase;
+import iceberg.common.phases.ParseSourcePhase;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.cp.ConstantPropagation;
+import iceberg.llvm.opt.ssa.SsaConstruction;
+import iceberg.llvm.phases.BuildCfgPhase;
+import iceberg.llvm.phases.BuildTacPhase;
+import iceberg.llvm.phases.CodeGenerationPhase;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Размер .ll и время работы -O0 бинарника для программы с вложенными циклами: alloca/load/store против SSA.
+ * Время измеряется, только если в PATH есть clang.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.SsaConstructionBenchmark}
+ */
+public class SsaConstructionBenchmark {
+
+    private static final String SOURCE = """
+        def i = 0;
+        def sum = 0;
+        while i < 20000 then {
+            def j = 0;
+            while j < 1000 then {
+                sum = sum + i * j - sum / 3;
+                j = j + 1;
+            }
+            i = i + 1;
+        }
+        print sum;
+        """;
+
+    public static void main(String[] args) throws Exception {
+        //отладочный вывод фаз не должен попадать в замеры
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        var memory = compile(false);
+        var ssa = compile(true);
+
+        out.printf("alloca/load/store: %5d bytes, %3d instructions%n", memory.length(), instructions(memory));
+        out.printf("ssa:               %5d bytes, %3d instructions%n", ssa.length(), instructions(ssa));
+
+        var directory = Files.createTempDirectory("ssa");
+        var memoryTime = run(directory, "memory", memory);
+        var ssaTime = run(directory, "ssa", ssa);
+        if (memoryTime < 0 || ssaTime < 0) {
+            out.println("clang not found, skipping -O0 run");
+        } else {
+            out.printf("-O0 alloca/load/store: %d ms%n", memoryTime);
+            out.printf("-O0 ssa:               %d ms%n", ssaTime);
+        }
+    }
+
+    private static String compile(boolean ssa) {
+        var irFile = new BuildIrTreePhase().execute(new ParseSourcePhase().execute(SOURCE));
+        new IrVerificationPhase().execute(irFile);
+
+        var allCfg = new ArrayList<FunctionCfg>();
+        for (var irClass : irFile.classes) {
+            for (var irFunction : irClass.methods) {
+                var functionCfg = new BuildCfgPhase(new BuildTacPhase(irFunction).execute()).execute();
+                if (ssa) {
+                    new SsaConstruction(functionCfg).execute();
+                }
+                new ConstantPropagation(functionCfg).execute();
+
+                allCfg.add(functionCfg);
+            }
+        }
+
+        return CodeGenerationPhase.execute(allCfg);
+    }
+
+    //только тело программы, без io utils
+    private static long instructions(String module) {
+        return module.substring(0, module.indexOf(";;;;")).lines()
+            .filter(line -> line.startsWith("    "))
+            .count();
+    }
+
+    private static long run(Path directory, String name, String module) throws Exception {
+        var ll = directory.resolve(name + ".ll");
+        var binary = directory.resolve(name);
+        Files.writeString(ll, module);
+
+        try {
+            var clang = new ProcessBuilder("clang", "-O0", ll.toString(), "-o", binary.toString())
+                .inheritIO()
+                .start();
+            if (clang.waitFor() != 0) {
+                throw new IllegalStateException("clang failed");
+            }
+        } catch (java.io.IOException e) {
+            return -1;
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            var start = System.nanoTime();
+            new ProcessBuilder(binary.toString()).start().waitFor();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best / 1_000_000;
+    }
+}
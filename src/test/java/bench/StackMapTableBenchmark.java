@@ -0,0 +1,118 @@
+package bench;
+
+import iceberg.Misc;
+import iceberg.jvm.CodeGenerator;
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.phases.validation.CodegenPrepareStackMapAttributePhase;
+import iceberg.jvm.target.CompilationUnit;
+import iceberg.jvm.target.StackMapAttribute;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Размер класса и время его загрузки (разбор + верификация) для StackMapTable из одних full-фреймов
+ * и из компактных фреймов. Программа - {@value #FUNCTIONS} функций с вложенными циклами и ветвлениями.
+ * Чтобы отделить верификацию от разбора, можно сравнить с запуском под {@code -XX:-BytecodeVerificationRemote}.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.StackMapTableBenchmark}
+ */
+public class StackMapTableBenchmark {
+
+    static final int FUNCTIONS = 300;
+    static final int LOADS = 2_000;
+
+    public static void main(String[] args) {
+        var source = program();
+
+        var start = System.nanoTime();
+        var compact = JvmCompiler.compile(source);
+        var compileMs = (System.nanoTime() - start) / 1_000_000.0;
+        var compactBytes = bytes(compact);
+        var frames = frames(compact);
+
+        var full = JvmCompiler.compile(source);
+        for (var unit : full) {
+            unit.methods.forEach(method -> method.attributes.forEach(attribute -> attribute.attributes.clear()));
+            new CodegenPrepareStackMapAttributePhase(false).execute(unit);
+        }
+        CodeGenerator.codegen(full);
+        var fullBytes = bytes(full);
+
+        System.out.printf("compile: %.1f ms, frames: %s%n", compileMs, frames);
+
+        for (int round = 0; round < 5; round++) {
+            System.out.printf(
+                "round %d: full %7d bytes, %6.1f us/load | compact %7d bytes, %6.1f us/load%n",
+                round, fullBytes.length, load(fullBytes), compactBytes.length, load(compactBytes)
+            );
+        }
+    }
+
+    static String program() {
+        var source = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            source.append("""
+                fun f%d(a: i32, b: i64): i64 {
+                    def total: i64 = b;
+                    def i = 0;
+                    while i < a then {
+                        def step: i64 = b * 2;
+                        def name = "x";
+                        if i > 10 then {
+                            def j = 0;
+                            while j < i then {
+                                total = total + step;
+                                j = j + 1;
+                            }
+                        } else {
+                            total = total - step;
+                        }
+                        if total > b then print name;
+                        i = i + 1;
+                    }
+                    return total;
+                }
+                """.formatted(i));
+        }
+
+        return source.toString();
+    }
+
+    static byte[] bytes(Collection<CompilationUnit> units) {
+        return units.iterator().next().bytes;
+    }
+
+    static Map<String, Integer> frames(Collection<CompilationUnit> units) {
+        var frames = new TreeMap<String, Integer>();
+        for (var unit : units) {
+            for (var method : unit.methods) {
+                for (var attribute : method.attributes) {
+                    for (var stackMap : attribute.attributes) {
+                        for (StackMapAttribute.StackMapFrame frame : stackMap.entries) {
+                            frames.merge(frame.getClass().getSimpleName(), 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+
+        return frames;
+    }
+
+    //каждый раз новый загрузчик, чтобы класс заново разбирался и верифицировался
+    static double load(byte[] bytes) {
+        var start = System.nanoTime();
+        for (int i = 0; i < LOADS; i++) {
+            var klass = new Misc.ByteClassLoader().define("Iceberg", bytes);
+            try {
+                Class.forName(klass.getName(), true, klass.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return (System.nanoTime() - start) / 1_000.0 / LOADS;
+    }
+}
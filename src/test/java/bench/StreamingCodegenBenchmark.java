@@ -0,0 +1,117 @@
+package bench;
+
+import iceberg.common.phases.BuildIrTreePhase;
+import iceberg.common.phases.IrVerificationPhase;
+import iceberg.common.phases.ParseSourcePhase;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.LlvmCompiler;
+import iceberg.llvm.opt.cp.ConstantPropagation;
+import iceberg.llvm.opt.ssa.SsaConstruction;
+import iceberg.llvm.phases.BuildCfgPhase;
+import iceberg.llvm.phases.BuildTacPhase;
+import iceberg.llvm.phases.CodeGenerationPhase;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+
+/**
+ * Пиковое использование кучи при генерации модуля из 20000 функций: все CFG и модуль целиком в памяти
+ * против потоковой записи функций в {@link Writer} по мере готовности.
+ * Пик считается по {@link MemoryPoolMXBean#getPeakUsage()}, поэтому в него входит и мусор, который GC
+ * еще не собрал; нагляднее всего запускать с небольшой кучей и {@code -XX:+UseSerialGC}.
+ * <p>
+ * Запуск: {@code java -Xmx1g -XX:+UseSerialGC -cp target/classes:target/test-classes:<deps> bench.StreamingCodegenBenchmark}
+ */
+public class StreamingCodegenBenchmark {
+
+    private static final int FUNCTIONS = 20000;
+
+    public static void main(String[] args) {
+        var source = model();
+
+        //отладочный вывод фаз не должен попадать в замеры
+        var out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        //прогрев, заодно размер модуля
+        var size = materialized(source).length();
+        streaming(source);
+
+        var materialized = peak(() -> materialized(source).length());
+        var streaming = peak(() -> streaming(source));
+
+        out.printf("module: %d functions, %d KB%n", FUNCTIONS, size / 1024);
+        out.printf("materialized: peak heap %4d MB%n", materialized / (1024 * 1024));
+        out.printf("streaming:    peak heap %4d MB%n", streaming / (1024 * 1024));
+    }
+
+    //как было раньше: CFG всех функций, затем весь модуль одной строкой
+    private static String materialized(String source) {
+        var irFile = new BuildIrTreePhase().execute(new ParseSourcePhase().execute(source));
+        new IrVerificationPhase().execute(irFile);
+
+        var allCfg = new ArrayList<FunctionCfg>();
+        for (var irClass : irFile.classes) {
+            for (var irFunction : irClass.methods) {
+                var functionCfg = new BuildCfgPhase(new BuildTacPhase(irFunction).execute()).execute();
+                new SsaConstruction(functionCfg).execute();
+                new ConstantPropagation(functionCfg).execute();
+
+                allCfg.add(functionCfg);
+            }
+        }
+
+        return CodeGenerationPhase.execute(allCfg);
+    }
+
+    private static int streaming(String source) {
+        LlvmCompiler.compile(source, Runnable::run, new BufferedWriter(Writer.nullWriter()));
+        return 0;
+    }
+
+    private static long peak(Runnable compile) {
+        var pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+        System.gc();
+        pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        compile.run();
+
+        return pools.stream()
+            .mapToLong(pool -> pool.getPeakUsage().getUsed())
+            .sum();
+    }
+
+    private static String model() {
+        var source = new StringBuilder();
+        for (int i = 0; i < FUNCTIONS; i++) {
+            source.append("""
+                fun f%d(n: i32): i32 {
+                    def x = n;
+                    def sum = 0;
+                    while x > 0 then {
+                        sum = sum + x * 2;
+                        x = x - 1;
+                    }
+                    if sum > 100 then {
+                        print sum;
+                    } else {
+                        print 100 - sum;
+                    }
+                    return sum;
+                }
+                """.formatted(i));
+        }
+        source.append("print f0(10);\n");
+
+        return source.toString();
+    }
+}
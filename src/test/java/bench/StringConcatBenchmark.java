@@ -0,0 +1,82 @@
+package bench;
+
+import iceberg.ir.IcebergType;
+import iceberg.jvm.JvmCompiler;
+
+import java.lang.invoke.MethodHandle;
+import java.util.LinkedHashMap;
+
+/**
+ * Форматирование строки отчета из четырех полей: оператор {@code +} (один {@code invokedynamic}
+ * {@code makeConcatWithConstants}) против импортированного {@code java.lang.StringBuilder}
+ * с отдельным {@code invokevirtual} на каждый {@code append}. Аргументы строковые: {@code append}
+ * с примитивом через импорт разрешается в {@code append(Object)}, поэтому обход через
+ * {@code StringBuilder} работает только для строк.
+ * <p>
+ * Запуск: {@code java -cp target/classes:target/test-classes:<deps> bench.StringConcatBenchmark}
+ */
+public class StringConcatBenchmark {
+
+    static final int ROWS = 1_000_000;
+    static final int ROUNDS = 10;
+
+    static final String[] NAMES = {"alice", "bob", "carol", "dave", "eve"};
+    static final String[] CITIES = {"Berlin", "Lisbon", "Oslo", "Riga"};
+
+    static long sink;
+
+    public static void main(String[] args) throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("name", IcebergType.string);
+        parameters.put("city", IcebergType.string);
+        parameters.put("role", IcebergType.string);
+        parameters.put("status", IcebergType.string);
+
+        var concat = JvmCompiler.compileFunction("report", """
+            return "name=" + name + ", city=" + city + ", role=" + role + ", status=" + status + ";";
+            """, parameters, IcebergType.string);
+        var builder = JvmCompiler.compileFunction("report", """
+            import java.lang.StringBuilder;
+            def sb = new StringBuilder;
+            sb.append("name=");
+            sb.append(name);
+            sb.append(", city=");
+            sb.append(city);
+            sb.append(", role=");
+            sb.append(role);
+            sb.append(", status=");
+            sb.append(status);
+            sb.append(";");
+            return sb.toString();
+            """, parameters, IcebergType.string);
+
+        var expected = (String) concat.invokeExact("bob", "Oslo", "admin", "active");
+        if (!expected.equals((String) builder.invokeExact("bob", "Oslo", "admin", "active"))) {
+            throw new IllegalStateException("results differ");
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            var concatTime = measure(concat);
+            var builderTime = measure(builder);
+
+            System.out.printf(
+                "round %d: + (invokedynamic) %6.1f ns/row | StringBuilder import %6.1f ns/row (x%.1f)%n",
+                round, concatTime, builderTime, builderTime / concatTime
+            );
+        }
+    }
+
+    static double measure(MethodHandle report) throws Throwable {
+        long total = 0;
+        var start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            var status = (i & 1) == 0 ? "active" : "blocked";
+            var row = (String) report.invokeExact(NAMES[i % NAMES.length], CITIES[i % CITIES.length], "admin", status);
+            total += row.length();
+        }
+        var nanos = System.nanoTime() - start;
+        sink = total;
+
+        return (double) nanos / ROWS;
+    }
+}
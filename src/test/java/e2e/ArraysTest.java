@@ -0,0 +1,172 @@
+package e2e;
+
+import iceberg.SemanticException;
+import org.junit.jupiter.params.provider.Arguments;
+import run.BackendTest;
+import run.ParameterizedBackendTest;
+import run.compiler.Compiler;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static run.BackendTarget.JVM;
+import static run.BackendTarget.LLVM;
+
+public class ArraysTest {
+
+    @ParameterizedBackendTest({JVM, LLVM})
+    void arrays(Compiler compiler, String source, String expected) {
+        compiler.execute(source, expected);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> arrays() {
+        return Stream.of(
+            Arguments.of("""
+                def a = new i32[3];
+                print a.length;
+                print a[0];""", "3\n0\n"),
+            Arguments.of("""
+                def a = new i32[5];
+                def i = 0;
+                while i < a.length then {
+                    a[i] = i * 10;
+                    i = i + 1;
+                }
+                print a[2] + a[4];""", "60\n"),
+            Arguments.of("""
+                def a = new i64[2];
+                def big: i64 = 10000000000;
+                a[1] = big;
+                print a[1];
+                print a[0];""", "10000000000\n0\n"),
+            Arguments.of("""
+                def flags = new bool[3];
+                flags[1] = true;
+                print flags[0];
+                print flags[1];""", "false\ntrue\n"),
+            Arguments.of("""
+                def a = new i32[2];
+                def b = a;
+                b[0] = 7;
+                print a[0];""", "7\n"),
+            Arguments.of("""
+                def a: i32[];
+                print a.length;""", "0\n")
+        );
+    }
+
+    @ParameterizedBackendTest({JVM, LLVM})
+    void functions(Compiler compiler, String source, String expected) {
+        compiler.execute(source, expected);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> functions() {
+        return Stream.of(
+            Arguments.of("""
+                fun sum(a: i32[]): i32 {
+                    def s = 0;
+                    def i = 0;
+                    while i < a.length then {
+                        s = s + a[i];
+                        i = i + 1;
+                    }
+                    return s;
+                }
+
+                def a = new i32[4];
+                a[0] = 1;
+                a[3] = 9;
+                print sum(a);""", "10\n"),
+            Arguments.of("""
+                fun squares(n: i32): i64[] {
+                    def r = new i64[n];
+                    def i = 0;
+                    while i < n then {
+                        def x: i64 = i;
+                        r[i] = x * x;
+                        i = i + 1;
+                    }
+                    return r;
+                }
+
+                print squares(4)[3];""", "9\n"),
+            Arguments.of("""
+                fun size(a: i32[]): i32 { return a.length; }
+                fun size(a: i64[]): i32 { return a.length + 100; }
+
+                print size(new i32[2]);
+                print size(new i64[3]);""", "2\n103\n")
+        );
+    }
+
+    @BackendTest(JVM)
+    void field(Compiler compiler) {
+        compiler.execute("""
+            class Box {
+                def values: i32[]
+                fun first(): i32 {
+                    return this.values[0];
+                }
+            }
+
+            def b = new Box;
+            b.values = new i32[2];
+            b.values[0] = 40;
+            print b.first() + b.values.length;""", "42\n");
+    }
+
+    @BackendTest(JVM)
+    void emptyField(Compiler compiler) {
+        compiler.execute("""
+            class Box {
+                def data: i64[]
+            }
+
+            def b = new Box;
+            print b.data.length;""", "0\n");
+    }
+
+    @BackendTest(JVM)
+    void outOfBounds(Compiler compiler) {
+        var error = assertThrows(AssertionError.class, () -> compiler.execute("""
+            def a = new i32[2];
+            a[2] = 1;""", null));
+        assertThat(error).message().contains("java.lang.ArrayIndexOutOfBoundsException");
+    }
+
+    @ParameterizedBackendTest({JVM, LLVM})
+    void negative(Compiler compiler, String source) {
+        assertThrows(SemanticException.class, () -> compiler.execute(source, null));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> negative() {
+        return Stream.of(
+            Arguments.of("""
+                def a = new string[2];"""),
+            Arguments.of("""
+                def a = new i32[2];
+                print a;"""),
+            Arguments.of("""
+                def a = new i32[2];
+                def i: i64 = 0;
+                print a[i];"""),
+            Arguments.of("""
+                def x = 1;
+                print x[0];"""),
+            Arguments.of("""
+                def a = new i32[2];
+                a[0] = true;"""),
+            Arguments.of("""
+                def a = new i32[2];
+                a.length = 3;"""),
+            Arguments.of("""
+                def a = new i32[2];
+                def b = new i32[2];
+                print a == b;""")
+        );
+    }
+}
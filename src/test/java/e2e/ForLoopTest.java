@@ -0,0 +1,111 @@
+package e2e;
+
+import iceberg.SemanticException;
+import org.junit.jupiter.params.provider.Arguments;
+import run.ParameterizedBackendTest;
+import run.compiler.Compiler;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static run.BackendTarget.JVM;
+import static run.BackendTarget.LLVM;
+
+public class ForLoopTest {
+
+    @ParameterizedBackendTest({JVM, LLVM})
+    void loops(Compiler compiler, String source, String expected) {
+        compiler.execute(source, expected);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> loops() {
+        return Stream.of(
+            Arguments.of("""
+                def s: i64 = 0;
+                for i in 0..10 then s = s + i;
+                print s;""", "45\n"),
+            Arguments.of("""
+                for i in 5..3 then print i;
+                print 0;""", "0\n"),
+            Arguments.of("""
+                for i in -2..1 then print i;""", "-2\n-1\n0\n"),
+            Arguments.of("""
+                def n = 2;
+                for i in 0..n then {
+                    n = n + 1;
+                    print i;
+                }
+                print n;""", "0\n1\n4\n"),
+            Arguments.of("""
+                for i in 0..3 then {
+                    def k = i * 10;
+                    for j in i..3 then print k + j;
+                }""", "0\n1\n2\n11\n12\n22\n"),
+            Arguments.of("""
+                for i in 0..2 then print i;
+                for i in 0..2 then print i * 5;""", "0\n1\n0\n5\n")
+        );
+    }
+
+    @ParameterizedBackendTest({JVM, LLVM})
+    void functions(Compiler compiler, String source, String expected) {
+        compiler.execute(source, expected);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> functions() {
+        return Stream.of(
+            Arguments.of("""
+                fun tri(m: i32): i32 {
+                    def t = 0;
+                    for i in 1..m + 1 then t = t + i;
+                    return t;
+                }
+
+                print tri(100);""", "5050\n"),
+            Arguments.of("""
+                fun first(m: i32): i32 {
+                    for i in 0..m then if i * i > 50 then return i;
+                    return -1;
+                }
+
+                print first(100);
+                print first(3);""", "8\n-1\n"),
+            Arguments.of("""
+                fun sum(a: i32[]): i64 {
+                    def total: i64 = 0;
+                    for i in 0..a.length then total = total + a[i];
+                    return total;
+                }
+
+                def a = new i32[4];
+                for i in 0..a.length then a[i] = i + 1;
+                print sum(a);""", "10\n")
+        );
+    }
+
+    @ParameterizedBackendTest({JVM, LLVM})
+    void negative(Compiler compiler, String source) {
+        assertThrows(SemanticException.class, () -> compiler.execute(source, null));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> negative() {
+        return Stream.of(
+            Arguments.of("""
+                def n: i64 = 3;
+                for i in 0..n then print i;"""),
+            Arguments.of("""
+                for i in true..3 then print i;"""),
+            Arguments.of("""
+                for i in 0..3 then i = 5;"""),
+            Arguments.of("""
+                def i = 1;
+                for i in 0..3 then print i;"""),
+            Arguments.of("""
+                for i in 0..3 then print i;
+                print i;""")
+        );
+    }
+}
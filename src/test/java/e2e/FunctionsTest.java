@@ -11,6 +11,7 @@ import java.util.stream.Stream;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static run.BackendTarget.JVM;
+import static run.BackendTarget.LLVM;
 
 public class FunctionsTest {
 
@@ -116,7 +117,7 @@ public class FunctionsTest {
             """, "foo\n");
     }
 
-    @BackendTest(JVM)
+    @BackendTest({JVM, LLVM})
     void returnFromIf(Compiler compiler) {
         compiler.execute("""        
             fun positive(n: i32, fallback: bool): bool {
@@ -129,7 +130,7 @@ public class FunctionsTest {
             """, "false\ntrue\n");
     }
 
-    @BackendTest(JVM)
+    @BackendTest({JVM, LLVM})
     void fg(Compiler compiler) {
         compiler.execute("""
             fun f(n: i32): i32 {
@@ -151,7 +152,7 @@ public class FunctionsTest {
             """, "1\n2\n12\n48\n");
     }
 
-    @BackendTest(JVM)
+    @BackendTest({JVM, LLVM})
     void fac(Compiler compiler) {
         compiler.execute("""
             fun fac(n: i32): i32 {
@@ -168,7 +169,7 @@ public class FunctionsTest {
             """, "1\n2\n6\n24\n120\n");
     }
 
-    @BackendTest(JVM)
+    @BackendTest({JVM, LLVM})
     void fib(Compiler compiler) {
         compiler.execute("""
             fun fib(n: i32): i32 {
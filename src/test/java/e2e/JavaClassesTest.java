@@ -45,4 +45,17 @@ public class JavaClassesTest {
             print sub;
             """, "[20, 30]\n");
     }
+
+    @BackendTest(JVM)
+    void unusedResultInBranch(Compiler compiler) {
+        compiler.execute("""
+            import java.util.ArrayList;
+
+            def list = new ArrayList;
+            if true then list.add("10"); else list.add("20");
+            while list.size() < 3 then list.add("30");
+
+            print list;
+            """, "[10, 30, 30]\n");
+    }
 }
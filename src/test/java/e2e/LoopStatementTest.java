@@ -93,7 +93,24 @@ public class LoopStatementTest {
 
                     i = i + 1;
                 }
-                """, "1\n1\n2\n3\n5\n8\n13\n21\n34\n55\n")
+                """, "1\n1\n2\n3\n5\n8\n13\n21\n34\n55\n"),
+            Arguments.of("""
+                def even = 0;
+                def odd = 0;
+                
+                def i = 0;
+                while i < 10 then {
+                    if i - (i / 2) * 2 == 0 then {
+                        even = even + i;
+                    } else {
+                        odd = odd + i;
+                    }
+                    i = i + 1;
+                }
+                
+                print even;
+                print odd;
+                """, "20\n25\n")
         );
     }
 
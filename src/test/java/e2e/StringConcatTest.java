@@ -0,0 +1,116 @@
+package e2e;
+
+import iceberg.SemanticException;
+import org.junit.jupiter.params.provider.Arguments;
+import run.BackendTest;
+import run.ParameterizedBackendTest;
+import run.compiler.Compiler;
+
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static run.BackendTarget.JVM;
+
+public class StringConcatTest {
+
+    @ParameterizedBackendTest(JVM)
+    void concat(Compiler compiler, String source, String expected) {
+        compiler.execute(source, expected);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> concat() {
+        return Stream.of(
+            Arguments.of("""
+                print "foo" + "bar";""", "foobar\n"),
+            Arguments.of("""
+                def name = "bob";
+                print "hello, " + name + "!";""", "hello, bob!\n"),
+            Arguments.of("""
+                def x = 42;
+                def big: i64 = 10000000000;
+                def flag = false;
+                print "x=" + x + ", big=" + big + ", flag=" + flag;""", "x=42, big=10000000000, flag=false\n"),
+            Arguments.of("""
+                print "a" + 1 + true;""", "a1true\n"),
+            Arguments.of("""
+                print "a" + 1 + true + "b";""", "a1trueb\n"),
+            Arguments.of("""
+                print 1 + 2 + "x";""", "3x\n"),
+            Arguments.of("""
+                print "x" + (1 + 2);""", "x3\n"),
+            Arguments.of("""
+                def x = 7;
+                print x + "" + x;""", "77\n"),
+            Arguments.of("""
+                def s = "";
+                def i = 0;
+                while i < 4 then {
+                    s = s + i + ",";
+                    i = i + 1;
+                }
+                print s;""", "0,1,2,3,\n")
+        );
+    }
+
+    @BackendTest(JVM)
+    void functionsAndClasses(Compiler compiler) {
+        compiler.execute("""
+            class Point {
+                def x: i32
+                def y: i32
+
+                fun describe(): string {
+                    return "(" + this.x + ", " + this.y + ")";
+                }
+            }
+
+            fun label(name: string, p: Point): string {
+                return name + " " + p.describe();
+            }
+
+            def p = new Point;
+            p.x = 3;
+            p.y = -4;
+            print label("p", p);""", "p (3, -4)\n");
+    }
+
+    @BackendTest(JVM)
+    void longChain(Compiler compiler) {
+        var chain = String.join(" + ", Collections.nCopies(150, "v"));
+
+        compiler.execute("def v: i64 = 7;\nprint \"\" + " + chain + ";", "7".repeat(150) + "\n");
+    }
+
+    @BackendTest(JVM)
+    void javaObjects(Compiler compiler) {
+        compiler.execute("""
+            import java.util.ArrayList;
+
+            def list = new ArrayList;
+            list.add("a");
+            print "list: " + list;""", "list: [a]\n");
+    }
+
+    @ParameterizedBackendTest(JVM)
+    void negative(Compiler compiler, String source) {
+        assertThrows(SemanticException.class, () -> compiler.execute(source, null));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> negative() {
+        return Stream.of(
+            Arguments.of("""
+                print "a" - "b";"""),
+            Arguments.of("""
+                print "a" * 2;"""),
+            Arguments.of("""
+                def a = new i32[1];
+                print "a" + a;"""),
+            Arguments.of("""
+                fun f() {}
+                print "a" + f();""")
+        );
+    }
+}
@@ -0,0 +1,87 @@
+package jvm;
+
+import iceberg.ir.IcebergType;
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchInvocationTest {
+
+    @Test
+    void primitiveColumns() {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("a", IcebergType.i32);
+        parameters.put("b", IcebergType.i64);
+        parameters.put("negate", IcebergType.bool);
+
+        var handle = JvmCompiler.compileFunction("f", """
+            if negate then return 0 - b;
+            return b * 10 + a;
+            """, parameters, IcebergType.i64);
+
+        var result = JvmCompiler.runBatch(
+            handle,
+            new int[]{1, 2, 3},
+            new long[]{10, 20, 30},
+            new boolean[]{false, true, false}
+        );
+
+        assertThat(result).isEqualTo(new long[]{101, -20, 303});
+    }
+
+    @Test
+    void stringColumns() {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("s", IcebergType.string);
+        parameters.put("n", IcebergType.i32);
+
+        var handle = JvmCompiler.compileFunction("pick", """
+            if n > 0 then return s;
+            return "none";
+            """, parameters, IcebergType.string);
+        var result = JvmCompiler.runBatch(handle, new String[]{"a", "b", "c"}, new int[]{1, 0, 1});
+
+        assertThat(result).isEqualTo(new String[]{"a", "none", "c"});
+    }
+
+    @Test
+    void unitFunction() {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("n", IcebergType.i32);
+
+        var handle = JvmCompiler.compileFunction("noop", "def x = n;", parameters, IcebergType.unit);
+
+        assertThat(JvmCompiler.runBatch(handle, (Object) new int[]{1, 2})).isNull();
+    }
+
+    @Test
+    void columnTypeMismatch() {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("n", IcebergType.i32);
+
+        var handle = JvmCompiler.compileFunction("id", "return n;", parameters, IcebergType.i32);
+
+        var exception = assertThrows(IllegalArgumentException.class, () ->
+            JvmCompiler.runBatch(handle, (Object) new long[]{1})
+        );
+        assertThat(exception.getMessage()).isEqualTo("column 0 must be int[]");
+    }
+
+    @Test
+    void foreignHandle() throws Exception {
+        var abs = MethodHandles.publicLookup().findStatic(
+            Math.class, "abs", MethodType.methodType(int.class, int.class)
+        );
+
+        var exception = assertThrows(IllegalArgumentException.class, () ->
+            JvmCompiler.runBatch(abs, (Object) new int[]{-1})
+        );
+        assertThat(exception.getMessage()).isEqualTo("function has no batch form, it must come from compileFunction and take only i32, i64, bool or string");
+    }
+}
@@ -0,0 +1,77 @@
+package jvm;
+
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import run.BackendTest;
+import run.compiler.Compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static run.BackendTarget.JVM;
+
+class BufferedOutputTest {
+
+    @BeforeEach
+    void enable() {
+        System.setProperty("iceberg.print.buffered", "true");
+    }
+
+    @AfterEach
+    void disable() {
+        System.clearProperty("iceberg.print.buffered");
+    }
+
+    //флаг читается при компиляции, программа выполняется в отдельной JVM
+    @BackendTest(JVM)
+    void flushedOnReturn(Compiler compiler) {
+        compiler.execute("""
+            fun f(n: i32): i32 {
+                print n;
+                return n * 2;
+            }
+
+            def i = 0;
+            while i < 3 then {
+                print f(i);
+                i = i + 1;
+            }
+            print "done";
+            """, "0\n0\n1\n2\n2\n4\ndone\n");
+    }
+
+    @Test
+    void flushedOnException() {
+        var stdout = System.out;
+        var output = new ByteArrayOutputStream();
+        var capture = new PrintStream(output, true);
+        System.setOut(capture);
+        try {
+            assertThrows(ArithmeticException.class, () -> JvmCompiler.run("""
+                print 1;
+                def zero = 0;
+                print 5 / zero;
+                """));
+            assertThat(output.toString()).isEqualTo("1\n");
+            assertThat(System.out).isSameAs(capture);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    @Test
+    void onlyMainIsWrapped() {
+        for (var unit : JvmCompiler.compile("fun f() { print 1; }")) {
+            for (var method : unit.methods) {
+                for (var attribute : method.attributes) {
+                    var expected = "main".equals(attribute.function.name) ? 1 : 0;
+                    assertThat(attribute.exceptionTable).hasSize(expected);
+                }
+            }
+        }
+    }
+}
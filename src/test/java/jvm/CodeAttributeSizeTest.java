@@ -0,0 +1,104 @@
+package jvm;
+
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.target.CodeAttribute;
+import org.junit.jupiter.api.Test;
+import run.BackendTest;
+import run.compiler.Compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static run.BackendTarget.JVM;
+
+class CodeAttributeSizeTest {
+
+    @Test
+    void exactStackAndLocals() {
+        var attributes = attributes("""
+            fun f(a: i32, b: i64): i64 {
+                def c: i64 = b * 2;
+                return c + a;
+            }
+
+            fun g(): i32 {
+                if true then {
+                    def x = 1;
+                    def y = 2;
+                }
+                def z = 3;
+                return z;
+            }
+
+            class A {
+                def v: i32
+                fun get(): i32 {
+                    return this.v;
+                }
+            }
+            """);
+
+        //a, b (2 слота), c (2 слота); на стеке два long
+        assertThat(attributes.get("Iceberg.f").maxLocals).isEqualTo(5);
+        assertThat(attributes.get("Iceberg.f").maxStack).isEqualTo(4);
+
+        //z переиспользует слот x после выхода из блока
+        assertThat(attributes.get("Iceberg.g").maxLocals).isEqualTo(2);
+        assertThat(attributes.get("Iceberg.g").maxStack).isEqualTo(1);
+
+        //String[] args
+        assertThat(attributes.get("Iceberg.main").maxLocals).isEqualTo(1);
+
+        //this
+        assertThat(attributes.get("A.get").maxLocals).isEqualTo(1);
+        assertThat(attributes.get("A.get").maxStack).isEqualTo(1);
+    }
+
+    @BackendTest(JVM)
+    void moreThanHundredLocals(Compiler compiler) {
+        var source = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            source.append("def v").append(i).append(" = ").append(i).append(";\n");
+        }
+        source.append("print v0 + v199;\n");
+
+        compiler.execute(source.toString(), "199\n");
+    }
+
+    @Test
+    void tooManyLocals() {
+        var source = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            source.append("def v").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        assertThrows(IllegalStateException.class, () -> JvmCompiler.compile(source.toString()));
+    }
+
+    @BackendTest(JVM)
+    void deepRecursion(Compiler compiler) {
+        compiler.execute("""
+            fun depth(n: i32): i32 {
+                if n == 0 then return 0;
+                return depth(n - 1) + 1;
+            }
+
+            print depth(5000);
+            """, "5000\n");
+    }
+
+    private static Map<String, CodeAttribute> attributes(String source) {
+        var attributes = new HashMap<String, CodeAttribute>();
+        for (var unit : JvmCompiler.compile(source)) {
+            for (var method : unit.methods) {
+                for (var attribute : method.attributes) {
+                    attributes.put(unit.irClass.name + "." + attribute.function.name, attribute);
+                }
+            }
+        }
+
+        return attributes;
+    }
+}
@@ -0,0 +1,169 @@
+package jvm;
+
+import iceberg.jvm.CompilationCache;
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SequencedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompilationCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unchangedSourceIsNotRecompiled() {
+        var cache = new CompilationCache(directory, Long.MAX_VALUE);
+
+        var first = cache.compile("print 1;");
+        var second = cache.compile("print 1;");
+
+        assertThat(second.keySet()).containsExactly("Iceberg");
+        assertThat(second.get("Iceberg")).isEqualTo(first.get("Iceberg"));
+        assertThat(cache.stats()).isEqualTo(new CompilationCache.Stats(1, 1, 1, cache.stats().size()));
+    }
+
+    @Test
+    void changedSourceIsRecompiled() {
+        var cache = new CompilationCache(directory, Long.MAX_VALUE);
+
+        cache.compile("print 1;");
+        cache.compile("print 2;");
+
+        assertThat(cache.stats().hits()).isEqualTo(0);
+        assertThat(cache.stats().misses()).isEqualTo(2);
+    }
+
+    @Test
+    void allClassesAreCached() {
+        var cache = new CompilationCache(directory, Long.MAX_VALUE);
+        var source = """
+            class Point {
+                def x: i32
+            }
+
+            def p = new Point;
+            print p.x;
+            """;
+
+        cache.compile(source);
+
+        assertThat(cache.compile(source).keySet()).containsExactlyInAnyOrder("Iceberg", "Point");
+    }
+
+    @Test
+    void changedClasspathSignatureIsRecompiled() throws Exception {
+        var cache = new CompilationCache(directory, Long.MAX_VALUE);
+        var source = """
+            import Handler;
+
+            def h = new Handler;
+            print h.foo();
+            """;
+
+        var thread = Thread.currentThread();
+        var contextClassLoader = thread.getContextClassLoader();
+        try (
+            var v1 = handler("public int foo() { return 1; }");
+            var v2 = handler("public int foo() { return 1; } public int bar() { return 2; }")
+        ) {
+            thread.setContextClassLoader(v1);
+            cache.compile(source);
+            cache.compile(source);
+
+            thread.setContextClassLoader(v2);
+            cache.compile(source);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(2);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        var cache = new CompilationCache(directory, 1);
+
+        cache.compile("print 1;");
+        cache.compile("print 2;");
+
+        assertThat(cache.stats().entries()).isEqualTo(1);
+
+        cache.compile("print 2;");
+        assertThat(cache.stats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCompilationsOfSameSource() throws Exception {
+        var cache = new CompilationCache(directory, Long.MAX_VALUE);
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var results = new ArrayList<Future<SequencedMap<String, byte[]>>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.compile("print 1;")));
+            }
+
+            for (var result : results) {
+                assertThat(result.get().keySet()).containsExactly("Iceberg");
+            }
+        }
+
+        assertThat(cache.stats().entries()).isEqualTo(1);
+        assertThat(cache.stats().hits() + cache.stats().misses()).isEqualTo(8);
+    }
+
+    @Test
+    void statsAreFlushedOnce() {
+        var cache = new CompilationCache(directory, Long.MAX_VALUE);
+
+        cache.compile("print 1;");
+        cache.compile("print 1;");
+
+        assertThat(directory.resolve("stats.properties")).doesNotExist();
+
+        cache.flush();
+        cache.flush();
+
+        var stats = new CompilationCache(directory, Long.MAX_VALUE).stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledCacheIsBypassed() throws Exception {
+        var cacheDirectory = directory.resolve("cache");
+        System.setProperty("iceberg.cache.dir", cacheDirectory.toString());
+        System.setProperty("iceberg.cache.enabled", "false");
+        try {
+            var paths = JvmCompiler.compileClasses(directory.resolve("source.ib"), "print 1;");
+
+            assertThat(paths).containsExactly(directory.resolve("Iceberg.class"));
+            assertThat(cacheDirectory).doesNotExist();
+        } finally {
+            System.clearProperty("iceberg.cache.dir");
+            System.clearProperty("iceberg.cache.enabled");
+        }
+    }
+
+    private URLClassLoader handler(String body) throws Exception {
+        var sources = Files.createTempDirectory(directory, "handler");
+        var file = sources.resolve("Handler.java");
+        Files.writeString(file, "public class Handler { " + body + " }");
+
+        ToolProvider.getSystemJavaCompiler().run(null, null, null, file.toString());
+
+        return new URLClassLoader(new URL[]{sources.toUri().toURL()}, getClass().getClassLoader());
+    }
+}
@@ -0,0 +1,101 @@
+package jvm;
+
+import iceberg.CompilationDaemon;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static iceberg.CompilationDaemon.EXIT_MARKER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompilationDaemonTest {
+
+    static Path directory;
+    static Path socket;
+
+    @BeforeAll
+    static void start() throws IOException {
+        directory = Files.createTempDirectory("daemon");
+        socket = directory.resolve("ice.sock");
+
+        System.setProperty("iceberg.cache.dir", directory.resolve("cache").toString());
+        Thread.ofVirtual().start(() -> new CompilationDaemon(socket).serve());
+    }
+
+    @AfterAll
+    static void stop() {
+        System.clearProperty("iceberg.cache.dir");
+    }
+
+    @Test
+    void compilesTwice() throws Exception {
+        var first = source("first", "print 1;");
+        var second = source("second", "def x = 2;\nprint x;");
+
+        assertThat(request("-compile", first)).isEqualTo(EXIT_MARKER + 0);
+        assertThat(request("-compile", second)).isEqualTo(EXIT_MARKER + 0);
+
+        assertThat(first.resolveSibling("Iceberg.class")).exists();
+        assertThat(second.resolveSibling("Iceberg.class")).exists();
+        assertThat(Files.readAllBytes(first.resolveSibling("Iceberg.class")))
+            .isNotEqualTo(Files.readAllBytes(second.resolveSibling("Iceberg.class")));
+    }
+
+    @Test
+    void errorDoesNotStopDaemon() throws Exception {
+        var invalid = source("invalid", "print x;");
+        var valid = source("valid", "print 1;");
+
+        assertThat(request("-compile", invalid)).isEqualTo("'x' is not defined\n" + EXIT_MARKER + 1);
+        assertThat(request("-compile", valid)).isEqualTo(EXIT_MARKER + 0);
+    }
+
+    @Test
+    void runIsRejected() throws Exception {
+        var exit = source("exit", "print 1;");
+
+        assertThat(request("-run", exit)).endsWith(EXIT_MARKER + 1);
+    }
+
+    private static Path source(String name, String text) throws IOException {
+        var path = Files.createDirectories(directory.resolve(name)).resolve("source.ib");
+        Files.writeString(path, text);
+        return path;
+    }
+
+    private static String request(String mode, Path source) throws Exception {
+        try (var channel = connect()) {
+            var out = Channels.newOutputStream(channel);
+            out.write("%s\n%s\n%s\n".formatted(mode, "", source).getBytes(UTF_8));
+            out.flush();
+
+            return new String(Channels.newInputStream(channel).readAllBytes(), UTF_8);
+        }
+    }
+
+    //демон сначала прогревается и только потом начинает слушать сокет
+    private static SocketChannel connect() throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                if (attempt == 200) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package jvm;
+
+import iceberg.SemanticException;
+import iceberg.ir.IcebergType;
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompileFunctionTest {
+
+    @Test
+    void argumentsArePassedOnInvocation() throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("a", IcebergType.i32);
+        parameters.put("b", IcebergType.i32);
+
+        var handle = JvmCompiler.compileFunction("sum", "return a + b;", parameters, IcebergType.i32);
+
+        assertThat((int) handle.invokeExact(1, 2)).isEqualTo(3);
+        assertThat((int) handle.invokeExact(40, 2)).isEqualTo(42);
+    }
+
+    @Test
+    void allTypes() throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("x", IcebergType.i64);
+        parameters.put("flag", IcebergType.bool);
+        parameters.put("s", IcebergType.string);
+
+        var handle = JvmCompiler.compileFunction("pick", """
+            if flag then return s;
+            if x > 0 then return "positive";
+            return "negative";
+            """, parameters, IcebergType.string);
+
+        assertThat(handle.invokeWithArguments(1L, true, "foo")).isEqualTo("foo");
+        assertThat(handle.invokeWithArguments(1L, false, "foo")).isEqualTo("positive");
+        assertThat(handle.invokeWithArguments(-1L, false, "foo")).isEqualTo("negative");
+    }
+
+    @Test
+    void arrays() throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("a", IcebergType.i32Array);
+
+        var handle = JvmCompiler.compileFunction("doubled", """
+            def result = new i32[a.length];
+            for i in 0..a.length then result[i] = a[i] * 2;
+            return result;
+            """, parameters, IcebergType.i32Array);
+
+        assertThat((int[]) handle.invokeExact(new int[]{1, 2, 3})).containsExactly(2, 4, 6);
+        //батч для колонок массивов не строится
+        assertThrows(IllegalArgumentException.class, () -> JvmCompiler.runBatch(handle, (Object) new int[][]{{1}}));
+    }
+
+    @Test
+    void imports() throws Throwable {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+        parameters.put("n", IcebergType.i32);
+
+        var handle = JvmCompiler.compileFunction("size", """
+            import java.util.ArrayList;
+
+            def list = new ArrayList;
+            def i = 0;
+            while i < n then {
+                list.add("x");
+                i = i + 1;
+            }
+            return list.size();
+            """, parameters, IcebergType.i32);
+
+        assertThat(handle.invokeWithArguments(5)).isEqualTo(5);
+    }
+
+    @Test
+    void undefinedArgument() {
+        var parameters = new LinkedHashMap<String, IcebergType>();
+
+        var exception = assertThrows(SemanticException.class, () ->
+            JvmCompiler.compileFunction("foo", "return x;", parameters, IcebergType.i32)
+        );
+        assertThat(exception.getMessage()).isEqualTo("'x' is not defined");
+    }
+}
@@ -0,0 +1,116 @@
+package jvm;
+
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IncrementalCompilationTest {
+
+    static final String SOURCE = """
+        class A {
+            def b: B
+
+            fun twice(): i32 {
+                return this.b.value() * 2;
+            }
+        }
+
+        class B {
+            fun value(): i32 {
+                return 21;
+            }
+        }
+
+        class C {
+            def x: i32
+        }
+
+        def a = new A;
+        a.b = new B;
+        print a.twice();
+        """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unchangedSourceRegeneratesNothing() {
+        assertThat(names(compile(SOURCE))).containsExactlyInAnyOrder("Iceberg", "A", "B", "C");
+        assertThat(names(compile(SOURCE))).isEmpty();
+    }
+
+    @Test
+    void methodBodyEditRegeneratesOnlyItsClass() {
+        compile(SOURCE);
+
+        var edited = SOURCE.replace("return 21;", "return 42;");
+
+        assertThat(names(compile(edited))).containsExactly("B");
+    }
+
+    @Test
+    void signatureEditRegeneratesDependents() {
+        compile(SOURCE);
+
+        var edited = SOURCE.replace("""
+                    return 21;
+                }
+            """, """
+                    return 21;
+                }
+
+                fun other(): i32 {
+                    return 1;
+                }
+            """);
+
+        //A and Iceberg reference B, C does not
+        assertThat(names(compile(edited))).containsExactlyInAnyOrder("A", "B", "Iceberg");
+    }
+
+    @Test
+    void fieldEditRegeneratesClassesUsingIt() {
+        compile(SOURCE);
+
+        var edited = SOURCE.replace("def b: B", "def b: B\n    def y: i32");
+
+        assertThat(names(compile(edited))).containsExactlyInAnyOrder("A", "Iceberg");
+    }
+
+    @Test
+    void removedClassIsDeleted() {
+        compile(SOURCE);
+        assertThat(directory.resolve("C.class")).exists();
+
+        var edited = SOURCE.replace("""
+            class C {
+                def x: i32
+            }
+            """, "");
+
+        assertThat(names(compile(edited))).isEmpty();
+        assertThat(directory.resolve("C.class")).doesNotExist();
+    }
+
+    private Collection<Path> compile(String source) {
+        try {
+            var path = directory.resolve("model.ib");
+            Files.writeString(path, source);
+            return JvmCompiler.compileIncremental(path, source);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Collection<String> names(Collection<Path> paths) {
+        return paths.stream()
+            .map(path -> path.getFileName().toString().replace(".class", ""))
+            .toList();
+    }
+}
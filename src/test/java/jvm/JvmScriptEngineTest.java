@@ -0,0 +1,76 @@
+package jvm;
+
+import iceberg.jvm.JvmScriptEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JvmScriptEngineTest {
+
+    PrintStream stdout;
+    ByteArrayOutputStream output;
+
+    @BeforeEach
+    void captureOutput() {
+        stdout = System.out;
+        output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, UTF_8));
+    }
+
+    @AfterEach
+    void restoreOutput() {
+        System.setOut(stdout);
+    }
+
+    @Test
+    void compiledScriptIsReused() {
+        var engine = new JvmScriptEngine(10);
+
+        engine.run("print 1 + 2;");
+        engine.run("print 1 + 2;");
+
+        assertThat(output.toString(UTF_8)).isEqualTo("3\n3\n");
+        assertThat(engine.misses()).isEqualTo(1);
+        assertThat(engine.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void scriptWithClasses() {
+        var engine = new JvmScriptEngine(10);
+
+        engine.run("""
+            class Point {
+                def x: i32
+                def y: i32
+            }
+
+            def p = new Point;
+            p.x = 5;
+            print p.x;
+            """);
+
+        assertThat(output.toString(UTF_8)).isEqualTo("5\n");
+    }
+
+    @Test
+    void leastRecentlyUsedScriptIsEvicted() {
+        var engine = new JvmScriptEngine(2);
+
+        engine.run("print 1;");
+        engine.run("print 2;");
+        engine.run("print 1;");
+        engine.run("print 3;"); //evicts "print 2;"
+        engine.run("print 1;");
+        engine.run("print 2;");
+
+        assertThat(engine.size()).isEqualTo(2);
+        assertThat(engine.misses()).isEqualTo(4);
+        assertThat(engine.hits()).isEqualTo(2);
+    }
+}
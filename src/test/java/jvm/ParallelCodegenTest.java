@@ -0,0 +1,33 @@
+package jvm;
+
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.target.CompilationUnit;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelCodegenTest {
+
+    @Test
+    void outputDoesNotDependOnExecutor() {
+        var expected = JvmCompiler.compile(IncrementalCompilationTest.SOURCE, Runnable::run);
+
+        try (var pool = new ForkJoinPool(4); var virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                assertSame(expected, JvmCompiler.compile(IncrementalCompilationTest.SOURCE, pool));
+                assertSame(expected, JvmCompiler.compile(IncrementalCompilationTest.SOURCE, virtual));
+            }
+        }
+    }
+
+    private static void assertSame(Collection<CompilationUnit> expected, Collection<CompilationUnit> actual) {
+        assertThat(actual).extracting(unit -> unit.irClass.name)
+            .containsExactlyElementsOf(expected.stream().map(unit -> unit.irClass.name).toList());
+        assertThat(actual).extracting(unit -> unit.bytes)
+            .containsExactlyElementsOf(expected.stream().map(unit -> unit.bytes).toList());
+    }
+}
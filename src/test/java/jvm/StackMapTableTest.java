@@ -0,0 +1,90 @@
+package jvm;
+
+import iceberg.jvm.JvmCompiler;
+import iceberg.jvm.target.StackMapAttribute;
+import org.junit.jupiter.api.Test;
+import run.BackendTest;
+import run.compiler.Compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static run.BackendTarget.JVM;
+
+class StackMapTableTest {
+
+    private static final String SOURCE = """
+        fun f(a: i32, b: i64): i64 {
+            def total: i64 = b;
+            def i = 0;
+            while i < a then {
+                def step: i64 = b * 2;
+                if i > 2 then {
+                    total = total + step;
+                } else {
+                    total = total - step;
+                }
+                i = i + 1;
+            }
+            return total;
+        }
+
+        fun g(flag: bool): string {
+            if flag then {
+                def s = "yes";
+                return s;
+            }
+            return "no";
+        }
+        """;
+
+    @Test
+    void compactFrames() {
+        var frames = frames(SOURCE);
+
+        assertThat(frames).isNotEmpty();
+        assertThat(frames).noneMatch(StackMapAttribute.FullStackMapFrame.class::isInstance);
+        assertThat(frames).anyMatch(StackMapAttribute.SameFrame.class::isInstance);
+        assertThat(frames).anyMatch(StackMapAttribute.AppendFrame.class::isInstance);
+        assertThat(frames).anyMatch(StackMapAttribute.ChopFrame.class::isInstance);
+    }
+
+    @BackendTest(JVM)
+    void branchesWithValueOnStack(Compiler compiler) {
+        var source = """
+            fun median(a: bool, b: bool, c: bool): bool {
+                return a and b or a and c or b and c;
+            }
+
+            print median(false, true, false);
+            print median(true, false, true);
+            """;
+
+        assertThat(frames(source)).anyMatch(StackMapAttribute.SameLocals1StackItemFrame.class::isInstance);
+        compiler.execute(source, "false\ntrue\n");
+    }
+
+    @BackendTest(JVM)
+    void verifiedByJvm(Compiler compiler) {
+        compiler.execute(SOURCE + """
+            def one: i64 = 1;
+            print f(5, one);
+            print g(true);
+            print g(false);
+            """, "-1\nyes\nno\n");
+    }
+
+    private static List<StackMapAttribute.StackMapFrame> frames(String source) {
+        var frames = new ArrayList<StackMapAttribute.StackMapFrame>();
+        for (var unit : JvmCompiler.compile(source)) {
+            for (var method : unit.methods) {
+                for (var attribute : method.attributes) {
+                    attribute.attributes.forEach(stackMap -> frames.addAll(stackMap.entries));
+                }
+            }
+        }
+
+        return frames;
+    }
+}
@@ -0,0 +1,104 @@
+package jvm;
+
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.spi.ToolProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Байткод склейки строк по выводу {@code javap}, результат программ проверяет {@code e2e.StringConcatTest}.
+ */
+class StringConcatTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void singleInvokedynamic() throws Exception {
+        var javap = javap("""
+            def name = "bob";
+            def n = 1;
+            def big: i64 = 2;
+            print "hi, " + name + "! " + n + big + true;
+            """);
+
+        assertThat(callSites(javap)).containsExactly("(Ljava/lang/String;IJ)Ljava/lang/String;");
+        assertThat(javap).doesNotContain("java/lang/StringBuilder");
+    }
+
+    @Test
+    void recipe() throws Exception {
+        var javap = javap("""
+            def name = "bob";
+            def n = 1;
+            print "hi, " + name + "!" + n + 2 + true;
+            print "hi, " + name + "!" + n + 2 + true;
+            print "a" + 1 + true + "b";
+            """);
+
+        //литералы и константы склеены в рецепт, одинаковые рецепты делят bootstrap-метод
+        assertThat(javap).contains("#0:makeConcatWithConstants");
+        assertThat(javap).doesNotContain("#1:makeConcatWithConstants");
+        assertThat(javap.lines().filter(line -> line.endsWith("// hi, \\u0001!\\u00012true"))).hasSize(1);
+        assertThat(javap).contains("// a1trueb");
+        assertThat(callSites(javap)).hasSize(2);
+    }
+
+    @Test
+    void longChainIsSplit() throws Exception {
+        //150 аргументов i64 - 300 слотов, больше лимита makeConcatWithConstants в 200 слотов
+        var chain = String.join(" + ", Collections.nCopies(150, "v"));
+
+        var callSites = callSites(javap("def v: i64 = 7;\nprint \"\" + " + chain + ";"));
+
+        assertThat(callSites).hasSize(2);
+        assertThat(callSites).allSatisfy(descriptor -> assertThat(slots(descriptor)).isLessThanOrEqualTo(200));
+    }
+
+    private String javap(String source) throws Exception {
+        var classes = new ArrayList<String>();
+        for (var unit : JvmCompiler.compile(source)) {
+            var path = directory.resolve(unit.irClass.name + ".class");
+            Files.write(path, unit.bytes);
+            classes.add(path.toString());
+        }
+
+        var output = new StringWriter();
+        var writer = new PrintWriter(output);
+        var arguments = new ArrayList<>(List.of("-c", "-v"));
+        arguments.addAll(classes);
+
+        var javap = ToolProvider.findFirst("javap").orElseThrow();
+        assertThat(javap.run(writer, writer, arguments.toArray(String[]::new))).isZero();
+
+        return output.toString();
+    }
+
+    //дескрипторы call site'ов всех invokedynamic в порядке появления
+    private static List<String> callSites(String javap) {
+        return javap.lines()
+            .filter(line -> line.contains(": invokedynamic "))
+            .map(line -> line.substring(line.indexOf(":makeConcatWithConstants:") + ":makeConcatWithConstants:".length()))
+            .toList();
+    }
+
+    private static int slots(String descriptor) {
+        var parameters = descriptor.substring(1, descriptor.indexOf(')')).replaceAll("L[^;]*;", "L");
+
+        int slots = 0;
+        for (var type : parameters.toCharArray()) {
+            slots += type == 'J' || type == 'D' ? 2 : 1;
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,61 @@
+package jvm;
+
+import iceberg.Trace;
+import iceberg.jvm.JvmCompiler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TraceTest {
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void disable() {
+        Trace.configure("", directory.resolve("trace.log"));
+        System.clearProperty("iceberg.cache.dir");
+    }
+
+    @Test
+    void silentByDefault() {
+        var file = directory.resolve("trace.log");
+        Trace.configure("", file);
+
+        JvmCompiler.compile("print 1;");
+
+        assertThat(Trace.anyEnabled()).isFalse();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void bytecodeChannel() throws Exception {
+        var file = directory.resolve("trace.log");
+        Trace.configure("bytecode", file);
+
+        JvmCompiler.compile("print 1;");
+
+        assertThat(Files.readString(file))
+            .startsWith("### bytecode: Iceberg\nca fe ba be")
+            .doesNotContain("### tac");
+    }
+
+    @Test
+    void tracingBypassesCache() throws Exception {
+        var file = directory.resolve("trace.log");
+        var cache = directory.resolve("cache");
+        System.setProperty("iceberg.cache.dir", cache.toString());
+        Trace.configure("bytecode", file);
+
+        JvmCompiler.compileClasses(directory.resolve("source.ib"), "print 1;");
+        JvmCompiler.compileClasses(directory.resolve("source.ib"), "print 1;");
+
+        assertThat(Files.readString(file).split("### bytecode: Iceberg\n", -1)).hasSize(3);
+        assertThat(cache).doesNotExist();
+    }
+}
@@ -0,0 +1,71 @@
+package opt;
+
+import iceberg.ir.IcebergBinaryOperator;
+import iceberg.llvm.tac.TacBinaryOperation;
+import iceberg.llvm.tac.TacJump;
+import iceberg.llvm.tac.TacPhi;
+import org.junit.jupiter.api.Test;
+import run.BackendTest;
+import run.compiler.Compiler;
+
+import static iceberg.llvm.opt.PassManager.CP;
+import static iceberg.llvm.opt.PassManager.DCE;
+import static iceberg.llvm.opt.PassManager.SIMPLIFY_CFG;
+import static iceberg.llvm.opt.PassManager.SSA;
+import static opt.FunctionCfgs.optimize;
+import static org.assertj.core.api.Assertions.assertThat;
+import static run.BackendTarget.LLVM;
+
+public class CfgSimplificationTest {
+
+    private static final String SOURCE = """
+        fun f(n: i32): i32 {
+            def unused = n * 3;
+            def s = 0;
+            def i = 0;
+            while i < n then {
+                if i > 2 then {
+                    s = s + i;
+                }
+                i = i + 1;
+            }
+            return s;
+        }
+        
+        print f(6);
+        print f(2);
+        """;
+
+    @BackendTest(LLVM)
+    void test(Compiler compiler) {
+        compiler.execute(SOURCE, "12\n0\n");
+    }
+
+    @Test
+    void removesJumpOnlyBlocksAndKeepsEdgesConsistent() {
+        var functionCfg = optimize(SOURCE, SSA, CP, DCE, SIMPLIFY_CFG);
+
+        var entry = functionCfg.bbs.get(functionCfg.bbs.firstKey());
+        assertThat(functionCfg.bbs.values())
+            .filteredOn(bb -> bb != entry)
+            .noneMatch(bb -> bb.tac.size() == 1 && bb.tac.getFirst() instanceof TacJump);
+
+        assertThat(functionCfg.bbs.values()).allSatisfy(bb -> {
+            assertThat(bb.next).allSatisfy(next -> assertThat(next.prev).contains(bb));
+            assertThat(bb.prev).allSatisfy(prev -> assertThat(prev.next).contains(bb));
+            assertThat(bb.tac).filteredOn(TacPhi.class::isInstance).allSatisfy(phi ->
+                assertThat(((TacPhi) phi).incoming.keySet())
+                    .containsExactlyInAnyOrderElementsOf(bb.prev.stream().map(prev -> prev.label).toList())
+            );
+        });
+    }
+
+    @Test
+    void removesUnusedTemporaries() {
+        var functionCfg = optimize(SOURCE, SSA, CP, DCE, SIMPLIFY_CFG);
+
+        assertThat(functionCfg.bbs.values().stream().flatMap(bb -> bb.tac.stream()))
+            .filteredOn(TacBinaryOperation.class::isInstance)
+            .noneMatch(tac -> ((TacBinaryOperation) tac).operator == IcebergBinaryOperator.MULT);
+    }
+}
@@ -1,14 +1,20 @@
 package opt;
 
+import iceberg.llvm.tac.TacJumpConditional;
+import iceberg.llvm.tac.TacNumber;
+import iceberg.llvm.tac.TacPrint;
+import org.junit.jupiter.api.Test;
 import run.BackendTest;
 import run.compiler.Compiler;
 
+import static iceberg.llvm.opt.PassManager.CP;
+import static iceberg.llvm.opt.PassManager.SSA;
+import static opt.FunctionCfgs.optimize;
+import static org.assertj.core.api.Assertions.assertThat;
 import static run.BackendTarget.LLVM;
 
 public class ConstantPropagationTest {
 
-    //TODO: сравнить CFG до и после
-
     @BackendTest(LLVM)
     void test(Compiler compiler) {
         compiler.execute("""
@@ -26,4 +32,50 @@ public class ConstantPropagationTest {
             print p;
             """, "12\n");
     }
+
+    @Test
+    void foldsBranchesAndRemovesUnreachableBlocks() {
+        var functionCfg = optimize("""
+            def x = 10;
+            if x > 5 then {
+                x = x * 2;
+            } else {
+                x = 0;
+            }
+            print x + 1;
+            """, SSA, CP);
+
+        var tac = functionCfg.bbs.values().stream()
+            .flatMap(bb -> bb.tac.stream())
+            .toList();
+
+        assertThat(tac).noneMatch(TacJumpConditional.class::isInstance);
+        assertThat(tac).filteredOn(TacPrint.class::isInstance)
+            .singleElement()
+            .satisfies(print -> assertThat(((TacPrint) print).argument)
+                .isInstanceOfSatisfying(TacNumber.class, number -> assertThat(number.value).isEqualTo(21))
+            );
+        assertThat(functionCfg.bbs.values())
+            .allSatisfy(bb -> assertThat(bb.prev).allMatch(prev -> functionCfg.bbs.containsValue(prev)));
+    }
+
+    @Test
+    void keepsLoopCarriedValuesUnknown() {
+        var functionCfg = optimize("""
+            def i = 0;
+            while i < 10 then {
+                i = i + 1;
+            }
+            print i;
+            """, SSA, CP);
+
+        var prints = functionCfg.bbs.values().stream()
+            .flatMap(bb -> bb.tac.stream())
+            .filter(TacPrint.class::isInstance)
+            .map(TacPrint.class::cast)
+            .toList();
+
+        assertThat(prints).singleElement()
+            .satisfies(print -> assertThat(print.argument).isNotInstanceOf(TacNumber.class));
+    }
 }
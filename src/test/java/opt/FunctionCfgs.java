@@ -0,0 +1,36 @@
+package opt;
+
+import iceberg.common.phases.BuildIrTreePhase;
+import iceberg.common.phases.ParseSourcePhase;
+import iceberg.llvm.FunctionCfg;
+import iceberg.llvm.opt.FunctionPass;
+import iceberg.llvm.opt.PassManager;
+import iceberg.llvm.phases.BuildCfgPhase;
+import iceberg.llvm.phases.BuildTacPhase;
+
+import java.util.List;
+
+/**
+ * CFG первой функции программы для тестов оптимизаций.
+ */
+final class FunctionCfgs {
+
+    private FunctionCfgs() {
+    }
+
+    static FunctionCfg build(String source) {
+        var irFile = new BuildIrTreePhase().execute(new ParseSourcePhase().execute(source));
+        var function = irFile.classes.getFirst().methods.getFirst();
+
+        return new BuildCfgPhase(new BuildTacPhase(function).execute()).execute();
+    }
+
+    /**
+     * Прогоняет проходы через {@link PassManager}, как это делает компилятор.
+     */
+    static FunctionCfg optimize(String source, FunctionPass... pipeline) {
+        var functionCfg = build(source);
+        new PassManager(0, List.of(pipeline)).run(functionCfg);
+        return functionCfg;
+    }
+}
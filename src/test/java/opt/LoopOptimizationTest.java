@@ -0,0 +1,104 @@
+package opt;
+
+import iceberg.ir.IcebergBinaryOperator;
+import iceberg.ir.IcebergType;
+import iceberg.llvm.opt.loop.LoopAnalysis;
+import iceberg.llvm.tac.TacBinaryOperation;
+import iceberg.llvm.tac.TacPhi;
+import iceberg.llvm.tac.TacVariable;
+import org.junit.jupiter.api.Test;
+import run.BackendTest;
+import run.compiler.Compiler;
+
+import static iceberg.llvm.opt.PassManager.CP;
+import static iceberg.llvm.opt.PassManager.LICM;
+import static iceberg.llvm.opt.PassManager.SIMPLIFY_CFG;
+import static iceberg.llvm.opt.PassManager.SSA;
+import static iceberg.llvm.opt.PassManager.STRENGTH_REDUCTION;
+import static opt.FunctionCfgs.optimize;
+import static org.assertj.core.api.Assertions.assertThat;
+import static run.BackendTarget.LLVM;
+
+public class LoopOptimizationTest {
+
+    private static final String SOURCE = """
+        fun f(n: i32, k: i32): i32 {
+            def i = 0;
+            def s = 0;
+            while i < n then {
+                s = s + i * k + n * n;
+                i = i + 1;
+            }
+            return s;
+        }
+        
+        print f(10, 3);
+        print f(7, -2);
+        """;
+
+    @BackendTest(LLVM)
+    void test(Compiler compiler) {
+        compiler.execute(SOURCE, "1135\n301\n");
+    }
+
+    @Test
+    void findsNestedLoopsInnerFirst() {
+        var functionCfg = optimize("""
+            def i = 0;
+            while i < 10 then {
+                def j = 0;
+                while j < 10 then {
+                    j = j + 1;
+                }
+                i = i + 1;
+            }
+            """, SSA, CP);
+
+        var loops = new LoopAnalysis(functionCfg).execute();
+
+        assertThat(loops).hasSize(2);
+        assertThat(loops.getLast().blocks).containsAll(loops.getFirst().blocks);
+        assertThat(loops).allSatisfy(loop -> assertThat(loop.preheader.next).containsExactly(loop.header));
+    }
+
+    @Test
+    void hoistsInvariantsAndReducesMultiplication() {
+        var functionCfg = optimize(SOURCE, SSA, CP, LICM, STRENGTH_REDUCTION);
+        var loop = new LoopAnalysis(functionCfg).execute().getFirst();
+
+        var multiplications = loop.blocks.stream()
+            .flatMap(bb -> bb.tac.stream())
+            .filter(TacBinaryOperation.class::isInstance)
+            .map(TacBinaryOperation.class::cast)
+            .filter(binary -> binary.operator == IcebergBinaryOperator.MULT);
+
+        assertThat(multiplications).isEmpty();
+    }
+
+    @Test
+    void headerPhiWithoutOutsideValue() {
+        //ветвление входит прямо в заголовок, для цикла понадобится новый preheader
+        var functionCfg = optimize("""
+            fun f(n: i32, c: bool): i32 {
+                def i = 0;
+                if c then while i < n then i = i + 1;
+                return i;
+            }
+            """, SSA, SIMPLIFY_CFG);
+
+        var header = functionCfg.bbs.values().stream()
+            .filter(bb -> bb.prev.size() == 2 && bb.prev.stream().anyMatch(prev -> prev.prev.contains(bb)))
+            .findAny().orElseThrow();
+        var latch = header.prev.stream().filter(prev -> prev.prev.contains(header)).findAny().orElseThrow();
+        var latchOnly = new TacPhi(new TacVariable("x", IcebergType.i32));
+        latchOnly.incoming.put(latch.label, new TacVariable("y", IcebergType.i32));
+        header.tac.addFirst(latchOnly);
+
+        var loop = new LoopAnalysis(functionCfg).execute().getFirst();
+
+        assertThat(loop.preheader.label).endsWith(".preheader");
+        assertThat(loop.preheader.tac).noneMatch(TacPhi.class::isInstance);
+        assertThat(header.tac.getFirst()).isSameAs(latchOnly);
+        assertThat(latchOnly.incoming).containsOnlyKeys(latch.label);
+    }
+}
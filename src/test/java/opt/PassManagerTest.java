@@ -0,0 +1,77 @@
+package opt;
+
+import iceberg.llvm.LlvmCompiler;
+import iceberg.llvm.opt.FunctionPass;
+import iceberg.llvm.opt.PassManager;
+import iceberg.llvm.opt.PassStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PassManagerTest {
+
+    private static final String SOURCE = """
+        def unused = 7 * 6;
+        def i = 0;
+        def s = 0;
+        while i < 10 then {
+            if i > 5 then {
+                s = s + i;
+            }
+            i = i + 1;
+        }
+        print s;
+        """;
+
+    @Test
+    void recordsStatisticsPerPass() {
+        var passManager = PassManager.forLevel(2);
+        passManager.run(FunctionCfgs.build(SOURCE));
+
+        var statistics = passManager.statistics();
+        assertThat(statistics).extracting(stats -> stats.name)
+            .startsWith("ssa", "sccp", "dce", "simplify-cfg");
+        assertThat(statistics).allSatisfy(stats -> assertThat(stats.runs()).isPositive());
+
+        var sccp = find(statistics, "sccp");
+        assertThat(sccp.changed()).isEqualTo(1);
+        assertThat(sccp.tacAfter()).isLessThan(sccp.tacBefore());
+
+        assertThat(passManager.report())
+            .contains("\"level\": 2")
+            .contains("\"name\": \"licm\"");
+    }
+
+    @Test
+    void repeatsFixpointUntilNothingChanges() {
+        var countdown = new AtomicInteger(3);
+        var runs = new AtomicInteger();
+        var pass = FunctionPass.fixpoint("group", FunctionPass.of("countdown", functionCfg -> {
+            runs.incrementAndGet();
+            return countdown.decrementAndGet() > 0;
+        }));
+
+        var passManager = new PassManager(0, List.of(pass));
+        passManager.run(FunctionCfgs.build(SOURCE));
+
+        assertThat(runs).hasValue(3);
+        assertThat(find(passManager.statistics(), "group").changed()).isEqualTo(1);
+    }
+
+    @Test
+    void pipelineLevelDoesNotDependOnClang() {
+        var options = LlvmCompiler.Options.parse(List.of("-O2", "-clang-O0"));
+
+        assertThat(options.optimizationLevel()).isEqualTo(2);
+        assertThat(options.clangOptimizationLevel()).isEqualTo(0);
+        assertThat(LlvmCompiler.Options.parse(List.of()).clangOptimizationLevel()).isEqualTo(2);
+        assertThat(LlvmCompiler.Options.parse(List.of("-O0")).clangOptimizationLevel()).isEqualTo(2);
+    }
+
+    private static PassStatistics find(List<PassStatistics> statistics, String name) {
+        return statistics.stream().filter(stats -> stats.name.equals(name)).findAny().orElseThrow();
+    }
+}
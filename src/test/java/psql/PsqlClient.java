@@ -0,0 +1,61 @@
+package psql;
+
+import iceberg.psql.PsqlProtocol;
+import lombok.SneakyThrows;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Заменяет хэндлер постгреса: шлет вызовы функций в {@link iceberg.psql.PsqlServer} по тому же протоколу.
+ */
+public class PsqlClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    @SneakyThrows
+    public PsqlClient(Path socketPath) {
+        this.channel = connect(socketPath);
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    //сервер мог еще не успеть подняться: сокет-файл появляется до listen
+    private static SocketChannel connect(Path socketPath) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socketPath));
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @SneakyThrows
+    public PsqlProtocol.Response call(
+        long oid, String source, int returnType, PsqlProtocol.Argument... arguments
+    ) {
+        new PsqlProtocol.Request(oid, source, returnType, List.of(arguments)).write(out);
+        out.flush();
+
+        return PsqlProtocol.Response.read(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
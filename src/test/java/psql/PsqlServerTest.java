@@ -0,0 +1,138 @@
+package psql;
+
+import iceberg.psql.PsqlProtocol;
+import iceberg.psql.PsqlServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static iceberg.psql.PsqlProtocol.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PsqlServerTest {
+
+    static final String FIBONACCI = """
+        if n <= 0 then return -1;
+
+        def f = 1;
+        def s = 1;
+
+        def i = 0;
+        while i < n - 1 then {
+            def tmp = f + s;
+            f = s;
+            s = tmp;
+
+            i = i + 1;
+        }
+
+        return f;
+        """;
+
+    static Path socket;
+    static PsqlClient client;
+
+    @BeforeAll
+    static void start() throws IOException {
+        socket = Files.createTempDirectory("psql").resolve("iceberg.sock");
+        Thread.ofVirtual().start(() -> new PsqlServer(socket).serve());
+
+        client = new PsqlClient(socket);
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        client.close();
+    }
+
+    @Test
+    void functionWithArguments() {
+        var n = new Argument("n", TYPE_I32, 10);
+        var response = client.call(1, FIBONACCI, TYPE_I32, n);
+
+        assertThat(response.status()).isEqualTo(STATUS_OK);
+        assertThat(response.value()).isEqualTo(55);
+    }
+
+    @Test
+    void sameFunctionDifferentArguments() {
+        for (int n = 1; n <= 10; n++) {
+            var response = client.call(2, FIBONACCI, TYPE_I32, new Argument("n", TYPE_I32, n));
+            assertThat(response.value()).isNotNull();
+        }
+
+        var response = client.call(2, FIBONACCI, TYPE_I32, new Argument("n", TYPE_I32, 20));
+        assertThat(response.value()).isEqualTo(6765);
+    }
+
+    @Test
+    void replacedFunctionIsRecompiled() {
+        var first = client.call(3, "return 1;", TYPE_I32);
+        var second = client.call(3, "return 2;", TYPE_I32);
+
+        assertThat(first.value()).isEqualTo(1);
+        assertThat(second.value()).isEqualTo(2);
+    }
+
+    @Test
+    void allTypes() {
+        var response = client.call(4, """
+            print b + 10;
+            print a + 10;
+            print d or true;
+            return c;
+            """, TYPE_STRING,
+            new Argument("a", TYPE_I32, 3),
+            new Argument("b", TYPE_I64, 14L),
+            new Argument("c", TYPE_STRING, "qux"),
+            new Argument("d", TYPE_BOOL, false)
+        );
+
+        assertThat(response.status()).isEqualTo(STATUS_OK);
+        assertThat(response.output()).isEqualTo("24\n13\ntrue\n");
+        assertThat(response.value()).isEqualTo("qux");
+    }
+
+    @Test
+    void imports() {
+        var response = client.call(5, """
+            import java.util.ArrayList;
+
+            def list = new ArrayList;
+            list.add("foo");
+            list.add("bar");
+
+            return list.toString();
+            """, TYPE_STRING);
+
+        assertThat(response.value()).isEqualTo("[foo, bar]");
+    }
+
+    @Test
+    void changedSignatureIsRecompiled() {
+        var first = client.call(7, "return n;", TYPE_I32, new Argument("n", TYPE_I32, 1));
+        var second = client.call(7, "return n;", TYPE_I64, new Argument("n", TYPE_I64, 2L));
+
+        assertThat(first.value()).isEqualTo(1);
+        assertThat(second.value()).isEqualTo(2L);
+    }
+
+    @Test
+    void secondServerDoesNotTakeSocket() {
+        new PsqlServer(socket).serve();
+
+        assertThat(client.call(8, "return 1;", TYPE_I32).value()).isEqualTo(1);
+    }
+
+    @Test
+    void compilationError() {
+        var response = client.call(6, "return x;", TYPE_I32);
+
+        assertThat(response.status()).isEqualTo(STATUS_ERROR);
+        assertThat(response.message()).isEqualTo("'x' is not defined");
+    }
+}